@@ -0,0 +1,164 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.model.targets.DefaultTable;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.Table;
+
+/**
+ * Measures concurrent lookups in a {@link DefaultMetadataStore}, both alone and while other threads modify the store.
+ * The writers rename tables and add and remove constraint collections, so that the store does not grow during the
+ * benchmark. Each writer works on its own schema. The store has no location, so that there is no journal that
+ * collects the changes.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConcurrentAccessBenchmark {
+
+    private static final int NUM_LOOKUP_KEYS = 1024;
+
+    @Param({ "8" })
+    public int numSchemas;
+
+    @Param({ "100" })
+    public int numTables;
+
+    @Param({ "10" })
+    public int numColumnsPerTable;
+
+    private DefaultMetadataStore metadataStore;
+
+    private final List<Schema> schemas = new ArrayList<>();
+
+    private final int[] columnIds = new int[NUM_LOOKUP_KEYS];
+
+    private final String[] tableNames = new String[NUM_LOOKUP_KEYS];
+
+    private final AtomicInteger writerCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void createMetadataStore() {
+        this.metadataStore = new DefaultMetadataStore();
+        List<Column> columns = new ArrayList<>();
+        for (int schemaNum = 0; schemaNum < this.numSchemas; schemaNum++) {
+            Schema schema = MetadataStoreFixtures.createSchema(this.metadataStore, this.numTables,
+                    this.numColumnsPerTable);
+            this.schemas.add(schema);
+            columns.addAll(MetadataStoreFixtures.collectColumns(schema));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < NUM_LOOKUP_KEYS; i++) {
+            this.columnIds[i] = columns.get(random.nextInt(columns.size())).getId();
+            this.tableNames[i] = MetadataStoreFixtures.getTableName(random.nextInt(this.numTables));
+        }
+    }
+
+    /**
+     * The position of a reader in the lookup keys.
+     */
+    @State(Scope.Thread)
+    public static class ReaderState {
+
+        private int lookupIndex = 0;
+
+        int nextLookupIndex() {
+            this.lookupIndex = (this.lookupIndex + 1) % NUM_LOOKUP_KEYS;
+            return this.lookupIndex;
+        }
+
+    }
+
+    /**
+     * The schema of a writer and the table that it renames.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+
+        private Schema schema;
+
+        private DefaultTable table;
+
+        private String name;
+
+        private int renameCounter = 0;
+
+        @Setup(Level.Trial)
+        public void pickSchema(ConcurrentAccessBenchmark benchmark) {
+            int writerNum = benchmark.writerCounter.getAndIncrement();
+            this.schema = benchmark.schemas.get(writerNum % benchmark.schemas.size());
+            this.table = (DefaultTable) this.schema.getTables().iterator().next();
+            this.name = this.table.getName();
+        }
+
+    }
+
+    private Object lookup(ReaderState state) {
+        int index = state.nextLookupIndex();
+        int columnId = this.columnIds[index];
+        if (!this.metadataStore.hasTargetWithId(columnId)) {
+            throw new IllegalStateException("Column " + columnId + " not found.");
+        }
+        Schema schema = this.metadataStore.getSchemaById(this.metadataStore.getIdUtils().getSchemaId(columnId));
+        Table table = schema.getTableByName(this.tableNames[index]);
+        return schema.findColumn(columnId) != null ? table : null;
+    }
+
+    private Object write(WriterState state) {
+        state.table.setName(state.name + "-" + (state.renameCounter++ & 1));
+        ConstraintCollection constraintCollection = this.metadataStore.createConstraintCollection(null,
+                state.schema);
+        this.metadataStore.removeConstraintCollection(constraintCollection);
+        return constraintCollection;
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public Object readOnlyLookup(ReaderState state) {
+        return lookup(state);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Object readWriteLookup(ReaderState state) {
+        return lookup(state);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Object readWriteWrite(WriterState state) {
+        return write(state);
+    }
+
+}
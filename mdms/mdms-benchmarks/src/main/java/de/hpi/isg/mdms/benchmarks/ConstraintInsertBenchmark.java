@@ -0,0 +1,86 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.ConstraintType;
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.StoreType;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.targets.Column;
+
+/**
+ * Measures the insertion of one constraint per column into a fresh constraint collection, including the flushes that
+ * are issued after every {@link #batchSize} constraints.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConstraintInsertBenchmark {
+
+    @Param({ "RDBMS", "DEFAULT" })
+    public StoreType storeType;
+
+    @Param({ "DISTINCT_VALUE_COUNT", "TUPLE_COUNT", "TYPE_CONSTRAINT", "INCLUSION_DEPENDENCY",
+            "UNIQUE_COLUMN_COMBINATION", "FUNCTIONAL_DEPENDENCY" })
+    public ConstraintType constraintType;
+
+    @Param({ "10", "100" })
+    public int numTables;
+
+    @Param({ "100" })
+    public int numColumnsPerTable;
+
+    @Param({ "100", "10000" })
+    public int batchSize;
+
+    private MetadataStore metadataStore;
+
+    private List<Column> columns;
+
+    private File file;
+
+    @Setup(Level.Invocation)
+    public void createMetadataStore() throws Exception {
+        this.file = MetadataStoreFixtures.createTempFile(".db");
+        this.metadataStore = this.storeType.create(this.file);
+        this.columns = MetadataStoreFixtures.collectColumns(
+                MetadataStoreFixtures.createSchema(this.metadataStore, this.numTables, this.numColumnsPerTable));
+        this.metadataStore.flush();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeMetadataStore() {
+        this.metadataStore.close();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public ConstraintCollection insertConstraints() throws Exception {
+        ConstraintCollection constraintCollection = this.metadataStore.createConstraintCollection(null);
+        MetadataStoreFixtures.insertConstraints(this.metadataStore, constraintCollection, this.constraintType,
+                this.columns, this.batchSize);
+        return constraintCollection;
+    }
+
+}
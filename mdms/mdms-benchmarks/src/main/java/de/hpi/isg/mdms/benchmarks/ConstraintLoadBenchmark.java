@@ -0,0 +1,96 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.ConstraintType;
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.StoreType;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+
+/**
+ * Measures how long it takes to load all constraints of a constraint collection from a freshly opened metadata store.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConstraintLoadBenchmark {
+
+    @Param({ "RDBMS", "DEFAULT" })
+    public StoreType storeType;
+
+    @Param({ "DISTINCT_VALUE_COUNT", "INCLUSION_DEPENDENCY", "UNIQUE_COLUMN_COMBINATION" })
+    public ConstraintType constraintType;
+
+    @Param({ "10", "100" })
+    public int numTables;
+
+    @Param({ "100" })
+    public int numColumnsPerTable;
+
+    @Param({ "10000" })
+    public int batchSize;
+
+    private File file;
+
+    private MetadataStore metadataStore;
+
+    private ConstraintCollection constraintCollection;
+
+    @Setup(Level.Trial)
+    public void createMetadataStore() throws Exception {
+        this.file = MetadataStoreFixtures.createTempFile(".db");
+        MetadataStore metadataStore = this.storeType.create(this.file);
+        ConstraintCollection constraintCollection = metadataStore.createConstraintCollection(null);
+        MetadataStoreFixtures.insertConstraints(metadataStore, constraintCollection, this.constraintType,
+                MetadataStoreFixtures.collectColumns(
+                        MetadataStoreFixtures.createSchema(metadataStore, this.numTables, this.numColumnsPerTable)),
+                this.batchSize);
+        metadataStore.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void loadMetadataStore() {
+        this.metadataStore = this.storeType.load(this.file);
+        this.constraintCollection = this.metadataStore.getConstraintCollections().iterator().next();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeMetadataStore() {
+        this.metadataStore.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMetadataStore() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public void getConstraints(Blackhole blackhole) {
+        for (Constraint constraint : this.constraintCollection.getConstraints()) {
+            blackhole.consume(constraint);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.write.DatabaseWriter;
+import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
+
+/**
+ * Measures the dependency bookkeeping of the {@link DatabaseAccess} with many writers that access each other's
+ * tables. Each writer inserts into its own table and reads from a few random other tables, so that writing a single
+ * element to every writer creates a dense precedence graph with cycles.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FlushOrderBenchmark {
+
+    private static final PreparedStatementAdapter<Integer> ID_ADAPTER = new PreparedStatementAdapter<Integer>() {
+        @Override
+        public void translateParameter(Integer id, PreparedStatement preparedStatement) throws SQLException {
+            preparedStatement.setInt(1, id);
+        }
+    };
+
+    @Param({ "100", "500" })
+    public int numWriters;
+
+    @Param({ "2", "8" })
+    public int numAccessedTablesPerWriter;
+
+    private Connection connection;
+
+    private DatabaseAccess databaseAccess;
+
+    private List<DatabaseWriter<Integer>> writers;
+
+    private int nextId = 0;
+
+    @Setup(Level.Trial)
+    public void createWriters() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = this.connection.createStatement()) {
+            for (int tableNum = 0; tableNum < this.numWriters; tableNum++) {
+                statement.executeUpdate(String.format("CREATE TABLE t%d (id integer);", tableNum));
+            }
+        }
+        this.databaseAccess = new DatabaseAccess(this.connection);
+
+        Random random = new Random(42);
+        this.writers = new ArrayList<>();
+        for (int writerNum = 0; writerNum < this.numWriters; writerNum++) {
+            String[] accessedTables = new String[this.numAccessedTablesPerWriter];
+            for (int i = 0; i < accessedTables.length; i++) {
+                accessedTables[i] = "t" + random.nextInt(this.numWriters);
+            }
+            PreparedStatementBatchWriter.Factory<Integer> factory = new PreparedStatementBatchWriter.Factory<>(
+                    String.format("INSERT INTO t%d (id) VALUES (?);", writerNum), ID_ADAPTER, "t" + writerNum,
+                    accessedTables);
+            this.writers.add(this.databaseAccess.createBatchWriter(factory));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabaseAccess() throws SQLException {
+        this.databaseAccess.close();
+    }
+
+    /**
+     * Writes one element to each writer, thereby registering all table accesses, and flushes everything afterwards.
+     */
+    @Benchmark
+    public void writeToAllWritersAndFlush() throws SQLException {
+        for (DatabaseWriter<Integer> writer : this.writers) {
+            writer.write(this.nextId++);
+        }
+        this.databaseAccess.flush();
+    }
+
+}
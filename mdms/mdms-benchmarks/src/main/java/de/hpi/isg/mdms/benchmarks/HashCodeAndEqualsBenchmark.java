@@ -0,0 +1,143 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.common.AbstractHashCodeAndEquals;
+import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
+import de.hpi.isg.mdms.model.location.DefaultLocation;
+import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.targets.Column;
+
+/**
+ * Compares hashCode() and equals() of {@link AbstractHashCodeAndEquals} with Apache's reflection-based
+ * {@link HashCodeBuilder#reflectionHashCode(Object, java.util.Collection)} and
+ * {@link EqualsBuilder#reflectionEquals(Object, Object, java.util.Collection)}, which it used to delegate to. The
+ * excluded fields for the latter are collected upfront, so that only the per-call costs are compared.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HashCodeAndEqualsBenchmark {
+
+    private static final int NUM_COLUMNS = 1024;
+
+    private List<Column> columns;
+
+    private Set<Column> columnSet;
+
+    private Set<String> columnExcludes;
+
+    private Location location1, location2;
+
+    private Set<String> locationExcludes;
+
+    private int columnIndex = 0;
+
+    @Setup(Level.Trial)
+    public void createObjects() throws Exception {
+        MetadataStore metadataStore = new DefaultMetadataStore();
+        this.columns = MetadataStoreFixtures.collectColumns(MetadataStoreFixtures.createSchema(metadataStore,
+                NUM_COLUMNS / 16, 16));
+        this.columnSet = new HashSet<>(this.columns);
+        this.columnExcludes = collectExcludedFields(this.columns.get(0).getClass());
+
+        this.location1 = createLocation(new Random(42));
+        this.location2 = createLocation(new Random(42));
+        this.locationExcludes = collectExcludedFields(DefaultLocation.class);
+    }
+
+    private static Location createLocation(Random random) {
+        Location location = DefaultLocation.createForFile("/data/file-" + random.nextInt() + ".csv");
+        location.set(Location.INDEX, String.valueOf(random.nextInt(100)));
+        return location;
+    }
+
+    private static Set<String> collectExcludedFields(Class<?> clazz) {
+        Set<String> excludes = new HashSet<>();
+        for (; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(ExcludeHashCodeEquals.class)) {
+                    excludes.add(field.getName());
+                }
+            }
+        }
+        return excludes;
+    }
+
+    private Column nextColumn() {
+        this.columnIndex = (this.columnIndex + 1) % NUM_COLUMNS;
+        return this.columns.get(this.columnIndex);
+    }
+
+    @Benchmark
+    public int columnHashCode() {
+        return nextColumn().hashCode();
+    }
+
+    @Benchmark
+    public int columnHashCodeReflection() {
+        return HashCodeBuilder.reflectionHashCode(nextColumn(), this.columnExcludes);
+    }
+
+    @Benchmark
+    public boolean columnEqualsOtherColumn() {
+        return nextColumn().equals(this.columns.get(0));
+    }
+
+    @Benchmark
+    public boolean columnEqualsOtherColumnReflection() {
+        return EqualsBuilder.reflectionEquals(nextColumn(), this.columns.get(0), this.columnExcludes);
+    }
+
+    @Benchmark
+    public boolean columnSetContains() {
+        return this.columnSet.contains(nextColumn());
+    }
+
+    @Benchmark
+    public int locationHashCode() {
+        return this.location1.hashCode();
+    }
+
+    @Benchmark
+    public int locationHashCodeReflection() {
+        return HashCodeBuilder.reflectionHashCode(this.location1, this.locationExcludes);
+    }
+
+    @Benchmark
+    public boolean locationEquals() {
+        return this.location1.equals(this.location2);
+    }
+
+    @Benchmark
+    public boolean locationEqualsReflection() {
+        return EqualsBuilder.reflectionEquals(this.location1, this.location2, this.locationExcludes);
+    }
+
+}
@@ -0,0 +1,114 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.StoreType;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.Table;
+
+/**
+ * Measures the id and name lookups of schemas, tables and columns. The looked up targets are drawn randomly, but
+ * reproducibly, from the schema.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int NUM_LOOKUP_KEYS = 1024;
+
+    @Param({ "RDBMS", "DEFAULT" })
+    public StoreType storeType;
+
+    @Param({ "10", "100" })
+    public int numTables;
+
+    @Param({ "10", "100" })
+    public int numColumnsPerTable;
+
+    @Param({ "10000" })
+    public int batchSize;
+
+    private File file;
+
+    private MetadataStore metadataStore;
+
+    private Schema schema;
+
+    private final String[] tableNames = new String[NUM_LOOKUP_KEYS];
+
+    private final int[] columnIds = new int[NUM_LOOKUP_KEYS];
+
+    private int lookupIndex = 0;
+
+    @Setup(Level.Trial)
+    public void createMetadataStore() throws Exception {
+        this.file = MetadataStoreFixtures.createTempFile(".db");
+        this.metadataStore = this.storeType.create(this.file);
+        this.schema = MetadataStoreFixtures.createSchema(this.metadataStore, this.numTables, this.numColumnsPerTable);
+        this.metadataStore.flush();
+
+        List<Column> columns = MetadataStoreFixtures.collectColumns(this.schema);
+        Random random = new Random(42);
+        for (int i = 0; i < NUM_LOOKUP_KEYS; i++) {
+            this.tableNames[i] = MetadataStoreFixtures.getTableName(random.nextInt(this.numTables));
+            this.columnIds[i] = columns.get(random.nextInt(columns.size())).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeMetadataStore() {
+        this.metadataStore.close();
+        this.file.delete();
+    }
+
+    private int nextLookupIndex() {
+        this.lookupIndex = (this.lookupIndex + 1) % NUM_LOOKUP_KEYS;
+        return this.lookupIndex;
+    }
+
+    @Benchmark
+    public Schema getSchemaByName() {
+        return this.metadataStore.getSchemaByName(MetadataStoreFixtures.SCHEMA_NAME);
+    }
+
+    @Benchmark
+    public Table getTableByName() {
+        return this.schema.getTableByName(this.tableNames[nextLookupIndex()]);
+    }
+
+    @Benchmark
+    public Column findColumnById() {
+        return this.schema.findColumn(this.columnIds[nextLookupIndex()]);
+    }
+
+    @Benchmark
+    public boolean hasTargetWithId() {
+        return this.metadataStore.hasTargetWithId(this.columnIds[nextLookupIndex()]);
+    }
+
+}
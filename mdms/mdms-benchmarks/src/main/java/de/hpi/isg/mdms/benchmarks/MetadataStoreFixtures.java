@@ -0,0 +1,217 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
+import de.hpi.isg.mdms.domain.constraints.DistinctValueCount;
+import de.hpi.isg.mdms.domain.constraints.FunctionalDependency;
+import de.hpi.isg.mdms.domain.constraints.InclusionDependency;
+import de.hpi.isg.mdms.domain.constraints.SingleTargetReference;
+import de.hpi.isg.mdms.domain.constraints.TupleCount;
+import de.hpi.isg.mdms.domain.constraints.TypeConstraint;
+import de.hpi.isg.mdms.domain.constraints.UniqueColumnCombination;
+import de.hpi.isg.mdms.domain.factories.MetadataStoreFactory;
+import de.hpi.isg.mdms.domain.util.SQLiteConstraintUtils;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.location.DefaultLocation;
+import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.rdbms.SQLiteInterface;
+
+/**
+ * Shared setup code for the metadata store benchmarks, i.e., creating stores, schemas and constraints.
+ *
+ * @author Sebastian Kruse
+ */
+@SuppressWarnings("deprecation")
+public class MetadataStoreFixtures {
+
+    public static final String SCHEMA_NAME = "benchmark-schema";
+
+    /**
+     * The metadata store implementations that can be benchmarked.
+     */
+    public enum StoreType {
+
+        /** {@link RDBMSMetadataStore} on top of a {@link SQLiteInterface}. */
+        RDBMS {
+            @Override
+            public MetadataStore create(File file) {
+                SQLiteInterface sqliteInterface = SQLiteConstraintUtils.registerStandardConstraints(
+                        SQLiteInterface.createForFile(file));
+                return RDBMSMetadataStore.createNewInstance(sqliteInterface);
+            }
+
+            @Override
+            public MetadataStore load(File file) {
+                SQLiteInterface sqliteInterface = SQLiteConstraintUtils.registerStandardConstraints(
+                        SQLiteInterface.createForFile(file));
+                return RDBMSMetadataStore.load(sqliteInterface);
+            }
+        },
+
+        /** Java-serialized {@link de.hpi.isg.mdms.model.DefaultMetadataStore}. */
+        DEFAULT {
+            @Override
+            public MetadataStore create(File file) {
+                try {
+                    return MetadataStoreFactory.createAndSaveDefaultMetadataStore(file);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public MetadataStore load(File file) {
+                try {
+                    return MetadataStoreFactory.loadDefaultMetadataStore(file);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        /**
+         * Creates a new, empty metadata store that is persisted in the given file.
+         */
+        public abstract MetadataStore create(File file);
+
+        /**
+         * Loads a metadata store that has previously been persisted in the given file.
+         */
+        public abstract MetadataStore load(File file);
+
+    }
+
+    /**
+     * The constraint types whose insertion can be benchmarked. Each type creates a single constraint for a given
+     * column. Multi-column constraints additionally pick up the next column.
+     */
+    public enum ConstraintType {
+
+        DISTINCT_VALUE_COUNT {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                DistinctValueCount.buildAndAddToCollection(new SingleTargetReference(columns.get(index).getId()),
+                        constraintCollection, index);
+            }
+        },
+
+        TUPLE_COUNT {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                TupleCount.buildAndAddToCollection(new SingleTargetReference(columns.get(index).getId()),
+                        constraintCollection, index);
+            }
+        },
+
+        TYPE_CONSTRAINT {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                TypeConstraint.buildAndAddToCollection(new SingleTargetReference(columns.get(index).getId()),
+                        constraintCollection, TypeConstraint.TYPES.STRING);
+            }
+        },
+
+        INCLUSION_DEPENDENCY {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                Column dependentColumn = columns.get(index);
+                Column referencedColumn = columns.get((index + 1) % columns.size());
+                InclusionDependency.buildAndAddToCollection(new InclusionDependency.Reference(
+                        new Column[] { dependentColumn }, new Column[] { referencedColumn }), constraintCollection);
+            }
+        },
+
+        UNIQUE_COLUMN_COMBINATION {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                UniqueColumnCombination.buildAndAddToCollection(new UniqueColumnCombination.Reference(
+                        new int[] { columns.get(index).getId() }), constraintCollection);
+            }
+        },
+
+        FUNCTIONAL_DEPENDENCY {
+            @Override
+            public void insert(ConstraintCollection constraintCollection, List<Column> columns, int index) {
+                int rhsColumnId = columns.get(index).getId();
+                int lhsColumnId = columns.get((index + 1) % columns.size()).getId();
+                FunctionalDependency.buildAndAddToCollection(new FunctionalDependency.Reference(rhsColumnId,
+                        new int[] { lhsColumnId }), constraintCollection);
+            }
+        };
+
+        /**
+         * Adds a constraint of this type for the {@code index}-th of the given columns to the constraint collection.
+         */
+        public abstract void insert(ConstraintCollection constraintCollection, List<Column> columns, int index);
+
+    }
+
+    /**
+     * Creates a temporary file to host a metadata store. It will be deleted when the JVM exits.
+     */
+    public static File createTempFile(String suffix) {
+        try {
+            File file = File.createTempFile("metadatastore-benchmark", suffix);
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds a schema with the given number of tables and columns per table to the metadata store.
+     */
+    public static Schema createSchema(MetadataStore metadataStore, int numTables, int numColumnsPerTable) {
+        Schema schema = metadataStore.addSchema(SCHEMA_NAME, null, new DefaultLocation());
+        for (int tableNum = 0; tableNum < numTables; tableNum++) {
+            Table table = schema.addTable(metadataStore, getTableName(tableNum), null, new DefaultLocation());
+            for (int columnNum = 0; columnNum < numColumnsPerTable; columnNum++) {
+                table.addColumn(metadataStore, getColumnName(columnNum), null, columnNum);
+            }
+        }
+        return schema;
+    }
+
+    public static String getTableName(int tableNum) {
+        return String.format("table-%04d", tableNum);
+    }
+
+    public static String getColumnName(int columnNum) {
+        return String.format("column-%04d", columnNum);
+    }
+
+    /**
+     * Collects all columns of the given schema.
+     */
+    public static List<Column> collectColumns(Schema schema) {
+        List<Column> columns = new ArrayList<>();
+        for (Table table : schema.getTables()) {
+            columns.addAll(table.getColumns());
+        }
+        return columns;
+    }
+
+    /**
+     * Inserts a constraint of the given type for every column into the constraint collection and flushes the metadata
+     * store each time {@code batchSize} constraints have been inserted.
+     */
+    public static void insertConstraints(MetadataStore metadataStore, ConstraintCollection constraintCollection,
+            ConstraintType constraintType, List<Column> columns, int batchSize) throws Exception {
+        for (int index = 0; index < columns.size(); index++) {
+            constraintType.insert(constraintCollection, columns, index);
+            if ((index + 1) % batchSize == 0) {
+                metadataStore.flush();
+            }
+        }
+        metadataStore.flush();
+    }
+
+}
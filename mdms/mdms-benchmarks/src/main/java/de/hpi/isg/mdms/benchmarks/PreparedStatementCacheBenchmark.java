@@ -0,0 +1,101 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.db.DatabaseAccess;
+
+/**
+ * Compares 100k ID lookups that are issued as literal SQL (built with {@link String#format(String, Object...)}) with
+ * the same lookups via the prepared statement cache of the {@link DatabaseAccess}.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedStatementCacheBenchmark {
+
+    private static final int NUM_LOOKUPS = 100000;
+
+    private static final String LITERAL_SQL = "SELECT id FROM Target WHERE id=%d LIMIT 1";
+
+    private static final String SQL_TEMPLATE = "SELECT id FROM Target WHERE id=? LIMIT 1";
+
+    @Param({ "10000" })
+    public int numTargets;
+
+    private Connection connection;
+
+    private DatabaseAccess databaseAccess;
+
+    @Setup(Level.Trial)
+    public void createTargets() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = this.connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE Target (id integer PRIMARY KEY, name text);");
+        }
+        this.databaseAccess = new DatabaseAccess(this.connection);
+        for (int id = 0; id < this.numTargets; id++) {
+            this.databaseAccess.executePreparedSQL("INSERT INTO Target (id, name) VALUES (?, ?);",
+                    new Object[] { id, "target-" + id }, "Target");
+        }
+        this.databaseAccess.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabaseAccess() throws SQLException {
+        this.databaseAccess.close();
+    }
+
+    @Benchmark
+    public int literalLookups() throws SQLException {
+        int numHits = 0;
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            String sql = String.format(LITERAL_SQL, i % (2 * this.numTargets));
+            try (ResultSet resultSet = this.databaseAccess.query(sql, "Target")) {
+                if (resultSet.next()) {
+                    numHits++;
+                }
+            }
+        }
+        return numHits;
+    }
+
+    @Benchmark
+    public int preparedLookups() throws SQLException {
+        int numHits = 0;
+        for (int i = 0; i < NUM_LOOKUPS; i++) {
+            try (ResultSet resultSet = this.databaseAccess.queryPrepared(SQL_TEMPLATE,
+                    new Object[] { i % (2 * this.numTargets) }, "Target")) {
+                if (resultSet.next()) {
+                    numHits++;
+                }
+            }
+        }
+        return numHits;
+    }
+
+}
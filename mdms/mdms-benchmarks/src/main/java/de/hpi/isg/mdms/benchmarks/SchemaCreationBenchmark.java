@@ -0,0 +1,69 @@
+package de.hpi.isg.mdms.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.hpi.isg.mdms.benchmarks.MetadataStoreFixtures.StoreType;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.targets.Schema;
+
+/**
+ * Measures how long it takes to add a schema with its tables and columns to an empty metadata store and to flush it.
+ *
+ * @author Sebastian Kruse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchemaCreationBenchmark {
+
+    @Param({ "RDBMS", "DEFAULT" })
+    public StoreType storeType;
+
+    @Param({ "10", "100" })
+    public int numTables;
+
+    @Param({ "10", "100" })
+    public int numColumnsPerTable;
+
+    private MetadataStore metadataStore;
+
+    private File file;
+
+    @Setup(Level.Invocation)
+    public void createMetadataStore() {
+        this.file = MetadataStoreFixtures.createTempFile(".db");
+        this.metadataStore = this.storeType.create(this.file);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeMetadataStore() {
+        this.metadataStore.close();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Schema createSchema() throws Exception {
+        Schema schema = MetadataStoreFixtures.createSchema(this.metadataStore, this.numTables, this.numColumnsPerTable);
+        this.metadataStore.flush();
+        return schema;
+    }
+
+}
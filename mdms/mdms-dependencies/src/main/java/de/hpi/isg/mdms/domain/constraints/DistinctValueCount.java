@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -23,8 +26,13 @@ import de.hpi.isg.mdms.rdbms.ConstraintSQLSerializer;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -46,7 +54,7 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
 
         private final SQLInterface sqlInterface;
 
-        DatabaseWriter<int[]> insertDistinctValueCountWriter;
+        DatabaseWriter<long[]> insertDistinctValueCountWriter;
 
         DatabaseWriter<Integer> deleteDistinctValueCountWriter;
 
@@ -54,20 +62,24 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
 
         DatabaseQuery<Integer> queryDistinctValueCountForConstraintCollection;
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_DISTINCTVALUECOUNT_WRITER_FACTORY =
+        DatabaseQuery<Object[]> queryDistinctValueCountsReferencing;
+
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_DISTINCTVALUECOUNT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName
                                 + " (constraintId, distinctValueCount, columnId) VALUES (?, ?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
-                                preparedStatement.setInt(3, parameters[2]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setInt(parameterOffset + 2, (int) parameters[1]);
+                                preparedStatement.setLong(parameterOffset + 3, parameters[2]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_DISTINCTVALUECOUNT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -101,6 +113,17 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> DISTINCTVALUECOUNT_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, DistinctValueCount.columnId as columnId,"
+                                + " DistinctValueCount.distinctValueCount as distinctValueCount,"
+                                + " constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from DistinctValueCount, constraintt where DistinctValueCount.constraintId = constraintt.id"
+                                + " and DistinctValueCount.columnId = ?1"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, "Constraintt");
+
         public DistinctValueCountSQLiteSerializer(SQLInterface sqliteInterface) {
             this.sqlInterface = sqliteInterface;
 
@@ -116,6 +139,9 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
 
                 this.queryDistinctValueCountForConstraintCollection = sqlInterface.getDatabaseAccess().createQuery(
                         DISTINCTVALUECOUNT_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
+
+                this.queryDistinctValueCountsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        DISTINCTVALUECOUNT_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -125,9 +151,9 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
         public void serialize(Integer constraintId, Constraint distinctValueCount) {
             Validate.isTrue(distinctValueCount instanceof DistinctValueCount);
             try {
-                this.insertDistinctValueCountWriter.write(new int[] { constraintId,
-                        ((DistinctValueCount) distinctValueCount).getNumDistinctValues(), distinctValueCount
-                                .getTargetReference().getAllTargetIds().iterator().nextInt() });
+                this.insertDistinctValueCountWriter.write(new long[] { constraintId,
+                        ((DistinctValueCount) distinctValueCount).getNumDistinctValues(), ((DistinctValueCount) distinctValueCount)
+                                .getTargetReference().getLongTargetId() });
 
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -138,29 +164,58 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
         @Override
         public Collection<DistinctValueCount> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<DistinctValueCount>());
+        }
 
-            Collection<DistinctValueCount> distinctValueCounts = new HashSet<>();
+        @Override
+        public Cursor<DistinctValueCount> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<DistinctValueCount> rowMapper = createRowMapper(constraintCollection);
 
             try {
+                if (constraintCollection == null) {
+                    return queryDistinctValueCount.execute(null, rowMapper);
+                }
+                return queryDistinctValueCountForConstraintCollection.execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
 
-                ResultSet rsDistinctValueCounts = retrieveConstraintCollection ?
-                        queryDistinctValueCount.execute(null) : queryDistinctValueCountForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsDistinctValueCounts.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsDistinctValueCounts
-                                        .getInt("constraintCollectionId"));
+        private RowMapper<DistinctValueCount> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<DistinctValueCount>() {
+
+                private int constraintCollectionIdColumn, columnIdColumn, distinctValueCountColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.columnIdColumn = resultSet.findColumn("columnId");
+                    this.distinctValueCountColumn = resultSet.findColumn("distinctValueCount");
+                }
+
+                @Override
+                public DistinctValueCount map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
                     }
-                    distinctValueCounts
-                            .add(DistinctValueCount.build(
-                                    new SingleTargetReference(rsDistinctValueCounts.getInt("columnId")),
-                                    constraintCollection,
-                                    rsDistinctValueCounts.getInt("distinctValueCount")));
+                    return DistinctValueCount.build(new SingleTargetReference(resultSet.getLong(this.columnIdColumn)),
+                            rowConstraintCollection, resultSet.getInt(this.distinctValueCountColumn));
                 }
-                rsDistinctValueCounts.close();
-                return distinctValueCounts;
+            };
+        }
+
+        @Override
+        public Collection<DistinctValueCount> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryDistinctValueCountsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<DistinctValueCount>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -186,6 +241,9 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createTable);
             }
+            // Index the column IDs to find the distinct value count of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_columnId] ON [" + tableName + "] ([columnId]);");
             if (!sqlInterface.tableExists(tableName)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
             }
@@ -207,6 +265,30 @@ public class DistinctValueCount extends AbstractConstraint implements RDBMSConst
         }
     }
 
+    /**
+     * Encodes {@link DistinctValueCount}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class DistinctValueCountBinaryCodec implements ConstraintCodec<DistinctValueCount> {
+
+        @Override
+        public Class<DistinctValueCount> getConstraintClass() {
+            return DistinctValueCount.class;
+        }
+
+        @Override
+        public void encode(DistinctValueCount constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(constraint.getTargetReference().getTargetId());
+            encoder.writeVarInt(constraint.getNumDistinctValues());
+        }
+
+        @Override
+        public DistinctValueCount decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int columnId = decoder.readVarInt();
+            return build(new SingleTargetReference(columnId), constraintCollection, decoder.readVarInt());
+        }
+
+    }
+
     private static final long serialVersionUID = -932394088609862495L;
 
     private int numDistinctValues;
@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -25,10 +28,15 @@ import de.hpi.isg.mdms.rdbms.ConstraintSQLSerializer;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntCollection;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -50,7 +58,7 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
 
         private final SQLInterface sqlInterface;
 
-        DatabaseWriter<int[]> insertWriter;
+        DatabaseWriter<long[]> insertWriter;
 
         DatabaseWriter<Integer> deleteWriter;
 
@@ -58,20 +66,24 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
 
         DatabaseQuery<Integer> queryConstraintForConstraintCollection;
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_WRITER_FACTORY =
+        DatabaseQuery<Object[]> queryConstraintsReferencing;
+
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintid, overlap, column1, column2) VALUES (?, ?, ?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameter, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameter, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameter[0]);
-                                preparedStatement.setInt(2, parameter[1]);
-                                preparedStatement.setInt(3, parameter[2]);
-                                preparedStatement.setInt(4, parameter[3]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameter[0]);
+                                preparedStatement.setInt(parameterOffset + 2, (int) parameter[1]);
+                                preparedStatement.setLong(parameterOffset + 3, parameter[2]);
+                                preparedStatement.setLong(parameterOffset + 4, parameter[3]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -107,6 +119,20 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> QUERY_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        ("SELECT %table%.constraintId AS constraintId, "
+                                + "%table%.column1 AS column1, "
+                                + "%table%.column2 AS column2, "
+                                + "%table%.overlap AS overlap, "
+                                + "constraintt.constraintCollectionId AS constraintCollectionId "
+                                + "FROM %table%, constraintt "
+                                + "WHERE %table%.constraintId = constraintt.id "
+                                + "AND (%table%.column1 = ?1 OR %table%.column2 = ?1) "
+                                + "AND (?2 IS NULL OR constraintt.constraintCollectionId = ?2);").replaceAll("%table%", tableName),
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, "Constraintt");
+
         public DistinctValueOverlapSQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -123,6 +149,9 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
                 this.queryConstraintForConstraintCollection = sqlInterface.getDatabaseAccess()
                         .createQuery(
                                 QUERY_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
+
+                this.queryConstraintsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        QUERY_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -134,7 +163,8 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
             Validate.isTrue(constraint instanceof DistinctValueOverlap);
             DistinctValueOverlap dvo = (DistinctValueOverlap) constraint;
             try {
-                insertWriter.write(new int[] { constraintId, dvo.overlap, dvo.target.column1, dvo.target.column2 });
+                insertWriter.write(new long[] { constraintId, dvo.overlap, dvo.target.getLongColumn1(),
+                        dvo.target.getLongColumn2() });
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -144,28 +174,61 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
         @Override
         public Collection<DistinctValueOverlap> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<DistinctValueOverlap>());
+        }
 
-            Collection<DistinctValueOverlap> constraints = new HashSet<>();
+        @Override
+        public Cursor<DistinctValueOverlap> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<DistinctValueOverlap> rowMapper = createRowMapper(constraintCollection);
 
             try {
+                if (constraintCollection == null) {
+                    return queryAllConstraints.execute(null, rowMapper);
+                }
+                return queryConstraintForConstraintCollection.execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<DistinctValueOverlap> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<DistinctValueOverlap>() {
+
+                private int constraintCollectionIdColumn, overlapColumn, column1Column, column2Column;
 
-                ResultSet rsDistinctValueOverlap = retrieveConstraintCollection ?
-                        queryAllConstraints.execute(null) : queryConstraintForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsDistinctValueOverlap.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsDistinctValueOverlap
-                                        .getInt("constraintCollectionId"));
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.overlapColumn = resultSet.findColumn("overlap");
+                    this.column1Column = resultSet.findColumn("column1");
+                    this.column2Column = resultSet.findColumn("column2");
+                }
+
+                @Override
+                public DistinctValueOverlap map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
                     }
-                    int overlap = rsDistinctValueOverlap.getInt("overlap");
-                    Reference reference = new Reference(rsDistinctValueOverlap.getInt("column1"),
-                            rsDistinctValueOverlap.getInt("column2"));
-                    constraints.add(DistinctValueOverlap.build(overlap, reference, constraintCollection));
+                    Reference reference = new Reference(resultSet.getLong(this.column1Column),
+                            resultSet.getLong(this.column2Column));
+                    return DistinctValueOverlap.build(resultSet.getInt(this.overlapColumn), reference,
+                            rowConstraintCollection);
                 }
-                rsDistinctValueOverlap.close();
-                return constraints;
+            };
+        }
+
+        @Override
+        public Collection<DistinctValueOverlap> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryConstraintsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<DistinctValueOverlap>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -195,6 +258,11 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
                         + ");";
                 this.sqlInterface.executeCreateTableStatement(createINDTable);
             }
+            // Index the column IDs to find the overlaps of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_column1] ON [" + tableName + "] ([column1]);");
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_column2] ON [" + tableName + "] ([column2]);");
             // check again and set allTablesExistChecked to true
             if (!sqlInterface.tableExists(tableName)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
@@ -216,29 +284,90 @@ public class DistinctValueOverlap extends AbstractConstraint implements RDBMSCon
         }
     }
 
+    /**
+     * Encodes {@link DistinctValueOverlap}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class DistinctValueOverlapBinaryCodec implements ConstraintCodec<DistinctValueOverlap> {
+
+        @Override
+        public Class<DistinctValueOverlap> getConstraintClass() {
+            return DistinctValueOverlap.class;
+        }
+
+        @Override
+        public void encode(DistinctValueOverlap constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(constraint.target.getColumn1());
+            encoder.writeVarInt(constraint.target.getColumn2());
+            encoder.writeVarInt(constraint.overlap);
+        }
+
+        @Override
+        public DistinctValueOverlap decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int column1 = decoder.readVarInt();
+            int column2 = decoder.readVarInt();
+            return build(decoder.readVarInt(), new Reference(column1, column2), constraintCollection);
+        }
+
+    }
+
     public static class Reference extends AbstractHashCodeAndEquals implements TargetReference {
 
         private static final long serialVersionUID = -3272378011671591628L;
 
+        /**
+         * The low 32 bit of the column IDs as signed ints.
+         */
         private final int column1, column2;
 
-        public Reference(int column1, int column2) {
+        /**
+         * The remainders of the column IDs (see {@link TargetIdArrays#highBits(long)}). Zero for int IDs, so that
+         * objects serialized before the introduction of these fields remain readable.
+         */
+        private final int column1HighBits, column2HighBits;
+
+        public Reference(long column1, long column2) {
             super();
-            this.column1 = column1;
-            this.column2 = column2;
+            this.column1 = (int) column1;
+            this.column1HighBits = TargetIdArrays.highBits(column1);
+            this.column2 = (int) column2;
+            this.column2HighBits = TargetIdArrays.highBits(column2);
+        }
+
+        /**
+         * @throws IllegalStateException
+         *         if the column ID exceeds the int range; use {@link #getLongColumn1()} instead
+         */
+        public int getColumn1() {
+            return TargetIdArrays.toIntId(this.column1, this.column1HighBits, this);
+        }
+
+        public long getLongColumn1() {
+            return TargetIdArrays.toLongId(this.column1, this.column1HighBits);
+        }
+
+        /**
+         * @throws IllegalStateException
+         *         if the column ID exceeds the int range; use {@link #getLongColumn2()} instead
+         */
+        public int getColumn2() {
+            return TargetIdArrays.toIntId(this.column2, this.column2HighBits, this);
+        }
+
+        public long getLongColumn2() {
+            return TargetIdArrays.toLongId(this.column2, this.column2HighBits);
         }
 
         @Override
-        public IntCollection getAllTargetIds() {
-            IntArrayList targetIds = new IntArrayList(2);
-            targetIds.add(this.column1);
-            targetIds.add(this.column2);
+        public LongCollection getAllTargetIds() {
+            LongArrayList targetIds = new LongArrayList(2);
+            targetIds.add(getLongColumn1());
+            targetIds.add(getLongColumn2());
             return targetIds;
         }
 
         @Override
         public String toString() {
-            return "Reference [" + column1 + ", " + column2 + "]";
+            return "Reference [" + getLongColumn1() + ", " + getLongColumn2() + "]";
         }
 
     }
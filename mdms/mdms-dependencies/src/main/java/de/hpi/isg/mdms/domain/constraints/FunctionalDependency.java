@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -27,13 +30,20 @@ import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
 import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntCollection;
-import it.unimi.dsi.fastutil.ints.IntIterator;
-import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
 
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -56,11 +66,11 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
 
         private final SQLInterface sqlInterface;
 
-        DatabaseWriter<int[]> insertFunctionalDependencyWriter;
+        DatabaseWriter<long[]> insertFunctionalDependencyWriter;
 
         DatabaseWriter<Integer> deleteFunctionalDependencyWriter;
 
-        DatabaseWriter<int[]> insertFDLhstWriter;
+        DatabaseWriter<long[]> insertFDLhstWriter;
 
         DatabaseWriter<Integer> deleteFDLhsWriter;
 
@@ -70,18 +80,22 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
 
         DatabaseQuery<Integer> queryFDLhs;
 
-        private static final Factory<int[]> INSERT_FUNCTIONALDEPENDENCY_WRITER_FACTORY =
+        DatabaseQuery<Object[]> queryFunctionalDependencyReferencing;
+
+        private static final Factory<long[]> INSERT_FUNCTIONALDEPENDENCY_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId, rhs_col) VALUES (?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setLong(parameterOffset + 2, parameters[1]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_FUNCTIONALDEPENDENCY_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -95,19 +109,21 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
                         },
                         tableName);
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_FDLHS_WRITER_FACTORY =
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_FDLHS_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + lhsTableName
                                 + " (constraintId, lhs_col) VALUES (?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setLong(parameterOffset + 2, parameters[1]);
                             }
                         },
-                        lhsTableName);
+                        lhsTableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_FDLHS_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -148,6 +164,16 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         lhsTableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> FUNCTIONALDEPENDENCY_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from constraintt where constraintt.id in ("
+                                + "SELECT constraintId from " + tableName + " where rhs_col = ?1"
+                                + " UNION SELECT constraintId from " + lhsTableName + " where lhs_col = ?1)"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, lhsTableName, "Constraintt");
+
         public FunctionalDependencySQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -174,6 +200,9 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
                 this.queryFDLhs = sqlInterface.getDatabaseAccess()
                         .createQuery(
                                 FDLHS_QUERY_FACTORY);
+
+                this.queryFunctionalDependencyReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        FUNCTIONALDEPENDENCY_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -185,10 +214,10 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
             Validate.isTrue(functionalDependency instanceof FunctionalDependency);
             try {
             	Reference fd = ((FunctionalDependency) functionalDependency).getTargetReference();
-                insertFunctionalDependencyWriter.write(new int[] {constraintId, fd.getRHSTarget()});
-                IntCollection targetIds = fd.getLHSTargetIds();
-                for (IntIterator i = targetIds.iterator(); i.hasNext();) {
-                    insertFDLhstWriter.write(new int[] { constraintId, i.nextInt() });
+                insertFunctionalDependencyWriter.write(new long[] {constraintId, fd.getLongRHSTarget()});
+                LongCollection targetIds = fd.getLongLHSTargetIds();
+                for (LongIterator i = targetIds.iterator(); i.hasNext();) {
+                    insertFDLhstWriter.write(new long[] { constraintId, i.nextLong() });
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -199,49 +228,77 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
         @Override
         public Collection<FunctionalDependency> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<FunctionalDependency>());
+        }
 
-            Collection<FunctionalDependency> functionDependencies = new HashSet<>();
+        @Override
+        public Cursor<FunctionalDependency> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<FunctionalDependency> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsFunctionalDependencies = retrieveConstraintCollection ?
-                        queryFunctionalDependency.execute(null)
-                        : queryFunctionalDependencyForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsFunctionalDependencies.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsFunctionalDependencies
-                                        .getInt("constraintCollectionId"));
-                    }
-                    functionDependencies
-                            .add(FunctionalDependency.build(
-                                    getFunctionalDependencyReferences(rsFunctionalDependencies.getInt("id")),
-                                    constraintCollection));
+                if (constraintCollection == null) {
+                    return queryFunctionalDependency.execute(null, rowMapper);
+                }
+                return queryFunctionalDependencyForConstraintCollection
+                        .execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
 
+        private RowMapper<FunctionalDependency> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<FunctionalDependency>() {
+
+                private int constraintCollectionIdColumn, idColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.idColumn = resultSet.findColumn("id");
                 }
-                rsFunctionalDependencies.close();
 
-                return functionDependencies;
+                @Override
+                public FunctionalDependency map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
+                    }
+                    Reference reference = getFunctionalDependencyReferences(resultSet.getInt(this.idColumn));
+                    return FunctionalDependency.build(reference, rowConstraintCollection);
+                }
+            };
+        }
+
+        @Override
+        public Collection<FunctionalDependency> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryFunctionalDependencyReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<FunctionalDependency>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
         }
 
         public Reference getFunctionalDependencyReferences(int id) {
-            IntList lhs_cols = new IntArrayList();
-            Integer rhs_col = null;
+            LongList lhs_cols = new LongArrayList();
+            Long rhs_col = null;
             try {
                 try (ResultSet rs = this.queryFDLhs.execute(id);) {
                     while (rs.next()) {
                     	if (rhs_col == null){
-                    		rhs_col = rs.getInt("rhs_col");
+                    		rhs_col = rs.getLong("rhs_col");
                     	}
-                        lhs_cols.add(rs.getInt("lhs_col"));
+                        lhs_cols.add(rs.getLong("lhs_col"));
                         
                     }
                 }
-                return new Reference(rhs_col, lhs_cols.toIntArray());
+                return new Reference(rhs_col, lhs_cols.toLongArray());
             } catch (SQLException e)
             {
                 throw new RuntimeException(e);
@@ -280,6 +337,11 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createFDlhsTable);
             }
+            // Index the referenced columns to find the FDs of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_rhs_col] ON [" + tableName + "] ([rhs_col]);");
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + lhsTableName
+                    + "_lhs_col] ON [" + lhsTableName + "] ([lhs_col]);");
             // check again and set allTablesExistChecked to true
             if (!(sqlInterface.tableExists(tableName) && sqlInterface.tableExists(lhsTableName))) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
@@ -302,6 +364,30 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
         }
     }
 
+    /**
+     * Encodes {@link FunctionalDependency}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class FunctionalDependencyBinaryCodec implements ConstraintCodec<FunctionalDependency> {
+
+        @Override
+        public Class<FunctionalDependency> getConstraintClass() {
+            return FunctionalDependency.class;
+        }
+
+        @Override
+        public void encode(FunctionalDependency constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(constraint.getTargetReference().getRHSTarget());
+            encoder.writeVarInts(constraint.getTargetReference().getLHSTargetIds().toIntArray());
+        }
+
+        @Override
+        public FunctionalDependency decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int rhsColumn = decoder.readVarInt();
+            return build(new Reference(rhsColumn, decoder.readVarInts()), constraintCollection);
+        }
+
+    }
+
     public static class Reference extends AbstractHashCodeAndEquals implements TargetReference {
 
         private static final long serialVersionUID = -3272378011671591628L;
@@ -315,33 +401,69 @@ public class FunctionalDependency extends AbstractConstraint implements RDBMSCon
             return intArray;
         }
 
+        /**
+         * The low 32 bit of the column IDs as signed ints.
+         */
         int[] lhs_columns;
         int rhs_column;
 
+        /**
+         * The remainders of the column IDs (see {@link TargetIdArrays}); {@code null} and zero, respectively, for int
+         * IDs, so that objects serialized before the introduction of these fields remain readable.
+         */
+        int[] lhsColumnsHighBits;
+        int rhsColumnHighBits;
+
         public Reference(final int rhs_column, final int[] lhs_columns) {
-            this.lhs_columns = lhs_columns;
-            Arrays.sort(this.lhs_columns);
-            this.rhs_column = rhs_column;
+            this((long) rhs_column, TargetIdArrays.toLongIds(lhs_columns, null));
         }
 
+        public Reference(final long rhs_column, final long[] lhs_columns) {
+            long[] sortedLhsColumns = lhs_columns.clone();
+            Arrays.sort(sortedLhsColumns);
+            this.lhs_columns = TargetIdArrays.lowBits(sortedLhsColumns);
+            this.lhsColumnsHighBits = TargetIdArrays.highBits(sortedLhsColumns);
+            this.rhs_column = (int) rhs_column;
+            this.rhsColumnHighBits = TargetIdArrays.highBits(rhs_column);
+        }
+
+        /**
+         * @throws IllegalStateException
+         *         if any column ID exceeds the int range; use {@link #getLongLHSTargetIds()} instead
+         */
         public IntCollection getLHSTargetIds(){
-        	return new IntArrayList(this.lhs_columns);
+        	return new IntArrayList(TargetIdArrays.toIntIds(this.lhs_columns, this.lhsColumnsHighBits, this));
+        }
+
+        public LongCollection getLongLHSTargetIds() {
+            return new LongArrayList(TargetIdArrays.toLongIds(this.lhs_columns, this.lhsColumnsHighBits));
         }
         
+        /**
+         * @throws IllegalStateException
+         *         if the column ID exceeds the int range; use {@link #getLongRHSTarget()} instead
+         */
         public int getRHSTarget(){
-        	return this.rhs_column;
+        	return TargetIdArrays.toIntId(this.rhs_column, this.rhsColumnHighBits, this);
+        }
+
+        public long getLongRHSTarget() {
+            return TargetIdArrays.toLongId(this.rhs_column, this.rhsColumnHighBits);
         }
         
         @Override
-        public IntCollection getAllTargetIds() {
-        	 IntArrayList targetList = new IntArrayList(this.lhs_columns);
-        	 targetList.add(rhs_column);
+        public LongCollection getAllTargetIds() {
+        	 LongArrayList targetList = new LongArrayList(this.lhs_columns.length + 1);
+        	 targetList.addElements(0, TargetIdArrays.toLongIds(this.lhs_columns, this.lhsColumnsHighBits));
+        	 targetList.add(getLongRHSTarget());
             return targetList;
         }
 
         @Override
         public String toString() {
-            return "Reference [functionalDependency=" + Arrays.toString(lhs_columns) + "-->" + rhs_column + "]";
+            return "Reference [functionalDependency="
+                    + Arrays.toString(TargetIdArrays.toLongIds(this.lhs_columns, this.lhsColumnsHighBits)) + "-->"
+                    + getLongRHSTarget() + "]";
         }
     }
 
@@ -47,6 +47,17 @@ public class InMemoryConstraintCollection implements ConstraintCollection {
         this.constraints.add(constraint);
     }
 
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        Collection<T> result = new LinkedList<>();
+        for (Constraint constraint : this.constraints) {
+            if (type.isInstance(constraint) && constraint.getTargetReference().getAllTargetIds().contains(targetId)) {
+                result.add(type.cast(constraint));
+            }
+        }
+        return result;
+    }
+
     @Override
     public MetadataStore getMetadataStore() {
         return this.metadataStore;
@@ -66,4 +77,9 @@ public class InMemoryConstraintCollection implements ConstraintCollection {
     public int getId() {
         return 0;
     }
+
+    @Override
+    public long getLongId() {
+        return 0;
+    }
 }
@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -26,11 +29,19 @@ import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntCollection;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongList;
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -54,7 +65,7 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
 
         DatabaseWriter<Integer> deleteInclusionDependencyWriter;
 
-        DatabaseWriter<int[]> insertINDPartWriter;
+        DatabaseWriter<long[]> insertINDPartWriter;
 
         DatabaseWriter<Integer> deleteINDPartWriter;
 
@@ -64,17 +75,21 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
 
         DatabaseQuery<Integer> queryINDPart;
 
+        DatabaseQuery<Object[]> queryInclusionDependenciesReferencing;
+
         private static final PreparedStatementBatchWriter.Factory<Integer> INSERT_INCLUSIONDEPENDENCY_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId) VALUES (?);",
-                        new PreparedStatementAdapter<Integer>() {
+                        new OffsetPreparedStatementAdapter<Integer>() {
                             @Override
-                            public void translateParameter(Integer parameter, PreparedStatement preparedStatement)
+                            public void translateParameter(Integer parameter, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameter);
+                                preparedStatement.setInt(parameterOffset + 1, parameter);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_INCLUSIONDEPENDENCY_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -88,20 +103,22 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
                         },
                         tableName);
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_INDPART_WRITER_FACTORY =
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_INDPART_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + referenceTableName
                                 + " (constraintId, lhs, rhs) VALUES (?, ?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
-                                preparedStatement.setInt(3, parameters[2]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setLong(parameterOffset + 2, parameters[1]);
+                                preparedStatement.setLong(parameterOffset + 3, parameters[2]);
                             }
                         },
-                        referenceTableName);
+                        referenceTableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_INDPART_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -141,6 +158,16 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         referenceTableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> INCLUSIONDEPENDENCY_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from constraintt where constraintt.id in ("
+                                + "SELECT constraintId from " + referenceTableName + " where lhs = ?1"
+                                + " UNION SELECT constraintId from " + referenceTableName + " where rhs = ?1)"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        referenceTableName, "Constraintt");
+
         public InclusionDependencySQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -167,6 +194,9 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
                 this.queryINDPart = sqlInterface.getDatabaseAccess()
                         .createQuery(
                                 INDPART_QUERY_FACTORY);
+
+                this.queryInclusionDependenciesReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        INCLUSIONDEPENDENCY_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -179,12 +209,11 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
             try {
                 insertInclusionDependencyWriter.write(constraintId);
 
-                for (int i = 0; i < ((InclusionDependency) inclusionDependency).getArity(); i++) {
-                    insertINDPartWriter.write(new int[] { constraintId,
-                            ((InclusionDependency) inclusionDependency).getTargetReference()
-                                    .getDependentColumns()[i],
-                            ((InclusionDependency) inclusionDependency).getTargetReference()
-                                    .getReferencedColumns()[i] });
+                Reference reference = ((InclusionDependency) inclusionDependency).getTargetReference();
+                long[] dependentColumns = reference.getLongDependentColumns();
+                long[] referencedColumns = reference.getLongReferencedColumns();
+                for (int i = 0; i < dependentColumns.length; i++) {
+                    insertINDPartWriter.write(new long[] { constraintId, dependentColumns[i], referencedColumns[i] });
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -195,29 +224,58 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
         @Override
         public Collection<InclusionDependency> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<InclusionDependency>());
+        }
 
-            Collection<InclusionDependency> inclusionDependencies = new HashSet<>();
+        @Override
+        public Cursor<InclusionDependency> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<InclusionDependency> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsInclusionDependencies = retrieveConstraintCollection ?
-                        queryInclusionDependencies.execute(null) : queryInclusionDependenciesForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsInclusionDependencies.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsInclusionDependencies
-                                        .getInt("constraintCollectionId"));
-                    }
-                    inclusionDependencies
-                            .add(InclusionDependency.build(
-                                    getInclusionDependencyReferences(rsInclusionDependencies.getInt("id")),
-                                    constraintCollection));
+                if (constraintCollection == null) {
+                    return queryInclusionDependencies.execute(null, rowMapper);
+                }
+                return queryInclusionDependenciesForConstraintCollection
+                        .execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<InclusionDependency> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<InclusionDependency>() {
+
+                private int constraintCollectionIdColumn, idColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.idColumn = resultSet.findColumn("id");
+                }
 
+                @Override
+                public InclusionDependency map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
+                    }
+                    Reference reference = getInclusionDependencyReferences(resultSet.getInt(this.idColumn));
+                    return InclusionDependency.build(reference, rowConstraintCollection);
                 }
-                rsInclusionDependencies.close();
+            };
+        }
 
-                return inclusionDependencies;
+        @Override
+        public Collection<InclusionDependency> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryInclusionDependenciesReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<InclusionDependency>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -229,8 +287,8 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
             try {
                 try (ResultSet rs = this.queryINDPart.execute(id);) {
                     while (rs.next()) {
-                        lhs.add(this.sqlInterface.getColumnById(rs.getInt("lhs")));
-                        rhs.add(this.sqlInterface.getColumnById(rs.getInt("rhs")));
+                        lhs.add(this.sqlInterface.getColumnById(rs.getLong("lhs")));
+                        rhs.add(this.sqlInterface.getColumnById(rs.getLong("rhs")));
                     }
                 }
                 return new Reference(lhs.toArray(new Column[lhs.size()]), rhs.toArray(new Column[rhs.size()]));
@@ -272,6 +330,11 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createINDpartTable);
             }
+            // Index the referenced columns to find the INDs of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + referenceTableName
+                    + "_lhs] ON [" + referenceTableName + "] ([lhs]);");
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + referenceTableName
+                    + "_rhs] ON [" + referenceTableName + "] ([rhs]);");
             // check again and set allTablesExistChecked to true
             if (!(sqlInterface.tableExists(tableName) && sqlInterface.tableExists(referenceTableName))) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
@@ -294,23 +357,58 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
         }
     }
 
+    /**
+     * Encodes {@link InclusionDependency}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class InclusionDependencyBinaryCodec implements ConstraintCodec<InclusionDependency> {
+
+        @Override
+        public Class<InclusionDependency> getConstraintClass() {
+            return InclusionDependency.class;
+        }
+
+        @Override
+        public void encode(InclusionDependency constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInts(constraint.getTargetReference().getDependentColumns());
+            encoder.writeVarInts(constraint.getTargetReference().getReferencedColumns());
+        }
+
+        @Override
+        public InclusionDependency decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int[] dependentColumns = decoder.readVarInts();
+            int[] referencedColumns = decoder.readVarInts();
+            return build(new Reference(dependentColumns, referencedColumns), constraintCollection);
+        }
+
+    }
+
     public static class Reference extends AbstractHashCodeAndEquals implements TargetReference {
 
         private static final long serialVersionUID = -861294530676768362L;
 
-        private static int[] toIntArray(Column[] columns) {
-            int[] intArray = new int[columns.length];
+        private static long[] toLongArray(Column[] columns) {
+            long[] longArray = new long[columns.length];
             for (int i = 0; i < columns.length; i++) {
-                intArray[i] = columns[i].getId();
+                longArray[i] = columns[i].getLongId();
             }
-            return intArray;
+            return longArray;
         }
 
+        /**
+         * The low 32 bit of the column IDs as signed ints.
+         */
         int[] dependentColumns;
         int[] referencedColumns;
 
+        /**
+         * The remainders of the column IDs (see {@link TargetIdArrays}) or {@code null} for int IDs, so that objects
+         * serialized before the introduction of these fields remain readable.
+         */
+        int[] dependentColumnsHighBits;
+        int[] referencedColumnsHighBits;
+
         public Reference(final Column[] dependentColumns, final Column[] referencedColumns) {
-            this(toIntArray(dependentColumns), toIntArray(referencedColumns));
+            this(toLongArray(dependentColumns), toLongArray(referencedColumns));
         }
 
         public Reference(final int[] dependentColumnIds, final int[] referencedColumnIds) {
@@ -318,32 +416,57 @@ public class InclusionDependency extends AbstractConstraint implements RDBMSCons
             this.referencedColumns = referencedColumnIds;
         }
 
+        public Reference(final long[] dependentColumnIds, final long[] referencedColumnIds) {
+            this.dependentColumns = TargetIdArrays.lowBits(dependentColumnIds);
+            this.dependentColumnsHighBits = TargetIdArrays.highBits(dependentColumnIds);
+            this.referencedColumns = TargetIdArrays.lowBits(referencedColumnIds);
+            this.referencedColumnsHighBits = TargetIdArrays.highBits(referencedColumnIds);
+        }
+
         @Override
-        public IntCollection getAllTargetIds() {
-            IntList allTargetIds = new IntArrayList(this.dependentColumns.length + this.referencedColumns.length);
-            allTargetIds.addElements(0, this.dependentColumns);
-            allTargetIds.addElements(allTargetIds.size(), this.referencedColumns);
+        public LongCollection getAllTargetIds() {
+            LongList allTargetIds = new LongArrayList(this.dependentColumns.length + this.referencedColumns.length);
+            allTargetIds.addElements(0, getLongDependentColumns());
+            allTargetIds.addElements(allTargetIds.size(), getLongReferencedColumns());
             return allTargetIds;
         }
 
         /**
          * @return the dependentColumns
+         * @throws IllegalStateException
+         *         if any column ID exceeds the int range; use {@link #getLongDependentColumns()} instead
          */
         public int[] getDependentColumns() {
-            return this.dependentColumns;
+            return TargetIdArrays.toIntIds(this.dependentColumns, this.dependentColumnsHighBits, this);
+        }
+
+        /**
+         * @return the IDs of the dependent columns
+         */
+        public long[] getLongDependentColumns() {
+            return TargetIdArrays.toLongIds(this.dependentColumns, this.dependentColumnsHighBits);
         }
 
         /**
          * @return the referencedColumns
+         * @throws IllegalStateException
+         *         if any column ID exceeds the int range; use {@link #getLongReferencedColumns()} instead
          */
         public int[] getReferencedColumns() {
-            return this.referencedColumns;
+            return TargetIdArrays.toIntIds(this.referencedColumns, this.referencedColumnsHighBits, this);
+        }
+
+        /**
+         * @return the IDs of the referenced columns
+         */
+        public long[] getLongReferencedColumns() {
+            return TargetIdArrays.toLongIds(this.referencedColumns, this.referencedColumnsHighBits);
         }
 
         @Override
         public String toString() {
-            return "Reference [dependentColumns=" + Arrays.toString(dependentColumns) + ", referencedColumns="
-                    + Arrays.toString(referencedColumns) + "]";
+            return "Reference [dependentColumns=" + Arrays.toString(getLongDependentColumns())
+                    + ", referencedColumns=" + Arrays.toString(getLongReferencedColumns()) + "]";
         }
     }
 
@@ -1,6 +1,8 @@
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
@@ -16,12 +18,17 @@ import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.model.util.IdUtils.IdTypes;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
-import it.unimi.dsi.fastutil.ints.IntIterator;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -30,6 +37,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is a {@link de.hpi.isg.mdms.model.constraints.Constraint} representing the pattern of a certain {@link Column}. {@link Column}.
@@ -52,35 +60,41 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
         DatabaseQuery<Void> queryPatternConstraints;
 
         DatabaseQuery<Integer> queryPatternConstraintsForConstraintCollection;
+
+        DatabaseQuery<Object[]> queryPatternConstraintsReferencing;
 		private PreparedStatementBatchWriter<Object[]> insertPatternEntryConstraintWriter;
 		private PreparedStatementBatchWriter<Integer> deletePatternEntryConstraintWriter;
 
         private static final PreparedStatementBatchWriter.Factory<Object[]> INSERT_PATTERNCONSTRAINT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId, columnId) VALUES (?, ?);",
-                        new PreparedStatementAdapter<Object[]>() {
+                        new OffsetPreparedStatementAdapter<Object[]>() {
                             @Override
-                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, (Integer) parameters[0]);
-                                preparedStatement.setInt(2, (Integer) parameters[1]);
+                                preparedStatement.setInt(parameterOffset + 1, (Integer) parameters[0]);
+                                preparedStatement.setLong(parameterOffset + 2, (Long) parameters[1]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Object[]> INSERT_PATTERNENTRYCONSTRAINT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableNameEntry + " (constraintId, patternn, count) VALUES (?, ?, ?);",
-                        new PreparedStatementAdapter<Object[]>() {
+                        new OffsetPreparedStatementAdapter<Object[]>() {
                             @Override
-                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, (Integer) parameters[0]);
-                                preparedStatement.setString(2, String.valueOf(parameters[1]));
-                                preparedStatement.setInt(3, (Integer) parameters[2]);
+                                preparedStatement.setInt(parameterOffset + 1, (Integer) parameters[0]);
+                                preparedStatement.setString(parameterOffset + 2, String.valueOf(parameters[1]));
+                                preparedStatement.setInt(parameterOffset + 3, (Integer) parameters[2]);
                             }
                         },
-                        tableNameEntry);
+                        tableNameEntry)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
                 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_PATTERNCONSTRAINT_WRITER_FACTORY =
@@ -128,6 +142,17 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> PATTERNCONSTRAINT_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as constraintID, Patternn.columnId as columnId, PatternEntryy.patternn as patternn, PatternEntryy.count as count,"
+                                + " constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from Patternn, constraintt, PatternEntryy where Patternn.constraintId = constraintt.id"
+                                + " and PatternEntryy.constraintId = constraintt.id"
+                                + " and Patternn.columnId = ?1"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, tableNameEntry, "Constraintt");
+
         public PatternConstraintSQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -149,6 +174,9 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
 
                 this.queryPatternConstraintsForConstraintCollection = sqlInterface.getDatabaseAccess().createQuery(
                         PATTERNCONSTRAINT_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
+
+                this.queryPatternConstraintsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        PATTERNCONSTRAINT_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -161,7 +189,7 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
                 insertPatternConstraintWriter.write(new Object[] {
                         constraintId,patternConstraint
                                 .getTargetReference()
-                                .getAllTargetIds().iterator().nextInt()
+                                .getAllTargetIds().iterator().nextLong()
                 });
                 for (String pattern: ((PatternConstraint) patternConstraint).getPatterns().keySet()){
                 	insertPatternEntryConstraintWriter.write(new Object[]{
@@ -175,43 +203,74 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
 
         }
 
+        @Override
+        public Cursor<PatternConstraint> streamConstraintsOfConstraintCollection(
+                ConstraintCollection constraintCollection) {
+            // A pattern constraint spans several rows, so the constraints have to be assembled completely first.
+            return Cursor.over(deserializeConstraintsOfConstraintCollection(constraintCollection));
+        }
+
         @Override
         public Collection<PatternConstraint> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
+            try {
+                ResultSet rsPatternConstraints = constraintCollection == null ?
+                        queryPatternConstraints.execute(null) : queryPatternConstraintsForConstraintCollection
+                                .execute(constraintCollection.getId());
+                return assemblePatternConstraints(rsPatternConstraints, constraintCollection);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Collection<PatternConstraint> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return assemblePatternConstraints(queryPatternConstraintsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() }),
+                        constraintCollection);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Assembles the pattern constraints from the given result set, which contains one row per pattern entry.
+         * The result set is closed afterwards.
+         *
+         * @param constraintCollection
+         *        is the collection of all the pattern constraints or {@code null} if it shall be looked up per row
+         */
+        private Collection<PatternConstraint> assemblePatternConstraints(ResultSet rsPatternConstraints,
+                ConstraintCollection constraintCollection) throws SQLException {
             boolean retrieveConstraintCollection = constraintCollection == null;
 
             HashMap<Integer, PatternConstraint> patternConstraints = new HashMap<Integer, PatternConstraint>();
             HashMap<String,Integer> patternEntries;
 
-            try {
-                ResultSet rsPatternConstraints = retrieveConstraintCollection ?
-                        queryPatternConstraints.execute(null) : queryPatternConstraintsForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsPatternConstraints.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsPatternConstraints
-                                        .getInt("constraintCollectionId"));
-                    }
-                    
-                    if(patternConstraints.containsKey(rsPatternConstraints.getInt("constraintID"))){
-                    	patternEntries = patternConstraints.get(rsPatternConstraints.getInt("constraintID")).getPatterns();
-                    	patternEntries.put(rsPatternConstraints.getString("patternn"), rsPatternConstraints.getInt("count"));
-                    }else{
-                    	patternEntries = new HashMap<String,Integer>();
-                    	patternEntries.put(rsPatternConstraints.getString("patternn"), rsPatternConstraints.getInt("count"));
-	                    patternConstraints
-	                            .put(rsPatternConstraints.getInt("constraintID"), PatternConstraint.build(
-	                                    new SingleTargetReference(this.sqlInterface.getColumnById(rsPatternConstraints
-	                                            .getInt("columnId")).getId()), constraintCollection, patternEntries));
-                    }
+            while (rsPatternConstraints.next()) {
+                if (retrieveConstraintCollection) {
+                    constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
+                            .getConstraintCollectionById(rsPatternConstraints
+                                    .getInt("constraintCollectionId"));
                 }
-                rsPatternConstraints.close();
 
-                return patternConstraints.values();
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
+                if(patternConstraints.containsKey(rsPatternConstraints.getInt("constraintID"))){
+                	patternEntries = patternConstraints.get(rsPatternConstraints.getInt("constraintID")).getPatterns();
+                	patternEntries.put(rsPatternConstraints.getString("patternn"), rsPatternConstraints.getInt("count"));
+                }else{
+                	patternEntries = new HashMap<String,Integer>();
+                	patternEntries.put(rsPatternConstraints.getString("patternn"), rsPatternConstraints.getInt("count"));
+                    patternConstraints
+                            .put(rsPatternConstraints.getInt("constraintID"), PatternConstraint.build(
+                                    new SingleTargetReference(this.sqlInterface.getColumnById(rsPatternConstraints
+                                            .getLong("columnId")).getLongId()), constraintCollection, patternEntries));
+                }
             }
+            rsPatternConstraints.close();
+
+            return patternConstraints.values();
         }
 
         @Override
@@ -244,6 +303,9 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createTable);
             }
+            // Index the column IDs to find the patterns of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_columnId] ON [" + tableName + "] ([columnId]);");
             if (!sqlInterface.tableExists(tableName) || !sqlInterface.tableExists(tableNameEntry)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
             }
@@ -266,6 +328,40 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
         }
     }
 
+    /**
+     * Encodes {@link PatternConstraint}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class PatternConstraintBinaryCodec implements ConstraintCodec<PatternConstraint> {
+
+        @Override
+        public Class<PatternConstraint> getConstraintClass() {
+            return PatternConstraint.class;
+        }
+
+        @Override
+        public void encode(PatternConstraint constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(((SingleTargetReference) constraint.getTargetReference()).getTargetId());
+            encoder.writeVarInt(constraint.getPatterns().size());
+            for (Map.Entry<String, Integer> pattern : constraint.getPatterns().entrySet()) {
+                encoder.writeString(pattern.getKey());
+                encoder.writeVarInt(pattern.getValue());
+            }
+        }
+
+        @Override
+        public PatternConstraint decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int columnId = decoder.readVarInt();
+            int numPatterns = decoder.readVarInt();
+            HashMap<String, Integer> patterns = new HashMap<>(numPatterns);
+            for (; numPatterns > 0; numPatterns--) {
+                String pattern = decoder.readString();
+                patterns.put(pattern, decoder.readVarInt());
+            }
+            return build(new SingleTargetReference(columnId), constraintCollection, patterns);
+        }
+
+    }
+
     private static final long serialVersionUID = 3194245498846860560L;
 
     private final HashMap<String, Integer> patterns;
@@ -298,8 +394,8 @@ public class PatternConstraint extends AbstractConstraint implements RDBMSConstr
                     constraintCollection);
         } else {
             IdUtils idUtils = constraintCollection.getMetadataStore().getIdUtils();
-            for (IntIterator i = target.getAllTargetIds().iterator(); i.hasNext();) {
-                int targetId = i.nextInt();
+            for (LongIterator i = target.getAllTargetIds().iterator(); i.hasNext();) {
+                long targetId = i.nextLong();
                 IdTypes idType = idUtils.getIdType(targetId);
                 if (idType != IdTypes.COLUMN_ID) {
                     throw new IllegalArgumentException(
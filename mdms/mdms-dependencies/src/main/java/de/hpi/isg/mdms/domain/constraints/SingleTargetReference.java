@@ -3,8 +3,8 @@ package de.hpi.isg.mdms.domain.constraints;
 import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.targets.TargetReference;
 import de.hpi.isg.mdms.model.common.AbstractHashCodeAndEquals;
-import it.unimi.dsi.fastutil.ints.IntCollection;
-import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongLists;
 
 /**
  * A {@link TargetReference} with only one {@link Target}.
@@ -14,24 +14,42 @@ public class SingleTargetReference extends AbstractHashCodeAndEquals implements
 
     private static final long serialVersionUID = 9068771036941499754L;
 
+    /**
+     * The low 32 bit of the target ID as signed int.
+     */
     private final int targetId;
 
-    public SingleTargetReference(final int targetId) {
-        this.targetId = targetId;
+    /**
+     * The remainder of the target ID (see {@link TargetIdArrays#highBits(long)}). Zero for int IDs, so that objects
+     * serialized before the introduction of this field remain readable.
+     */
+    private final int targetIdHighBits;
+
+    public SingleTargetReference(final long targetId) {
+        this.targetId = (int) targetId;
+        this.targetIdHighBits = TargetIdArrays.highBits(targetId);
     }
 
+    /**
+     * @throws IllegalStateException
+     *         if the target ID exceeds the int range; use {@link #getLongTargetId()} instead
+     */
     public int getTargetId() {
-        return targetId;
+        return TargetIdArrays.toIntId(this.targetId, this.targetIdHighBits, this);
+    }
+
+    public long getLongTargetId() {
+        return TargetIdArrays.toLongId(this.targetId, this.targetIdHighBits);
     }
 
     @Override
-    public IntCollection getAllTargetIds() {
-        return IntLists.singleton(this.targetId);
+    public LongCollection getAllTargetIds() {
+        return LongLists.singleton(getLongTargetId());
     }
 
     @Override
     public String toString() {
-        return "SingleTargetReference[" + targetId + "]";
+        return "SingleTargetReference[" + getLongTargetId() + "]";
     }
 
 }
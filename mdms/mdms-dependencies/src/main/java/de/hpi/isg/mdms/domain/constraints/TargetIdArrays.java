@@ -0,0 +1,94 @@
+package de.hpi.isg.mdms.domain.constraints;
+
+/**
+ * Splits arrays of (long) target IDs into their low and high 32 bit as done by
+ * {@link de.hpi.isg.mdms.model.common.AbstractIdentifiable}. {@link de.hpi.isg.mdms.model.targets.TargetReference}s
+ * store the high bits only if any ID exceeds the int range, so that references that were serialized when target IDs
+ * were ints remain readable.
+ *
+ * @author Sebastian Kruse
+ */
+final class TargetIdArrays {
+
+    private TargetIdArrays() {
+    }
+
+    /**
+     * @return the low 32 bit of the given IDs as signed ints
+     */
+    static int[] lowBits(long[] ids) {
+        int[] lowBits = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            lowBits[i] = (int) ids[i];
+        }
+        return lowBits;
+    }
+
+    /**
+     * @return the remainders of the given IDs, so that {@code lowBits[i] + (highBits[i] << 32)} yields the IDs, or
+     *         {@code null} if all IDs are ints
+     */
+    static int[] highBits(long[] ids) {
+        int[] highBits = null;
+        for (int i = 0; i < ids.length; i++) {
+            int idHighBits = highBits(ids[i]);
+            if (idHighBits != 0) {
+                if (highBits == null) {
+                    highBits = new int[ids.length];
+                }
+                highBits[i] = idHighBits;
+            }
+        }
+        return highBits;
+    }
+
+    /**
+     * @return the remainder of the given ID, so that {@code (int) id + (highBits << 32)} yields the ID
+     */
+    static int highBits(long id) {
+        return (int) ((id - (int) id) >> 32);
+    }
+
+    /**
+     * @return the IDs that are composed of the given bits
+     */
+    static long[] toLongIds(int[] lowBits, int[] highBits) {
+        long[] ids = new long[lowBits.length];
+        for (int i = 0; i < lowBits.length; i++) {
+            ids[i] = toLongId(lowBits[i], highBits == null ? 0 : highBits[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ID that is composed of the given bits
+     */
+    static long toLongId(int lowBits, int highBits) {
+        return lowBits + ((long) highBits << 32);
+    }
+
+    /**
+     * @return the given low bits if there are no high bits
+     * @throws IllegalStateException
+     *         if any ID exceeds the int range
+     */
+    static int[] toIntIds(int[] lowBits, int[] highBits, Object reference) {
+        if (highBits != null) {
+            throw new IllegalStateException(String.format("%s references IDs that exceed the int range.", reference));
+        }
+        return lowBits;
+    }
+
+    /**
+     * @return the given low bits if there are no high bits
+     * @throws IllegalStateException
+     *         if the ID exceeds the int range
+     */
+    static int toIntId(int lowBits, int highBits, Object reference) {
+        if (highBits != 0) {
+            throw new IllegalStateException(String.format("%s references IDs that exceed the int range.", reference));
+        }
+        return lowBits;
+    }
+
+}
@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -23,8 +26,14 @@ import de.hpi.isg.mdms.rdbms.ConstraintSQLSerializer;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
+import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -46,7 +55,7 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
 
         private final SQLInterface sqlInterface;
 
-        DatabaseWriter<int[]> insertTupleCountWriter;
+        DatabaseWriter<long[]> insertTupleCountWriter;
 
         DatabaseWriter<Integer> deleteTupleCountWriter;
 
@@ -54,19 +63,23 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
 
         DatabaseQuery<Integer> queryTupleCountsForConstraintCollection;
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_TUPLECOUNT_WRITER_FACTORY =
+        DatabaseQuery<Object[]> queryTupleCountsReferencing;
+
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_TUPLECOUNT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId, tupleCount, tableId) VALUES (?, ?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
-                                preparedStatement.setInt(3, parameters[2]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setInt(parameterOffset + 2, (int) parameters[1]);
+                                preparedStatement.setLong(parameterOffset + 3, parameters[2]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_TUPLECOUNT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -98,6 +111,16 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> TUPLECOUNT_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, TupleCount.tableId as tableId, TupleCount.tupleCount as tupleCount,"
+                                + " constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from TupleCount, constraintt where TupleCount.constraintId = constraintt.id"
+                                + " and TupleCount.tableId = ?1"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, "Constraintt");
+
         public TupleCountSQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -113,6 +136,9 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
 
                 this.queryTupleCountsForConstraintCollection = sqlInterface.getDatabaseAccess().createQuery(
                         TUPLECOUNT_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
+
+                this.queryTupleCountsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        TUPLECOUNT_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -122,10 +148,10 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
         public void serialize(Integer constraintId, Constraint tupleCount) {
             Validate.isTrue(tupleCount instanceof TupleCount);
             try {
-                insertTupleCountWriter.write(new int[] {
-                        constraintId, ((TupleCount) tupleCount).getNumTuples(), tupleCount
+                insertTupleCountWriter.write(new long[] {
+                        constraintId, ((TupleCount) tupleCount).getNumTuples(), ((TupleCount) tupleCount)
                                 .getTargetReference()
-                                .getAllTargetIds().iterator().nextInt()
+                                .getLongTargetId()
                 });
 
             } catch (SQLException e) {
@@ -137,29 +163,59 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
         @Override
         public Collection<TupleCount> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<TupleCount>());
+        }
 
-            Collection<TupleCount> tupleCounts = new HashSet<>();
+        @Override
+        public Cursor<TupleCount> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<TupleCount> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsTupleCounts = retrieveConstraintCollection ?
-                        queryTupleCounts.execute(null) : queryTupleCountsForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsTupleCounts.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsTupleCounts
-                                        .getInt("constraintCollectionId"));
+                if (constraintCollection == null) {
+                    return queryTupleCounts.execute(null, rowMapper);
+                }
+                return queryTupleCountsForConstraintCollection.execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<TupleCount> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<TupleCount>() {
+
+                private int constraintCollectionIdColumn, tableIdColumn, tupleCountColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.tableIdColumn = resultSet.findColumn("tableId");
+                    this.tupleCountColumn = resultSet.findColumn("tupleCount");
+                }
+
+                @Override
+                public TupleCount map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
                     }
-                    tupleCounts
-                            .add(TupleCount.build(
-                                    new SingleTargetReference(this.sqlInterface.getTableById(rsTupleCounts
-                                            .getInt("tableId")).getId()), constraintCollection,
-                                    rsTupleCounts.getInt("tupleCount")));
+                    Table table = sqlInterface.getTableById(resultSet.getLong(this.tableIdColumn));
+                    return TupleCount.build(new SingleTargetReference(table.getLongId()), rowConstraintCollection,
+                            resultSet.getInt(this.tupleCountColumn));
                 }
-                rsTupleCounts.close();
+            };
+        }
 
-                return tupleCounts;
+        @Override
+        public Collection<TupleCount> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryTupleCountsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<TupleCount>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -185,6 +241,9 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createTable);
             }
+            // Index the table IDs to find the tuple counts of a table quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_tableId] ON [" + tableName + "] ([tableId]);");
             if (!sqlInterface.tableExists(tableName)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
             }
@@ -205,6 +264,30 @@ public class TupleCount extends AbstractConstraint implements RDBMSConstraint {
         }
     }
 
+    /**
+     * Encodes {@link TupleCount}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class TupleCountBinaryCodec implements ConstraintCodec<TupleCount> {
+
+        @Override
+        public Class<TupleCount> getConstraintClass() {
+            return TupleCount.class;
+        }
+
+        @Override
+        public void encode(TupleCount constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(constraint.getTargetReference().getTargetId());
+            encoder.writeVarInt(constraint.getNumTuples());
+        }
+
+        @Override
+        public TupleCount decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int tableId = decoder.readVarInt();
+            return build(new SingleTargetReference(tableId), constraintCollection, decoder.readVarInt());
+        }
+
+    }
+
     private static final long serialVersionUID = -932394088609862495L;
 
     private int numTuples;
@@ -1,7 +1,10 @@
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -16,11 +19,16 @@ import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.model.util.IdUtils.IdTypes;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
-import it.unimi.dsi.fastutil.ints.IntIterator;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -54,19 +62,23 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
 
         DatabaseQuery<Integer> queryTypeConstraintsForConstraintCollection;
 
+        DatabaseQuery<Object[]> queryTypeConstraintsReferencing;
+
         private static final PreparedStatementBatchWriter.Factory<Object[]> INSERT_TYPECONSTRAINT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId, typee, columnId) VALUES (?, ?, ?);",
-                        new PreparedStatementAdapter<Object[]>() {
+                        new OffsetPreparedStatementAdapter<Object[]>() {
                             @Override
-                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(Object[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, (Integer) parameters[0]);
-                                preparedStatement.setString(2, String.valueOf(parameters[1]));
-                                preparedStatement.setInt(3, (Integer) parameters[2]);
+                                preparedStatement.setInt(parameterOffset + 1, (Integer) parameters[0]);
+                                preparedStatement.setString(parameterOffset + 2, String.valueOf(parameters[1]));
+                                preparedStatement.setLong(parameterOffset + 3, (Long) parameters[2]);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_TYPECONSTRAINT_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -98,6 +110,16 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> TYPECONSTRAINT_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, typee.columnId as columnId, typee.typee as typee,"
+                                + " constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from typee, constraintt where typee.constraintId = constraintt.id"
+                                + " and typee.columnId = ?1"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, "Constraintt");
+
         public TypeConstraintSQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -113,6 +135,9 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
 
                 this.queryTypeConstraintsForConstraintCollection = sqlInterface.getDatabaseAccess().createQuery(
                         TYPECONSTRAINT_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
+
+                this.queryTypeConstraintsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        TYPECONSTRAINT_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -125,7 +150,7 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
                 insertTypeConstraintWriter.write(new Object[] {
                         constraintId, ((TypeConstraint) typeConstraint).getType().name(), typeConstraint
                                 .getTargetReference()
-                                .getAllTargetIds().iterator().nextInt()
+                                .getAllTargetIds().iterator().nextLong()
                 });
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -136,29 +161,59 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
         @Override
         public Collection<TypeConstraint> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<TypeConstraint>());
+        }
 
-            Collection<TypeConstraint> typeConstraints = new HashSet<>();
+        @Override
+        public Cursor<TypeConstraint> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<TypeConstraint> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsTypeConstraints = retrieveConstraintCollection ?
-                        queryTypeConstraints.execute(null) : queryTypeConstraintsForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsTypeConstraints.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsTypeConstraints
-                                        .getInt("constraintCollectionId"));
+                if (constraintCollection == null) {
+                    return queryTypeConstraints.execute(null, rowMapper);
+                }
+                return queryTypeConstraintsForConstraintCollection.execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<TypeConstraint> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<TypeConstraint>() {
+
+                private int constraintCollectionIdColumn, columnIdColumn, typeeColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.columnIdColumn = resultSet.findColumn("columnId");
+                    this.typeeColumn = resultSet.findColumn("typee");
+                }
+
+                @Override
+                public TypeConstraint map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
                     }
-                    typeConstraints
-                            .add(TypeConstraint.build(
-                                    new SingleTargetReference(this.sqlInterface.getColumnById(rsTypeConstraints
-                                            .getInt("columnId")).getId()), constraintCollection,
-                                    TYPES.valueOf(rsTypeConstraints.getString("typee"))));
+                    Column column = sqlInterface.getColumnById(resultSet.getLong(this.columnIdColumn));
+                    return TypeConstraint.build(new SingleTargetReference(column.getLongId()), rowConstraintCollection,
+                            TYPES.valueOf(resultSet.getString(this.typeeColumn)));
                 }
-                rsTypeConstraints.close();
+            };
+        }
 
-                return typeConstraints;
+        @Override
+        public Collection<TypeConstraint> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryTypeConstraintsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<TypeConstraint>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -184,6 +239,9 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createTable);
             }
+            // Index the column IDs to find the type constraints of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_columnId] ON [" + tableName + "] ([columnId]);");
             if (!sqlInterface.tableExists(tableName)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
             }
@@ -204,6 +262,31 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
         }
     }
 
+    /**
+     * Encodes {@link TypeConstraint}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class TypeConstraintBinaryCodec implements ConstraintCodec<TypeConstraint> {
+
+        @Override
+        public Class<TypeConstraint> getConstraintClass() {
+            return TypeConstraint.class;
+        }
+
+        @Override
+        public void encode(TypeConstraint constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInt(((SingleTargetReference) constraint.getTargetReference()).getTargetId());
+            encoder.writeString(constraint.getType().name());
+        }
+
+        @Override
+        public TypeConstraint decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            int columnId = decoder.readVarInt();
+            TYPES type = TYPES.valueOf(decoder.readString());
+            return build(new SingleTargetReference(columnId), constraintCollection, type);
+        }
+
+    }
+
     private static final long serialVersionUID = 3194245498846860560L;
 
     private final TYPES type;
@@ -236,8 +319,8 @@ public class TypeConstraint extends AbstractConstraint implements RDBMSConstrain
                     constraintCollection);
         } else {
             IdUtils idUtils = constraintCollection.getMetadataStore().getIdUtils();
-            for (IntIterator i = target.getAllTargetIds().iterator(); i.hasNext();) {
-                int targetId = i.nextInt();
+            for (LongIterator i = target.getAllTargetIds().iterator(); i.hasNext();) {
+                long targetId = i.nextLong();
                 IdTypes idType = idUtils.getIdType(targetId);
                 if (idType != IdTypes.COLUMN_ID) {
                     throw new IllegalArgumentException(
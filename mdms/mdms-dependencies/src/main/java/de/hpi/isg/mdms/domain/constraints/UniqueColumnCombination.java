@@ -12,8 +12,11 @@
  **********************************************************************************************************************/
 package de.hpi.isg.mdms.domain.constraints;
 
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -26,12 +29,18 @@ import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.rdbms.SQLiteInterface;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
 import de.hpi.isg.mdms.model.targets.Column;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import de.hpi.isg.mdms.simple.io.BinaryDecoder;
+import de.hpi.isg.mdms.simple.io.BinaryEncoder;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
 import it.unimi.dsi.fastutil.ints.IntCollection;
 import it.unimi.dsi.fastutil.ints.IntIterator;
-import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongList;
 import org.apache.commons.lang3.Validate;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -59,7 +68,7 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
 
         DatabaseWriter<Integer> deleteUniqueColumnCombinationWriter;
 
-        DatabaseWriter<int[]> insertUCCPartWriter;
+        DatabaseWriter<long[]> insertUCCPartWriter;
 
         DatabaseWriter<Integer> deleteUCCPartWriter;
 
@@ -69,17 +78,21 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
 
         DatabaseQuery<Integer> queryUCCPart;
 
+        DatabaseQuery<Object[]> queryUniqueColumnCombinationsReferencing;
+
         private static final PreparedStatementBatchWriter.Factory<Integer> INSERT_UNIQECOLUMNCOMBINATION_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + tableName + " (constraintId) VALUES (?);",
-                        new PreparedStatementAdapter<Integer>() {
+                        new OffsetPreparedStatementAdapter<Integer>() {
                             @Override
-                            public void translateParameter(Integer parameter, PreparedStatement preparedStatement)
+                            public void translateParameter(Integer parameter, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameter);
+                                preparedStatement.setInt(parameterOffset + 1, parameter);
                             }
                         },
-                        tableName);
+                        tableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_UNIQECOLUMNCOMBINATION_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -93,19 +106,21 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
                         },
                         tableName);
 
-        private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_UCCPART_WRITER_FACTORY =
+        private static final PreparedStatementBatchWriter.Factory<long[]> INSERT_UCCPART_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
                         "INSERT INTO " + referenceTableName
                                 + " (constraintId, col) VALUES (?, ?);",
-                        new PreparedStatementAdapter<int[]>() {
+                        new OffsetPreparedStatementAdapter<long[]>() {
                             @Override
-                            public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                            public void translateParameter(long[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                     throws SQLException {
-                                preparedStatement.setInt(1, parameters[0]);
-                                preparedStatement.setInt(2, parameters[1]);
+                                preparedStatement.setInt(parameterOffset + 1, (int) parameters[0]);
+                                preparedStatement.setLong(parameterOffset + 2, parameters[1]);
                             }
                         },
-                        referenceTableName);
+                        referenceTableName)
+                        .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
         private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_UCCPART_WRITER_FACTORY =
                 new PreparedStatementBatchWriter.Factory<>(
@@ -145,6 +160,15 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         referenceTableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> UNIQECOLUMNCOMBINATION_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from constraintt where constraintt.id in ("
+                                + "SELECT constraintId from " + referenceTableName + " where col = ?1)"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        referenceTableName, "Constraintt");
+
         public UniqueColumnCombinationSQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -171,6 +195,9 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
                 this.queryUCCPart = sqlInterface.getDatabaseAccess()
                         .createQuery(
                                 UCCPART_QUERY_FACTORY);
+
+                this.queryUniqueColumnCombinationsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        UNIQECOLUMNCOMBINATION_REFERENCING_QUERY_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -183,10 +210,10 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
             try {
                 insertUniqueColumnCombinationWriter.write(constraintId);
 
-                IntCollection targetIds = ((UniqueColumnCombination) uniqueColumnCombination).getTargetReference()
-                        .getAllTargetIds();
-                for (IntIterator i = targetIds.iterator(); i.hasNext();) {
-                    insertUCCPartWriter.write(new int[] { constraintId, i.nextInt() });
+                long[] uniqueColumns = ((UniqueColumnCombination) uniqueColumnCombination).getTargetReference()
+                        .getLongUniqueColumns();
+                for (long uniqueColumn : uniqueColumns) {
+                    insertUCCPartWriter.write(new long[] { constraintId, uniqueColumn });
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -197,44 +224,72 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
         @Override
         public Collection<UniqueColumnCombination> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<UniqueColumnCombination>());
+        }
 
-            Collection<UniqueColumnCombination> uniqueColumnCombiantions = new HashSet<>();
+        @Override
+        public Cursor<UniqueColumnCombination> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<UniqueColumnCombination> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsUniqueColumnCombinations = retrieveConstraintCollection ?
-                        queryUniqueColumnCombination.execute(null)
-                        : queryUniqueColumnCombinationsForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsUniqueColumnCombinations.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsUniqueColumnCombinations
-                                        .getInt("constraintCollectionId"));
-                    }
-                    uniqueColumnCombiantions
-                            .add(UniqueColumnCombination.build(
-                                    getUniqueColumnCombinationReferences(rsUniqueColumnCombinations.getInt("id")),
-                                    constraintCollection));
+                if (constraintCollection == null) {
+                    return queryUniqueColumnCombination.execute(null, rowMapper);
+                }
+                return queryUniqueColumnCombinationsForConstraintCollection
+                        .execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
 
+        private RowMapper<UniqueColumnCombination> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<UniqueColumnCombination>() {
+
+                private int constraintCollectionIdColumn, idColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.idColumn = resultSet.findColumn("id");
+                }
+
+                @Override
+                public UniqueColumnCombination map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
+                    }
+                    Reference reference = getUniqueColumnCombinationReferences(resultSet.getInt(this.idColumn));
+                    return UniqueColumnCombination.build(reference, rowConstraintCollection);
                 }
-                rsUniqueColumnCombinations.close();
+            };
+        }
 
-                return uniqueColumnCombiantions;
+        @Override
+        public Collection<UniqueColumnCombination> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryUniqueColumnCombinationsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<UniqueColumnCombination>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
         }
 
         public Reference getUniqueColumnCombinationReferences(int id) {
-            IntList cols = new IntArrayList();
+            LongList cols = new LongArrayList();
             try {
                 try (ResultSet rs = this.queryUCCPart.execute(id);) {
                     while (rs.next()) {
-                        cols.add(rs.getInt("col"));
+                        cols.add(rs.getLong("col"));
                     }
                 }
-                return new Reference(cols.toIntArray());
+                return new Reference(cols.toLongArray());
             } catch (SQLException e)
             {
                 throw new RuntimeException(e);
@@ -270,6 +325,9 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createINDpartTable);
             }
+            // Index the referenced columns to find the UCCs of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + referenceTableName
+                    + "_col] ON [" + referenceTableName + "] ([col]);");
             // check again and set allTablesExistChecked to true
             if (!(sqlInterface.tableExists(tableName) && sqlInterface.tableExists(referenceTableName))) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
@@ -292,6 +350,28 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
         }
     }
 
+    /**
+     * Encodes {@link UniqueColumnCombination}s for the {@link DefaultMetadataStoreFormat}.
+     */
+    public static class UniqueColumnCombinationBinaryCodec implements ConstraintCodec<UniqueColumnCombination> {
+
+        @Override
+        public Class<UniqueColumnCombination> getConstraintClass() {
+            return UniqueColumnCombination.class;
+        }
+
+        @Override
+        public void encode(UniqueColumnCombination constraint, BinaryEncoder encoder) throws IOException {
+            encoder.writeVarInts(constraint.getTargetReference().getUniqueColumns());
+        }
+
+        @Override
+        public UniqueColumnCombination decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+            return build(new Reference(decoder.readVarInts()), constraintCollection);
+        }
+
+    }
+
     public static class Reference extends AbstractHashCodeAndEquals implements TargetReference {
 
         private static final long serialVersionUID = -3272378011671591628L;
@@ -305,21 +385,49 @@ public class UniqueColumnCombination extends AbstractConstraint implements RDBMS
             return intArray;
         }
 
+        /**
+         * The low 32 bit of the column IDs as signed ints.
+         */
         int[] uniqueColumns;
 
+        /**
+         * The remainders of the column IDs (see {@link TargetIdArrays}) or {@code null} for int IDs, so that objects
+         * serialized before the introduction of this field remain readable.
+         */
+        int[] uniqueColumnsHighBits;
+
         public Reference(final int[] uniqueColumns) {
             this.uniqueColumns = uniqueColumns;
             Arrays.sort(this.uniqueColumns);
         }
 
+        public Reference(final long[] uniqueColumns) {
+            long[] sortedUniqueColumns = uniqueColumns.clone();
+            Arrays.sort(sortedUniqueColumns);
+            this.uniqueColumns = TargetIdArrays.lowBits(sortedUniqueColumns);
+            this.uniqueColumnsHighBits = TargetIdArrays.highBits(sortedUniqueColumns);
+        }
+
+        /**
+         * @throws IllegalStateException
+         *         if any column ID exceeds the int range; use {@link #getLongUniqueColumns()} instead
+         */
+        public int[] getUniqueColumns() {
+            return TargetIdArrays.toIntIds(this.uniqueColumns, this.uniqueColumnsHighBits, this);
+        }
+
+        public long[] getLongUniqueColumns() {
+            return TargetIdArrays.toLongIds(this.uniqueColumns, this.uniqueColumnsHighBits);
+        }
+
         @Override
-        public IntCollection getAllTargetIds() {
-            return new IntArrayList(this.uniqueColumns);
+        public LongCollection getAllTargetIds() {
+            return new LongArrayList(getLongUniqueColumns());
         }
 
         @Override
         public String toString() {
-            return "Reference [uniqueColumns=" + Arrays.toString(uniqueColumns) + "]";
+            return "Reference [uniqueColumns=" + Arrays.toString(getLongUniqueColumns()) + "]";
         }
     }
 
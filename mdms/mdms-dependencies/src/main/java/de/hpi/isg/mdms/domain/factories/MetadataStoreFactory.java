@@ -1,13 +1,14 @@
 package de.hpi.isg.mdms.domain.factories;
 
+import de.hpi.isg.mdms.domain.util.BinaryConstraintUtils;
 import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.exceptions.MetadataStoreNotFoundException;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import de.hpi.isg.mdms.simple.io.MappedMetadataStore;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 
 /**
  * @deprecated There should be no central utility for creating metadata stores.
@@ -16,19 +17,28 @@ import java.io.ObjectInputStream;
 public class MetadataStoreFactory {
 
     public static DefaultMetadataStore loadDefaultMetadataStore(final File file) throws MetadataStoreNotFoundException {
+        return DefaultMetadataStore.load(file, createFormat());
+    }
 
-        FileInputStream fin;
+    /**
+     * Opens the given metadata store file read-only without loading it into memory.
+     * 
+     * @see MappedMetadataStore
+     */
+    public static MappedMetadataStore openReadOnlyDefaultMetadataStore(final File file)
+            throws MetadataStoreNotFoundException {
         try {
-            fin = new FileInputStream(file);
-            final ObjectInputStream ois = new ObjectInputStream(fin);
-            final DefaultMetadataStore metadataStore = (DefaultMetadataStore) ois.readObject();
-            ois.close();
-            metadataStore.setStoreLocation(file);
-            return metadataStore;
-        } catch (IOException | ClassNotFoundException e) {
+            return MappedMetadataStore.open(file, createFormat());
+        } catch (IOException e) {
             throw new MetadataStoreNotFoundException(e);
         }
+    }
 
+    /**
+     * @return a {@link DefaultMetadataStoreFormat} that knows the standard constraints
+     */
+    private static DefaultMetadataStoreFormat createFormat() {
+        return BinaryConstraintUtils.registerStandardConstraints(new DefaultMetadataStoreFormat());
     }
 
     /**
@@ -50,6 +60,7 @@ public class MetadataStoreFactory {
             int numColumnBitsInIds) throws IOException {
         
         final DefaultMetadataStore metadataStore = new DefaultMetadataStore(file, numTableBitsInIds, numColumnBitsInIds);
+        metadataStore.setFormat(createFormat());
         if (!file.exists()) {
             file.createNewFile();
         }
@@ -0,0 +1,31 @@
+package de.hpi.isg.mdms.domain.util;
+
+import de.hpi.isg.mdms.domain.constraints.*;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+
+/**
+ * This class provides utility methods to work with DefaultMetadataStoreFormats.
+ *
+ * @author Sebastian Kruse
+ */
+public class BinaryConstraintUtils {
+
+    /**
+     * Registers the standard constraint codecs with the given format.
+     * @param format is the DefaultMetadataStoreFormat with that the codecs shall be registered
+     * @return the given format
+     */
+    public static DefaultMetadataStoreFormat registerStandardConstraints(DefaultMetadataStoreFormat format) {
+        format.registerConstraintCodec(new DistinctValueCount.DistinctValueCountBinaryCodec());
+        format.registerConstraintCodec(new InclusionDependency.InclusionDependencyBinaryCodec());
+        format.registerConstraintCodec(new FunctionalDependency.FunctionalDependencyBinaryCodec());
+        format.registerConstraintCodec(new TupleCount.TupleCountBinaryCodec());
+        format.registerConstraintCodec(new TypeConstraint.TypeConstraintBinaryCodec());
+        format.registerConstraintCodec(new UniqueColumnCombination.UniqueColumnCombinationBinaryCodec());
+        format.registerConstraintCodec(new DistinctValueOverlap.DistinctValueOverlapBinaryCodec());
+        format.registerConstraintCodec(new PatternConstraint.PatternConstraintBinaryCodec());
+
+        return format;
+    }
+
+}
@@ -208,6 +208,41 @@ public class RDBMSMetadataStoreTest {
                 store2.getConstraintCollections().iterator().next().getConstraints().iterator().next());
     }
 
+    @Test
+    public void testStoringConstraintsWithLongIds() throws Exception {
+        // setup store
+        final MetadataStore store1 = RDBMSMetadataStore.createNewLongIdInstance(
+                SQLiteConstraintUtils.registerStandardConstraints(new SQLiteInterface(connection)));
+        // setup schema; the IDs of the first schema would still fit into ints
+        store1.addSchema("foo", null, new DefaultLocation());
+        final Schema dummySchema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table dummyTable = dummySchema.addTable(store1, "dummyTable", null, new DefaultLocation());
+        final Column dummyColumn1 = dummyTable.addColumn(store1, "dummyColumn1", null, 1);
+        final Column dummyColumn2 = dummyTable.addColumn(store1, "dummyColumn2", null, 2);
+        assertTrue(dummyColumn1.getLongId() > Integer.MAX_VALUE);
+
+        ConstraintCollection constraintCollection = store1.createConstraintCollection(null);
+        TupleCount.buildAndAddToCollection(new SingleTargetReference(dummyTable.getLongId()), constraintCollection, 5);
+        InclusionDependency.buildAndAddToCollection(new InclusionDependency.Reference(
+                new Column[] { dummyColumn1 }, new Column[] { dummyColumn2 }), constraintCollection);
+        UniqueColumnCombination.buildAndAddToCollection(new UniqueColumnCombination.Reference(
+                new long[] { dummyColumn2.getLongId(), dummyColumn1.getLongId() }), constraintCollection);
+        FunctionalDependency.buildAndAddToCollection(new FunctionalDependency.Reference(dummyColumn2.getLongId(),
+                new long[] { dummyColumn1.getLongId() }), constraintCollection);
+        DistinctValueOverlap.buildAndAddToCollection(3, new DistinctValueOverlap.Reference(dummyColumn1.getLongId(),
+                dummyColumn2.getLongId()), constraintCollection);
+
+        store1.flush();
+
+        // retrieve store
+        MetadataStore store2 = RDBMSMetadataStore.load(SQLiteConstraintUtils.registerStandardConstraints(new SQLiteInterface(connection)));
+
+        assertEquals(new HashSet<>(constraintCollection.getConstraints()),
+                new HashSet<>(store2.getConstraintCollections().iterator().next().getConstraints()));
+        assertEquals(1, store2.getConstraintsReferencing(dummyColumn1.getLongId(), FunctionalDependency.class)
+                .size());
+    }
+
     @Test
     public void testStoringOfFilledMetadataStore2() throws Exception {
         // setup store
@@ -1,9 +1,13 @@
 package de.hpi.isg.mdms.dependencies;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
@@ -15,11 +19,15 @@ import org.junit.Test;
 
 import de.hpi.isg.mdms.model.common.Observer;
 import de.hpi.isg.mdms.domain.constraints.DistinctValueCount;
+import de.hpi.isg.mdms.domain.constraints.DistinctValueOverlap;
+import de.hpi.isg.mdms.domain.constraints.FunctionalDependency;
+import de.hpi.isg.mdms.domain.constraints.PatternConstraint;
 import de.hpi.isg.mdms.domain.constraints.InclusionDependency;
 import de.hpi.isg.mdms.domain.constraints.TupleCount;
 import de.hpi.isg.mdms.domain.constraints.TypeConstraint;
 import de.hpi.isg.mdms.domain.constraints.TypeConstraint.TYPES;
 import de.hpi.isg.mdms.domain.constraints.UniqueColumnCombination;
+import de.hpi.isg.mdms.domain.factories.MetadataStoreFactory;
 import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.domain.constraints.SingleTargetReference;
 import de.hpi.isg.mdms.model.location.DefaultLocation;
@@ -221,4 +229,45 @@ public class ConstraintTest {
         constraintCollection.add(dummyTypeContraint);
     }
 
+
+    @Test
+    public void testBinaryStoringOfStandardConstraints() throws Exception {
+        final File file = File.createTempFile("constraints", ".ms");
+        file.deleteOnExit();
+        final DefaultMetadataStore store1 = MetadataStoreFactory.createAndSaveDefaultMetadataStore(file);
+        final Schema schema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table table = schema.addTable(store1, "atoms", null, new DefaultLocation());
+        final Column column1 = table.addColumn(store1, "x", null, 0);
+        final Column column2 = table.addColumn(store1, "y", null, 1);
+
+        final ConstraintCollection constraintCollection = store1.createConstraintCollection("all types", schema);
+        TypeConstraint.buildAndAddToCollection(new SingleTargetReference(column1.getId()), constraintCollection,
+                TYPES.DECIMAL);
+        TupleCount.buildAndAddToCollection(new SingleTargetReference(table.getId()), constraintCollection, 42);
+        DistinctValueCount.buildAndAddToCollection(new SingleTargetReference(column2.getId()), constraintCollection,
+                7);
+        InclusionDependency.buildAndAddToCollection(new InclusionDependency.Reference(new Column[] { column1 },
+                new Column[] { column2 }), constraintCollection);
+        UniqueColumnCombination.buildAndAddToCollection(new UniqueColumnCombination.Reference(new int[] {
+                column2.getId(), column1.getId() }), constraintCollection);
+        FunctionalDependency.buildAndAddToCollection(new FunctionalDependency.Reference(column2.getId(),
+                new int[] { column1.getId() }), constraintCollection);
+        DistinctValueOverlap.buildAndAddToCollection(3, new DistinctValueOverlap.Reference(column1.getId(),
+                column2.getId()), constraintCollection);
+        HashMap<String, Integer> patterns = new HashMap<>();
+        patterns.put("9.9", 5);
+        patterns.put("-9.9", 2);
+        PatternConstraint.buildAndAddToCollection(new SingleTargetReference(column1.getId()), constraintCollection,
+                patterns);
+        store1.flush();
+        assertTrue(store1.getFormat().isFormatOf(file));
+
+        final DefaultMetadataStore store2 = MetadataStoreFactory.loadDefaultMetadataStore(file);
+        assertEquals(store1, store2);
+        final ConstraintCollection loadedConstraintCollection = store2.getConstraintCollections().iterator().next();
+        assertEquals(8, loadedConstraintCollection.getConstraints().size());
+        assertEquals(new HashSet<>(constraintCollection.getConstraints()),
+                new HashSet<>(loadedConstraintCollection.getConstraints()));
+        assertEquals(1, store2.getConstraintsReferencing(table.getId(), TupleCount.class).size());
+    }
 }
@@ -16,7 +16,7 @@ public class NotAllTargetsInStoreException extends IllegalStateException {
 
     private static final long serialVersionUID = 7552244497128771206L;
 
-    public NotAllTargetsInStoreException(final int targetId) {
+    public NotAllTargetsInStoreException(final long targetId) {
         super(String.format("Target with id %d", targetId));
     }
 }
@@ -5,9 +5,11 @@ import java.io.Serializable;
 import java.util.Collection;
 
 import de.hpi.isg.mdms.model.common.Observer;
+import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.model.location.Location;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
@@ -29,13 +31,24 @@ public interface MetadataStore extends Serializable, Observer<Target> {
      */
     public Schema addSchema(String name, String description, Location location);
 
+    /**
+     * Creates and adds a new {@link de.hpi.isg.mdms.model.targets.Schema} with all the tables and columns described
+     * by the given specification. In contrast to adding them one by one, the IDs of the tables and columns are
+     * assigned in a single pass without searching for unused IDs.
+     *
+     * @param schemaSpec
+     *        describes the schema to add
+     * @return the newly created {@link de.hpi.isg.mdms.model.targets.Schema}
+     */
+    public Schema importSchema(SchemaSpec schemaSpec);
+
     /**
      * Checks whether this store includes a {@link Target} with that id.
      * 
      * @param id
      * @return true if target with id is contained, else false.
      */
-    public boolean hasTargetWithId(int id);
+    public boolean hasTargetWithId(long id);
 
     /**
      * Returns a {@link Collection} of all {@link de.hpi.isg.mdms.model.constraints.ConstraintCollection}s.
@@ -52,6 +65,19 @@ public interface MetadataStore extends Serializable, Observer<Target> {
      */
     public ConstraintCollection getConstraintCollection(int id);
 
+    /**
+     * Looks up the {@link de.hpi.isg.mdms.model.constraints.Constraint}s of all {@link ConstraintCollection}s that
+     * reference the given {@link Target}.
+     * 
+     * @param targetId
+     *        is the ID of the referenced {@link Target}
+     * @param type
+     *        is the type of the requested {@link de.hpi.isg.mdms.model.constraints.Constraint}s
+     * @return the referencing {@link de.hpi.isg.mdms.model.constraints.Constraint}s of the given type
+     * @see ConstraintCollection#getConstraintsReferencing(long, Class)
+     */
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type);
+
     /**
      * Retrieve a schema from the store if it exists, throws {@link NameAmbigousException} if there are more than one
      * with that name
@@ -75,7 +101,7 @@ public interface MetadataStore extends Serializable, Observer<Target> {
      * @param schemaId
      * @return
      */
-    public Schema getSchemaById(int schemaId);
+    public Schema getSchemaById(long schemaId);
 
     /**
      * Get all knwon {@link Schema}s.
@@ -87,18 +113,18 @@ public interface MetadataStore extends Serializable, Observer<Target> {
     /**
      * Looks for an ID that can be assigned to a new schema.
      *
-     * @return the unused schema ID
+     * @return the unused schema ID, which exceeds the int range only if the {@link #getIdUtils() IdUtils} use long IDs
      */
-    int getUnusedSchemaId();
+    long getUnusedSchemaId();
 
     /**
      * Looks for an ID that can be assigned to a new table within the given schema.
      *
      * @param schema
      *        is the schema to which the new table shall be added
-     * @return the unused table ID
+     * @return the unused table ID, which exceeds the int range only if the {@link #getIdUtils() IdUtils} use long IDs
      */
-    int getUnusedTableId(Schema schema);
+    long getUnusedTableId(Schema schema);
 
     /**
      * Returns an unused id for a {@link ConstraintCollection}.
@@ -41,6 +41,18 @@ public interface ConstraintCollection extends Identifiable, Described {
      */
     public void add(Constraint constraint);
 
+    /**
+     * Looks up the {@link Constraint}s of this collection that reference the given {@link Target}.
+     * 
+     * @param targetId
+     *        is the ID of the referenced {@link Target}
+     * @param type
+     *        is the type of the requested {@link Constraint}s; pass {@link Constraint} to request all types
+     * @return the {@link Constraint}s of the given type whose {@link de.hpi.isg.mdms.model.targets.TargetReference}
+     *         contains the target ID
+     */
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type);
+
     /**
      * This function returns the {@link de.hpi.isg.mdms.model.MetadataStore} this collection belongs to.
      * 
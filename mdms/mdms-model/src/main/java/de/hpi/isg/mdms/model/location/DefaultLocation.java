@@ -20,6 +20,11 @@ public class DefaultLocation extends AbstractHashCodeAndEquals implements Locati
 
     private Map<String, String> properties;
 
+    /**
+     * Is notified of changes to the {@link #properties} or is {@code null}.
+     */
+    private transient volatile LocationListener listener;
+
     public static DefaultLocation createForFile(String path) {
         DefaultLocation location = new DefaultLocation();
         location.set(PATH, path);
@@ -33,11 +38,31 @@ public class DefaultLocation extends AbstractHashCodeAndEquals implements Locati
     @Override
     public void set(String propertyKey, String value) {
         this.properties.put(propertyKey, value);
+        notifyListener();
     }
     
     @Override
     public void delete(String propertyKey) {
     	this.properties.remove(propertyKey);
+    	notifyListener();
+    }
+
+    private void notifyListener() {
+        LocationListener listener = this.listener;
+        if (listener != null) {
+            listener.handleLocationModified(this);
+        }
+    }
+
+    /**
+     * Registers the listener that shall be notified of changes to the properties of this location. It replaces any
+     * previous listener. The listener is not serialized.
+     *
+     * @param listener
+     *        is the new listener or {@code null} to remove the current one
+     */
+    public void setListener(LocationListener listener) {
+        this.listener = listener;
     }
 
     @Override
@@ -0,0 +1,18 @@
+package de.hpi.isg.mdms.model.location;
+
+/**
+ * Gets notified whenever the properties of a {@link DefaultLocation} are changed.
+ *
+ * @author Sebastian Kruse
+ */
+public interface LocationListener {
+
+    /**
+     * Called after a property of the given location has been set or deleted.
+     *
+     * @param location
+     *        is the modified location
+     */
+    void handleLocationModified(Location location);
+
+}
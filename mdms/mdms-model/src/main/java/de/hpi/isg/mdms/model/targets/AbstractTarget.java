@@ -27,7 +27,7 @@ public abstract class AbstractTarget extends AbstractIdentifiableAndNamed implem
     @Printable
     private String description;
 
-    public AbstractTarget(final Observer observer, final int id, final String name, String description,
+    public AbstractTarget(final Observer observer, final long id, final String name, String description,
             final Location location) {
         super(observer, id, name);
         this.location = location;
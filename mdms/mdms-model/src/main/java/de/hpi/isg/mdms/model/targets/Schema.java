@@ -29,7 +29,7 @@ public interface Schema extends Target {
 
     public Collection<Table> getTablesByName(String name);
 
-    public Table getTableById(int id);
+    public Table getTableById(long id);
 
     public Collection<Table> getTables();
 
@@ -39,6 +39,6 @@ public interface Schema extends Target {
      * @param id
      * @return
      */
-    Column findColumn(int id);
+    Column findColumn(long id);
 
 }
@@ -0,0 +1,145 @@
+package de.hpi.isg.mdms.model.targets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.location.Location;
+
+/**
+ * Describes a {@link Schema} with its {@link Table}s and {@link Column}s, so that it can be imported into a
+ * {@link MetadataStore} at once via {@link MetadataStore#importSchema(SchemaSpec)}. The columns of a table are
+ * indexed in the order in which they are added.
+ *
+ * @author Sebastian Kruse
+ */
+public class SchemaSpec {
+
+    private final String name;
+
+    private final String description;
+
+    private final Location location;
+
+    private final List<TableSpec> tables = new ArrayList<>();
+
+    public SchemaSpec(final String name, final String description, final Location location) {
+        Validate.notNull(name);
+        this.name = name;
+        this.description = description;
+        this.location = location;
+    }
+
+    /**
+     * Adds a new table to this schema.
+     *
+     * @return the specification of the new table, to which columns can be added
+     */
+    public TableSpec addTable(final String name, final String description, final Location location) {
+        final TableSpec table = new TableSpec(name, description, location);
+        this.tables.add(table);
+        return table;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public Location getLocation() {
+        return this.location;
+    }
+
+    public List<TableSpec> getTables() {
+        return Collections.unmodifiableList(this.tables);
+    }
+
+    /**
+     * @return the number of columns within all tables of this schema
+     */
+    public int getNumColumns() {
+        int numColumns = 0;
+        for (final TableSpec table : this.tables) {
+            numColumns += table.getColumns().size();
+        }
+        return numColumns;
+    }
+
+    /**
+     * Describes a {@link Table} within a {@link SchemaSpec}.
+     */
+    public static class TableSpec {
+
+        private final String name;
+
+        private final String description;
+
+        private final Location location;
+
+        private final List<ColumnSpec> columns = new ArrayList<>();
+
+        private TableSpec(final String name, final String description, final Location location) {
+            Validate.notNull(name);
+            this.name = name;
+            this.description = description;
+            this.location = location;
+        }
+
+        /**
+         * Adds a new column to this table. Its index is the number of previously added columns.
+         *
+         * @return this table specification
+         */
+        public TableSpec addColumn(final String name, final String description) {
+            Validate.notNull(name);
+            this.columns.add(new ColumnSpec(name, description));
+            return this;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+
+        public Location getLocation() {
+            return this.location;
+        }
+
+        public List<ColumnSpec> getColumns() {
+            return Collections.unmodifiableList(this.columns);
+        }
+    }
+
+    /**
+     * Describes a {@link Column} within a {@link TableSpec}.
+     */
+    public static class ColumnSpec {
+
+        private final String name;
+
+        private final String description;
+
+        private ColumnSpec(final String name, final String description) {
+            this.name = name;
+            this.description = description;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getDescription() {
+            return this.description;
+        }
+    }
+
+}
@@ -30,7 +30,7 @@ public interface Table extends Target {
 
     public Collection<Column> getColumnsByName(String name);
 
-    public Column getColumnById(int id);
+    public Column getColumnById(long id);
 
     /**
      * @return the parent schema of this table
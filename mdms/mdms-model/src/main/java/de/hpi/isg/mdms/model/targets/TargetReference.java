@@ -1,6 +1,6 @@
 package de.hpi.isg.mdms.model.targets;
 
-import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 
 import java.io.Serializable;
 import java.util.Collection;
@@ -12,9 +12,11 @@ import java.util.Collection;
 
 public interface TargetReference extends Serializable {
     /**
-     * Returns an {@link IntCollection} of all {@link Target} id's that are included in this {@link TargetReference}.
+     * Returns a {@link LongCollection} of all {@link Target} id's that are included in this {@link TargetReference}.
+     * The IDs are given as longs, so that they also cover stores with long IDs.
      * 
      * @return {@link Collection} of target id's.
+     * @see de.hpi.isg.mdms.model.common.Identifiable#getLongId()
      */
-    public IntCollection getAllTargetIds();
+    public LongCollection getAllTargetIds();
 }
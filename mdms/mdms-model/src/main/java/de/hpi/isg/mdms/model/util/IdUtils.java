@@ -14,6 +14,8 @@ package de.hpi.isg.mdms.model.util;
 
 import java.io.Serializable;
 
+import org.apache.commons.lang3.Validate;
+
 import de.hpi.isg.mdms.model.MetadataStore;
 
 /**
@@ -26,6 +28,10 @@ import de.hpi.isg.mdms.model.MetadataStore;
  * <li>the low {@value #numColumnBits} bits are used to encode the column (<tt>y</tt>)</li>
  * <li>for schema IDs and table IDs the column (and the table bits) are all set to 1</li>
  * </ol>
+ * In the long-ID mode, the IDs comprise 64 bit instead, so that there is room for more tables and columns. Such IDs
+ * have to be handled with the {@code long} variants of the methods, e.g., {@link #createGlobalLongId(int, int, int)};
+ * the {@code int} variants reject them. For 32 bit IDs, the {@code long} variants yield the sign-extended {@code int}
+ * IDs.
  */
 @SuppressWarnings("serial")
 public class IdUtils implements Serializable {
@@ -34,7 +40,12 @@ public class IdUtils implements Serializable {
 
     public static final int DEFAULT_NUM_COLUMN_BITS = 12;
     public static final int DEFAULT_NUM_TABLE_BITS = 12;
-    
+
+    public static final int DEFAULT_NUM_COLUMN_BITS_IN_LONG_IDS = 24;
+    public static final int DEFAULT_NUM_TABLE_BITS_IN_LONG_IDS = 24;
+
+    private final boolean isLongIds;
+
     private final int numTableBits;
     private final int numColumnBits;
     private final int numSchemaBits;
@@ -47,6 +58,10 @@ public class IdUtils implements Serializable {
 
     private final int columnIdBitmask;
 
+    private final long longSchemaIdBitmask;
+    private final long longTableIdBitmask;
+    private final long longColumnIdBitmask;
+
     public final int minSchemaNumber;
     public final int maxSchemaNumber; // 2 ^ 4
 
@@ -64,8 +79,37 @@ public class IdUtils implements Serializable {
         return 1 << x;
     }
 
+    /**
+     * Ensures that this instance does not operate on long IDs, which cannot be decoded from an {@code int}.
+     */
+    private void validateIntIds() {
+        Validate.validState(!this.isLongIds, "Long IDs must be handled via the long variants of the methods.");
+    }
+
     public IdUtils(int numTableBits, int numColumnBits) {
-        this.numSchemaBits = 32 - numTableBits - numColumnBits;
+        this(numTableBits, numColumnBits, false);
+    }
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param numTableBits
+     *        is the number of bits to encode the table
+     * @param numColumnBits
+     *        is the number of bits to encode the column
+     * @param isLongIds
+     *        tells whether the IDs comprise 64 instead of 32 bit
+     */
+    public IdUtils(int numTableBits, int numColumnBits, boolean isLongIds) {
+        this.isLongIds = isLongIds;
+        this.numSchemaBits = (isLongIds ? 64 : 32) - numTableBits - numColumnBits;
+        if (isLongIds) {
+            // Local numbers are still ints.
+            Validate.isTrue(numTableBits > 0 && numTableBits <= 30, "Illegal number of table bits: %d", numTableBits);
+            Validate.isTrue(numColumnBits > 0 && numColumnBits <= 30, "Illegal number of column bits: %d",
+                    numColumnBits);
+            Validate.isTrue(this.numSchemaBits <= 31, "Illegal number of schema bits: %d", this.numSchemaBits);
+        }
         this.numTableBits = numTableBits;
         this.numColumnBits = numColumnBits;
         
@@ -77,6 +121,10 @@ public class IdUtils implements Serializable {
 
         columnIdBitmask = toBitMask(numColumnBits);
 
+        longSchemaIdBitmask = (1L << numSchemaBits) - 1;
+        longTableIdBitmask = (1L << numTableBits) - 1;
+        longColumnIdBitmask = (1L << numColumnBits) - 1;
+
         minSchemaNumber = 0;
         maxSchemaNumber = twoToThePowerOf(numSchemaBits) - 1; // 2 ^ 4
 
@@ -101,6 +149,9 @@ public class IdUtils implements Serializable {
      * @return the global ID
      */
     public int createGlobalId(final int localSchemaId, final int localTableId, final int localColumnId) {
+        if (this.isLongIds) {
+            throw new IllegalStateException("Long IDs must be created via createGlobalLongId(...).");
+        }
         return ((localSchemaId & schemaIdBitmask) << schemaIdOffset)
                 | ((localTableId & tableIdBitmask) << tableIdOffset)
                 | ((localColumnId) & columnIdBitmask);
@@ -139,6 +190,7 @@ public class IdUtils implements Serializable {
      * @return the local schema ID
      */
     public int getLocalSchemaId(final int globalId) {
+        validateIntIds();
         return (globalId >> schemaIdOffset) & schemaIdBitmask;
     }
 
@@ -150,6 +202,7 @@ public class IdUtils implements Serializable {
      * @return the local table ID
      */
     public int getLocalTableId(final int globalId) {
+        validateIntIds();
         return (globalId >> tableIdOffset) & tableIdBitmask;
     }
 
@@ -161,17 +214,108 @@ public class IdUtils implements Serializable {
      * @return the local column ID
      */
     public int getLocalColumnId(final int globalId) {
+        validateIntIds();
         return globalId & columnIdBitmask;
     }
 
+    /**
+     * Creates a global ID for the specified target. Other than {@link #createGlobalId(int, int, int)}, this method
+     * supports long IDs.
+     * 
+     * @param localSchemaId
+     *        is a unique number for the schema between {@value #minSchemaNumber} and {@value #maxSchemaNumber}
+     * @param localTableId
+     *        is a unique number for the table within its schema between {@value #minTableNumber} and
+     *        {@value #maxTableNumber}
+     * @param localColumnId
+     *        is the offset of the column within its table between {@value #minColumnNumber} and
+     *        {@value #maxColumnNumber}
+     * @return the global ID
+     */
+    public long createGlobalLongId(final int localSchemaId, final int localTableId, final int localColumnId) {
+        long globalId = ((localSchemaId & longSchemaIdBitmask) << schemaIdOffset)
+                | ((localTableId & longTableIdBitmask) << tableIdOffset)
+                | (localColumnId & longColumnIdBitmask);
+        // 32 bit IDs are sign-extended, so that they coincide with the int IDs.
+        return this.isLongIds ? globalId : (int) globalId;
+    }
+
+    /**
+     * Creates a global ID for the specified table.
+     * 
+     * @see #createGlobalLongId(int, int, int)
+     */
+    public long createGlobalLongId(final int localSchemaId, final int localTableId) {
+        return createGlobalLongId(localSchemaId, localTableId, maxColumnNumber + 1);
+    }
+
+    /**
+     * Creates a global ID for the specified schema.
+     * 
+     * @see #createGlobalLongId(int, int, int)
+     */
+    public long createGlobalLongId(final int localSchemaId) {
+        return createGlobalLongId(localSchemaId, maxTableNumber + 1, maxColumnNumber + 1);
+    }
+
+    /**
+     * Returns the local schema ID that is encoded in the given global ID.
+     * 
+     * @param globalId
+     *        is the (long) ID from which the local schema ID shall be extracted
+     * @return the local schema ID
+     */
+    public int getLocalSchemaId(final long globalId) {
+        return (int) ((globalId >> schemaIdOffset) & longSchemaIdBitmask);
+    }
+
+    /**
+     * Returns the local table ID that is encoded in the given global ID.
+     * 
+     * @param globalId
+     *        is the (long) ID from which the local table ID shall be extracted
+     * @return the local table ID
+     */
+    public int getLocalTableId(final long globalId) {
+        return (int) ((globalId >> tableIdOffset) & longTableIdBitmask);
+    }
+
+    /**
+     * Returns the local column ID that is encoded in the given global ID.
+     * 
+     * @param globalId
+     *        is the (long) ID from which the local column ID shall be extracted
+     * @return the local column ID
+     */
+    public int getLocalColumnId(final long globalId) {
+        return (int) (globalId & longColumnIdBitmask);
+    }
+
+    public boolean isSchemaId(final long id) {
+        return (getLocalTableId(id) > maxTableNumber && getLocalColumnId(id) > maxColumnNumber);
+    }
+
+    public boolean isTableId(final long id) {
+        return (getLocalColumnId(id) > maxColumnNumber && !(getLocalTableId(id) > maxTableNumber));
+    }
+
     public boolean isSchemaId(final int id) {
+        validateIntIds();
         return (getLocalTableId(id) > maxTableNumber && getLocalColumnId(id) > maxColumnNumber);
     }
 
     public boolean isTableId(final int id) {
+        validateIntIds();
         return (getLocalColumnId(id) > maxColumnNumber && !(getLocalTableId(id) > maxTableNumber));
     }
 
+    /**
+     * @return whether the IDs comprise 64 instead of 32 bit
+     */
+    public boolean isLongIds() {
+        return isLongIds;
+    }
+
     public int getNumTableBits() {
         return numTableBits;
     }
@@ -222,7 +366,30 @@ public class IdUtils implements Serializable {
     	return createGlobalId(schemaNumber);
     }
 
+    public long getTableId(long id) {
+        int schemaNumber = getLocalSchemaId(id);
+        int tableNumber = getLocalTableId(id);
+        if (tableNumber == this.maxTableNumber + 1) {
+            throw new IllegalArgumentException("Cannot create a table ID for the ID " + id);
+        }
+        return createGlobalLongId(schemaNumber, tableNumber);
+    }
+
+    public long getSchemaId(long id) {
+        return createGlobalLongId(getLocalSchemaId(id));
+    }
+
+    public IdTypes getIdType(long id) {
+        if (isSchemaId(id)) {
+            return IdTypes.SCHEMA_ID;
+        } else if (isTableId(id)) {
+            return IdTypes.TABLE_ID;
+        }
+        return IdTypes.COLUMN_ID;
+    }
+
     public IdTypes getIdType(int id) {
+        validateIntIds();
         if (isSchemaId(id)) {
             return IdTypes.SCHEMA_ID;
         } else if (isTableId(id)) {
@@ -233,7 +400,8 @@ public class IdUtils implements Serializable {
     
     @Override
     public String toString() {
-        return String.format("IdUtils [%d/%d/%d]", this.numSchemaBits, this.numColumnBits, this.numTableBits);
+        return String.format("IdUtils [%d/%d/%d%s]", this.numSchemaBits, this.numColumnBits, this.numTableBits,
+                this.isLongIds ? ", long" : "");
     }
     
 }
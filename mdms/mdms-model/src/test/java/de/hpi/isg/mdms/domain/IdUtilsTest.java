@@ -97,6 +97,63 @@ public class IdUtilsTest {
     }
 
 
+    @Test
+    public void testLongIdAssembling() {
+        final IdUtils longIdUtils = new IdUtils(IdUtils.DEFAULT_NUM_TABLE_BITS_IN_LONG_IDS,
+                IdUtils.DEFAULT_NUM_COLUMN_BITS_IN_LONG_IDS, true);
+        final List<Integer> schemaIds = Arrays.asList(longIdUtils.getMinSchemaNumber(),
+                longIdUtils.getMaxSchemaNumber());
+        final List<Integer> tableIds = Arrays.asList(longIdUtils.getMinTableNumber(),
+                longIdUtils.getMaxTableNumber());
+        final List<Integer> columnIds = Arrays.asList(longIdUtils.getMinColumnNumber(),
+                longIdUtils.getMaxColumnNumber());
+        for (final int schemaId : schemaIds) {
+            final long globalSchemaId = longIdUtils.createGlobalLongId(schemaId);
+            Assert.assertEquals(IdUtils.IdTypes.SCHEMA_ID, longIdUtils.getIdType(globalSchemaId));
+            Assert.assertEquals(schemaId, longIdUtils.getLocalSchemaId(globalSchemaId));
+            for (final int tableId : tableIds) {
+                final long globalTableId = longIdUtils.createGlobalLongId(schemaId, tableId);
+                Assert.assertEquals(IdUtils.IdTypes.TABLE_ID, longIdUtils.getIdType(globalTableId));
+                Assert.assertEquals(globalSchemaId, longIdUtils.getSchemaId(globalTableId));
+                for (final int columnId : columnIds) {
+                    final long globalId = longIdUtils.createGlobalLongId(schemaId, tableId, columnId);
+                    Assert.assertEquals(schemaId, longIdUtils.getLocalSchemaId(globalId));
+                    Assert.assertEquals(tableId, longIdUtils.getLocalTableId(globalId));
+                    Assert.assertEquals(columnId, longIdUtils.getLocalColumnId(globalId));
+                    Assert.assertEquals(IdUtils.IdTypes.COLUMN_ID, longIdUtils.getIdType(globalId));
+                    Assert.assertEquals(globalTableId, longIdUtils.getTableId(globalId));
+                }
+            }
+        }
+        // The long IDs exceed the int range.
+        Assert.assertTrue(longIdUtils.createGlobalLongId(longIdUtils.getMinSchemaNumber()) > Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIntVariantsRejectLongIds() {
+        final IdUtils longIdUtils = new IdUtils(IdUtils.DEFAULT_NUM_TABLE_BITS_IN_LONG_IDS,
+                IdUtils.DEFAULT_NUM_COLUMN_BITS_IN_LONG_IDS, true);
+        longIdUtils.getLocalSchemaId(0);
+    }
+
+    @Test
+    public void testLongIdsCoincideWithIntIds() {
+        final List<Integer> schemaIds = Arrays.asList(idUtils.getMinSchemaNumber(), idUtils.getMaxSchemaNumber());
+        final List<Integer> tableIds = Arrays.asList(idUtils.getMinTableNumber(), idUtils.getMaxTableNumber());
+        for (final int schemaId : schemaIds) {
+            Assert.assertEquals(idUtils.createGlobalId(schemaId), idUtils.createGlobalLongId(schemaId));
+            for (final int tableId : tableIds) {
+                final long globalTableId = idUtils.createGlobalLongId(schemaId, tableId);
+                Assert.assertEquals(idUtils.createGlobalId(schemaId, tableId), globalTableId);
+                Assert.assertEquals(idUtils.getIdType((int) globalTableId), idUtils.getIdType(globalTableId));
+                final long globalColumnId = idUtils.createGlobalLongId(schemaId, tableId, idUtils.getMaxColumnNumber());
+                Assert.assertEquals(idUtils.createGlobalId(schemaId, tableId, idUtils.getMaxColumnNumber()),
+                        globalColumnId);
+                Assert.assertEquals(idUtils.getTableId((int) globalColumnId), idUtils.getTableId(globalColumnId));
+            }
+        }
+    }
+
     @Test
     public void testIdTypeTest() {
         Assert.assertTrue(idUtils.isSchemaId(0b111111111111111111111111));
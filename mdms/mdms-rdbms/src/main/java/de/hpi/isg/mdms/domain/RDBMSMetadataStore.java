@@ -2,6 +2,7 @@ package de.hpi.isg.mdms.domain;
 
 import de.hpi.isg.mdms.domain.constraints.RDBMSConstraintCollection;
 import de.hpi.isg.mdms.domain.targets.AbstractRDBMSTarget;
+import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.model.location.Location;
 import de.hpi.isg.mdms.model.MetadataStore;
@@ -11,11 +12,13 @@ import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.domain.targets.RDBMSColumn;
 import de.hpi.isg.mdms.domain.targets.RDBMSSchema;
 import de.hpi.isg.mdms.domain.targets.RDBMSTable;
 import de.hpi.isg.mdms.model.util.IdUtils;
+import de.hpi.isg.mdms.rdbms.util.IdAllocator;
 import de.hpi.isg.mdms.rdbms.util.LocationCache;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
 import org.apache.commons.lang3.Validate;
@@ -36,6 +39,17 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
 
     private static final String NUM_TABLE_BITS_IN_IDS_KEY = "numTableBitsInIds";
 
+    /**
+     * Configuration key that tells whether the store uses 64 bit target IDs. Stores without this key use 32 bit IDs.
+     */
+    private static final String IS_LONG_IDS_KEY = "isLongIds";
+
+    /**
+     * Configuration key for the number of query results that the {@link de.hpi.isg.mdms.db.DatabaseAccess} caches.
+     * The query result cache is only enabled if this key is set to a positive value.
+     */
+    public static final String QUERY_RESULT_CACHE_SIZE_KEY = "queryResultCacheSize";
+
     private static final long serialVersionUID = 400271996998552017L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RDBMSMetadataStore.class);
@@ -52,15 +66,45 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
     @ExcludeHashCodeEquals
     transient final LocationCache locationCache = new LocationCache();
 
+    /**
+     * Keeps track of the used target IDs, so that new IDs can be assigned without querying the database.
+     */
+    @ExcludeHashCodeEquals
+    transient final IdAllocator idAllocator;
+
+    /**
+     * The number of query results to cache or {@code 0} if the query result cache is disabled.
+     */
+    @ExcludeHashCodeEquals
+    transient final int queryResultCacheSize;
+
     public static RDBMSMetadataStore createNewInstance(SQLInterface sqlInterface) {
         return createNewInstance(sqlInterface, IdUtils.DEFAULT_NUM_TABLE_BITS, IdUtils.DEFAULT_NUM_COLUMN_BITS);
     }
 
     public static RDBMSMetadataStore createNewInstance(SQLInterface sqlInterface, int numTableBitsInIds,
             int numColumnBitsInIds) {
+        return createNewInstance(sqlInterface, numTableBitsInIds, numColumnBitsInIds, false);
+    }
+
+    /**
+     * Creates a new metadata store whose target IDs comprise 64 bit, so that it can host more schemas, tables, and
+     * columns than with 32 bit IDs.
+     * 
+     * @see IdUtils#DEFAULT_NUM_TABLE_BITS_IN_LONG_IDS
+     * @see IdUtils#DEFAULT_NUM_COLUMN_BITS_IN_LONG_IDS
+     */
+    public static RDBMSMetadataStore createNewLongIdInstance(SQLInterface sqlInterface) {
+        return createNewInstance(sqlInterface, IdUtils.DEFAULT_NUM_TABLE_BITS_IN_LONG_IDS,
+                IdUtils.DEFAULT_NUM_COLUMN_BITS_IN_LONG_IDS, true);
+    }
+
+    public static RDBMSMetadataStore createNewInstance(SQLInterface sqlInterface, int numTableBitsInIds,
+            int numColumnBitsInIds, boolean isLongIds) {
         Map<String, String> configuration = new HashMap<>();
         configuration.put(NUM_TABLE_BITS_IN_IDS_KEY, String.valueOf(numTableBitsInIds));
         configuration.put(NUM_COLUMN_BITS_IN_IDS_KEY, String.valueOf(numColumnBitsInIds));
+        configuration.put(IS_LONG_IDS_KEY, String.valueOf(isLongIds));
         return RDBMSMetadataStore.createNewInstance(sqlInterface, configuration);
     }
 
@@ -82,6 +126,7 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         Map<String, String> configuration = sqlInterface.loadConfiguration();
         RDBMSMetadataStore metadataStore = new RDBMSMetadataStore(sqlInterface, configuration);
         metadataStore.fillLocationCache();
+        metadataStore.fillIdAllocator();
         return metadataStore;
     }
 
@@ -91,7 +136,14 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         this.setUseJournal(true);
         int numTableBitsInIds = Integer.valueOf(configuration.get(NUM_TABLE_BITS_IN_IDS_KEY));
         int numColumnBitsInIds = Integer.valueOf(configuration.get(NUM_COLUMN_BITS_IN_IDS_KEY));
-        this.idUtils = new IdUtils(numTableBitsInIds, numColumnBitsInIds);
+        boolean isLongIds = Boolean.parseBoolean(configuration.get(IS_LONG_IDS_KEY));
+        this.idUtils = new IdUtils(numTableBitsInIds, numColumnBitsInIds, isLongIds);
+        this.idAllocator = new IdAllocator(this.idUtils);
+        String queryResultCacheSize = configuration.get(QUERY_RESULT_CACHE_SIZE_KEY);
+        this.queryResultCacheSize = queryResultCacheSize == null ? 0 : Integer.parseInt(queryResultCacheSize);
+        if (this.queryResultCacheSize > 0) {
+            this.sqlInterface.getDatabaseAccess().enableQueryResultCache(this.queryResultCacheSize);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -105,11 +157,37 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         }
     }
 
+    private void fillIdAllocator() {
+        try {
+            this.idAllocator.registerAll(this.sqlInterface.getAllTargetIds().iterator());
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not load the target IDs.", e);
+        }
+    }
+
     @Override
     public Schema addSchema(final String name, final String description, final Location location) {
-        final int id = this.getUnusedSchemaId();
-        final Schema schema = RDBMSSchema.buildAndRegisterAndAdd(this, id, name, description, location);
-        return schema;
+        final long id = this.idAllocator.reserveUnusedSchemaId();
+        try {
+            return RDBMSSchema.buildAndRegisterAndAdd(this, id, name, description, location);
+        } catch (RuntimeException e) {
+            this.idAllocator.release(id);
+            throw e;
+        }
+    }
+
+    @Override
+    public Schema importSchema(final SchemaSpec schemaSpec) {
+        final long id = this.idAllocator.reserveUnusedSchemaId();
+        try {
+            final RDBMSSchema schema = RDBMSSchema.buildAndRegisterAndAdd(this, id, schemaSpec.getName(),
+                    schemaSpec.getDescription(), schemaSpec.getLocation());
+            schema.importTables(this, schemaSpec.getTables());
+            return schema;
+        } catch (RuntimeException e) {
+            this.idAllocator.release(id);
+            throw e;
+        }
     }
 
     @Override
@@ -132,55 +210,48 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
     }
 
     @Override
-    public int getUnusedSchemaId() {
-        final int searchOffset = this.getSchemas().size();
-        for (int baseSchemaNumber = this.idUtils.getMinSchemaNumber(); baseSchemaNumber <= this.idUtils
-                .getMaxSchemaNumber(); baseSchemaNumber++) {
-            int schemaNumber = baseSchemaNumber + searchOffset;
-            schemaNumber = schemaNumber > this.idUtils.getMaxSchemaNumber() ? schemaNumber
-                    - (this.idUtils.getMaxSchemaNumber() - this.idUtils.getMinSchemaNumber()) : schemaNumber;
-            final int id = this.idUtils.createGlobalId(schemaNumber);
-            if (!this.idIsInUse(id)) {
-                return id;
-            }
-        }
-        throw new IllegalStateException(String.format("No free schema ID left within schema."));
+    public long getUnusedSchemaId() {
+        return this.idAllocator.findUnusedSchemaId();
     }
 
     @Override
-    public int getUnusedTableId(final Schema schema) {
-        Validate.isTrue(this.sqlInterface.getAllSchemas().contains(schema));
-        final int schemaNumber = this.idUtils.getLocalSchemaId(schema.getId());
-        final int searchOffset = ((RDBMSSchema) schema).getNumTables() != -1 ?
-                ((RDBMSSchema) schema).getNumTables() + 1 : schema.getTables().size();
-        for (int baseTableNumber = this.idUtils.getMinTableNumber(); baseTableNumber <= this.idUtils
-                .getMaxTableNumber(); baseTableNumber++) {
-            int tableNumber = baseTableNumber + searchOffset;
-            tableNumber = tableNumber > this.idUtils.getMaxTableNumber() ? tableNumber
-                    - (this.idUtils.getMaxTableNumber() - this.idUtils.getMinTableNumber()) : tableNumber;
-            final int id = this.idUtils.createGlobalId(schemaNumber, tableNumber);
-            if (!this.idIsInUse(id)) {
-                return id;
-            }
-        }
-        throw new IllegalStateException(String.format("No free table ID left within schema %s.", schema));
+    public long getUnusedTableId(final Schema schema) {
+        Validate.isTrue(this.idAllocator.isInUse(schema.getLongId()));
+        return this.idAllocator.findUnusedTableId(schema.getLongId());
+    }
+
+    /**
+     * Reserves an unused table ID within the given schema. Unlike {@link #getUnusedTableId(Schema)}, concurrent calls
+     * never yield the same ID.
+     *
+     * @param schema
+     *        is the schema that shall host the new table
+     * @return the reserved table ID
+     * @see #releaseTargetId(long)
+     */
+    public long reserveUnusedTableId(final Schema schema) {
+        Validate.isTrue(this.idAllocator.isInUse(schema.getLongId()));
+        return this.idAllocator.reserveUnusedTableId(schema.getLongId());
+    }
+
+    /**
+     * Releases a target ID, e.g., a {@link #reserveUnusedTableId(Schema) reserved} one whose target could not be
+     * created.
+     *
+     * @param id
+     *        is the ID to release
+     */
+    public void releaseTargetId(final long id) {
+        this.idAllocator.release(id);
     }
 
     @Override
-    public boolean hasTargetWithId(int id) {
+    public boolean hasTargetWithId(long id) {
         return idIsInUse(id);
     }
 
-    private boolean idIsInUse(final int id) {
-        try {
-            return this.sqlInterface.isTargetIdInUse(id);
-        } catch (SQLException e) {
-            throw new RuntimeException(String.format("Could not determine if ID %s is in use.", id), e);
-        }
-        // synchronized (this.sqlInterface.getIdsInUse()) {
-        //
-        // return this.sqlInterface.getIdsInUse().contains(id);
-        // }
+    private boolean idIsInUse(final long id) {
+        return this.idAllocator.isInUse(id);
     }
 
     // @Override
@@ -204,6 +275,7 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         }
 
         ((AbstractRDBMSTarget) target).store();
+        this.idAllocator.register(target.getLongId());
         // this.sqlInterface.addTarget(target);
     }
 
@@ -222,6 +294,11 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         return this.sqlInterface.getConstraintCollectionById(id);
     }
 
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        return this.sqlInterface.getConstraintsReferencing(targetId, type, null);
+    }
+
     public SQLInterface getSQLInterface() {
         return this.sqlInterface;
     }
@@ -272,6 +349,10 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
         Map<String, String> configuration = new HashMap<String, String>();
         configuration.put(NUM_TABLE_BITS_IN_IDS_KEY, String.valueOf(this.idUtils.getNumTableBits()));
         configuration.put(NUM_COLUMN_BITS_IN_IDS_KEY, String.valueOf(this.idUtils.getNumColumnBits()));
+        configuration.put(IS_LONG_IDS_KEY, String.valueOf(this.idUtils.isLongIds()));
+        if (this.queryResultCacheSize > 0) {
+            configuration.put(QUERY_RESULT_CACHE_SIZE_KEY, String.valueOf(this.queryResultCacheSize));
+        }
         return configuration;
     }
 
@@ -297,7 +378,7 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
     }
 
     @Override
-    public Schema getSchemaById(int schemaId) {
+    public Schema getSchemaById(long schemaId) {
         return this.sqlInterface.getSchemaById(schemaId);
     }
 
@@ -312,12 +393,15 @@ public class RDBMSMetadataStore extends AbstractHashCodeAndEquals implements Met
             for (Column column : table.getColumns()) {
                 checkIfInScopeAndDelete(column);
                 sqlInterface.removeColumn((RDBMSColumn) column);
+                this.idAllocator.release(column.getLongId());
             }
             checkIfInScopeAndDelete(table);
             sqlInterface.removeTable((RDBMSTable) table);
+            this.idAllocator.release(table.getLongId());
         }
         checkIfInScopeAndDelete(schema);
         sqlInterface.removeSchema((RDBMSSchema) schema);
+        this.idAllocator.release(schema.getLongId());
         try {
             this.flush();
         } catch (Exception e) {
@@ -8,7 +8,7 @@ import de.hpi.isg.mdms.model.common.AbstractIdentifiable;
 import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.model.util.IdUtils;
-import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,7 +36,7 @@ public class RDBMSConstraintCollection extends AbstractIdentifiable implements C
 
     private Collection<Target> scope;
 
-    private Set<Integer> scopeIdSet;
+    private Set<Long> scopeIdSet;
 
     private String description;
 
@@ -51,10 +51,10 @@ public class RDBMSConstraintCollection extends AbstractIdentifiable implements C
         this.description = description != null ? description : "";
     }
 
-    private Set<Integer> rebuildScopeSet(Collection<Target> scope) {
-        Set<Integer> set = new HashSet<>();
+    private Set<Long> rebuildScopeSet(Collection<Target> scope) {
+        Set<Long> set = new HashSet<>();
         for (Target t : scope) {
-            set.add(t.getId());
+            set.add(t.getLongId());
         }
         return set;
     }
@@ -111,8 +111,8 @@ public class RDBMSConstraintCollection extends AbstractIdentifiable implements C
 
         if (IS_CHECK_CONSTRAINT_TARGETS) {
             // Ensure that all targets of the constraint are valid.
-            for (IntIterator i = constraint.getTargetReference().getAllTargetIds().iterator(); i.hasNext();) {
-                int targetId = i.nextInt();
+            for (LongIterator i = constraint.getTargetReference().getAllTargetIds().iterator(); i.hasNext();) {
+                long targetId = i.nextLong();
                 if (!targetInScope(targetId)) {
                     LOGGER.warn("Target with id {} not in scope of constraint collection", targetId);
                 }
@@ -124,7 +124,12 @@ public class RDBMSConstraintCollection extends AbstractIdentifiable implements C
         this.sqlInterface.writeConstraint(constraint);
     }
 
-    private boolean targetInScope(int targetId) {
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        return this.sqlInterface.getConstraintsReferencing(targetId, type, this);
+    }
+
+    private boolean targetInScope(long targetId) {
         IdUtils idUtils = this.sqlInterface.getMetadataStore().getIdUtils();
 
         if (this.scopeIdSet.contains(targetId)) {
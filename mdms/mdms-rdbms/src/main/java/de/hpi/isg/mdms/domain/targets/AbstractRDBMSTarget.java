@@ -6,8 +6,8 @@ import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
 import de.hpi.isg.mdms.rdbms.SQLInterface;
 import de.hpi.isg.mdms.model.targets.AbstractTarget;
-import it.unimi.dsi.fastutil.ints.IntCollection;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 /**
  * This class is the abstract super class for all kind of {@link Target} objects that can be stored inside an
@@ -21,40 +21,40 @@ public abstract class AbstractRDBMSTarget extends AbstractTarget {
     private static final long serialVersionUID = -2207050281912169066L;
 
     @ExcludeHashCodeEquals
-    // private Reference<IntCollection> childIdCache;
-    private IntCollection childIdCache;
+    // private Reference<LongCollection> childIdCache;
+    private LongCollection childIdCache;
 
     @ExcludeHashCodeEquals
     protected final SQLInterface sqlInterface;
 
-    public AbstractRDBMSTarget(RDBMSMetadataStore observer, int id, String name, String description, Location location,
+    public AbstractRDBMSTarget(RDBMSMetadataStore observer, long id, String name, String description, Location location,
             boolean isFreshlyCreated) {
         super(observer, id, name, description, location);
-        if (id != this.getId()) {
+        if (id != this.getLongId()) {
             // FIXME: Schema IDs can potentially be -1; in that case, an ID will be autogenerated.
             // For now, we simply detect this situation.
             throw new IllegalStateException(String.format("Target should have ID %08x but actually has %08x.", id,
-                    this.getId()));
+                    this.getLongId()));
         }
         this.sqlInterface = observer.getSQLInterface();
 
         // If we just created this Target, it cannot have children.
         // Therefore, we can safely build a new child ID cache.
         if (isFreshlyCreated) {
-            // this.childIdCache = new SoftReference<IntCollection>(new IntOpenHashSet());
-            this.childIdCache = new IntOpenHashSet();
+            // this.childIdCache = new SoftReference<LongCollection>(new LongOpenHashSet());
+            this.childIdCache = new LongOpenHashSet();
         }
     }
 
     /**
      * @return the IDs of the children of this {@link Target} or {@code null}.
      */
-    public IntCollection getChildIdCache() {
+    public LongCollection getChildIdCache() {
         // if (this.childIdCache == null) {
         // return null;
         // }
         //
-        // IntCollection childIdCache = this.childIdCache.get();
+        // LongCollection childIdCache = this.childIdCache.get();
         // if (childIdCache == null) {
         // // Clear the reference if it has lost the cache.
         // clearChildIdCache();
@@ -74,8 +74,8 @@ public abstract class AbstractRDBMSTarget extends AbstractTarget {
     /**
      * Adds the given ID to the child ID cache if the cache is present.
      */
-    protected void addToChildIdCache(int childId) {
-        IntCollection childIdCache = getChildIdCache();
+    protected void addToChildIdCache(long childId) {
+        LongCollection childIdCache = getChildIdCache();
         if (childIdCache != null) {
             childIdCache.add(childId);
         }
@@ -92,6 +92,6 @@ public abstract class AbstractRDBMSTarget extends AbstractTarget {
 
     @Override
     public String toString() {
-        return String.format("Target[%s, %s, %08x]", this.getName(), this.getLocation(), this.getId());
+        return String.format("Target[%s, %s, %08x]", this.getName(), this.getLocation(), this.getLongId());
     }
 }
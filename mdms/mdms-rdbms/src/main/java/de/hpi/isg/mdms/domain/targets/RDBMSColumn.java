@@ -23,7 +23,7 @@ public class RDBMSColumn extends AbstractRDBMSTarget implements Column {
     private final Location location;
 
     public static RDBMSColumn buildAndRegisterAndAdd(final RDBMSMetadataStore observer, final Table table,
-            final int id,
+            final long id,
             final String name, String description, final Location location) {
 
         final RDBMSColumn newColumn = new RDBMSColumn(observer, table, id, name, description, location, true);
@@ -32,14 +32,14 @@ public class RDBMSColumn extends AbstractRDBMSTarget implements Column {
         return newColumn;
     }
 
-    public static RDBMSColumn restore(final RDBMSMetadataStore observer, final Table table, final int id,
+    public static RDBMSColumn restore(final RDBMSMetadataStore observer, final Table table, final long id,
             final String name, String description, final Location location) {
 
         final RDBMSColumn newColumn = new RDBMSColumn(observer, table, id, name, description, location, false);
         return newColumn;
     }
 
-    private RDBMSColumn(final RDBMSMetadataStore observer, final Table table, final int id, final String name,
+    private RDBMSColumn(final RDBMSMetadataStore observer, final Table table, final long id, final String name,
             String description, final Location location, boolean isFreshlyCreated) {
         super(observer, id, name, description, location, isFreshlyCreated);
         this.location = location;
@@ -71,7 +71,7 @@ public class RDBMSColumn extends AbstractRDBMSTarget implements Column {
 
     @Override
     public String toString() {
-        return String.format("Column[%s, %08x, %s]", getNameWithTableName(), getId(),
+        return String.format("Column[%s, %08x, %s]", getNameWithTableName(), getLongId(),
                 getLocation());
 
     }
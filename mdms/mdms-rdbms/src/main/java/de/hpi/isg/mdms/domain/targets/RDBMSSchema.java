@@ -6,7 +6,9 @@ import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
 import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -17,6 +19,7 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
 
@@ -33,7 +36,7 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
     @ExcludeHashCodeEquals
     private Reference<Collection<Table>> childTableCache;
 
-    private RDBMSSchema(RDBMSMetadataStore observer, int id, String name, String description, Location location,
+    private RDBMSSchema(RDBMSMetadataStore observer, long id, String name, String description, Location location,
             boolean isFreshlyCreated) {
         super(observer, id, name, description, location, isFreshlyCreated);
         if (isFreshlyCreated) {
@@ -41,7 +44,7 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
         }
     }
 
-    public static RDBMSSchema buildAndRegisterAndAdd(RDBMSMetadataStore observer, int id, String name,
+    public static RDBMSSchema buildAndRegisterAndAdd(RDBMSMetadataStore observer, long id, String name,
             String description,
             Location location) {
         final RDBMSSchema newSchema = new RDBMSSchema(observer, id, name, description, location, true);
@@ -58,7 +61,7 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
         return buildAndRegisterAndAdd(observer, -1, name, description, location);
     }
 
-    public static RDBMSSchema restore(RDBMSMetadataStore observer, int id, String name,
+    public static RDBMSSchema restore(RDBMSMetadataStore observer, long id, String name,
             String description, Location location) {
 
         final RDBMSSchema newSchema = new RDBMSSchema(observer, id, name, description, location, false);
@@ -71,8 +74,43 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
         Validate.isTrue(metadataStore instanceof RDBMSMetadataStore);
         Collection<Schema> schemas = metadataStore.getSchemas();
         Validate.isTrue(schemas.contains(this));
-        final int tableId = metadataStore.getUnusedTableId(this);
-        final Table table = RDBMSTable.buildAndRegisterAndAdd((RDBMSMetadataStore) metadataStore, this, tableId, name,
+        final RDBMSMetadataStore rdbmsMetadataStore = (RDBMSMetadataStore) metadataStore;
+        final long tableId = rdbmsMetadataStore.reserveUnusedTableId(this);
+        try {
+            return addTable(rdbmsMetadataStore, tableId, name, description, location);
+        } catch (RuntimeException e) {
+            rdbmsMetadataStore.releaseTargetId(tableId);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the given tables with their columns to this freshly created schema. The table IDs are assigned
+     * consecutively, so this schema must not contain any tables yet.
+     *
+     * @param metadataStore
+     *        is the metadata store in which the new tables shall be stored
+     * @param tableSpecs
+     *        describe the tables to add
+     */
+    public void importTables(final RDBMSMetadataStore metadataStore, final List<SchemaSpec.TableSpec> tableSpecs) {
+        Validate.isTrue(this.numTables == 0);
+        IdUtils idUtils = metadataStore.getIdUtils();
+        Validate.isTrue(tableSpecs.size() <= idUtils.getMaxTableNumber() - idUtils.getMinTableNumber() + 1,
+                "Too many tables for schema %s.", getName());
+        final int schemaNumber = idUtils.getLocalSchemaId(getLongId());
+        int tableNumber = idUtils.getMinTableNumber();
+        for (final SchemaSpec.TableSpec tableSpec : tableSpecs) {
+            final long tableId = idUtils.createGlobalLongId(schemaNumber, tableNumber++);
+            final RDBMSTable table = addTable(metadataStore, tableId, tableSpec.getName(),
+                    tableSpec.getDescription(), tableSpec.getLocation());
+            table.importColumns(metadataStore, tableSpec.getColumns());
+        }
+    }
+
+    private RDBMSTable addTable(final RDBMSMetadataStore metadataStore, final long tableId, final String name,
+            final String description, final Location location) {
+        final RDBMSTable table = RDBMSTable.buildAndRegisterAndAdd(metadataStore, this, tableId, name,
                 description,
                 location);
         addToChildIdCache(tableId);
@@ -102,7 +140,7 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
     }
 
     @Override
-    public Table getTableById(int tableId) {
+    public Table getTableById(long tableId) {
         return this.getSqlInterface().getTableById(tableId);
     }
 
@@ -135,10 +173,10 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
     }
 
     @Override
-    public Column findColumn(final int columnId) {
+    public Column findColumn(final long columnId) {
         for (final Table table : getTables()) {
             for (final Column column : table.getColumns()) {
-                if (column.getId() == columnId) {
+                if (column.getLongId() == columnId) {
                     return column;
                 }
             }
@@ -155,6 +193,6 @@ public class RDBMSSchema extends AbstractRDBMSTarget implements Schema {
 
     @Override
     public String toString() {
-        return String.format("Schema[%s, %s, %08x]", this.getName(), this.getDescription(), this.getId());
+        return String.format("Schema[%s, %s, %08x]", this.getName(), this.getDescription(), this.getLongId());
     }
 }
@@ -7,6 +7,7 @@ import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
 import de.hpi.isg.mdms.model.location.DefaultLocation;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
@@ -19,6 +20,7 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * The default implementation of the {@link Table}.
@@ -45,7 +47,7 @@ public class RDBMSTable extends AbstractRDBMSTarget implements Table {
     private Collection<Column> stickyChildColumnCache;
 
     public static RDBMSTable buildAndRegisterAndAdd(final RDBMSMetadataStore observer, final Schema schema,
-            final int id,
+            final long id,
             final String name, String description, final Location location) {
 
         final RDBMSTable newTable = new RDBMSTable(observer, schema, id, name, description, location, true);
@@ -55,14 +57,14 @@ public class RDBMSTable extends AbstractRDBMSTarget implements Table {
         return newTable;
     }
 
-    public static RDBMSTable restore(final RDBMSMetadataStore observer, final Schema schema, final int id,
+    public static RDBMSTable restore(final RDBMSMetadataStore observer, final Schema schema, final long id,
             final String name, String description, final Location location) {
 
         final RDBMSTable newTable = new RDBMSTable(observer, schema, id, name, description, location, false);
         return newTable;
     }
 
-    private RDBMSTable(final RDBMSMetadataStore observer, final Schema schema, final int id, final String name,
+    private RDBMSTable(final RDBMSMetadataStore observer, final Schema schema, final long id, final String name,
             String description, final Location location, boolean isFreshlyCreated) {
         super(observer, id, name, description, location, isFreshlyCreated);
         this.schema = schema;
@@ -77,12 +79,42 @@ public class RDBMSTable extends AbstractRDBMSTarget implements Table {
         Validate.isTrue(metadataStore instanceof RDBMSMetadataStore);
         Validate.isTrue(metadataStore.getSchemas().contains(getSchema()));
         IdUtils idUtils = metadataStore.getIdUtils();
-        final int localSchemaId = idUtils.getLocalSchemaId(getId());
-        final int localTableId = idUtils.getLocalTableId(getId());
-        final int columnId = idUtils.createGlobalId(localSchemaId, localTableId, idUtils.getMinColumnNumber() + index);
+        final int localSchemaId = idUtils.getLocalSchemaId(getLongId());
+        final int localTableId = idUtils.getLocalTableId(getLongId());
+        return addColumn((RDBMSMetadataStore) metadataStore, localSchemaId, localTableId, name, description, index);
+    }
+
+    /**
+     * Adds the given columns to this freshly created table, indexing them in the given order. Unlike
+     * {@link #addColumn(MetadataStore, String, String, int)}, this method does not check that this table belongs to
+     * the metadata store.
+     *
+     * @param metadataStore
+     *        is the metadata store in which the new columns shall be stored
+     * @param columnSpecs
+     *        describe the columns to add
+     */
+    public void importColumns(final RDBMSMetadataStore metadataStore, final List<SchemaSpec.ColumnSpec> columnSpecs) {
+        IdUtils idUtils = metadataStore.getIdUtils();
+        Validate.isTrue(columnSpecs.size() <= idUtils.getMaxColumnNumber() - idUtils.getMinColumnNumber() + 1,
+                "Too many columns for table %s.", getName());
+        final int localSchemaId = idUtils.getLocalSchemaId(getLongId());
+        final int localTableId = idUtils.getLocalTableId(getLongId());
+        int index = 0;
+        for (final SchemaSpec.ColumnSpec columnSpec : columnSpecs) {
+            addColumn(metadataStore, localSchemaId, localTableId, columnSpec.getName(), columnSpec.getDescription(),
+                    index++);
+        }
+    }
+
+    private Column addColumn(final RDBMSMetadataStore metadataStore, final int localSchemaId,
+            final int localTableId, final String name, final String description, final int index) {
+        IdUtils idUtils = metadataStore.getIdUtils();
+        final long columnId = idUtils.createGlobalLongId(localSchemaId, localTableId,
+                idUtils.getMinColumnNumber() + index);
         final Location location = new DefaultLocation();
         location.getProperties().put(Location.INDEX, index + "");
-        final Column column = RDBMSColumn.buildAndRegisterAndAdd((RDBMSMetadataStore) metadataStore, this, columnId,
+        final Column column = RDBMSColumn.buildAndRegisterAndAdd(metadataStore, this, columnId,
                 name, description,
                 location);
         addToChildIdCache(columnId);
@@ -122,7 +154,7 @@ public class RDBMSTable extends AbstractRDBMSTarget implements Table {
 
     @Override
     public String toString() {
-        return String.format("Table[%s, %08x]", getName(), getId());
+        return String.format("Table[%s, %08x]", getName(), getLongId());
     }
 
     @Override
@@ -136,7 +168,7 @@ public class RDBMSTable extends AbstractRDBMSTarget implements Table {
     }
 
     @Override
-    public Column getColumnById(int columnId) {
+    public Column getColumnById(long columnId) {
         return this.getSqlInterface().getColumnById(columnId);
     }
 
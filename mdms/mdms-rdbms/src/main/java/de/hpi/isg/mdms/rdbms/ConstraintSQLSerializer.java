@@ -1,5 +1,6 @@
 package de.hpi.isg.mdms.rdbms;
 
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
@@ -50,6 +51,31 @@ public interface ConstraintSQLSerializer<T extends Constraint> {
      */
     Collection<T> deserializeConstraintsOfConstraintCollection(ConstraintCollection constraintCollection);
 
+    /**
+     * Like {@link #deserializeConstraintsOfConstraintCollection(ConstraintCollection)}, but deserializes the
+     * {@link Constraint}s only while they are iterated, so that they need not be held in memory all at once. The
+     * returned {@link Cursor} must be closed unless it is iterated to its end.
+     *
+     * @param constraintCollection
+     *        , or null if all {@link Constraint}s shall be retrieved
+     * @return a {@link Cursor} over the {@link Constraint}s
+     */
+    Cursor<T> streamConstraintsOfConstraintCollection(ConstraintCollection constraintCollection);
+
+    /**
+     * Retrieves and deserializes all {@link Constraint}s of this type that reference the given target. The target
+     * columns should be indexed for this lookup and the {@link ConstraintCollection} should be filtered within the
+     * database, too.
+     *
+     * @param targetId
+     *        is the ID of the referenced target
+     * @param constraintCollection
+     *        is the {@link ConstraintCollection} of the requested {@link Constraint}s or {@code null} if they may
+     *        belong to any {@link ConstraintCollection}
+     * @return the referencing {@link Constraint}s
+     */
+    Collection<T> deserializeConstraintsReferencing(long targetId, ConstraintCollection constraintCollection);
+
     /**
      * Removes all {@link Constraint}s of the provided {@link ConstraintCollection}.
      * 
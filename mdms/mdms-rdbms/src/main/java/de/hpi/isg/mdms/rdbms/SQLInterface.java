@@ -14,6 +14,7 @@ import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
 import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.model.targets.Target;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 
 import java.sql.SQLException;
 import java.util.Collection;
@@ -62,7 +63,15 @@ public interface SQLInterface {
      * @return whether the schema element exists
      * @throws SQLException
      */
-    public boolean isTargetIdInUse(int id) throws SQLException;
+    public boolean isTargetIdInUse(long id) throws SQLException;
+
+    /**
+     * Loads the IDs of all schemas, tables, and columns from the underlying database with a single query.
+     *
+     * @return the target IDs
+     * @throws SQLException
+     */
+    public LongCollection getAllTargetIds() throws SQLException;
 
     /**
      * Returns all {@link de.hpi.isg.mdms.model.constraints.ConstraintCollection}s stored in the {@link de.hpi.isg.mdms.model.MetadataStore}.
@@ -154,6 +163,18 @@ public interface SQLInterface {
     public Collection<Constraint> getAllConstraintsForConstraintCollection(
             RDBMSConstraintCollection rdbmsConstraintCollection);
 
+    /**
+     * Returns the {@link de.hpi.isg.mdms.model.constraints.Constraint}s of the given type that reference the given
+     * target. Only constraint types whose {@link ConstraintSQLSerializer} is registered are considered.
+     *
+     * @param targetId             is the ID of the referenced target
+     * @param type                 is the type of the requested constraints
+     * @param constraintCollection restricts the result to the constraints of this collection or is {@code null}
+     * @return the referencing constraints
+     */
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type,
+                                                                          ConstraintCollection constraintCollection);
+
     /**
      * Returns a {@link java.util.Collection} of {@link Target}s that are in the scope of a {@link ConstraintCollection}.
      *
@@ -168,7 +189,7 @@ public interface SQLInterface {
      * @param columnId is the ID of the column to load
      * @return the loaded column
      */
-    public Column getColumnById(int columnId);
+    public Column getColumnById(long columnId);
 
     /**
      * Load a table with the given ID.
@@ -176,7 +197,7 @@ public interface SQLInterface {
      * @param tableId is the ID of the table to load
      * @return the loaded table
      */
-    public Table getTableById(int tableId);
+    public Table getTableById(long tableId);
 
     /**
      * Load a schema with the given ID.
@@ -184,7 +205,7 @@ public interface SQLInterface {
      * @param schemaId is the ID of the schema to load
      * @return the loaded schema
      */
-    public Schema getSchemaById(int schemaId);
+    public Schema getSchemaById(long schemaId);
 
     /**
      * Returns a {@link ConstraintCollection} for a given id, <code>null</code> if no such exists.
@@ -212,7 +233,7 @@ public interface SQLInterface {
      * @param id is the ID of the schema element for that the location should be loaded
      * @return the loaded location
      */
-    Location getLocationFor(int id);
+    Location getLocationFor(long id);
 
     /**
      * This function drops all base tables of the {@link de.hpi.isg.mdms.model.MetadataStore}. Also all {@link ConstraintSQLSerializer} are
@@ -0,0 +1,216 @@
+/***********************************************************************************************************************
+ * Copyright (C) 2014 by Sebastian Kruse
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ **********************************************************************************************************************/
+package de.hpi.isg.mdms.rdbms.util;
+
+import de.hpi.isg.mdms.model.util.IdUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+import java.util.BitSet;
+
+/**
+ * Keeps track of the target IDs that are in use within a metadata store, so that unused IDs can be found without
+ * querying the database. The used local numbers are kept as bitmaps: one for the schema numbers, one per schema for
+ * its table numbers, and one per table for its column numbers.
+ *
+ * @author Sebastian Kruse
+ */
+public class IdAllocator {
+
+    private final IdUtils idUtils;
+
+    private final BitSet usedSchemaNumbers = new BitSet();
+
+    /**
+     * Maps schema numbers to the table numbers used within the respective schema.
+     */
+    private final Int2ObjectMap<BitSet> usedTableNumbers = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Maps table IDs to the column numbers used within the respective table.
+     */
+    private final Long2ObjectMap<BitSet> usedColumnNumbers = new Long2ObjectOpenHashMap<>();
+
+    public IdAllocator(IdUtils idUtils) {
+        this.idUtils = idUtils;
+    }
+
+    /**
+     * Registers all the given IDs as used.
+     *
+     * @param ids
+     *        are the target IDs to register, e.g., as loaded from the database
+     */
+    public synchronized void registerAll(LongIterator ids) {
+        while (ids.hasNext()) {
+            register(ids.nextLong());
+        }
+    }
+
+    /**
+     * Marks the given target ID as used.
+     *
+     * @param id
+     *        is the ID of a schema, table, or column
+     */
+    public synchronized void register(long id) {
+        int schemaNumber = this.idUtils.getLocalSchemaId(id);
+        switch (this.idUtils.getIdType(id)) {
+        case SCHEMA_ID:
+            this.usedSchemaNumbers.set(schemaNumber);
+            break;
+        case TABLE_ID:
+            getOrCreate(this.usedTableNumbers, schemaNumber).set(this.idUtils.getLocalTableId(id));
+            break;
+        case COLUMN_ID:
+            long tableId = this.idUtils.getTableId(id);
+            BitSet columnNumbers = this.usedColumnNumbers.get(tableId);
+            if (columnNumbers == null) {
+                columnNumbers = new BitSet();
+                this.usedColumnNumbers.put(tableId, columnNumbers);
+            }
+            columnNumbers.set(this.idUtils.getLocalColumnId(id));
+            break;
+        }
+    }
+
+    /**
+     * Marks the given target ID as unused. Releasing a schema or table ID also releases the IDs of its children.
+     *
+     * @param id
+     *        is the ID of a schema, table, or column
+     */
+    public synchronized void release(long id) {
+        int schemaNumber = this.idUtils.getLocalSchemaId(id);
+        switch (this.idUtils.getIdType(id)) {
+        case SCHEMA_ID:
+            this.usedSchemaNumbers.clear(schemaNumber);
+            BitSet tableNumbers = this.usedTableNumbers.remove(schemaNumber);
+            if (tableNumbers != null) {
+                for (int tableNumber = tableNumbers.nextSetBit(0); tableNumber >= 0; tableNumber = tableNumbers
+                        .nextSetBit(tableNumber + 1)) {
+                    this.usedColumnNumbers.remove(this.idUtils.createGlobalLongId(schemaNumber, tableNumber));
+                }
+            }
+            break;
+        case TABLE_ID:
+            BitSet schemaTableNumbers = this.usedTableNumbers.get(schemaNumber);
+            if (schemaTableNumbers != null) {
+                schemaTableNumbers.clear(this.idUtils.getLocalTableId(id));
+            }
+            this.usedColumnNumbers.remove(id);
+            break;
+        case COLUMN_ID:
+            BitSet columnNumbers = this.usedColumnNumbers.get(this.idUtils.getTableId(id));
+            if (columnNumbers != null) {
+                columnNumbers.clear(this.idUtils.getLocalColumnId(id));
+            }
+            break;
+        }
+    }
+
+    /**
+     * @return whether the given target ID is registered as used
+     */
+    public synchronized boolean isInUse(long id) {
+        int schemaNumber = this.idUtils.getLocalSchemaId(id);
+        switch (this.idUtils.getIdType(id)) {
+        case SCHEMA_ID:
+            return this.usedSchemaNumbers.get(schemaNumber);
+        case TABLE_ID:
+            BitSet tableNumbers = this.usedTableNumbers.get(schemaNumber);
+            return tableNumbers != null && tableNumbers.get(this.idUtils.getLocalTableId(id));
+        default:
+            BitSet columnNumbers = this.usedColumnNumbers.get(this.idUtils.getTableId(id));
+            return columnNumbers != null && columnNumbers.get(this.idUtils.getLocalColumnId(id));
+        }
+    }
+
+    /**
+     * Finds the smallest unused schema number. The number is not registered by this method.
+     *
+     * @return the schema ID for this schema number
+     * @throws IllegalStateException
+     *         if all schema numbers are in use
+     */
+    public synchronized long findUnusedSchemaId() {
+        int schemaNumber = this.usedSchemaNumbers.nextClearBit(this.idUtils.getMinSchemaNumber());
+        if (schemaNumber > this.idUtils.getMaxSchemaNumber()) {
+            throw new IllegalStateException("No free schema ID left.");
+        }
+        return this.idUtils.createGlobalLongId(schemaNumber);
+    }
+
+    /**
+     * Finds the smallest unused table number within the given schema. The number is not registered by this method.
+     *
+     * @param schemaId
+     *        is the ID of the schema that shall host the table
+     * @return the table ID for this table number
+     * @throws IllegalStateException
+     *         if all table numbers of the schema are in use
+     */
+    public synchronized long findUnusedTableId(long schemaId) {
+        int schemaNumber = this.idUtils.getLocalSchemaId(schemaId);
+        BitSet tableNumbers = this.usedTableNumbers.get(schemaNumber);
+        int tableNumber = tableNumbers == null ? this.idUtils.getMinTableNumber() : tableNumbers
+                .nextClearBit(this.idUtils.getMinTableNumber());
+        if (tableNumber > this.idUtils.getMaxTableNumber()) {
+            throw new IllegalStateException(String.format("No free table ID left within schema %x.", schemaId));
+        }
+        return this.idUtils.createGlobalLongId(schemaNumber, tableNumber);
+    }
+
+    /**
+     * Finds the smallest unused schema number and registers it atomically, so that concurrent callers obtain distinct
+     * IDs. The ID should be {@link #release(long) released} if the schema cannot be created.
+     *
+     * @return the reserved schema ID
+     * @throws IllegalStateException
+     *         if all schema numbers are in use
+     */
+    public synchronized long reserveUnusedSchemaId() {
+        long schemaId = findUnusedSchemaId();
+        register(schemaId);
+        return schemaId;
+    }
+
+    /**
+     * Finds the smallest unused table number within the given schema and registers it atomically, so that concurrent
+     * callers obtain distinct IDs. The ID should be {@link #release(long) released} if the table cannot be created.
+     *
+     * @param schemaId
+     *        is the ID of the schema that shall host the table
+     * @return the reserved table ID
+     * @throws IllegalStateException
+     *         if all table numbers of the schema are in use
+     */
+    public synchronized long reserveUnusedTableId(long schemaId) {
+        long tableId = findUnusedTableId(schemaId);
+        register(tableId);
+        return tableId;
+    }
+
+    private static BitSet getOrCreate(Int2ObjectMap<BitSet> bitSets, int key) {
+        BitSet bitSet = bitSets.get(key);
+        if (bitSet == null) {
+            bitSet = new BitSet();
+            bitSets.put(key, bitSet);
+        }
+        return bitSet;
+    }
+
+}
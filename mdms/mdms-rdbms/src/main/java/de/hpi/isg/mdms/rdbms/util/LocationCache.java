@@ -57,25 +57,27 @@ public class LocationCache {
      */
     public boolean cacheLocationType(Class<? extends Location> locationType) {
         int locationId = computeId(locationType);
-        if (!classHashCode2ClassMapping.containsKey(locationId)) {
+        synchronized (classHashCode2ClassMapping) {
+            if (classHashCode2ClassMapping.containsKey(locationId)) {
+                return false;
+            }
             classHashCode2ClassMapping.put(locationId, locationType);
-            
-            // Try to register the properties etc.
-            try {
-                Location location = locationType.newInstance();
-                for (String propertyKey : location.getAllPropertyKeys()) {
-                    cachePropertyKey(propertyKey);
-                }
-                for (String propertyKey : location.getPropertyKeysForValueCanonicalization()) {
-                    registerPropertyForValueCanoicalization(propertyKey);
-                }
-            } catch (InstantiationException | IllegalAccessException e) {
-                LOGGER.error("Could not register properties etc.", e);
+        }
+
+        // Try to register the properties etc.
+        try {
+            Location location = locationType.newInstance();
+            for (String propertyKey : location.getAllPropertyKeys()) {
+                cachePropertyKey(propertyKey);
+            }
+            for (String propertyKey : location.getPropertyKeysForValueCanonicalization()) {
+                registerPropertyForValueCanoicalization(propertyKey);
             }
-            
-            return true;
+        } catch (InstantiationException | IllegalAccessException e) {
+            LOGGER.error("Could not register properties etc.", e);
         }
-        return false;
+
+        return true;
     }
     
     /**
@@ -133,7 +135,10 @@ public class LocationCache {
     }
 
     private Class<? extends Location> lookupClassFor(Integer classNameHashCode) {
-        Class<? extends Location> clazz = classHashCode2ClassMapping.get(classNameHashCode);
+        Class<? extends Location> clazz;
+        synchronized (classHashCode2ClassMapping) {
+            clazz = classHashCode2ClassMapping.get(classNameHashCode);
+        }
         if (clazz == null) {
             LOGGER.warn(
                     "The given class hash code {} is not known for any registered location Type, did you register your location type in {}",
@@ -2,22 +2,28 @@ package de.hpi.isg.mdms.model;
 
 import de.hpi.isg.mdms.exceptions.MetadataStoreNotFoundException;
 import de.hpi.isg.mdms.model.targets.DefaultSchema;
+import de.hpi.isg.mdms.model.targets.IndexedTargetSet;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.targets.AbstractTarget;
 import de.hpi.isg.mdms.model.constraints.DefaultConstraintCollection;
+import de.hpi.isg.mdms.simple.io.ConstraintCodec;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreJournal;
+import de.hpi.isg.mdms.util.ConcurrentInt2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -25,7 +31,9 @@ import org.slf4j.LoggerFactory;
 
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.location.DefaultLocation;
 import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.location.LocationListener;
 import de.hpi.isg.mdms.model.common.AbstractHashCodeAndEquals;
 import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
 import de.hpi.isg.mdms.model.util.IdUtils;
@@ -43,6 +51,16 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultMetadataStore.class);
 
+    /**
+     * The journal is compacted into a new snapshot once it outgrows the snapshot but not before it has this size.
+     */
+    private static final long MIN_COMPACTION_JOURNAL_SIZE = 1 << 20;
+
+    /**
+     * The number of independently locked segments of {@link #allTargets}.
+     */
+    private static final int NUM_TARGET_SEGMENTS = 16;
+
     /**
      * Creates a new DefaultMetadataStore and saves it to disk.
      * @param file stores the metadata store
@@ -83,14 +101,35 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
      * @throws MetadataStoreNotFoundException if no metadata store could be loaded from the given file
      */
     public static DefaultMetadataStore load(final File file) throws MetadataStoreNotFoundException {
+        return load(file, new DefaultMetadataStoreFormat());
+    }
+
+    /**
+     * Loads a DefaultMetadataStore from the given file. Files in the {@link DefaultMetadataStoreFormat} are read with
+     * the given format, all other files are deserialized with Java serialization. Afterwards, the changes from the
+     * {@link DefaultMetadataStoreJournal journal} of the file are replayed.
+     * @param file is the file that contains the metadata store
+     * @param format knows the codecs of the constraints in the file and is used to save the loaded metadata store
+     * @return the loaded metadata store
+     * @throws MetadataStoreNotFoundException if no metadata store could be loaded from the given file
+     */
+    public static DefaultMetadataStore load(final File file, final DefaultMetadataStoreFormat format)
+            throws MetadataStoreNotFoundException {
 
-        FileInputStream fin;
         try {
-            fin = new FileInputStream(file);
-            final ObjectInputStream ois = new ObjectInputStream(fin);
-            final DefaultMetadataStore metadataStore = (DefaultMetadataStore) ois.readObject();
-            ois.close();
-            metadataStore.setStoreLocation(file);
+            final DefaultMetadataStore metadataStore;
+            if (format.isFormatOf(file)) {
+                metadataStore = format.read(file);
+            } else {
+                final FileInputStream fin = new FileInputStream(file);
+                final ObjectInputStream ois = new ObjectInputStream(fin);
+                metadataStore = (DefaultMetadataStore) ois.readObject();
+                ois.close();
+                metadataStore.setStoreLocation(file);
+                metadataStore.setFormat(format);
+            }
+            metadataStore.journal = DefaultMetadataStoreJournal.replay(metadataStore,
+                    DefaultMetadataStoreJournal.getJournalFile(file));
             return metadataStore;
         } catch (IOException | ClassNotFoundException e) {
             throw new MetadataStoreNotFoundException(e);
@@ -98,14 +137,33 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
 
     }
 
-    private final Collection<Schema> schemas;
+    /**
+     * Is an {@link IndexedTargetSet}, but declared as {@link Collection} to read metadata stores that have been
+     * serialized with a plain set.
+     */
+    private Collection<Schema> schemas;
 
-    private final Collection<ConstraintCollection> constraintCollections;
+    /**
+     * Is a {@link CopyOnWriteArrayList}, as constraint collections are added rarely but read concurrently.
+     */
+    private Collection<ConstraintCollection> constraintCollections;
 
-    private final Int2ObjectMap<Target> allTargets;
+    /**
+     * Is a {@link ConcurrentInt2ObjectMap} whose segments are determined by the schema numbers of the IDs.
+     */
+    private Int2ObjectMap<Target> allTargets;
 
     transient private File storeLocation;
 
+    @ExcludeHashCodeEquals
+    transient private DefaultMetadataStoreFormat format;
+
+    /**
+     * Collects the changes since the last snapshot. Is {@code null} as long as there is no snapshot.
+     */
+    @ExcludeHashCodeEquals
+    transient private DefaultMetadataStoreJournal journal;
+
     @ExcludeHashCodeEquals
     private final IdUtils idUtils;
 
@@ -119,16 +177,88 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
     public DefaultMetadataStore(File location, int numTableBitsInIds, int numColumnBitsInIds) {
         this.storeLocation = location;
 
-        this.schemas = Collections.synchronizedSet(new HashSet<Schema>());
-        this.constraintCollections = Collections.synchronizedList(new LinkedList<ConstraintCollection>());
-        this.allTargets = new Int2ObjectOpenHashMap<>();
+        this.schemas = new IndexedTargetSet<Schema>();
+        this.constraintCollections = new CopyOnWriteArrayList<ConstraintCollection>();
         this.idUtils = new IdUtils(numTableBitsInIds, numColumnBitsInIds);
+        this.allTargets = createTargetMap();
+    }
+
+    private ConcurrentInt2ObjectMap<Target> createTargetMap() {
+        return new ConcurrentInt2ObjectMap<>(NUM_TARGET_SEGMENTS,
+                this.idUtils.getNumTableBits() + this.idUtils.getNumColumnBits());
+    }
+
+    /**
+     * Converts the collections of metadata stores that have been serialized before they became concurrent.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.schemas = IndexedTargetSet.asIndexed(this.schemas);
+        if (!(this.constraintCollections instanceof CopyOnWriteArrayList)) {
+            this.constraintCollections = new CopyOnWriteArrayList<>(this.constraintCollections);
+        }
+        if (!(this.allTargets instanceof ConcurrentInt2ObjectMap)) {
+            final ConcurrentInt2ObjectMap<Target> allTargets = createTargetMap();
+            allTargets.putAll(this.allTargets);
+            this.allTargets = allTargets;
+        }
+        // Location listeners are not serialized.
+        for (final Target target : this.allTargets.values()) {
+            observeLocation(target);
+        }
+    }
+
+    private IndexedTargetSet<Schema> getIndexedSchemas() {
+        return (IndexedTargetSet<Schema>) this.schemas;
+    }
+
+    /**
+     * Updates the name index of the schemas after a schema has been renamed.
+     */
+    public void handleSchemaRenamed(final Schema schema, final String oldName) {
+        getIndexedSchemas().handleRenamed(schema, oldName);
+        handleTargetModified(schema);
+    }
+
+    /**
+     * Notifies this metadata store that the name, description, or location of one of its targets has changed.
+     */
+    public void handleTargetModified(final Target target) {
+        if (this.journal != null) {
+            this.journal.targetUpdated(target);
+        }
+    }
+
+    /**
+     * Notifies this metadata store that the description of one of its constraint collections has changed.
+     */
+    public void handleConstraintCollectionModified(final ConstraintCollection constraintCollection) {
+        if (this.journal != null) {
+            this.journal.constraintCollectionUpdated(constraintCollection);
+        }
     }
 
     @Override
     public Schema addSchema(final String name, String description, final Location location) {
-        final int id = this.getUnusedSchemaId();
-        final Schema schema = DefaultSchema.buildAndRegister(this, id, name, description, location);
+        final Schema schema;
+        // Concurrent writers must not pick the same schema ID, but the ID is in use once the schema is registered.
+        synchronized (this.schemas) {
+            final int id = (int) this.getUnusedSchemaId();
+            schema = DefaultSchema.buildAndRegister(this, id, name, description, location);
+        }
+        this.schemas.add(schema);
+        return schema;
+    }
+
+    @Override
+    public Schema importSchema(final SchemaSpec schemaSpec) {
+        final DefaultSchema schema;
+        synchronized (this.schemas) {
+            final int id = (int) this.getUnusedSchemaId();
+            schema = (DefaultSchema) DefaultSchema.buildAndRegister(this, id, schemaSpec.getName(),
+                    schemaSpec.getDescription(), schemaSpec.getLocation());
+        }
+        schema.importTables(this, schemaSpec.getTables());
         this.schemas.add(schema);
         return schema;
     }
@@ -144,12 +274,7 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
 
     @Override
     public Schema getSchemaByName(final String schemaName) throws NameAmbigousException {
-        final List<Schema> results = new ArrayList<>();
-        for (final Schema schema : this.schemas) {
-            if (schema.getName().equals(schemaName)) {
-                results.add(schema);
-            }
-        }
+        final List<Schema> results = getIndexedSchemas().getByName(schemaName);
         if (results.size() > 1) {
             throw new NameAmbigousException(schemaName);
         }
@@ -165,7 +290,7 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
     }
 
     @Override
-    public int getUnusedSchemaId() {
+    public long getUnusedSchemaId() {
         final int searchOffset = this.getSchemas().size();
         for (int baseSchemaNumber = this.idUtils.getMinSchemaNumber(); baseSchemaNumber <= this.idUtils
                 .getMaxSchemaNumber(); baseSchemaNumber++) {
@@ -186,7 +311,7 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
     }
 
     @Override
-    public int getUnusedTableId(final Schema schema) {
+    public long getUnusedTableId(final Schema schema) {
         Validate.isTrue(this.schemas.contains(schema));
         final int schemaNumber = this.idUtils.getLocalSchemaId(schema.getId());
         final int searchOffset = schema.getTables().size();
@@ -204,10 +329,12 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
     }
 
     @Override
-    public boolean hasTargetWithId(int id) {
-        synchronized (this.allTargets) {
-            return this.allTargets.containsKey(id);
+    public boolean hasTargetWithId(long id) {
+        // This store only issues 32-bit IDs.
+        if (id != (int) id) {
+            return false;
         }
+        return this.allTargets.containsKey((int) id);
     }
 
     private boolean idIsInUse(final int id) {
@@ -217,12 +344,27 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
 
     @Override
     public void registerTargetObject(final Target message) {
-        synchronized (this.allTargets) {
-            Target oldTarget = this.allTargets.put(message.getId(), message);
-            if (oldTarget != null) {
-                this.allTargets.put(oldTarget.getId(), oldTarget);
-                throw new IdAlreadyInUseException("Id is already in use: " + message.getId());
-            }
+        if (((ConcurrentInt2ObjectMap<Target>) this.allTargets).putIfAbsent(message.getId(), message) != null) {
+            throw new IdAlreadyInUseException("Id is already in use: " + message.getId());
+        }
+        observeLocation(message);
+        if (this.journal != null) {
+            this.journal.targetRegistered(message);
+        }
+    }
+
+    /**
+     * Lets changes to the location properties of the given target be reported via
+     * {@link #handleTargetModified(Target)}, so that they need not be detected by comparing all locations.
+     */
+    private void observeLocation(final Target target) {
+        if (target.getLocation() instanceof DefaultLocation) {
+            ((DefaultLocation) target.getLocation()).setListener(new LocationListener() {
+                @Override
+                public void handleLocationModified(final Location location) {
+                    handleTargetModified(target);
+                }
+            });
         }
     }
 
@@ -232,6 +374,34 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
      */
     public void setStoreLocation(File storeLocation) {
         this.storeLocation = storeLocation;
+        // The journal belongs to the old location, so the next flush has to write a full snapshot.
+        this.journal = null;
+    }
+
+    /**
+     * @return the format in which this metadata store is saved
+     */
+    public DefaultMetadataStoreFormat getFormat() {
+        if (this.format == null) {
+            this.format = new DefaultMetadataStoreFormat();
+        }
+        return this.format;
+    }
+
+    /**
+     * @param format
+     *        the format in which this metadata store shall be saved
+     */
+    public void setFormat(DefaultMetadataStoreFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Registers a codec with the {@link #getFormat() format}, so that constraints of its type can be saved in the
+     * binary format.
+     */
+    public void registerConstraintCodec(ConstraintCodec<?> codec) {
+        getFormat().registerConstraintCodec(codec);
     }
 
     @Override
@@ -250,19 +420,41 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
         throw new UnsupportedOperationException("Implement me!");
     }
 
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        List<T> constraints = new ArrayList<>();
+        for (ConstraintCollection constraintCollection : this.constraintCollections) {
+            constraints.addAll(constraintCollection.getConstraintsReferencing(targetId, type));
+        }
+        return constraints;
+    }
+
     @Override
     public ConstraintCollection createConstraintCollection(String description, Target... scope) {
         // Make sure that the given targets are actually compatible with this kind of metadata store.
         for (Target target : scope) {
             Validate.isAssignableFrom(AbstractTarget.class, target.getClass());
         }
-        ConstraintCollection constraintCollection = new DefaultConstraintCollection(this,
+        DefaultConstraintCollection constraintCollection = new DefaultConstraintCollection(this,
                 getUnusedConstraintCollectonId(),
                 new HashSet<Constraint>(), new HashSet<Target>(Arrays.asList(scope)));
+        constraintCollection.setDescription(description);
         this.constraintCollections.add(constraintCollection);
+        if (this.journal != null) {
+            this.journal.constraintCollectionAdded(constraintCollection);
+        }
         return constraintCollection;
     }
 
+    /**
+     * Notifies this metadata store that a constraint has been added to one of its constraint collections.
+     */
+    public void handleConstraintAdded(ConstraintCollection constraintCollection, Constraint constraint) {
+        if (this.journal != null) {
+            this.journal.constraintAdded(constraintCollection, constraint);
+        }
+    }
+
     @Override
     public IdUtils getIdUtils() {
         return this.idUtils;
@@ -272,36 +464,71 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
     public void save(String path) throws IOException {
         File file = new File(path);
         this.storeLocation = file;
+        compact();
+    }
+
+    /**
+     * Writes a full snapshot of this metadata store to its store location and starts a new, empty journal. The
+     * snapshot replaces the old one atomically.
+     */
+    public void compact() throws IOException {
+        Validate.notNull(this.storeLocation,
+                "Cannot compact metadata store because it has no default saving location.");
         saveToDefaultLocation();
+        this.journal = DefaultMetadataStoreJournal.create(this,
+                DefaultMetadataStoreJournal.getJournalFile(this.storeLocation));
     }
 
     private void saveToDefaultLocation() throws FileNotFoundException, IOException {
-        this.storeLocation.getParentFile().mkdirs();
-        final FileOutputStream fout = new FileOutputStream(this.storeLocation);
-        final ObjectOutputStream oos = new ObjectOutputStream(fout);
-        oos.writeObject(this);
-        oos.close();
+        final File directory = this.storeLocation.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        final File tempFile = new File(directory, this.storeLocation.getName() + ".tmp");
+        if (getFormat().canWrite(this)) {
+            getFormat().write(this, tempFile);
+        } else {
+            LOGGER.warn("Not all constraint types have a registered codec. Falling back to Java serialization.");
+            final FileOutputStream fout = new FileOutputStream(tempFile);
+            final ObjectOutputStream oos = new ObjectOutputStream(fout);
+            oos.writeObject(this);
+            oos.close();
+        }
+        Files.move(tempFile.toPath(), this.storeLocation.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
     }
 
+    /**
+     * Appends the changes since the last flush to the journal. Writes a full snapshot instead if there is no snapshot
+     * yet, if some change cannot be encoded, or if the journal has grown larger than the snapshot (and
+     * {@link #MIN_COMPACTION_JOURNAL_SIZE}).
+     */
     @Override
     public void flush() throws Exception {
         if (this.storeLocation == null) {
             LOGGER.warn("Cannot flush metadata store because it has no default saving location.");
+        } else if (this.journal != null && this.journal.canAppend()) {
+            this.journal.append();
+            long journalSize = this.journal.getFile().length();
+            if (journalSize > MIN_COMPACTION_JOURNAL_SIZE && journalSize > this.storeLocation.length()) {
+                compact();
+            }
         } else {
-            saveToDefaultLocation();
+            compact();
         }
     }
 
     @Override
     public Collection<Schema> getSchemasByName(String schemaName) {
-        // TODO Implement method.
-        throw new UnsupportedOperationException("Not supported yet.");
+        return getIndexedSchemas().getByName(schemaName);
     }
 
     @Override
-    public Schema getSchemaById(int schemaId) {
-        // TODO Implement method.
-        throw new UnsupportedOperationException("Not supported yet.");
+    public Schema getSchemaById(long schemaId) {
+        // This store only issues 32-bit IDs.
+        if (schemaId != (int) schemaId) {
+            return null;
+        }
+        final Target target = this.allTargets.get((int) schemaId);
+        return target instanceof Schema && this.schemas.contains(target) ? (Schema) target : null;
     }
 
     @Override
@@ -313,9 +540,9 @@ public class DefaultMetadataStore extends AbstractHashCodeAndEquals implements M
 
     @Override
     public void removeConstraintCollection(ConstraintCollection constraintCollection) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        //
+        if (this.constraintCollections.remove(constraintCollection) && this.journal != null) {
+            this.journal.constraintCollectionRemoved(constraintCollection);
+        }
     }
 
 	@Override
@@ -1,10 +1,16 @@
 package de.hpi.isg.mdms.model.constraints;
 
 import de.hpi.isg.mdms.model.DefaultMetadataStore;
-import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import de.hpi.isg.mdms.model.targets.Target;
@@ -30,6 +36,12 @@ public class DefaultConstraintCollection extends AbstractIdentifiable implements
     @ExcludeHashCodeEquals
     private final DefaultMetadataStore metadataStore;
 
+    /**
+     * Maps target IDs to the constraints that reference them. It is rebuilt lazily after deserialization.
+     */
+    @ExcludeHashCodeEquals
+    private transient Long2ObjectMap<List<Constraint>> referencingConstraints;
+
     public DefaultConstraintCollection(DefaultMetadataStore metadataStore, int id, Set<Constraint> constraints,
             Set<Target> scope) {
         super(id);
@@ -55,14 +67,60 @@ public class DefaultConstraintCollection extends AbstractIdentifiable implements
 
     @Override
     public void add(Constraint constraint) {
-        for (IntIterator i = constraint.getTargetReference().getAllTargetIds().iterator(); i.hasNext();) {
-            int targetId = i.nextInt();
+        for (LongIterator i = constraint.getTargetReference().getAllTargetIds().iterator(); i.hasNext();) {
+            long targetId = i.nextLong();
             if (!this.metadataStore.hasTargetWithId(targetId)) {
                 throw new NotAllTargetsInStoreException(targetId);
             }
         }
 
-        this.constraints.add(constraint);
+        synchronized (this) {
+            if (!this.constraints.add(constraint)) {
+                return;
+            }
+            if (this.referencingConstraints != null) {
+                indexConstraint(constraint);
+            }
+        }
+        this.metadataStore.handleConstraintAdded(this, constraint);
+    }
+
+    @Override
+    public synchronized <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        if (this.referencingConstraints == null) {
+            this.referencingConstraints = new Long2ObjectOpenHashMap<>();
+            for (Constraint constraint : this.constraints) {
+                indexConstraint(constraint);
+            }
+        }
+        List<Constraint> constraints = this.referencingConstraints.get(targetId);
+        if (constraints == null) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>(constraints.size());
+        for (Constraint constraint : constraints) {
+            if (type.isInstance(constraint)) {
+                result.add(type.cast(constraint));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the given constraint to {@link #referencingConstraints} under each of its target IDs.
+     */
+    private void indexConstraint(Constraint constraint) {
+        // A target can appear several times within a constraint, e.g., on both sides of an IND.
+        LongOpenHashSet targetIds = new LongOpenHashSet(constraint.getTargetReference().getAllTargetIds());
+        for (LongIterator i = targetIds.iterator(); i.hasNext();) {
+            long targetId = i.nextLong();
+            List<Constraint> constraints = this.referencingConstraints.get(targetId);
+            if (constraints == null) {
+                constraints = new LinkedList<>();
+                this.referencingConstraints.put(targetId, constraints);
+            }
+            constraints.add(constraint);
+        }
     }
 
     @Override
@@ -77,6 +135,7 @@ public class DefaultConstraintCollection extends AbstractIdentifiable implements
     @Override
     public void setDescription(String description) {
         this.description = description;
+        this.metadataStore.handleConstraintCollectionModified(this);
     }
 
 }
@@ -1,6 +1,7 @@
 package de.hpi.isg.mdms.model.targets;
 
 import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.model.common.Observer;
 import de.hpi.isg.mdms.model.common.Printable;
 
@@ -64,4 +65,24 @@ public class DefaultColumn extends AbstractTarget implements Column {
         return String.format("Column[%s, %08x]", getNameWithTableName(), getId());
 
     }
+
+    @Override
+    public void setName(final String name) {
+        final String oldName = getName();
+        super.setName(name);
+        if (this.table instanceof DefaultTable) {
+            ((DefaultTable) this.table).handleColumnRenamed(this, oldName);
+        }
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleTargetModified(this);
+        }
+    }
+
+    @Override
+    public void setDescription(final String description) {
+        super.setDescription(description);
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleTargetModified(this);
+        }
+    }
 }
@@ -1,17 +1,19 @@
 package de.hpi.isg.mdms.model.targets;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 import org.apache.commons.lang3.Validate;
 
 import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.model.MetadataStore;
 import de.hpi.isg.mdms.model.common.Observer;
 import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
+import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
 
 /**
@@ -36,33 +38,88 @@ public class DefaultSchema extends AbstractTarget implements Schema {
 
     private static final long serialVersionUID = 8383281581697630605L;
 
+    /**
+     * Is an {@link IndexedTargetSet}, but declared as {@link Collection} to read schemas that have been serialized
+     * with a plain set.
+     */
     @ExcludeHashCodeEquals
-    private final Collection<Table> tables;
+    private Collection<Table> tables;
 
     private DefaultSchema(final Observer observer, final int id, final String name, final String description,
             final Location location) {
         super(observer, id, name, description, location);
-        this.tables = Collections.synchronizedSet(new HashSet<Table>());
+        this.tables = new IndexedTargetSet<Table>();
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.tables = IndexedTargetSet.asIndexed(this.tables);
+    }
+
+    private IndexedTargetSet<Table> getIndexedTables() {
+        return (IndexedTargetSet<Table>) this.tables;
+    }
+
+    /**
+     * Updates the name index of the tables after a table has been renamed.
+     */
+    void handleTableRenamed(final Table table, final String oldName) {
+        getIndexedTables().handleRenamed(table, oldName);
     }
 
     @Override
     public Table addTable(final MetadataStore metadataStore, final String name, final String description,
             final Location location) {
         Validate.isTrue(metadataStore.getSchemas().contains(this));
-        final int tableId = metadataStore.getUnusedTableId(this);
-        final Table table = DefaultTable.buildAndRegister(metadataStore, this, tableId, name, description, location);
+        final Table table;
+        // Concurrent writers of this schema must not pick the same table ID, but writers of other schemas may proceed.
+        synchronized (this.tables) {
+            final int tableId = (int) metadataStore.getUnusedTableId(this);
+            table = DefaultTable.buildAndRegister(metadataStore, this, tableId, name, description, location);
+        }
         this.tables.add(table);
         return table;
     }
 
+    /**
+     * Adds the given tables with their columns to this freshly created schema. The table IDs are assigned
+     * consecutively, so this schema must not contain any tables yet.
+     *
+     * @param metadataStore
+     *        is the metadata store in which the new tables shall be stored
+     * @param tableSpecs
+     *        describe the tables to add
+     */
+    public void importTables(final MetadataStore metadataStore, final List<SchemaSpec.TableSpec> tableSpecs) {
+        Validate.isTrue(this.tables.isEmpty());
+        IdUtils idUtils = metadataStore.getIdUtils();
+        Validate.isTrue(tableSpecs.size() <= idUtils.getMaxTableNumber() - idUtils.getMinTableNumber() + 1,
+                "Too many tables for schema %s.", getName());
+        final int schemaNumber = idUtils.getLocalSchemaId(getId());
+        int tableNumber = idUtils.getMinTableNumber();
+        for (final SchemaSpec.TableSpec tableSpec : tableSpecs) {
+            final int tableId = idUtils.createGlobalId(schemaNumber, tableNumber++);
+            final DefaultTable table = (DefaultTable) DefaultTable.buildAndRegister(metadataStore, this, tableId,
+                    tableSpec.getName(), tableSpec.getDescription(), tableSpec.getLocation());
+            table.importColumns(metadataStore, tableSpec.getColumns());
+            this.tables.add(table);
+        }
+    }
+
+    /**
+     * Adds a table that has been restored from a file and thus already carries its ID.
+     *
+     * @param table
+     *        belongs to this schema and is registered with the metadata store
+     */
+    public void addLoadedTable(final Table table) {
+        Validate.isTrue(table.getSchema() == this);
+        this.tables.add(table);
+    }
+
     @Override
     public Table getTableByName(final String name) throws NameAmbigousException {
-        final List<Table> results = new ArrayList<>();
-        for (final Table table : this.tables) {
-            if (table.getName().equals(name)) {
-                results.add(table);
-            }
-        }
+        final List<Table> results = getIndexedTables().getByName(name);
         if (results.size() > 1) {
             throw new NameAmbigousException(name);
         }
@@ -77,11 +134,25 @@ public class DefaultSchema extends AbstractTarget implements Schema {
         return Collections.unmodifiableCollection(this.tables);
     }
 
+    /**
+     * Derives the owning table from the column ID if this schema belongs to a {@link MetadataStore}, so that only
+     * that table needs to be looked at.
+     */
     @Override
-    public Column findColumn(final int columnId) {
+    public Column findColumn(final long columnId) {
+        final IdUtils idUtils = getObserver() instanceof MetadataStore ? ((MetadataStore) getObserver()).getIdUtils()
+                : null;
+        if (idUtils != null) {
+            if (idUtils.getLocalTableId(columnId) > idUtils.getMaxTableNumber()
+                    || idUtils.getSchemaId(columnId) != getLongId()) {
+                return null;
+            }
+            final Table table = getIndexedTables().getById(idUtils.getTableId(columnId));
+            return table == null ? null : table.getColumnById(columnId);
+        }
         for (final Table table : getTables()) {
             for (final Column column : table.getColumns()) {
-                if (column.getId() == columnId) {
+                if (column.getLongId() == columnId) {
                     return column;
                 }
             }
@@ -95,16 +166,29 @@ public class DefaultSchema extends AbstractTarget implements Schema {
     }
 
     @Override
-    public Collection<Table> getTablesByName(String name) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        // return null;
+    public Collection<Table> getTablesByName(final String name) {
+        return getIndexedTables().getByName(name);
+    }
+
+    @Override
+    public Table getTableById(final long id) {
+        return getIndexedTables().getById(id);
+    }
+
+    @Override
+    public void setName(final String name) {
+        final String oldName = getName();
+        super.setName(name);
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleSchemaRenamed(this, oldName);
+        }
     }
 
     @Override
-    public Table getTableById(int id) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        // return null;
+    public void setDescription(final String description) {
+        super.setDescription(description);
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleTargetModified(this);
+        }
     }
 }
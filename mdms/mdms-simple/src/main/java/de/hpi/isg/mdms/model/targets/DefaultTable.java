@@ -1,12 +1,15 @@
 package de.hpi.isg.mdms.model.targets;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 
 import org.apache.commons.lang3.Validate;
 
 import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.model.MetadataStore;
 import de.hpi.isg.mdms.model.common.Observer;
 import de.hpi.isg.mdms.model.common.ExcludeHashCodeEquals;
@@ -38,8 +41,12 @@ public class DefaultTable extends AbstractTarget implements Table {
 
     private static final long serialVersionUID = 1695408629652071459L;
 
+    /**
+     * Is an {@link IndexedTargetSet}, but declared as {@link Collection} to read tables that have been serialized
+     * with a plain set.
+     */
     @ExcludeHashCodeEquals
-    private final Collection<Column> columns;
+    private Collection<Column> columns;
 
     @ExcludeHashCodeEquals
     private final Schema schema;
@@ -48,10 +55,26 @@ public class DefaultTable extends AbstractTarget implements Table {
             final String description,
             final Location location) {
         super(observer, id, name, description, location);
-        this.columns = Collections.synchronizedSet(new HashSet<Column>());
+        this.columns = new IndexedTargetSet<Column>();
         this.schema = schema;
     }
 
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.columns = IndexedTargetSet.asIndexed(this.columns);
+    }
+
+    private IndexedTargetSet<Column> getIndexedColumns() {
+        return (IndexedTargetSet<Column>) this.columns;
+    }
+
+    /**
+     * Updates the name index of the columns after a column has been renamed.
+     */
+    void handleColumnRenamed(final Column column, final String oldName) {
+        getIndexedColumns().handleRenamed(column, oldName);
+    }
+
     @Override
     public Column addColumn(final MetadataStore metadataStore, final String name, final String description,
             final int index) {
@@ -59,6 +82,35 @@ public class DefaultTable extends AbstractTarget implements Table {
         IdUtils idUtils = metadataStore.getIdUtils();
         final int localSchemaId = idUtils.getLocalSchemaId(getId());
         final int localTableId = idUtils.getLocalTableId(getId());
+        return addColumn(metadataStore, localSchemaId, localTableId, name, description, index);
+    }
+
+    /**
+     * Adds the given columns to this freshly created table, indexing them in the given order. Unlike
+     * {@link #addColumn(MetadataStore, String, String, int)}, this method does not check that this table belongs to
+     * the metadata store.
+     *
+     * @param metadataStore
+     *        is the metadata store in which the new columns shall be stored
+     * @param columnSpecs
+     *        describe the columns to add
+     */
+    public void importColumns(final MetadataStore metadataStore, final List<SchemaSpec.ColumnSpec> columnSpecs) {
+        IdUtils idUtils = metadataStore.getIdUtils();
+        Validate.isTrue(columnSpecs.size() <= idUtils.getMaxColumnNumber() - idUtils.getMinColumnNumber() + 1,
+                "Too many columns for table %s.", getName());
+        final int localSchemaId = idUtils.getLocalSchemaId(getId());
+        final int localTableId = idUtils.getLocalTableId(getId());
+        int index = 0;
+        for (final SchemaSpec.ColumnSpec columnSpec : columnSpecs) {
+            addColumn(metadataStore, localSchemaId, localTableId, columnSpec.getName(), columnSpec.getDescription(),
+                    index++);
+        }
+    }
+
+    private Column addColumn(final MetadataStore metadataStore, final int localSchemaId, final int localTableId,
+            final String name, final String description, final int index) {
+        IdUtils idUtils = metadataStore.getIdUtils();
         final int columnId = idUtils.createGlobalId(localSchemaId, localTableId, idUtils.getMinColumnNumber() + index);
         final Location location = new DefaultLocation();
         location.getProperties().put(Location.INDEX, index + "");
@@ -68,6 +120,17 @@ public class DefaultTable extends AbstractTarget implements Table {
         return column;
     }
 
+    /**
+     * Adds a column that has been restored from a file and thus already carries its ID.
+     *
+     * @param column
+     *        belongs to this table and is registered with the metadata store
+     */
+    public void addLoadedColumn(final Column column) {
+        Validate.isTrue(column.getTable() == this);
+        this.columns.add(column);
+    }
+
     @Override
     public Collection<Column> getColumns() {
         return Collections.unmodifiableCollection(this.columns);
@@ -87,23 +150,44 @@ public class DefaultTable extends AbstractTarget implements Table {
     }
 
     @Override
-    public Column getColumnByName(String name) throws NameAmbigousException {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        // return null;
+    public Column getColumnByName(final String name) throws NameAmbigousException {
+        final List<Column> results = getIndexedColumns().getByName(name);
+        if (results.size() > 1) {
+            throw new NameAmbigousException(name);
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+        return results.get(0);
+    }
+
+    @Override
+    public Collection<Column> getColumnsByName(final String name) {
+        return getIndexedColumns().getByName(name);
+    }
+
+    @Override
+    public Column getColumnById(final long id) {
+        return getIndexedColumns().getById(id);
     }
 
     @Override
-    public Collection<Column> getColumnsByName(String name) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        // return null;
+    public void setName(final String name) {
+        final String oldName = getName();
+        super.setName(name);
+        if (this.schema instanceof DefaultSchema) {
+            ((DefaultSchema) this.schema).handleTableRenamed(this, oldName);
+        }
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleTargetModified(this);
+        }
     }
 
     @Override
-    public Column getColumnById(int id) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Not supported yet.");
-        // return null;
+    public void setDescription(final String description) {
+        super.setDescription(description);
+        if (getObserver() instanceof DefaultMetadataStore) {
+            ((DefaultMetadataStore) getObserver()).handleTargetModified(this);
+        }
     }
 }
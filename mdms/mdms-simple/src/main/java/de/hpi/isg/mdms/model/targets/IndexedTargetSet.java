@@ -0,0 +1,212 @@
+package de.hpi.isg.mdms.model.targets;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.hpi.isg.mdms.exceptions.IdAlreadyInUseException;
+import de.hpi.isg.mdms.util.ConcurrentInt2ObjectMap;
+
+/**
+ * Set of {@link Target}s that indexes its elements by ID and by name, so that both lookups take constant time. Reads,
+ * including iteration, do not take any locks and iterators are weakly consistent, i.e., they need not reflect
+ * modifications after their creation. Modifications are synchronized on the set. Targets that are renamed after they
+ * have been added have to be reported via {@link #handleRenamed(Target, String)}.
+ *
+ * @author Sebastian Kruse
+ */
+public class IndexedTargetSet<T extends Target> extends AbstractSet<T> implements Serializable {
+
+    private static final long serialVersionUID = 3178519587546380512L;
+
+    /**
+     * Stands in for {@code null} names in the name index, which does not accept {@code null} keys.
+     */
+    private static final Object NULL_NAME = new Object();
+
+    /**
+     * @return the given targets if they are already an {@link IndexedTargetSet} or else an {@link IndexedTargetSet}
+     *         with the same targets
+     */
+    public static <T extends Target> IndexedTargetSet<T> asIndexed(final Collection<T> targets) {
+        if (targets instanceof IndexedTargetSet) {
+            return (IndexedTargetSet<T>) targets;
+        }
+        final IndexedTargetSet<T> indexedTargets = new IndexedTargetSet<>();
+        synchronized (targets) {
+            indexedTargets.addAll(targets);
+        }
+        return indexedTargets;
+    }
+
+    /**
+     * The sets are striped by their owners, e.g., per schema, so that a single segment suffices.
+     */
+    private transient ConcurrentInt2ObjectMap<T> targetsById;
+
+    /**
+     * Maps names to immutable lists of targets that are replaced on modification.
+     */
+    private transient ConcurrentMap<Object, List<T>> targetsByName;
+
+    public IndexedTargetSet() {
+        initIndexes();
+    }
+
+    private void initIndexes() {
+        this.targetsById = new ConcurrentInt2ObjectMap<>(1, -1);
+        this.targetsByName = new ConcurrentHashMap<>();
+    }
+
+    private static Object toKey(final String name) {
+        return name == null ? NULL_NAME : name;
+    }
+
+    @Override
+    public synchronized boolean add(final T target) {
+        final T oldTarget = this.targetsById.get(target.getId());
+        if (oldTarget != null) {
+            if (oldTarget.equals(target)) {
+                return false;
+            }
+            throw new IdAlreadyInUseException("Id is already in use: " + target.getId());
+        }
+        this.targetsById.put(target.getId(), target);
+        addToNameIndex(target, target.getName());
+        return true;
+    }
+
+    private void addToNameIndex(final T target, final String name) {
+        final List<T> targets = this.targetsByName.get(toKey(name));
+        if (targets == null) {
+            this.targetsByName.put(toKey(name), Collections.singletonList(target));
+        } else {
+            final List<T> newTargets = new ArrayList<>(targets.size() + 1);
+            newTargets.addAll(targets);
+            newTargets.add(target);
+            this.targetsByName.put(toKey(name), Collections.unmodifiableList(newTargets));
+        }
+    }
+
+    private void removeFromNameIndex(final T target, final String name) {
+        final List<T> targets = this.targetsByName.get(toKey(name));
+        if (targets != null && targets.contains(target)) {
+            if (targets.size() == 1) {
+                this.targetsByName.remove(toKey(name));
+            } else {
+                final List<T> newTargets = new ArrayList<>(targets);
+                newTargets.remove(target);
+                this.targetsByName.put(toKey(name), Collections.unmodifiableList(newTargets));
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean remove(final Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        final T target = this.targetsById.remove(((Target) o).getId());
+        removeFromNameIndex(target, target.getName());
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof Target)) {
+            return false;
+        }
+        final T target = this.targetsById.get(((Target) o).getId());
+        return target != null && target.equals(o);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> iterator = this.targetsById.values().iterator();
+        return new Iterator<T>() {
+
+            private T current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return this.current = iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                IndexedTargetSet.this.remove(this.current);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return this.targetsById.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.targetsById.clear();
+        this.targetsByName.clear();
+    }
+
+    /**
+     * @return the target with the given ID or {@code null} if there is none
+     */
+    public T getById(final long id) {
+        return id == (int) id ? this.targetsById.get((int) id) : null;
+    }
+
+    /**
+     * @return the targets with the given name
+     */
+    public List<T> getByName(final String name) {
+        final List<T> targets = this.targetsByName.get(toKey(name));
+        return targets == null ? Collections.<T> emptyList() : targets;
+    }
+
+    /**
+     * Moves a target that has been renamed to its new name within the name index.
+     *
+     * @param oldName
+     *        is the name of the target before the renaming
+     */
+    public synchronized void handleRenamed(final T target, final String oldName) {
+        if (contains(target)) {
+            removeFromNameIndex(target, oldName);
+            addToNameIndex(target, target.getName());
+        }
+    }
+
+    private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (final T target : this) {
+            out.writeObject(target);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initIndexes();
+        for (int numTargets = in.readInt(); numTargets > 0; numTargets--) {
+            add((T) in.readObject());
+        }
+    }
+
+}
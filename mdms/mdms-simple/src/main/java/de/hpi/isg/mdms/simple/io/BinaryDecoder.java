@@ -0,0 +1,179 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the values written by a {@link BinaryEncoder} from a {@link ReadableByteChannel} or directly from a
+ * {@link ByteBuffer}, e.g., a memory-mapped file section.
+ *
+ * @author Sebastian Kruse
+ */
+public class BinaryDecoder implements Closeable {
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final List<String> stringDictionary = new ArrayList<>();
+
+    public BinaryDecoder(ReadableByteChannel channel) {
+        this(channel, BinaryEncoder.DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryDecoder(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * Creates a decoder for the remaining bytes of the given buffer. The buffer's position is advanced while reading.
+     */
+    public BinaryDecoder(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @see BinaryEncoder#writeFixedInt(int)
+     */
+    public int readFixedInt() throws IOException {
+        ensureAvailable(4);
+        return this.buffer.getInt();
+    }
+
+    /**
+     * @see BinaryEncoder#writeFixedLong(long)
+     */
+    public long readFixedLong() throws IOException {
+        ensureAvailable(8);
+        return this.buffer.getLong();
+    }
+
+    /**
+     * @see BinaryEncoder#writeVarInt(int)
+     */
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length int.");
+    }
+
+    /**
+     * @see BinaryEncoder#writeVarLong(long)
+     */
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length long.");
+    }
+
+    /**
+     * @see BinaryEncoder#writeSignedVarInt(int)
+     */
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @see BinaryEncoder#writeVarInts(int[])
+     */
+    public int[] readVarInts() throws IOException {
+        int[] values = new int[readVarInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarInt();
+        }
+        return values;
+    }
+
+    /**
+     * @see BinaryEncoder#writeString(String)
+     */
+    public String readString() throws IOException {
+        int code = readVarInt();
+        if (code == BinaryEncoder.NULL_STRING_CODE) {
+            return null;
+        }
+        if (code != BinaryEncoder.NEW_STRING_CODE) {
+            int index = code - BinaryEncoder.NEW_STRING_CODE - 1;
+            if (index < 0 || index >= this.stringDictionary.size()) {
+                throw new IOException(String.format("Unknown string reference %d.", index));
+            }
+            return this.stringDictionary.get(index);
+        }
+        byte[] bytes = new byte[readVarInt()];
+        for (int offset = 0; offset < bytes.length;) {
+            if (!this.buffer.hasRemaining()) {
+                fill();
+            }
+            int length = Math.min(bytes.length - offset, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        String value = new String(bytes, BinaryEncoder.UTF8);
+        this.stringDictionary.add(value);
+        return value;
+    }
+
+    private byte readByte() throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            fill();
+        }
+        return this.buffer.get();
+    }
+
+    private void ensureAvailable(int numBytes) throws IOException {
+        while (this.buffer.remaining() < numBytes) {
+            fill();
+        }
+    }
+
+    /**
+     * Reads further bytes from the channel into the buffer, keeping the unread ones.
+     *
+     * @throws EOFException
+     *         if the channel is exhausted or there is no channel
+     */
+    private void fill() throws IOException {
+        if (this.channel == null) {
+            throw new EOFException();
+        }
+        this.buffer.compact();
+        int numReadBytes;
+        try {
+            numReadBytes = this.channel.read(this.buffer);
+        } finally {
+            this.buffer.flip();
+        }
+        if (numReadBytes == -1) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Writes primitive values in a compact binary form to a {@link WritableByteChannel}. Integers are written as
+ * variable-length quantities, i.e., 7 bits per byte with the high bit signaling that further bytes follow. Strings are
+ * collected in a dictionary while writing, so that repeated strings are encoded as a reference to their first
+ * occurrence. The counterpart is the {@link BinaryDecoder}.
+ *
+ * @author Sebastian Kruse
+ */
+public class BinaryEncoder implements Closeable {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * String codes: {@code null}, a new string with its length and bytes following, or {@value #NEW_STRING_CODE} +
+     * 1 + index of a known string.
+     */
+    static final int NULL_STRING_CODE = 0, NEW_STRING_CODE = 1;
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final Object2IntMap<String> stringDictionary = new Object2IntOpenHashMap<>();
+
+    /**
+     * The number of bytes that have been written to the channel so far.
+     */
+    private long numFlushedBytes = 0;
+
+    public BinaryEncoder(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryEncoder(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.stringDictionary.defaultReturnValue(-1);
+    }
+
+    /**
+     * Writes the given value as fixed-width 4 bytes, e.g., for magic numbers.
+     */
+    public void writeFixedInt(int value) throws IOException {
+        ensureCapacity(4);
+        this.buffer.putInt(value);
+    }
+
+    /**
+     * Writes the given value as fixed-width 8 bytes, e.g., for offsets that are patched or looked up later.
+     */
+    public void writeFixedLong(long value) throws IOException {
+        ensureCapacity(8);
+        this.buffer.putLong(value);
+    }
+
+    /**
+     * Writes the given value as unsigned variable-length quantity. Negative values take 5 bytes.
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            this.buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.buffer.put((byte) value);
+    }
+
+    /**
+     * Writes the given value as unsigned variable-length quantity. Negative values take 10 bytes.
+     */
+    public void writeVarLong(long value) throws IOException {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            this.buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.buffer.put((byte) value);
+    }
+
+    /**
+     * Writes the given value zig-zag encoded, so that values close to zero take few bytes regardless of their sign.
+     */
+    public void writeSignedVarInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes the length of the given array followed by its values as variable-length quantities.
+     */
+    public void writeVarInts(int[] values) throws IOException {
+        writeVarInt(values.length);
+        for (int value : values) {
+            writeVarInt(value);
+        }
+    }
+
+    /**
+     * Writes the given string (that may be {@code null}) or, if it has been written before, a reference to it.
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(NULL_STRING_CODE);
+            return;
+        }
+        int index = this.stringDictionary.getInt(value);
+        if (index != -1) {
+            writeVarInt(NEW_STRING_CODE + 1 + index);
+            return;
+        }
+        this.stringDictionary.put(value, this.stringDictionary.size());
+        writeVarInt(NEW_STRING_CODE);
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarInt(bytes.length);
+        for (int offset = 0; offset < bytes.length;) {
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(bytes.length - offset, this.buffer.remaining());
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Forgets all strings written so far, so that the following values can be decoded independently of the preceding
+     * ones.
+     */
+    public void resetStringDictionary() {
+        this.stringDictionary.clear();
+    }
+
+    /**
+     * @return the number of bytes written via this encoder, including the buffered ones
+     */
+    public long getPosition() {
+        return this.numFlushedBytes + this.buffer.position();
+    }
+
+    private void ensureCapacity(int numBytes) throws IOException {
+        if (this.buffer.remaining() < numBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the channel.
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        this.numFlushedBytes += this.buffer.remaining();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Flushes this encoder and closes the underlying channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+}
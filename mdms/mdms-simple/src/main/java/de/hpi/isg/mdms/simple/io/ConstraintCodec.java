@@ -0,0 +1,34 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.IOException;
+
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+
+/**
+ * Encodes and decodes {@link Constraint}s of a certain type for the {@link DefaultMetadataStoreFormat}. Codecs have to
+ * be registered with the format to make their constraint type persistable.
+ *
+ * @author Sebastian Kruse
+ */
+public interface ConstraintCodec<T extends Constraint> {
+
+    /**
+     * @return the class of the constraints that this codec handles
+     */
+    Class<T> getConstraintClass();
+
+    /**
+     * Writes the given constraint to the encoder. The constraint collection need not be written.
+     */
+    void encode(T constraint, BinaryEncoder encoder) throws IOException;
+
+    /**
+     * Reads a constraint as written by {@link #encode(Constraint, BinaryEncoder)}.
+     *
+     * @param constraintCollection
+     *        is the collection to which the constraint belongs; the constraint must not be added to it, though
+     */
+    T decode(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException;
+
+}
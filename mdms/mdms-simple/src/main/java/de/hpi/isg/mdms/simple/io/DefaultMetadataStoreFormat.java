@@ -0,0 +1,480 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
+import de.hpi.isg.mdms.model.common.Observer;
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.constraints.DefaultConstraintCollection;
+import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.model.targets.DefaultColumn;
+import de.hpi.isg.mdms.model.targets.DefaultSchema;
+import de.hpi.isg.mdms.model.targets.DefaultTable;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.model.targets.Target;
+import de.hpi.isg.mdms.model.util.IdUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Versioned binary file format for the {@link DefaultMetadataStore}. A file consists of
+ * <ol>
+ * <li>the {@link #MAGIC_NUMBER} and the {@link #FORMAT_VERSION},</li>
+ * <li>the configuration of the {@link IdUtils},</li>
+ * <li>one section per schema with its tables and columns, whereby the IDs of tables and columns are stored relative
+ * to the ID of their parent,</li>
+ * <li>one section per constraint collection with its scope and constraints,</li>
+ * <li>an index with the ID, name, offset and length of each section, and</li>
+ * <li>the offset of the index as fixed-width long.</li>
+ * </ol>
+ * All values are written with a {@link BinaryEncoder}. Each section and the index have their own string dictionary, so
+ * that they can be decoded independently, e.g., by the {@link MappedMetadataStore}. Constraints are encoded by the
+ * {@link ConstraintCodec} that is registered for their class. Files of version 1 have no sections and index and can
+ * only be read as a whole.
+ *
+ * @author Sebastian Kruse
+ */
+public class DefaultMetadataStoreFormat {
+
+    /**
+     * "MDMS" in ASCII. Files written with Java serialization start with {@code 0xACED} instead.
+     */
+    public static final int MAGIC_NUMBER = 0x4D444D53;
+
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * The first version with sections and index.
+     */
+    private static final int SECTIONED_FORMAT_VERSION = 2;
+
+    /**
+     * A part of a file that can be decoded independently.
+     */
+    static class Section {
+
+        final int id;
+
+        final String name;
+
+        final long offset;
+
+        final int length;
+
+        Section(int id, String name, long offset, int length) {
+            this.id = id;
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * The header and index of a file.
+     */
+    static class Catalog {
+
+        final int version, numTableBits, numColumnBits;
+
+        final List<Section> schemaSections = new ArrayList<>(), constraintCollectionSections = new ArrayList<>();
+
+        Catalog(int version, int numTableBits, int numColumnBits) {
+            this.version = version;
+            this.numTableBits = numTableBits;
+            this.numColumnBits = numColumnBits;
+        }
+
+    }
+
+    private final Map<Class<?>, ConstraintCodec<?>> codecsByClass = new HashMap<>();
+
+    private final Map<String, ConstraintCodec<?>> codecsByClassName = new HashMap<>();
+
+    /**
+     * Registers a codec for the constraints of its {@link ConstraintCodec#getConstraintClass()}.
+     *
+     * @return this format
+     */
+    public DefaultMetadataStoreFormat registerConstraintCodec(ConstraintCodec<?> codec) {
+        Validate.notNull(codec);
+        this.codecsByClass.put(codec.getConstraintClass(), codec);
+        this.codecsByClassName.put(codec.getConstraintClass().getName(), codec);
+        return this;
+    }
+
+    /**
+     * @return whether the given file starts with the {@link #MAGIC_NUMBER}
+     */
+    public boolean isFormatOf(File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC_NUMBER;
+        }
+    }
+
+    /**
+     * @return whether a codec is registered for each constraint in the given metadata store
+     */
+    public boolean canWrite(DefaultMetadataStore metadataStore) {
+        synchronized (metadataStore.getConstraintCollections()) {
+            for (ConstraintCollection constraintCollection : metadataStore.getConstraintCollections()) {
+                for (Constraint constraint : constraintCollection.getConstraints()) {
+                    if (!canWrite(constraint)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given metadata store to the given file, replacing its contents.
+     *
+     * @throws IllegalStateException
+     *         if no codec is registered for some constraint, see {@link #canWrite(DefaultMetadataStore)}
+     */
+    public void write(DefaultMetadataStore metadataStore, File file) throws IOException {
+        try (BinaryEncoder encoder = new BinaryEncoder(new FileOutputStream(file).getChannel())) {
+            encoder.writeFixedInt(MAGIC_NUMBER);
+            encoder.writeVarInt(FORMAT_VERSION);
+            IdUtils idUtils = metadataStore.getIdUtils();
+            encoder.writeVarInt(idUtils.getNumTableBits());
+            encoder.writeVarInt(idUtils.getNumColumnBits());
+
+            List<Section> schemaSections = new ArrayList<>();
+            synchronized (metadataStore.getSchemas()) {
+                for (Schema schema : metadataStore.getSchemas()) {
+                    long offset = startSection(encoder);
+                    writeSchema(schema, encoder);
+                    schemaSections.add(new Section(schema.getId(), schema.getName(), offset, endSection(encoder,
+                            offset)));
+                }
+            }
+
+            List<Section> constraintCollectionSections = new ArrayList<>();
+            synchronized (metadataStore.getConstraintCollections()) {
+                for (ConstraintCollection constraintCollection : metadataStore.getConstraintCollections()) {
+                    long offset = startSection(encoder);
+                    writeConstraintCollection(constraintCollection, encoder);
+                    constraintCollectionSections.add(new Section(constraintCollection.getId(),
+                            constraintCollection.getDescription(), offset, endSection(encoder, offset)));
+                }
+            }
+
+            long indexOffset = startSection(encoder);
+            writeSections(schemaSections, encoder);
+            writeSections(constraintCollectionSections, encoder);
+            encoder.writeFixedLong(indexOffset);
+        }
+    }
+
+    /**
+     * @return the offset of the new section
+     */
+    private long startSection(BinaryEncoder encoder) {
+        encoder.resetStringDictionary();
+        return encoder.getPosition();
+    }
+
+    /**
+     * @return the length of the section that started at the given offset
+     */
+    private int endSection(BinaryEncoder encoder, long offset) throws IOException {
+        long length = encoder.getPosition() - offset;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Section exceeds 2 GB.");
+        }
+        return (int) length;
+    }
+
+    private void writeSections(List<Section> sections, BinaryEncoder encoder) throws IOException {
+        encoder.writeVarInt(sections.size());
+        for (Section section : sections) {
+            encoder.writeVarInt(section.id);
+            encoder.writeString(section.name);
+            encoder.writeVarLong(section.offset);
+            encoder.writeVarInt(section.length);
+        }
+    }
+
+    private void writeSchema(Schema schema, BinaryEncoder encoder) throws IOException {
+        encoder.writeVarInt(schema.getId());
+        writeTargetProperties(schema, encoder);
+        Collection<Table> tables = new ArrayList<>(schema.getTables());
+        encoder.writeVarInt(tables.size());
+        for (Table table : tables) {
+            encoder.writeSignedVarInt(table.getId() - schema.getId());
+            writeTargetProperties(table, encoder);
+            Collection<Column> columns = new ArrayList<>(table.getColumns());
+            encoder.writeVarInt(columns.size());
+            for (Column column : columns) {
+                encoder.writeSignedVarInt(column.getId() - table.getId());
+                writeTargetProperties(column, encoder);
+            }
+        }
+    }
+
+    void writeTargetProperties(Target target, BinaryEncoder encoder) throws IOException {
+        encoder.writeString(target.getName());
+        encoder.writeString(target.getDescription());
+        writeLocation(target.getLocation(), encoder);
+    }
+
+    void writeLocation(Location location, BinaryEncoder encoder) throws IOException {
+        if (location == null) {
+            encoder.writeString(null);
+            return;
+        }
+        encoder.writeString(location.getClass().getName());
+        Map<String, String> properties = location.getProperties();
+        encoder.writeVarInt(properties.size());
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            encoder.writeString(property.getKey());
+            encoder.writeString(property.getValue());
+        }
+    }
+
+    private void writeConstraintCollection(ConstraintCollection constraintCollection, BinaryEncoder encoder)
+            throws IOException {
+        encoder.writeVarInt(constraintCollection.getId());
+        encoder.writeString(constraintCollection.getDescription());
+        Collection<Target> scope = constraintCollection.getScope();
+        encoder.writeVarInt(scope.size());
+        for (Target target : scope) {
+            encoder.writeVarInt(target.getId());
+        }
+        Collection<Constraint> constraints = constraintCollection.getConstraints();
+        encoder.writeVarInt(constraints.size());
+        for (Constraint constraint : constraints) {
+            writeConstraint(constraint, encoder);
+        }
+    }
+
+    /**
+     * @return whether a codec is registered for the given constraint
+     */
+    boolean canWrite(Constraint constraint) {
+        return this.codecsByClass.containsKey(constraint.getClass());
+    }
+
+    /**
+     * Writes the type of the given constraint followed by its encoding.
+     */
+    void writeConstraint(Constraint constraint, BinaryEncoder encoder) throws IOException {
+        @SuppressWarnings("unchecked")
+        ConstraintCodec<Constraint> codec = (ConstraintCodec<Constraint>) this.codecsByClass.get(constraint
+                .getClass());
+        if (codec == null) {
+            throw new IllegalStateException(String.format("No codec registered for %s.", constraint.getClass()));
+        }
+        encoder.writeString(constraint.getClass().getName());
+        codec.encode(constraint, encoder);
+    }
+
+    /**
+     * Reads a constraint as written by {@link #writeConstraint(Constraint, BinaryEncoder)} without adding it to the
+     * given constraint collection.
+     */
+    Constraint readConstraint(BinaryDecoder decoder, ConstraintCollection constraintCollection) throws IOException {
+        String className = decoder.readString();
+        ConstraintCodec<?> codec = this.codecsByClassName.get(className);
+        if (codec == null) {
+            throw new IOException(String.format("No codec registered for %s.", className));
+        }
+        return codec.decode(decoder, constraintCollection);
+    }
+
+    /**
+     * Reads a metadata store from the given file. The file is set as the store location and this format as the format
+     * of the metadata store.
+     */
+    public DefaultMetadataStore read(File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            Catalog catalog = readCatalog(channel, file);
+            DefaultMetadataStore metadataStore = new DefaultMetadataStore(file, catalog.numTableBits,
+                    catalog.numColumnBits);
+            metadataStore.setFormat(this);
+            Int2ObjectMap<Target> targets = new Int2ObjectOpenHashMap<>();
+
+            if (catalog.version < SECTIONED_FORMAT_VERSION) {
+                // The sections follow the header without index.
+                BinaryDecoder decoder = new BinaryDecoder(channel);
+                skipHeader(decoder);
+                for (int numSchemas = decoder.readVarInt(); numSchemas > 0; numSchemas--) {
+                    metadataStore.getSchemas().add(readSchema(metadataStore, decoder, targets));
+                }
+                for (int numConstraintCollections = decoder.readVarInt(); numConstraintCollections > 0;
+                        numConstraintCollections--) {
+                    readConstraintCollection(metadataStore, decoder, targets);
+                }
+                return metadataStore;
+            }
+
+            for (Section section : catalog.schemaSections) {
+                BinaryDecoder decoder = new BinaryDecoder(readSection(channel, section));
+                metadataStore.getSchemas().add(readSchema(metadataStore, decoder, targets));
+            }
+            for (Section section : catalog.constraintCollectionSections) {
+                readConstraintCollection(metadataStore, new BinaryDecoder(readSection(channel, section)), targets);
+            }
+            return metadataStore;
+        }
+    }
+
+    /**
+     * Reads the header and, if present, the index of a file.
+     */
+    Catalog readCatalog(FileChannel channel, File file) throws IOException {
+        channel.position(0);
+        BinaryDecoder decoder = new BinaryDecoder(channel, 32);
+        if (decoder.readFixedInt() != MAGIC_NUMBER) {
+            throw new IOException(String.format("%s is not a metadata store file.", file));
+        }
+        int version = decoder.readVarInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported format version %d in %s.", version, file));
+        }
+        Catalog catalog = new Catalog(version, decoder.readVarInt(), decoder.readVarInt());
+        channel.position(0);
+        if (version < SECTIONED_FORMAT_VERSION) {
+            return catalog;
+        }
+
+        long size = channel.size();
+        ByteBuffer trailer = readBytes(channel, size - 8, 8);
+        long indexOffset = trailer.getLong();
+        if (indexOffset < 0 || indexOffset > size - 8) {
+            throw new IOException(String.format("Corrupt index offset in %s.", file));
+        }
+        decoder = new BinaryDecoder(readBytes(channel, indexOffset, (int) (size - 8 - indexOffset)));
+        readSections(decoder, catalog.schemaSections);
+        readSections(decoder, catalog.constraintCollectionSections);
+        return catalog;
+    }
+
+    private void skipHeader(BinaryDecoder decoder) throws IOException {
+        decoder.readFixedInt();
+        for (int i = 0; i < 3; i++) {
+            decoder.readVarInt();
+        }
+    }
+
+    private void readSections(BinaryDecoder decoder, List<Section> sections) throws IOException {
+        for (int numSections = decoder.readVarInt(); numSections > 0; numSections--) {
+            sections.add(new Section(decoder.readVarInt(), decoder.readString(), decoder.readVarLong(),
+                    decoder.readVarInt()));
+        }
+    }
+
+    private ByteBuffer readSection(FileChannel channel, Section section) throws IOException {
+        return readBytes(channel, section.offset, section.length);
+    }
+
+    private ByteBuffer readBytes(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a schema with its tables and columns and registers them with the given observer and in the given map.
+     */
+    Schema readSchema(Observer<Target> observer, BinaryDecoder decoder, Int2ObjectMap<Target> targets)
+            throws IOException {
+        int schemaId = decoder.readVarInt();
+        Schema schema = DefaultSchema.buildAndRegister(observer, schemaId, decoder.readString(),
+                decoder.readString(), readLocation(decoder));
+        targets.put(schemaId, schema);
+
+        for (int numTables = decoder.readVarInt(); numTables > 0; numTables--) {
+            int tableId = schemaId + decoder.readSignedVarInt();
+            Table table = DefaultTable.buildAndRegister(observer, schema, tableId, decoder.readString(),
+                    decoder.readString(), readLocation(decoder));
+            ((DefaultSchema) schema).addLoadedTable(table);
+            targets.put(tableId, table);
+
+            for (int numColumns = decoder.readVarInt(); numColumns > 0; numColumns--) {
+                int columnId = tableId + decoder.readSignedVarInt();
+                Column column = DefaultColumn.buildAndRegister(observer, table, columnId, decoder.readString(),
+                        decoder.readString(), readLocation(decoder));
+                ((DefaultTable) table).addLoadedColumn(column);
+                targets.put(columnId, column);
+            }
+        }
+        return schema;
+    }
+
+    Location readLocation(BinaryDecoder decoder) throws IOException {
+        String className = decoder.readString();
+        if (className == null) {
+            return null;
+        }
+        Location location;
+        try {
+            location = (Location) Class.forName(className).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException(String.format("Cannot instantiate location of type %s.", className), e);
+        }
+        for (int numProperties = decoder.readVarInt(); numProperties > 0; numProperties--) {
+            location.set(decoder.readString(), decoder.readString());
+        }
+        return location;
+    }
+
+    private void readConstraintCollection(DefaultMetadataStore metadataStore, BinaryDecoder decoder,
+            Int2ObjectMap<Target> targets) throws IOException {
+        int id = decoder.readVarInt();
+        String description = decoder.readString();
+        Set<Target> scope = new HashSet<>();
+        for (int scopeSize = decoder.readVarInt(); scopeSize > 0; scopeSize--) {
+            int targetId = decoder.readVarInt();
+            Target target = targets.get(targetId);
+            if (target == null) {
+                throw new IOException(String.format("Unknown target %08x in scope of constraint collection.",
+                        targetId));
+            }
+            scope.add(target);
+        }
+        DefaultConstraintCollection constraintCollection = new DefaultConstraintCollection(metadataStore, id,
+                new HashSet<Constraint>(), scope);
+        constraintCollection.setDescription(description);
+
+        int numConstraints = decoder.readVarInt();
+        List<Constraint> constraints = new ArrayList<>(numConstraints);
+        for (; numConstraints > 0; numConstraints--) {
+            constraints.add(readConstraint(decoder, constraintCollection));
+        }
+        for (Constraint constraint : constraints) {
+            constraintCollection.add(constraint);
+        }
+        metadataStore.getConstraintCollections().add(constraintCollection);
+    }
+
+}
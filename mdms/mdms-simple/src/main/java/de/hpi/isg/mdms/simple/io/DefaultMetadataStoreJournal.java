@@ -0,0 +1,611 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.hpi.isg.mdms.model.DefaultMetadataStore;
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.constraints.DefaultConstraintCollection;
+import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.targets.AbstractTarget;
+import de.hpi.isg.mdms.model.targets.Column;
+import de.hpi.isg.mdms.model.targets.DefaultColumn;
+import de.hpi.isg.mdms.model.targets.DefaultSchema;
+import de.hpi.isg.mdms.model.targets.DefaultTable;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.model.targets.Target;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+/**
+ * Append-only log of the changes that have been applied to a {@link DefaultMetadataStore} since its last full
+ * snapshot. The metadata store reports its changes to the journal, which {@link #append() appends} them to its file
+ * as one batch per flush. Each batch is prefixed with its length and CRC32 checksum, so that a batch that has been
+ * written only partially, e.g., due to a crash, is detected and discarded on {@link #replay(DefaultMetadataStore,
+ * File) replay}.
+ * <p>
+ * Replaying is idempotent: changes that are already contained in the snapshot are skipped. Hence, a journal that
+ * survived the compaction into a new snapshot does no harm.
+ * </p>
+ * <p>
+ * Renamings, new descriptions, and changes of location properties are reported by the metadata store as they happen,
+ * so that appending only touches the changed targets. Location properties are only observed when they are changed via
+ * {@link de.hpi.isg.mdms.model.location.DefaultLocation#set(String, String)} or
+ * {@link de.hpi.isg.mdms.model.location.DefaultLocation#delete(String)}.
+ * </p>
+ *
+ * @author Sebastian Kruse
+ */
+public class DefaultMetadataStoreJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultMetadataStoreJournal.class);
+
+    /**
+     * "MDMJ" in ASCII.
+     */
+    public static final int MAGIC_NUMBER = 0x4D444D4A;
+
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Magic number and format version, length and checksum of a batch, respectively.
+     */
+    private static final int FILE_HEADER_SIZE = 8, BATCH_HEADER_SIZE = 8;
+
+    /**
+     * Record types within a batch.
+     */
+    private static final int END_OF_BATCH = 0, TARGET_REGISTERED = 1, CONSTRAINT_COLLECTION_ADDED = 2,
+            CONSTRAINT_ADDED = 3, CONSTRAINT_COLLECTION_REMOVED = 4, TARGET_UPDATED = 5,
+            CONSTRAINT_COLLECTION_UPDATED = 6;
+
+    /**
+     * Target types within a {@link #TARGET_REGISTERED} record.
+     */
+    private static final int SCHEMA = 0, TABLE = 1, COLUMN = 2;
+
+    /**
+     * @return the journal file that belongs to the snapshot at the given store location
+     */
+    public static File getJournalFile(File storeLocation) {
+        return new File(storeLocation.getPath() + ".journal");
+    }
+
+    /**
+     * @return whether the given journal file contains any changes
+     */
+    public static boolean hasChanges(File file) {
+        return file.length() > FILE_HEADER_SIZE;
+    }
+
+    /**
+     * A change that has not yet been appended to the journal file.
+     */
+    private static class Change {
+
+        private final int type;
+
+        private final Object subject;
+
+        private final ConstraintCollection constraintCollection;
+
+        private Change(int type, Object subject, ConstraintCollection constraintCollection) {
+            this.type = type;
+            this.subject = subject;
+            this.constraintCollection = constraintCollection;
+        }
+
+    }
+
+    private final DefaultMetadataStore metadataStore;
+
+    private final File file;
+
+    private List<Change> pendingChanges = new ArrayList<>();
+
+    /**
+     * IDs of the constraint collections that are contained in the snapshot or journal file.
+     */
+    private final IntSet persistedConstraintCollectionIds = new IntOpenHashSet();
+
+    /**
+     * IDs of the targets for which an update is among the {@link #pendingChanges}.
+     */
+    private final IntSet pendingTargetUpdates = new IntOpenHashSet();
+
+    private DefaultMetadataStoreJournal(DefaultMetadataStore metadataStore, File file) {
+        this.metadataStore = metadataStore;
+        this.file = file;
+        synchronized (metadataStore.getConstraintCollections()) {
+            for (ConstraintCollection constraintCollection : metadataStore.getConstraintCollections()) {
+                this.persistedConstraintCollectionIds.add(constraintCollection.getId());
+            }
+        }
+    }
+
+    /**
+     * Creates a new, empty journal for the given metadata store, replacing any existing journal file. The metadata
+     * store must have been fully saved before.
+     */
+    public static DefaultMetadataStoreJournal create(DefaultMetadataStore metadataStore, File file)
+            throws IOException {
+        DefaultMetadataStoreJournal journal = new DefaultMetadataStoreJournal(metadataStore, file);
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            writeFully(channel, createFileHeader());
+        }
+        return journal;
+    }
+
+    private static ByteBuffer createFileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).flip();
+        return header;
+    }
+
+    /**
+     * Applies the changes from the given journal file to the given metadata store, which has just been loaded from the
+     * corresponding snapshot. An incomplete last batch is cut off the file.
+     *
+     * @return the journal to which further changes of the metadata store can be appended
+     */
+    public static DefaultMetadataStoreJournal replay(DefaultMetadataStore metadataStore, File file)
+            throws IOException {
+        if (!file.exists()) {
+            return new DefaultMetadataStoreJournal(metadataStore, file);
+        }
+
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(Math.max(FILE_HEADER_SIZE, BATCH_HEADER_SIZE));
+            header.limit(FILE_HEADER_SIZE);
+            if (!readFully(channel, header)) {
+                LOGGER.warn("Discarding journal {} with incomplete header.", file);
+                return create(metadataStore, file);
+            }
+            if (header.getInt(0) != MAGIC_NUMBER) {
+                throw new IOException(String.format("%s is not a metadata store journal.", file));
+            }
+            if (header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported journal version %d in %s.", header.getInt(4), file));
+            }
+
+            Replayer replayer = new Replayer(metadataStore);
+            CRC32 crc = new CRC32();
+            int numBatches = 0;
+            while (true) {
+                long batchOffset = channel.position();
+                if (batchOffset == channel.size()) {
+                    break;
+                }
+                header.clear();
+                header.limit(BATCH_HEADER_SIZE);
+                ByteBuffer batch = null;
+                if (readFully(channel, header)) {
+                    int length = header.getInt(0);
+                    if (length >= 0 && length <= channel.size() - channel.position()) {
+                        batch = ByteBuffer.allocate(length);
+                        readFully(channel, batch);
+                        crc.reset();
+                        crc.update(batch.array());
+                        if ((int) crc.getValue() != header.getInt(4)) {
+                            batch = null;
+                        }
+                    }
+                }
+                if (batch == null) {
+                    LOGGER.warn("Discarding incomplete batch at offset {} of journal {}.", batchOffset, file);
+                    channel.truncate(batchOffset);
+                    break;
+                }
+                replayer.replayBatch(batch.array());
+                numBatches++;
+            }
+            LOGGER.debug("Replayed {} batches from journal {}.", numBatches, file);
+        }
+        return new DefaultMetadataStoreJournal(metadataStore, file);
+    }
+
+    /**
+     * Applies the records of batches to a metadata store.
+     */
+    private static class Replayer {
+
+        private final DefaultMetadataStore metadataStore;
+
+        private final DefaultMetadataStoreFormat format;
+
+        private final Int2ObjectMap<Target> targets = new Int2ObjectOpenHashMap<>();
+
+        private final Int2ObjectMap<ConstraintCollection> constraintCollections = new Int2ObjectOpenHashMap<>();
+
+        private Replayer(DefaultMetadataStore metadataStore) {
+            this.metadataStore = metadataStore;
+            this.format = metadataStore.getFormat();
+            for (Schema schema : metadataStore.getSchemas()) {
+                this.targets.put(schema.getId(), schema);
+                for (Table table : schema.getTables()) {
+                    this.targets.put(table.getId(), table);
+                    for (Column column : table.getColumns()) {
+                        this.targets.put(column.getId(), column);
+                    }
+                }
+            }
+            for (ConstraintCollection constraintCollection : metadataStore.getConstraintCollections()) {
+                this.constraintCollections.put(constraintCollection.getId(), constraintCollection);
+            }
+        }
+
+        private void replayBatch(byte[] batch) throws IOException {
+            int bufferSize = Math.max(16, Math.min(batch.length, BinaryEncoder.DEFAULT_BUFFER_SIZE));
+            BinaryDecoder decoder = new BinaryDecoder(Channels.newChannel(new ByteArrayInputStream(batch)), bufferSize);
+            for (int type = decoder.readVarInt(); type != END_OF_BATCH; type = decoder.readVarInt()) {
+                switch (type) {
+                case TARGET_REGISTERED:
+                    replayTarget(decoder);
+                    break;
+                case CONSTRAINT_COLLECTION_ADDED:
+                    replayConstraintCollection(decoder);
+                    break;
+                case CONSTRAINT_ADDED:
+                    replayConstraint(decoder);
+                    break;
+                case CONSTRAINT_COLLECTION_REMOVED:
+                    ConstraintCollection constraintCollection = this.constraintCollections.remove(decoder.readVarInt());
+                    if (constraintCollection != null) {
+                        this.metadataStore.getConstraintCollections().remove(constraintCollection);
+                    }
+                    break;
+                case TARGET_UPDATED:
+                    replayTargetUpdate(decoder);
+                    break;
+                case CONSTRAINT_COLLECTION_UPDATED:
+                    int constraintCollectionId = decoder.readVarInt();
+                    String description = decoder.readString();
+                    constraintCollection = this.constraintCollections.get(constraintCollectionId);
+                    if (constraintCollection == null) {
+                        throw new IOException(String.format("Unknown constraint collection %d.",
+                                constraintCollectionId));
+                    }
+                    constraintCollection.setDescription(description);
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown journal record type %d.", type));
+                }
+            }
+        }
+
+        private void replayTarget(BinaryDecoder decoder) throws IOException {
+            int targetType = decoder.readVarInt();
+            int id = decoder.readVarInt();
+            Target parent = null;
+            if (targetType != SCHEMA) {
+                int parentId = decoder.readVarInt();
+                parent = this.targets.get(parentId);
+                if (parent == null) {
+                    throw new IOException(String.format("Unknown parent %08x of target %08x.", parentId, id));
+                }
+            }
+            String name = decoder.readString();
+            String description = decoder.readString();
+            Location location = this.format.readLocation(decoder);
+            if (this.targets.containsKey(id)) {
+                return;
+            }
+
+            Target target;
+            switch (targetType) {
+            case SCHEMA:
+                target = DefaultSchema.buildAndRegister(this.metadataStore, id, name, description, location);
+                this.metadataStore.getSchemas().add((Schema) target);
+                break;
+            case TABLE:
+                target = DefaultTable.buildAndRegister(this.metadataStore, (Schema) parent, id, name, description,
+                        location);
+                ((DefaultSchema) parent).addLoadedTable((Table) target);
+                break;
+            case COLUMN:
+                target = DefaultColumn.buildAndRegister(this.metadataStore, (Table) parent, id, name, description,
+                        location);
+                ((DefaultTable) parent).addLoadedColumn((Column) target);
+                break;
+            default:
+                throw new IOException(String.format("Unknown target type %d.", targetType));
+            }
+            this.targets.put(id, target);
+        }
+
+        private void replayTargetUpdate(BinaryDecoder decoder) throws IOException {
+            int id = decoder.readVarInt();
+            String name = decoder.readString();
+            String description = decoder.readString();
+            Location location = this.format.readLocation(decoder);
+            Target target = this.targets.get(id);
+            if (target == null) {
+                throw new IOException(String.format("Unknown target %08x.", id));
+            }
+            if (!(name == null ? target.getName() == null : name.equals(target.getName()))) {
+                ((AbstractTarget) target).setName(name);
+            }
+            target.setDescription(description);
+            // The location of a target cannot be replaced, only its properties.
+            Location targetLocation = target.getLocation();
+            if (targetLocation != null && location != null) {
+                for (String propertyKey : new ArrayList<>(targetLocation.getProperties().keySet())) {
+                    targetLocation.delete(propertyKey);
+                }
+                for (Map.Entry<String, String> property : location.getProperties().entrySet()) {
+                    targetLocation.set(property.getKey(), property.getValue());
+                }
+            }
+        }
+
+        private void replayConstraintCollection(BinaryDecoder decoder) throws IOException {
+            int id = decoder.readVarInt();
+            String description = decoder.readString();
+            Set<Target> scope = new HashSet<>();
+            for (int scopeSize = decoder.readVarInt(); scopeSize > 0; scopeSize--) {
+                int targetId = decoder.readVarInt();
+                Target target = this.targets.get(targetId);
+                if (target == null) {
+                    throw new IOException(String.format("Unknown target %08x in scope of constraint collection.",
+                            targetId));
+                }
+                scope.add(target);
+            }
+            if (this.constraintCollections.containsKey(id)) {
+                return;
+            }
+            DefaultConstraintCollection constraintCollection = new DefaultConstraintCollection(this.metadataStore, id,
+                    new HashSet<Constraint>(), scope);
+            constraintCollection.setDescription(description);
+            this.metadataStore.getConstraintCollections().add(constraintCollection);
+            this.constraintCollections.put(id, constraintCollection);
+        }
+
+        private void replayConstraint(BinaryDecoder decoder) throws IOException {
+            int constraintCollectionId = decoder.readVarInt();
+            ConstraintCollection constraintCollection = this.constraintCollections.get(constraintCollectionId);
+            if (constraintCollection == null) {
+                throw new IOException(String.format("Unknown constraint collection %d.", constraintCollectionId));
+            }
+            // Constraint collections are sets, so constraints from the snapshot are not added twice.
+            constraintCollection.add(this.format.readConstraint(decoder, constraintCollection));
+        }
+
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    public synchronized void targetRegistered(Target target) {
+        this.pendingChanges.add(new Change(TARGET_REGISTERED, target, null));
+    }
+
+    public synchronized void constraintCollectionAdded(ConstraintCollection constraintCollection) {
+        this.pendingChanges.add(new Change(CONSTRAINT_COLLECTION_ADDED, constraintCollection, constraintCollection));
+    }
+
+    public synchronized void constraintAdded(ConstraintCollection constraintCollection, Constraint constraint) {
+        this.pendingChanges.add(new Change(CONSTRAINT_ADDED, constraint, constraintCollection));
+    }
+
+    public synchronized void constraintCollectionRemoved(ConstraintCollection constraintCollection) {
+        this.pendingChanges.add(new Change(CONSTRAINT_COLLECTION_REMOVED, constraintCollection,
+                constraintCollection));
+    }
+
+    public synchronized void targetUpdated(Target target) {
+        // An update record contains all current properties of the target, so one pending update suffices.
+        if (this.pendingTargetUpdates.add(target.getId())) {
+            this.pendingChanges.add(new Change(TARGET_UPDATED, target, null));
+        }
+    }
+
+    public synchronized void constraintCollectionUpdated(ConstraintCollection constraintCollection) {
+        this.pendingChanges.add(new Change(CONSTRAINT_COLLECTION_UPDATED, constraintCollection,
+                constraintCollection));
+    }
+
+    /**
+     * @return whether all pending changes can be encoded, i.e., whether there is a codec for each added constraint
+     */
+    public synchronized boolean canAppend() {
+        DefaultMetadataStoreFormat format = this.metadataStore.getFormat();
+        for (Change change : this.pendingChanges) {
+            if (change.type == CONSTRAINT_ADDED && !format.canWrite((Constraint) change.subject)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the pending changes as a new batch to the journal file. Targets that have not been added to their parent
+     * yet remain pending.
+     */
+    public synchronized void append() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Change> remainingChanges = new ArrayList<>();
+        IntSet persistedConstraintCollectionIds = new IntOpenHashSet(this.persistedConstraintCollectionIds);
+        int numWrittenChanges = 0;
+        try (BinaryEncoder encoder = new BinaryEncoder(Channels.newChannel(bytes))) {
+            for (Change change : this.pendingChanges) {
+                if (writeChange(change, encoder, persistedConstraintCollectionIds)) {
+                    numWrittenChanges++;
+                } else {
+                    remainingChanges.add(change);
+                }
+            }
+            encoder.writeVarInt(END_OF_BATCH);
+        }
+
+        if (numWrittenChanges > 0) {
+            byte[] batch = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(batch);
+            ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+            header.putInt(batch.length).putInt((int) crc.getValue()).flip();
+            try (FileChannel channel = new FileOutputStream(this.file, true).getChannel()) {
+                if (channel.size() == 0) {
+                    writeFully(channel, createFileHeader());
+                }
+                writeFully(channel, header);
+                writeFully(channel, ByteBuffer.wrap(batch));
+                channel.force(false);
+            }
+        }
+        this.pendingChanges = remainingChanges;
+        // Target updates are never kept pending.
+        this.pendingTargetUpdates.clear();
+        this.persistedConstraintCollectionIds.clear();
+        this.persistedConstraintCollectionIds.addAll(persistedConstraintCollectionIds);
+    }
+
+    /**
+     * Writes the given change.
+     *
+     * @return whether the change could be written
+     */
+    private boolean writeChange(Change change, BinaryEncoder encoder, IntSet persistedConstraintCollectionIds)
+            throws IOException {
+        Target target;
+        switch (change.type) {
+        case TARGET_REGISTERED:
+            target = (Target) change.subject;
+            if (!isAttached(target)) {
+                return false;
+            }
+            encoder.writeVarInt(TARGET_REGISTERED);
+            if (target instanceof Schema) {
+                encoder.writeVarInt(SCHEMA);
+                encoder.writeVarInt(target.getId());
+            } else if (target instanceof Table) {
+                encoder.writeVarInt(TABLE);
+                encoder.writeVarInt(target.getId());
+                encoder.writeVarInt(((Table) target).getSchema().getId());
+            } else {
+                encoder.writeVarInt(COLUMN);
+                encoder.writeVarInt(target.getId());
+                encoder.writeVarInt(((Column) target).getTable().getId());
+            }
+            this.metadataStore.getFormat().writeTargetProperties(target, encoder);
+            return true;
+
+        case TARGET_UPDATED:
+            target = (Target) change.subject;
+            // A target is registered before it can be updated, so its registration precedes the update in the batch or
+            // has been written earlier. Targets that are not attached (anymore) are written once they are attached.
+            if (isAttached(target)) {
+                encoder.writeVarInt(TARGET_UPDATED);
+                encoder.writeVarInt(target.getId());
+                this.metadataStore.getFormat().writeTargetProperties(target, encoder);
+            }
+            return true;
+
+        case CONSTRAINT_COLLECTION_ADDED:
+            writeConstraintCollection(change.constraintCollection, encoder, persistedConstraintCollectionIds);
+            return true;
+
+        case CONSTRAINT_ADDED:
+            writeConstraintCollection(change.constraintCollection, encoder, persistedConstraintCollectionIds);
+            encoder.writeVarInt(CONSTRAINT_ADDED);
+            encoder.writeVarInt(change.constraintCollection.getId());
+            this.metadataStore.getFormat().writeConstraint((Constraint) change.subject, encoder);
+            return true;
+
+        case CONSTRAINT_COLLECTION_REMOVED:
+            if (persistedConstraintCollectionIds.remove(change.constraintCollection.getId())) {
+                encoder.writeVarInt(CONSTRAINT_COLLECTION_REMOVED);
+                encoder.writeVarInt(change.constraintCollection.getId());
+            }
+            return true;
+
+        case CONSTRAINT_COLLECTION_UPDATED:
+            // Constraint collections that have not been written yet are written with their current description anyway.
+            if (persistedConstraintCollectionIds.contains(change.constraintCollection.getId())) {
+                encoder.writeVarInt(CONSTRAINT_COLLECTION_UPDATED);
+                encoder.writeVarInt(change.constraintCollection.getId());
+                encoder.writeString(change.constraintCollection.getDescription());
+            }
+            return true;
+
+        default:
+            throw new IllegalStateException("Unknown change type " + change.type);
+        }
+    }
+
+    /**
+     * Writes the given constraint collection (without its constraints) unless it has been written already.
+     */
+    private void writeConstraintCollection(ConstraintCollection constraintCollection, BinaryEncoder encoder,
+            IntSet persistedConstraintCollectionIds) throws IOException {
+        if (!persistedConstraintCollectionIds.add(constraintCollection.getId())) {
+            return;
+        }
+        encoder.writeVarInt(CONSTRAINT_COLLECTION_ADDED);
+        encoder.writeVarInt(constraintCollection.getId());
+        encoder.writeString(constraintCollection.getDescription());
+        encoder.writeVarInt(constraintCollection.getScope().size());
+        for (Target target : constraintCollection.getScope()) {
+            encoder.writeVarInt(target.getId());
+        }
+    }
+
+    /**
+     * @return whether the given target is reachable from the schemas of the metadata store
+     */
+    private boolean isAttached(Target target) {
+        if (target instanceof Schema) {
+            return this.metadataStore.getSchemas().contains(target);
+        } else if (target instanceof Table) {
+            Schema schema = ((Table) target).getSchema();
+            return isAttached(schema) && schema.getTables().contains(target);
+        } else if (target instanceof Column) {
+            Table table = ((Column) target).getTable();
+            return isAttached(table) && table.getColumns().contains(target);
+        }
+        return false;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return whether the buffer could be filled completely
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,112 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.targets.Target;
+
+/**
+ * Read-only {@link ConstraintCollection} of a {@link MappedMetadataStore}. The targets in its scope are resolved on
+ * first access.
+ *
+ * @author Sebastian Kruse
+ */
+public class MappedConstraintCollection implements ConstraintCollection {
+
+    private static final long serialVersionUID = 6005183471269618562L;
+
+    private final MappedMetadataStore metadataStore;
+
+    private final int id;
+
+    private final String description;
+
+    private final int[] scopeIds;
+
+    private Collection<Target> scope;
+
+    private final List<Constraint> constraints;
+
+    MappedConstraintCollection(MappedMetadataStore metadataStore, int id, String description, int[] scopeIds,
+            List<Constraint> constraints) {
+        this.metadataStore = metadataStore;
+        this.id = id;
+        this.description = description;
+        this.scopeIds = scopeIds;
+        this.constraints = constraints;
+    }
+
+    @Override
+    public Collection<Constraint> getConstraints() {
+        return Collections.unmodifiableCollection(this.constraints);
+    }
+
+    @Override
+    public synchronized Collection<Target> getScope() {
+        if (this.scope == null) {
+            List<Target> scope = new ArrayList<>(this.scopeIds.length);
+            for (int targetId : this.scopeIds) {
+                Target target = this.metadataStore.getTargetById(targetId);
+                if (target == null) {
+                    throw new IllegalStateException(String.format("Unknown target %08x in scope of %s.", targetId,
+                            this));
+                }
+                scope.add(target);
+            }
+            this.scope = Collections.unmodifiableCollection(scope);
+        }
+        return this.scope;
+    }
+
+    @Override
+    public void add(Constraint constraint) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        List<T> result = new ArrayList<>();
+        for (Constraint constraint : this.constraints) {
+            if (type.isInstance(constraint) && constraint.getTargetReference().getAllTargetIds().contains(targetId)) {
+                result.add(type.cast(constraint));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public MappedMetadataStore getMetadataStore() {
+        return this.metadataStore;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public void setDescription(String description) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public int getId() {
+        return this.id;
+    }
+
+    @Override
+    public long getLongId() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedConstraintCollection [id=" + this.id + ", description=" + this.description + ", "
+                + this.constraints.size() + " constraints]";
+    }
+
+}
@@ -0,0 +1,360 @@
+package de.hpi.isg.mdms.simple.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import de.hpi.isg.mdms.exceptions.NameAmbigousException;
+import de.hpi.isg.mdms.model.MetadataStore;
+import de.hpi.isg.mdms.model.constraints.Constraint;
+import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.location.Location;
+import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
+import de.hpi.isg.mdms.model.targets.Target;
+import de.hpi.isg.mdms.model.util.IdUtils;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat.Catalog;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat.Section;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Read-only {@link MetadataStore} on top of a memory-mapped file in the {@link DefaultMetadataStoreFormat}. Opening
+ * the store reads only the header and the index of the file. A schema with all its tables and columns or a constraint
+ * collection is decoded from its section when it is accessed for the first time. Thus, the costs for opening the
+ * store do not depend on the size of the store, and only the accessed parts occupy the heap.
+ *
+ * @author Sebastian Kruse
+ */
+public class MappedMetadataStore implements MetadataStore {
+
+    private static final long serialVersionUID = -3415183711526430716L;
+
+    /**
+     * Opens the metadata store in the given file.
+     *
+     * @param format
+     *        knows the codecs of the constraints in the file
+     * @throws IOException
+     *         if the file cannot be read, has not been written with sections (format version 1), or if its journal
+     *         contains changes that have not been compacted into the file
+     */
+    public static MappedMetadataStore open(File file, DefaultMetadataStoreFormat format) throws IOException {
+        if (DefaultMetadataStoreJournal.hasChanges(DefaultMetadataStoreJournal.getJournalFile(file))) {
+            throw new IOException(String.format("The journal of %s has to be compacted first.", file));
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            Catalog catalog = format.readCatalog(channel, file);
+            if (catalog.version < 2) {
+                throw new IOException(String.format("%s has no index. Compact the metadata store to add one.", file));
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Cannot map %s, because it exceeds 2 GB.", file));
+            }
+            // The mapping stays valid after the channel is closed.
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            return new MappedMetadataStore(file, format, catalog, buffer);
+        }
+    }
+
+    private final File file;
+
+    private final transient DefaultMetadataStoreFormat format;
+
+    private final transient ByteBuffer buffer;
+
+    private final IdUtils idUtils;
+
+    private final List<Section> schemaSections, constraintCollectionSections;
+
+    private final Int2ObjectMap<Section> schemaSectionsById = new Int2ObjectOpenHashMap<>(),
+            constraintCollectionSectionsById = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * The materialized parts of the store.
+     */
+    private final Int2ObjectMap<Schema> schemas = new Int2ObjectOpenHashMap<>();
+
+    private final Int2ObjectMap<ConstraintCollection> constraintCollections = new Int2ObjectOpenHashMap<>();
+
+    private final Int2ObjectMap<Target> targets = new Int2ObjectOpenHashMap<>();
+
+    private MappedMetadataStore(File file, DefaultMetadataStoreFormat format, Catalog catalog, ByteBuffer buffer) {
+        this.file = file;
+        this.format = format;
+        this.buffer = buffer;
+        this.idUtils = new IdUtils(catalog.numTableBits, catalog.numColumnBits);
+        this.schemaSections = catalog.schemaSections;
+        for (Section section : this.schemaSections) {
+            this.schemaSectionsById.put(section.id, section);
+        }
+        this.constraintCollectionSections = catalog.constraintCollectionSections;
+        for (Section section : this.constraintCollectionSections) {
+            this.constraintCollectionSectionsById.put(section.id, section);
+        }
+    }
+
+    /**
+     * Read-only view on sections that materializes them while iterating.
+     */
+    private abstract class MaterializingCollection<T> extends AbstractCollection<T> {
+
+        private final List<Section> sections;
+
+        private MaterializingCollection(List<Section> sections) {
+            this.sections = sections;
+        }
+
+        abstract T materialize(Section section);
+
+        @Override
+        public Iterator<T> iterator() {
+            final Iterator<Section> sectionIterator = this.sections.iterator();
+            return new Iterator<T>() {
+
+                @Override
+                public boolean hasNext() {
+                    return sectionIterator.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return materialize(sectionIterator.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("The metadata store is read-only.");
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return this.sections.size();
+        }
+
+    }
+
+    private BinaryDecoder createDecoder(Section section) {
+        ByteBuffer buffer = this.buffer.duplicate();
+        buffer.position((int) section.offset);
+        buffer.limit((int) section.offset + section.length);
+        return new BinaryDecoder(buffer.slice());
+    }
+
+    private synchronized Schema materializeSchema(Section section) {
+        Schema schema = this.schemas.get(section.id);
+        if (schema == null) {
+            try {
+                schema = this.format.readSchema(this, createDecoder(section), this.targets);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not read schema %s from %s.", section.name,
+                        this.file), e);
+            }
+            this.schemas.put(section.id, schema);
+        }
+        return schema;
+    }
+
+    private synchronized ConstraintCollection materializeConstraintCollection(Section section) {
+        ConstraintCollection constraintCollection = this.constraintCollections.get(section.id);
+        if (constraintCollection == null) {
+            try {
+                BinaryDecoder decoder = createDecoder(section);
+                int id = decoder.readVarInt();
+                String description = decoder.readString();
+                int[] scopeIds = new int[decoder.readVarInt()];
+                for (int i = 0; i < scopeIds.length; i++) {
+                    scopeIds[i] = decoder.readVarInt();
+                }
+                int numConstraints = decoder.readVarInt();
+                List<Constraint> constraints = new ArrayList<>(numConstraints);
+                constraintCollection = new MappedConstraintCollection(this, id, description, scopeIds, constraints);
+                for (; numConstraints > 0; numConstraints--) {
+                    constraints.add(this.format.readConstraint(decoder, constraintCollection));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Could not read constraint collection %d from %s.",
+                        section.id, this.file), e);
+            }
+            this.constraintCollections.put(section.id, constraintCollection);
+        }
+        return constraintCollection;
+    }
+
+    /**
+     * Materializes the schema of the given target if necessary.
+     *
+     * @return the target or {@code null} if there is no such target
+     */
+    Target getTargetById(long id) {
+        if (id != (int) id) {
+            return null;
+        }
+        if (getSchemaById(this.idUtils.getSchemaId((int) id)) == null) {
+            return null;
+        }
+        synchronized (this) {
+            return this.targets.get((int) id);
+        }
+    }
+
+    @Override
+    public boolean hasTargetWithId(long id) {
+        return getTargetById(id) != null;
+    }
+
+    @Override
+    public Collection<Schema> getSchemas() {
+        return new MaterializingCollection<Schema>(this.schemaSections) {
+            @Override
+            Schema materialize(Section section) {
+                return materializeSchema(section);
+            }
+        };
+    }
+
+    @Override
+    public Schema getSchemaById(long schemaId) {
+        Section section = schemaId == (int) schemaId ? this.schemaSectionsById.get((int) schemaId) : null;
+        return section == null ? null : materializeSchema(section);
+    }
+
+    @Override
+    public Schema getSchemaByName(String schemaName) throws NameAmbigousException {
+        Collection<Schema> schemas = getSchemasByName(schemaName);
+        if (schemas.size() > 1) {
+            throw new NameAmbigousException(schemaName);
+        }
+        return schemas.isEmpty() ? null : schemas.iterator().next();
+    }
+
+    @Override
+    public Collection<Schema> getSchemasByName(String schemaName) {
+        List<Schema> schemas = new ArrayList<>();
+        for (Section section : this.schemaSections) {
+            if (section.name.equals(schemaName)) {
+                schemas.add(materializeSchema(section));
+            }
+        }
+        return schemas;
+    }
+
+    @Override
+    public Collection<ConstraintCollection> getConstraintCollections() {
+        return new MaterializingCollection<ConstraintCollection>(this.constraintCollectionSections) {
+            @Override
+            ConstraintCollection materialize(Section section) {
+                return materializeConstraintCollection(section);
+            }
+        };
+    }
+
+    @Override
+    public ConstraintCollection getConstraintCollection(int id) {
+        Section section = this.constraintCollectionSectionsById.get(id);
+        return section == null ? null : materializeConstraintCollection(section);
+    }
+
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type) {
+        List<T> constraints = new ArrayList<>();
+        for (ConstraintCollection constraintCollection : getConstraintCollections()) {
+            constraints.addAll(constraintCollection.getConstraintsReferencing(targetId, type));
+        }
+        return constraints;
+    }
+
+    @Override
+    public IdUtils getIdUtils() {
+        return this.idUtils;
+    }
+
+    /**
+     * Called by the targets while they are materialized.
+     */
+    @Override
+    public synchronized void registerTargetObject(Target target) {
+        this.targets.put(target.getId(), target);
+    }
+
+    @Override
+    public int generateRandomId() {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public Schema addSchema(String name, String description, Location location) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public Schema importSchema(SchemaSpec schemaSpec) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public long getUnusedSchemaId() {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public long getUnusedTableId(Schema schema) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public int getUnusedConstraintCollectonId() {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public ConstraintCollection createConstraintCollection(String description, Target... scope) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public void save(String path) throws IOException {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    /**
+     * There are no changes to be flushed.
+     */
+    @Override
+    public void flush() throws Exception {
+    }
+
+    @Override
+    public void removeSchema(Schema schema) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    @Override
+    public void removeConstraintCollection(ConstraintCollection constraintCollection) {
+        throw new UnsupportedOperationException("The metadata store is read-only.");
+    }
+
+    /**
+     * Does nothing, as the mapping of the file is released by the garbage collector.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return "MappedMetadataStore[" + this.file + ", " + this.schemaSections.size() + " schemas, "
+                + this.constraintCollectionSections.size() + " constraint collections]";
+    }
+
+}
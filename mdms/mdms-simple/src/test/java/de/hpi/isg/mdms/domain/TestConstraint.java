@@ -4,8 +4,8 @@ import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.model.targets.TargetReference;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
 import de.hpi.isg.mdms.model.targets.Column;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 
 /**
  * A simple dummy constraint for general metadata store tests for the
@@ -37,8 +37,8 @@ public class TestConstraint extends AbstractConstraint {
         }
 
         @Override
-        public IntCollection getAllTargetIds() {
-            return new IntArrayList(new int[] { this.column1.getId(), this.column2.getId() });
+        public LongCollection getAllTargetIds() {
+            return new LongArrayList(new long[] { this.column1.getLongId(), this.column2.getLongId() });
         }
     }
 
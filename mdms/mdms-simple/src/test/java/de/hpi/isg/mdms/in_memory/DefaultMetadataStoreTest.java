@@ -1,18 +1,32 @@
 package de.hpi.isg.mdms.in_memory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.hpi.isg.mdms.domain.*;
 import de.hpi.isg.mdms.simple.factories.DefaultMetadataStoreFactory;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreFormat;
+import de.hpi.isg.mdms.simple.io.DefaultMetadataStoreJournal;
+import de.hpi.isg.mdms.simple.io.MappedMetadataStore;
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.model.location.Location;
@@ -27,8 +41,11 @@ import de.hpi.isg.mdms.model.DefaultMetadataStore;
 import de.hpi.isg.mdms.model.location.DefaultLocation;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Table;
+import de.hpi.isg.mdms.model.targets.DefaultColumn;
 import de.hpi.isg.mdms.model.targets.DefaultSchema;
+import de.hpi.isg.mdms.model.targets.DefaultTable;
 import de.hpi.isg.mdms.exceptions.MetadataStoreNotFoundException;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
 
@@ -85,6 +102,55 @@ public class DefaultMetadataStoreTest {
                 .next().getId());
     }
 
+    @Test
+    public void testImportOfSchema() {
+        final MetadataStore store = new DefaultMetadataStore();
+        final SchemaSpec schemaSpec = new SchemaSpec("foo", null, new DefaultLocation());
+        schemaSpec.addTable("bar", null, new DefaultLocation()).addColumn("column1", null).addColumn("column2", null);
+        schemaSpec.addTable("bar2", null, new DefaultLocation()).addColumn("column1", null);
+        final Schema schema = store.importSchema(schemaSpec);
+
+        assertTrue(store.getSchemas().contains(schema));
+        assertEquals(2, schema.getTables().size());
+        final Table table = schema.getTableByName("bar");
+        assertEquals(2, table.getColumns().size());
+        for (final Column column : table.getColumns()) {
+            assertTrue(store.hasTargetWithId(column.getId()));
+            assertEquals(table.getId(), store.getIdUtils().getTableId(column.getId()));
+        }
+        assertTrue(table.getId() != schema.getTableByName("bar2").getId());
+
+        // The imported IDs must not be handed out again.
+        final Table table3 = schema.addTable(store, "bar3", null, new DefaultLocation());
+        assertEquals(3, schema.getTables().size());
+        assertTrue(table3.getId() != table.getId());
+    }
+
+    @Test
+    public void testGetConstraintsReferencing() {
+        final MetadataStore store = new DefaultMetadataStore();
+        final Schema schema = store.addSchema("foo", null, new DefaultLocation());
+        final Table table = schema.addTable(store, "bar", null, new DefaultLocation());
+        final Column column1 = table.addColumn(store, "column1", null, 0);
+        final Column column2 = table.addColumn(store, "column2", null, 1);
+        final Column column3 = table.addColumn(store, "column3", null, 2);
+
+        final ConstraintCollection constraintCollection = store.createConstraintCollection(null, schema);
+        final Constraint constraint1 = new TestConstraint(constraintCollection, column1, column2);
+        constraintCollection.add(constraint1);
+        assertEquals(Collections.singleton(constraint1),
+                new HashSet<>(constraintCollection.getConstraintsReferencing(column1.getId(), TestConstraint.class)));
+
+        // Constraints that are added after the index has been built must be found as well.
+        final Constraint constraint2 = new TestConstraint(constraintCollection, column2, column3);
+        constraintCollection.add(constraint2);
+        assertEquals(new HashSet<>(Arrays.asList(constraint1, constraint2)),
+                new HashSet<>(store.getConstraintsReferencing(column2.getId(), Constraint.class)));
+        assertEquals(Collections.singleton(constraint2),
+                new HashSet<>(store.getConstraintsReferencing(column3.getId(), TestConstraint.class)));
+        assertTrue(constraintCollection.getConstraintsReferencing(table.getId(), Constraint.class).isEmpty());
+    }
+
     @Test
     @Ignore
     public void testConstructingAComplexSchema() {
@@ -290,6 +356,300 @@ public class DefaultMetadataStoreTest {
         assertEquals(dummySchema, schema);
     }
 
+    @Test
+    public void testBinaryStoringOfFilledMetadataStore() throws Exception {
+        final File file = new File(this.dir, "binaryStore.ms");
+        // setup store
+        final DefaultMetadataStore store1 = new DefaultMetadataStore();
+        final Schema schema1 = store1.addSchema("PDB", "protein data bank", new DefaultLocation());
+        final Table table1 = schema1.addTable(store1, "atoms", null, new DefaultLocation());
+        table1.addColumn(store1, "x", null, 0);
+        final Column column1 = table1.addColumn(store1, "y", "ordinate", 1);
+        store1.addSchema("empty", null, null);
+        store1.createConstraintCollection("no constraints", schema1, table1);
+        store1.save(file.getAbsolutePath());
+        assertTrue(store1.getFormat().isFormatOf(file));
+
+        // retrieve store
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        assertEquals(store1, store2);
+
+        final Schema schema2 = store2.getSchemaByName("PDB");
+        assertEquals(schema1.getId(), schema2.getId());
+        assertEquals("protein data bank", schema2.getDescription());
+        final Table table2 = schema2.getTableByName("atoms");
+        assertEquals(table1.getId(), table2.getId());
+        final Column column2 = schema2.findColumn(column1.getId());
+        assertEquals("y", column2.getName());
+        assertEquals("ordinate", column2.getDescription());
+        assertEquals("1", column2.getLocation().get(Location.INDEX));
+        assertEquals(table2, column2.getTable());
+        final ConstraintCollection constraintCollection = store2.getConstraintCollections().iterator().next();
+        assertEquals("no constraints", constraintCollection.getDescription());
+        assertEquals(new HashSet<>(Arrays.asList(schema2, table2)), new HashSet<>(constraintCollection.getScope()));
+
+        // The restored store must issue fresh IDs.
+        assertTrue(store2.addSchema("new", null, null).getId() != schema2.getId());
+    }
+
+    @Test
+    public void testLoadingOfJavaSerializedMetadataStore() throws Exception {
+        final File file = new File(this.dir, "legacyStore.ms");
+        final DefaultMetadataStore store1 = new DefaultMetadataStore();
+        store1.addSchema("PDB", null, new DefaultLocation()).addTable(store1, "atoms", null, new DefaultLocation());
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
+            oos.writeObject(store1);
+        }
+        assertFalse(store1.getFormat().isFormatOf(file));
+
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        assertEquals(store1, store2);
+
+        // Compacting upgrades the file to the binary format.
+        store2.compact();
+        assertTrue(store2.getFormat().isFormatOf(file));
+        assertEquals(store1, DefaultMetadataStore.load(file));
+    }
+
+    @Test
+    public void testFlushAppendsToJournal() throws Exception {
+        final File file = new File(this.dir, "journaledStore.ms");
+        final File journalFile = DefaultMetadataStoreJournal.getJournalFile(file);
+        final DefaultMetadataStore store1 = DefaultMetadataStore.createAndSave(file);
+        final long snapshotSize = file.length();
+
+        final Schema schema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table table = schema.addTable(store1, "atoms", null, new DefaultLocation());
+        table.addColumn(store1, "x", null, 0);
+        store1.flush();
+        assertEquals(snapshotSize, file.length());
+        final long journalSize = journalFile.length();
+        assertEquals(store1, DefaultMetadataStore.load(file));
+
+        table.addColumn(store1, "y", null, 1);
+        final ConstraintCollection constraintCollection = store1.createConstraintCollection("removed", table);
+        store1.createConstraintCollection("kept", schema);
+        store1.removeConstraintCollection(constraintCollection);
+        store1.flush();
+        assertEquals(snapshotSize, file.length());
+        assertTrue(journalFile.length() > journalSize);
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        assertEquals(store1, store2);
+        assertEquals(1, store2.getConstraintCollections().size());
+
+        // Changes to the loaded store are appended to the same journal.
+        store2.addSchema("other", null, null);
+        store2.flush();
+        assertEquals(store2, DefaultMetadataStore.load(file));
+
+        store2.compact();
+        assertEquals(8, journalFile.length());
+        assertEquals(store2, DefaultMetadataStore.load(file));
+    }
+
+    @Test
+    public void testReplayOfDamagedOrOutdatedJournal() throws Exception {
+        final File file = new File(this.dir, "journaledStore.ms");
+        final File journalFile = DefaultMetadataStoreJournal.getJournalFile(file);
+        final DefaultMetadataStore store1 = DefaultMetadataStore.createAndSave(file);
+        store1.addSchema("first", null, null);
+        store1.flush();
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        final byte[] journal = Files.readAllBytes(journalFile.toPath());
+
+        // A batch that has only partially been written is discarded.
+        store1.addSchema("second", null, null);
+        store1.flush();
+        try (FileChannel channel = new RandomAccessFile(journalFile, "rw").getChannel()) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertEquals(store2, DefaultMetadataStore.load(file));
+        assertEquals(journal.length, journalFile.length());
+
+        // A journal that has already been folded into the snapshot is replayed without effect.
+        store1.compact();
+        Files.write(journalFile.toPath(), journal);
+        assertEquals(store1, DefaultMetadataStore.load(file));
+    }
+
+    @Test
+    public void testRenamingAfterFlushSurvivesReload() throws Exception {
+        final File file = new File(this.dir, "journaledStore.ms");
+        final DefaultMetadataStore store1 = DefaultMetadataStore.createAndSave(file);
+        final Schema schema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table table = schema.addTable(store1, "atoms", null, new DefaultLocation());
+        final Column column = table.addColumn(store1, "x", null, 0);
+        final ConstraintCollection constraintCollection = store1.createConstraintCollection("old", schema);
+        store1.flush();
+        store1.flush();
+
+        ((DefaultSchema) schema).setName("PDB2");
+        ((DefaultTable) table).setName("molecules");
+        table.setDescription("all molecules");
+        ((DefaultColumn) column).setName("y");
+        column.getLocation().set(Location.PATH, "/data/molecules.csv");
+        constraintCollection.setDescription("new");
+        store1.flush();
+
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        final Schema loadedSchema = store2.getSchemaByName("PDB2");
+        final Table loadedTable = loadedSchema.getTableByName("molecules");
+        assertEquals("all molecules", loadedTable.getDescription());
+        final Column loadedColumn = loadedTable.getColumnByName("y");
+        assertEquals(column.getId(), loadedColumn.getId());
+        assertEquals("/data/molecules.csv", loadedColumn.getLocation().get(Location.PATH));
+        assertEquals("new", store2.getConstraintCollections().iterator().next().getDescription());
+        assertEquals(store1, store2);
+
+        // Changes to the loaded store are appended to the same journal.
+        ((DefaultTable) loadedTable).setName("atoms");
+        store2.flush();
+        assertEquals("atoms", DefaultMetadataStore.load(file).getSchemaByName("PDB2").getTables().iterator().next()
+                .getName());
+    }
+
+    @Test
+    public void testLocationChangesOfLoadedStoreSurviveReload() throws Exception {
+        final File file = new File(this.dir, "journaledStore.ms");
+        final DefaultMetadataStore store1 = DefaultMetadataStore.createAndSave(file);
+        final Table table = store1.addSchema("PDB", null, new DefaultLocation())
+                .addTable(store1, "atoms", null, new DefaultLocation());
+        for (int i = 0; i < 100; i++) {
+            table.addColumn(store1, "column" + i, null, i);
+        }
+        store1.flush();
+
+        // The loaded targets report changes of their locations to the journal as well.
+        final DefaultMetadataStore store2 = DefaultMetadataStore.load(file);
+        final Column column = store2.getSchemaByName("PDB").getTableByName("atoms").getColumnByName("column42");
+        column.getLocation().set(Location.PATH, "/data/atoms.csv");
+        store2.getSchemaByName("PDB").getLocation().set(Location.TYPE, "pdb");
+        final long journalSize = DefaultMetadataStoreJournal.getJournalFile(file).length();
+        store2.flush();
+        // Only the two changed targets have been appended.
+        assertTrue(DefaultMetadataStoreJournal.getJournalFile(file).length() - journalSize < 200);
+
+        final DefaultMetadataStore store3 = DefaultMetadataStore.load(file);
+        assertEquals("/data/atoms.csv", store3.getSchemaByName("PDB").getTableByName("atoms")
+                .getColumnByName("column42").getLocation().get(Location.PATH));
+        assertEquals("pdb", store3.getSchemaByName("PDB").getLocation().get(Location.TYPE));
+        assertEquals(store2, store3);
+    }
+
+    @Test
+    public void testLookupsByNameAndId() throws Exception {
+        final DefaultMetadataStore store = new DefaultMetadataStore();
+        final Schema schema = store.addSchema("PDB", null, new DefaultLocation());
+        final Schema otherSchema = store.addSchema("PDB", null, new DefaultLocation());
+        final Table table = schema.addTable(store, "atoms", null, new DefaultLocation());
+        final Table otherTable = schema.addTable(store, "bonds", null, new DefaultLocation());
+        final Column column = table.addColumn(store, "x", null, 0);
+        final Column otherColumn = otherTable.addColumn(store, "x", null, 0);
+
+        assertEquals(new HashSet<>(Arrays.asList(schema, otherSchema)),
+                new HashSet<>(store.getSchemasByName("PDB")));
+        assertEquals(schema, store.getSchemaById(schema.getId()));
+        assertEquals(null, store.getSchemaById(table.getId()));
+        assertEquals(table, schema.getTableById(table.getId()));
+        assertEquals(Collections.singletonList(otherTable), schema.getTablesByName("bonds"));
+        assertEquals(column, table.getColumnByName("x"));
+        assertEquals(otherColumn, otherTable.getColumnById(otherColumn.getId()));
+        assertEquals(null, table.getColumnById(otherColumn.getId()));
+        assertEquals(column, schema.findColumn(column.getId()));
+        assertEquals(otherColumn, schema.findColumn(otherColumn.getId()));
+        assertEquals(null, schema.findColumn(table.getId()));
+        assertEquals(null, otherSchema.findColumn(column.getId()));
+
+        // Renamed targets are found under their new name only.
+        ((DefaultSchema) otherSchema).setName("PDB2");
+        assertEquals(schema, store.getSchemaByName("PDB"));
+        assertEquals(otherSchema, store.getSchemaByName("PDB2"));
+        ((DefaultColumn) column).setName("y");
+        assertEquals(null, table.getColumnByName("x"));
+        assertEquals(column, table.getColumnByName("y"));
+    }
+
+    @Test
+    public void testConcurrentModificationAndLookups() throws Exception {
+        final DefaultMetadataStore store = new DefaultMetadataStore();
+        final Schema sharedSchema = store.addSchema("shared", null, new DefaultLocation());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int threadNum = i;
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final Schema schema = store.addSchema("schema-" + threadNum, null, new DefaultLocation());
+                        for (int n = 0; n < 100; n++) {
+                            final Table table = schema.addTable(store, "table-" + n, null, new DefaultLocation());
+                            final Column column = table.addColumn(store, "column", null, 0);
+                            sharedSchema.addTable(store, "table-" + threadNum + "-" + n, null, new DefaultLocation());
+                            store.removeConstraintCollection(store.createConstraintCollection(null, table));
+                            if (!store.hasTargetWithId(column.getId()) || schema.findColumn(column.getId()) != column
+                                    || store.getSchemaById(schema.getId()) != schema) {
+                                throw new AssertionError("Lookup failed for " + column);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(null, error.get());
+        assertEquals(5, store.getSchemas().size());
+        assertEquals(400, sharedSchema.getTables().size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(100, store.getSchemaByName("schema-" + i).getTables().size());
+        }
+        assertTrue(store.getConstraintCollections().isEmpty());
+    }
+
+    @Test
+    public void testOpeningOfMappedMetadataStore() throws Exception {
+        final File file = new File(this.dir, "mappedStore.ms");
+        final DefaultMetadataStore store = DefaultMetadataStore.createAndSave(file);
+        final Schema schema1 = store.addSchema("PDB", null, new DefaultLocation());
+        final Table table1 = schema1.addTable(store, "atoms", null, new DefaultLocation());
+        final Column column1 = table1.addColumn(store, "x", null, 0);
+        final Schema schema2 = store.addSchema("TPC-H", null, new DefaultLocation());
+        schema2.addTable(store, "lineitem", null, new DefaultLocation()).addColumn(store, "l_orderkey", null, 0);
+        store.createConstraintCollection("atoms", table1);
+        store.compact();
+
+        final MappedMetadataStore mappedStore = MappedMetadataStore.open(file, new DefaultMetadataStoreFormat());
+        assertEquals(2, mappedStore.getSchemas().size());
+        assertTrue(mappedStore.hasTargetWithId(column1.getId()));
+        assertFalse(mappedStore.hasTargetWithId(column1.getId() + 1));
+        final Schema mappedSchema = mappedStore.getSchemaByName("PDB");
+        assertEquals(schema1.getId(), mappedSchema.getId());
+        final Table mappedTable = mappedSchema.getTables().iterator().next();
+        assertEquals("atoms", mappedTable.getName());
+        assertEquals(column1.getId(), mappedTable.getColumns().iterator().next().getId());
+        assertEquals(schema2.getName(), mappedStore.getSchemaById(schema2.getId()).getName());
+
+        final ConstraintCollection mappedCollection = mappedStore.getConstraintCollections().iterator().next();
+        assertEquals("atoms", mappedCollection.getDescription());
+        assertEquals(Collections.singleton(mappedTable), new HashSet<>(mappedCollection.getScope()));
+
+        // Changes that are only in the journal are not visible in the file.
+        store.addSchema("other", null, null);
+        store.flush();
+        try {
+            MappedMetadataStore.open(file, new DefaultMetadataStoreFormat());
+            fail("Uncompacted journal was ignored.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
     /*
      * @Test public void testStoringOfFilledMetadataStore3() { final File file = new File(this.dir, "filledStore.ms");
      * // setup store final DefaultMetadataStore store1 = new DefaultMetadataStore(); // setup schema final Schema
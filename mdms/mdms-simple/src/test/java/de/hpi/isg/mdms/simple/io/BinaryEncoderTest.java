@@ -0,0 +1,91 @@
+package de.hpi.isg.mdms.simple.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+public class BinaryEncoderTest {
+
+    private static final int BUFFER_SIZE = 16;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final BinaryEncoder encoder = new BinaryEncoder(Channels.newChannel(this.out), BUFFER_SIZE);
+
+    private BinaryDecoder createDecoder() throws IOException {
+        this.encoder.close();
+        return new BinaryDecoder(Channels.newChannel(new ByteArrayInputStream(this.out.toByteArray())), BUFFER_SIZE);
+    }
+
+    @Test
+    public void testNumbersRoundTrip() throws IOException {
+        int[] ints = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        long[] longs = { 0L, 1L << 35, Long.MAX_VALUE, -1L };
+        this.encoder.writeFixedInt(DefaultMetadataStoreFormat.MAGIC_NUMBER);
+        for (int value : ints) {
+            this.encoder.writeVarInt(value);
+            this.encoder.writeSignedVarInt(value);
+        }
+        for (long value : longs) {
+            this.encoder.writeVarLong(value);
+        }
+        this.encoder.writeVarInts(ints);
+
+        BinaryDecoder decoder = createDecoder();
+        assertEquals(DefaultMetadataStoreFormat.MAGIC_NUMBER, decoder.readFixedInt());
+        for (int value : ints) {
+            assertEquals(value, decoder.readVarInt());
+            assertEquals(value, decoder.readSignedVarInt());
+        }
+        for (long value : longs) {
+            assertEquals(value, decoder.readVarLong());
+        }
+        assertArrayEquals(ints, decoder.readVarInts());
+    }
+
+    @Test
+    public void testSmallNumbersTakeOneByte() throws IOException {
+        this.encoder.writeVarInt(127);
+        this.encoder.writeSignedVarInt(-64);
+        this.encoder.flush();
+        assertEquals(2, this.out.size());
+    }
+
+    @Test
+    public void testStringsRoundTrip() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10 * BUFFER_SIZE; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String longString = sb.toString();
+        String[] strings = { "foo", null, "", "bär", longString, "foo", longString, null };
+        for (String string : strings) {
+            this.encoder.writeString(string);
+        }
+        this.encoder.flush();
+        assertTrue(this.out.size() < 2 * longString.length());
+
+        BinaryDecoder decoder = createDecoder();
+        for (String string : strings) {
+            assertEquals(string, decoder.readString());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadingBeyondTheEndFails() throws IOException {
+        this.encoder.writeString(null);
+        BinaryDecoder decoder = createDecoder();
+        assertNull(decoder.readString());
+        decoder.readVarInt();
+    }
+
+}
@@ -1,7 +1,10 @@
 package de.hpi.isg.mdms.rdbms;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.KeyExtractor;
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
 import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
@@ -10,8 +13,8 @@ import de.hpi.isg.mdms.domain.constraints.RDBMSConstraintCollection;
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
 import de.hpi.isg.mdms.model.targets.Target;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +23,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 /**
  * This class takes care of serializing and deserializing constraints on a SQLite database.
@@ -34,15 +40,24 @@ public class SQLiteConstraintHandler {
     private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_CONSTRAINT_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Constraintt (id, constraintCollectionId) VALUES (?, ?);",
-                    new PreparedStatementAdapter<int[]>() {
+                    new OffsetPreparedStatementAdapter<int[]>() {
                         @Override
-                        public void translateParameter(int[] parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(int[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters[0]);
-                            preparedStatement.setInt(2, parameters[1]);
+                            preparedStatement.setInt(parameterOffset + 1, parameters[0]);
+                            preparedStatement.setInt(parameterOffset + 2, parameters[1]);
                         }
                     },
-                    "Constraintt");
+                    "Constraintt")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT)
+                    .setEstimatedBytesPerStatement(16)
+                    .setKeyExtractor(new KeyExtractor<int[]>() {
+                        @Override
+                        public long getKey(int[] parameters) {
+                            return parameters[0];
+                        }
+                    });
 
     private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_CONSTRAINT_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -56,7 +71,7 @@ public class SQLiteConstraintHandler {
                     },
                     "Constraintt");
 
-    private final Map<Class<? extends Constraint>, ConstraintSQLSerializer<? extends Constraint>> constraintSerializers = new HashMap<>();
+    private final Map<Class<? extends Constraint>, ConstraintSQLSerializer<? extends Constraint>> constraintSerializers = new ConcurrentHashMap<>();
 
     /**
      * Encapsulates the DB connection to allow for lazy writes.
@@ -70,9 +85,12 @@ public class SQLiteConstraintHandler {
 
     RDBMSMetadataStore metadataStore;
 
-    private int currentConstraintIdMax = -1;
+    /**
+     * The greatest constraint ID that has been allocated so far or {@code -1} if it has not been determined yet.
+     */
+    private final AtomicInteger currentConstraintIdMax = new AtomicInteger(-1);
 
-    private DatabaseWriter<int[]> insertConstraintWriter;
+    private PreparedStatementBatchWriter<int[]> insertConstraintWriter;
 
     private DatabaseWriter<Integer> deleteConstraintWriter;
 
@@ -109,7 +127,7 @@ public class SQLiteConstraintHandler {
     }
 
     /**
-     * Writes a constraint to the DB.
+     * Writes a constraint to the DB. Several threads may write constraints concurrently.
      *
      * @param constraint is a constraint that shall be written
      */
@@ -117,7 +135,7 @@ public class SQLiteConstraintHandler {
         ensureCurrentConstraintIdMaxInitialized();
 
         // for auto-increment id
-        Integer constraintId = ++currentConstraintIdMax;
+        Integer constraintId = this.currentConstraintIdMax.incrementAndGet();
         try {
             this.insertConstraintWriter.write(new int[]{constraintId, constraint.getConstraintCollection().getId()});
         } catch (SQLException e) {
@@ -129,8 +147,18 @@ public class SQLiteConstraintHandler {
 
         // If there is no serializer, create a new one.
         if (serializer == null) {
-            serializer = constraint.getConstraintSQLSerializer(this.sqliteInterface);
-            registerConstraintSQLSerializer(constraint.getClass(), serializer);
+            // Creating the serializer creates writers and thereby takes the database lock, so we synchronize on it.
+            Lock lock = this.databaseAccess.getLock();
+            lock.lock();
+            try {
+                serializer = constraintSerializers.get(constraint.getClass());
+                if (serializer == null) {
+                    serializer = constraint.getConstraintSQLSerializer(this.sqliteInterface);
+                    registerConstraintSQLSerializer(constraint.getClass(), serializer);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
         // Delegate the serialization.
@@ -141,19 +169,30 @@ public class SQLiteConstraintHandler {
      * Checks if {@link #currentConstraintIdMax} already has a valid value. If not, a valid value is set.
      */
     private void ensureCurrentConstraintIdMaxInitialized() {
-        if (this.currentConstraintIdMax != -1) {
+        if (this.currentConstraintIdMax.get() != -1) {
             return;
         }
 
+        // Take the database lock rather than a monitor of our own, so that locks are always acquired in the same order.
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
         try {
-            this.currentConstraintIdMax = 0;
-            try (ResultSet res = this.databaseAccess.query("SELECT MAX(id) from Constraintt;", "Constraintt")) {
+            if (this.currentConstraintIdMax.get() != -1) {
+                return;
+            }
+            // Merge the pending constraints with the persisted ones instead of flushing them.
+            int constraintIdMax = (int) Math.max(0, this.insertConstraintWriter.getMaxPendingKey());
+            try (ResultSet res = this.databaseAccess.queryWithOverlay("SELECT MAX(id) from Constraintt;",
+                    Collections.singleton(this.insertConstraintWriter), "Constraintt")) {
                 while (res.next()) {
-                    this.currentConstraintIdMax = res.getInt("max(id)");
+                    constraintIdMax = Math.max(constraintIdMax, res.getInt("max(id)"));
                 }
             }
+            this.currentConstraintIdMax.set(constraintIdMax);
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -166,7 +205,7 @@ public class SQLiteConstraintHandler {
         try {
             // TODO: This seems not to be working (only a single constraint collection is returned.
             Collection<RDBMSConstraintCollection> constraintCollections = new LinkedList<>();
-            try (ResultSet rs = this.databaseAccess.query("SELECT id, description from ConstraintCollection;",
+            try (ResultSet rs = this.databaseAccess.queryCached("SELECT id, description from ConstraintCollection;",
                     "ConstraintCollection")) {
                 while (rs.next()) {
                     RDBMSConstraintCollection constraintCollection = new RDBMSConstraintCollection(rs.getInt("id"),
@@ -190,9 +229,9 @@ public class SQLiteConstraintHandler {
     public RDBMSConstraintCollection getConstraintCollectionById(int id) {
         try {
             RDBMSConstraintCollection constraintCollection = null;
-            String getConstraintCollectionByIdQuery =
-                    String.format("SELECT id, description from ConstraintCollection where id=%d;", id);
-            try (ResultSet rs = this.databaseAccess.query(getConstraintCollectionByIdQuery, "ConstraintCollection")) {
+            String getConstraintCollectionByIdQuery = "SELECT id, description from ConstraintCollection where id=?;";
+            try (ResultSet rs = this.databaseAccess.queryPrepared(getConstraintCollectionByIdQuery, new Object[]{id},
+                    "ConstraintCollection")) {
                 while (rs.next()) {
                     constraintCollection = new RDBMSConstraintCollection(rs.getInt("id"), rs.getString("description"),
                             this.sqliteInterface);
@@ -211,15 +250,15 @@ public class SQLiteConstraintHandler {
      * @param rdbmsConstraintCollection is a constraint collection whose scope is sought
      * @return the IDs of the schema elements in the scope
      */
-    public IntCollection getScopeOfConstraintCollectionAsIds(RDBMSConstraintCollection rdbmsConstraintCollection) {
+    public LongCollection getScopeOfConstraintCollectionAsIds(RDBMSConstraintCollection rdbmsConstraintCollection) {
         try {
-            IntCollection ids = new IntArrayList();
-            String sqlGetScope = String
-                    .format("SELECT id from target, scope where scope.targetId = target.id and scope.constraintCollectionId=%d;",
-                            rdbmsConstraintCollection.getId());
-            try (ResultSet rs = this.databaseAccess.query(sqlGetScope, "Target", "Scope")) {
+            LongCollection ids = new LongArrayList();
+            String sqlGetScope =
+                    "SELECT id from target, scope where scope.targetId = target.id and scope.constraintCollectionId=?;";
+            try (ResultSet rs = this.databaseAccess.queryPrepared(sqlGetScope,
+                    new Object[]{rdbmsConstraintCollection.getId()}, "Target", "Scope")) {
                 while (rs.next()) {
-                    ids.add(rs.getInt("id"));
+                    ids.add(rs.getLong("id"));
                 }
             }
             return ids;
@@ -231,10 +270,10 @@ public class SQLiteConstraintHandler {
 
     public void addConstraintCollection(ConstraintCollection constraintCollection) {
         try {
-            String sqlAddConstraintCollection = String.format(
-                    "INSERT INTO ConstraintCollection (id, description) VALUES (%d, '%s');",
-                    constraintCollection.getId(), constraintCollection.getDescription());
-            this.databaseAccess.executeSQL(sqlAddConstraintCollection, "ConstraintCollection");
+            this.databaseAccess.executePreparedSQL(
+                    "INSERT INTO ConstraintCollection (id, description) VALUES (?, ?);",
+                    new Object[]{constraintCollection.getId(), constraintCollection.getDescription()},
+                    "ConstraintCollection");
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -243,9 +282,10 @@ public class SQLiteConstraintHandler {
 
     public void addScope(Target target, ConstraintCollection constraintCollection) {
         try {
-            String sqlAddScope = String.format("INSERT INTO Scope (targetId, constraintCollectionId) VALUES (%d, %d);",
-                    target.getId(), constraintCollection.getId());
-            this.databaseAccess.executeSQL(sqlAddScope, "Scope");
+            this.databaseAccess.executePreparedSQL(
+                    "INSERT INTO Scope (targetId, constraintCollectionId) VALUES (?, ?);",
+                    new Object[]{target.getLongId(), constraintCollection.getId()},
+                    "Scope");
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -262,9 +302,9 @@ public class SQLiteConstraintHandler {
             throw new RuntimeException("Could not flush metadata metadataStore before loading constraints.", e);
         }
         for (ConstraintSQLSerializer<? extends Constraint> constraintSerializer : this.constraintSerializers.values()) {
-            try {
-                constraintsOfCollection.addAll(constraintSerializer
-                        .deserializeConstraintsOfConstraintCollection(rdbmsConstraintCollection));
+            try (Cursor<? extends Constraint> constraints = constraintSerializer
+                    .streamConstraintsOfConstraintCollection(rdbmsConstraintCollection)) {
+                constraints.drainTo(constraintsOfCollection);
             } catch (Exception e) {
                 LOG.error("Error on deserializing constraint collection. Continue anyway...", e);
             }
@@ -280,6 +320,31 @@ public class SQLiteConstraintHandler {
     }
 
 
+    /**
+     * Loads the constraints of the given type that reference the given target by means of the registered
+     * {@link ConstraintSQLSerializer}s.
+     *
+     * @param targetId             is the ID of the referenced target
+     * @param type                 is the type of the requested constraints
+     * @param constraintCollection restricts the result to the constraints of this collection or is {@code null}
+     * @return the referencing constraints
+     */
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type,
+                                                                          ConstraintCollection constraintCollection) {
+        Collection<T> constraints = new ArrayList<>();
+        for (Map.Entry<Class<? extends Constraint>, ConstraintSQLSerializer<? extends Constraint>> entry :
+                this.constraintSerializers.entrySet()) {
+            if (!type.isAssignableFrom(entry.getKey())) {
+                continue;
+            }
+            for (Constraint constraint : entry.getValue().deserializeConstraintsReferencing(targetId,
+                    constraintCollection)) {
+                constraints.add(type.cast(constraint));
+            }
+        }
+        return constraints;
+    }
+
     public void registerConstraintSQLSerializer(Class<? extends Constraint> clazz,
                                                 ConstraintSQLSerializer<? extends Constraint> serializer) {
         constraintSerializers.put(clazz, serializer);
@@ -297,14 +362,11 @@ public class SQLiteConstraintHandler {
 
             }
 
-            String sqlDeleteScope = String.format("DELETE from Scope where constraintCollectionId=%d;",
-                    constraintCollection.getId());
-            this.databaseAccess.executeSQL(sqlDeleteScope, "Scope");
+            this.databaseAccess.executePreparedSQL("DELETE from Scope where constraintCollectionId=?;",
+                    new Object[]{constraintCollection.getId()}, "Scope");
 
-            String sqlDeleteConstraintCollection = String.format(
-                    "DELETE from ConstraintCollection where id=%d;",
-                    constraintCollection.getId());
-            this.databaseAccess.executeSQL(sqlDeleteConstraintCollection, "ConstraintCollection");
+            this.databaseAccess.executePreparedSQL("DELETE from ConstraintCollection where id=?;",
+                    new Object[]{constraintCollection.getId()}, "ConstraintCollection");
 
             this.deleteConstraintWriter.write(constraintCollection.getId());
 
@@ -15,8 +15,8 @@ import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
 import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.model.targets.Target;
-import it.unimi.dsi.fastutil.ints.IntCollection;
-import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -65,7 +65,8 @@ public class SQLiteInterface implements SQLInterface {
     private SQLiteConstraintHandler constraintHandler;
 
     /**
-     * Creates a new instance that operates on the given connection.
+     * Creates a new instance that operates on the given connection. Each batch is committed on its own; bulk loads can
+     * opt into group commits via {@link DatabaseAccess#enableGroupCommit(int, long)} on {@link #getDatabaseAccess()}.
      *
      * @param connection to operate on
      */
@@ -173,10 +174,18 @@ public class SQLiteInterface implements SQLInterface {
     }
 
     @Override
-    public boolean isTargetIdInUse(int id) throws SQLException {
+    public boolean isTargetIdInUse(long id) throws SQLException {
         return this.schemaHandler.isTargetIdInUse(id);
     }
 
+    /**
+     * @see SQLiteSchemaHandler#getAllTargetIds()
+     */
+    @Override
+    public LongCollection getAllTargetIds() throws SQLException {
+        return this.schemaHandler.getAllTargetIds();
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Collection<ConstraintCollection> getAllConstraintCollections() {
@@ -245,29 +254,35 @@ public class SQLiteInterface implements SQLInterface {
         return this.constraintHandler.getAllConstraintsForConstraintCollection(rdbmsConstraintCollection);
     }
 
+    @Override
+    public <T extends Constraint> Collection<T> getConstraintsReferencing(long targetId, Class<T> type,
+                                                                          ConstraintCollection constraintCollection) {
+        return this.constraintHandler.getConstraintsReferencing(targetId, type, constraintCollection);
+    }
+
     @Override
     public Set<Target> getScopeOfConstraintCollection(RDBMSConstraintCollection rdbmsConstraintCollection) {
-        IntCollection targetIds = this.constraintHandler.getScopeOfConstraintCollectionAsIds(rdbmsConstraintCollection);
+        LongCollection targetIds = this.constraintHandler.getScopeOfConstraintCollectionAsIds(rdbmsConstraintCollection);
         Set<Target> scope = new HashSet<>(targetIds.size());
-        for (IntIterator i = targetIds.iterator(); i.hasNext(); ) {
-            scope.add(this.schemaHandler.loadTarget(i.nextInt()));
+        for (LongIterator i = targetIds.iterator(); i.hasNext(); ) {
+            scope.add(this.schemaHandler.loadTarget(i.nextLong()));
 
         }
         return scope;
     }
 
     @Override
-    public Column getColumnById(int columnId) {
+    public Column getColumnById(long columnId) {
         return this.schemaHandler.getColumnById(columnId);
     }
 
     @Override
-    public Table getTableById(int tableId) {
+    public Table getTableById(long tableId) {
         return this.schemaHandler.getTableById(tableId);
     }
 
     @Override
-    public Schema getSchemaById(int schemaId) {
+    public Schema getSchemaById(long schemaId) {
         return this.schemaHandler.getSchemaById(schemaId);
     }
 
@@ -300,13 +315,11 @@ public class SQLiteInterface implements SQLInterface {
             for (Entry<String, String> configEntry : configuration.entrySet()) {
                 String configKey = configEntry.getKey();
                 String value = configEntry.getValue();
-                this.databaseAccess.executeSQL(
-                        String.format("DELETE FROM Config WHERE keyy=\"%s\";", configKey),
+                this.databaseAccess.executePreparedSQL("DELETE FROM Config WHERE keyy=?;",
+                        new Object[]{configKey},
                         "Config");
-                this.databaseAccess.executeSQL(
-                        String.format("INSERT INTO Config (keyy, value) VALUES (\"%s\", \"%s\");",
-                                configKey,
-                                value),
+                this.databaseAccess.executePreparedSQL("INSERT INTO Config (keyy, value) VALUES (?, ?);",
+                        new Object[]{configKey, value},
                         "Config");
             }
         } catch (SQLException e) {
@@ -320,7 +333,7 @@ public class SQLiteInterface implements SQLInterface {
     @Override
     public Map<String, String> loadConfiguration() {
         Map<String, String> configuration = new HashMap<String, String>();
-        try (ResultSet resultSet = this.databaseAccess.query("SELECT keyy, value FROM Config;", "Config")) {
+        try (ResultSet resultSet = this.databaseAccess.queryCached("SELECT keyy, value FROM Config;", "Config")) {
             while (resultSet.next()) {
                 configuration.put(resultSet.getString("keyy"), resultSet.getString("value"));
             }
@@ -332,10 +345,10 @@ public class SQLiteInterface implements SQLInterface {
     }
 
     /**
-     * @see SQLiteSchemaHandler#getLocationFor(int)
+     * @see SQLiteSchemaHandler#getLocationFor(long)
      */
     @Override
-    public Location getLocationFor(int id) {
+    public Location getLocationFor(long id) {
         return this.schemaHandler.getLocationFor(id);
     }
 
@@ -352,6 +365,7 @@ public class SQLiteInterface implements SQLInterface {
                 if (!this.databaseAccess.getConnection().getAutoCommit()) {
                     this.databaseAccess.getConnection().commit();
                 }
+                this.databaseAccess.clearQueryResultCache();
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -388,6 +402,7 @@ public class SQLiteInterface implements SQLInterface {
             if (!this.databaseAccess.getConnection().getAutoCommit()) {
                 this.databaseAccess.getConnection().commit();
             }
+            this.databaseAccess.clearQueryResultCache();
 
             this.loadTableNames();
         } catch (SQLException e) {
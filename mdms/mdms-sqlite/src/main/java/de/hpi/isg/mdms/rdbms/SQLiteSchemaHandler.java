@@ -1,6 +1,8 @@
 package de.hpi.isg.mdms.rdbms;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.KeyExtractor;
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
@@ -18,11 +20,13 @@ import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.util.IdUtils;
 import de.hpi.isg.mdms.rdbms.util.LocationCache;
-import de.hpi.isg.mdms.util.LRUCache;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntCollection;
+import de.hpi.isg.mdms.util.LongCache;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongList;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +36,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * This class manages the serialization and deserialization of schema elements within a SQLiteDatabase.
@@ -46,48 +51,61 @@ public class SQLiteSchemaHandler {
     private static final PreparedStatementBatchWriter.Factory<Object[]> INSERT_TARGET_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Target (ID, name, locationId, description) VALUES (?, ?, ?, ?);",
-                    new PreparedStatementAdapter<Object[]>() {
+                    new OffsetPreparedStatementAdapter<Object[]>() {
                         @Override
-                        public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(Object[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
                             Target target = (Target) parameters[0];
                             Integer locationId = (Integer) parameters[1];
-                            preparedStatement.setInt(1, target.getId());
-                            preparedStatement.setString(2, target.getName());
+                            preparedStatement.setLong(parameterOffset + 1, target.getLongId());
+                            preparedStatement.setString(parameterOffset + 2, target.getName());
                             if (locationId == null) {
-                                preparedStatement.setNull(3, Types.INTEGER);
+                                preparedStatement.setNull(parameterOffset + 3, Types.INTEGER);
                             } else {
-                                preparedStatement.setInt(3, locationId);
+                                preparedStatement.setInt(parameterOffset + 3, locationId);
                             }
-                            preparedStatement.setString(4, target.getDescription());
+                            preparedStatement.setString(parameterOffset + 4, target.getDescription());
                         }
                     },
-                    "Target");
+                    "Target")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT)
+                    // Names and descriptions make these statements comparatively large.
+                    .setEstimatedBytesPerStatement(256)
+                    .setKeyExtractor(new KeyExtractor<Object[]>() {
+                        @Override
+                        public long getKey(Object[] parameters) {
+                            return ((Target) parameters[0]).getLongId();
+                        }
+                    });
 
-    private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_TARGET_WRITER_FACTORY =
+    private static final PreparedStatementBatchWriter.Factory<Long> DELETE_TARGET_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "DELETE FROM Target where id=?;",
-                    new PreparedStatementAdapter<Integer>() {
-                        @Override
-                        public void translateParameter(Integer parameter, PreparedStatement preparedStatement)
-                                throws SQLException {
-                            preparedStatement.setInt(1, parameter);
-                        }
-                    },
-                    "Target");
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
+                    "Target")
+                    .setKeyExtractor(KeyExtractor.SINGLE_LONG_EXTRACTOR);
 
     private static final PreparedStatementBatchWriter.Factory<Integer[]> INSERT_LOCATION_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Location (id, typee) VALUES (?, ?);",
-                    new PreparedStatementAdapter<Integer[]>() {
+                    new OffsetPreparedStatementAdapter<Integer[]>() {
                         @Override
-                        public void translateParameter(Integer[] parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(Integer[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters[0]);
-                            preparedStatement.setInt(2, parameters[1]);
+                            preparedStatement.setInt(parameterOffset + 1, parameters[0]);
+                            preparedStatement.setInt(parameterOffset + 2, parameters[1]);
                         }
                     },
-                    "Location");
+                    "Location")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT)
+                    .setKeyExtractor(new KeyExtractor<Integer[]>() {
+                        @Override
+                        public long getKey(Integer[] parameters) {
+                            return parameters[0];
+                        }
+                    });
 
     private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_LOCATION_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -104,16 +122,18 @@ public class SQLiteSchemaHandler {
     private static final PreparedStatementBatchWriter.Factory<Object[]> INSERT_LOCATION_PROPERTY_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO LocationProperty (locationId, keyy, value) VALUES (?, ?, ?);",
-                    new PreparedStatementAdapter<Object[]>() {
+                    new OffsetPreparedStatementAdapter<Object[]>() {
                         @Override
-                        public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(Object[] parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, (Integer) parameters[0]);
-                            preparedStatement.setString(2, (String) parameters[1]);
-                            preparedStatement.setString(3, (String) parameters[2]);
+                            preparedStatement.setInt(parameterOffset + 1, (Integer) parameters[0]);
+                            preparedStatement.setString(parameterOffset + 2, (String) parameters[1]);
+                            preparedStatement.setString(parameterOffset + 3, (String) parameters[2]);
                         }
                     },
-                    "LocationProperty");
+                    "LocationProperty")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
     private static final PreparedStatementBatchWriter.Factory<Integer> DELETE_LOCATION_PROPERTY_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -131,14 +151,16 @@ public class SQLiteSchemaHandler {
     private static final PreparedStatementBatchWriter.Factory<RDBMSSchema> INSERT_SCHEMA_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Schemaa (id) VALUES (?);",
-                    new PreparedStatementAdapter<RDBMSSchema>() {
+                    new OffsetPreparedStatementAdapter<RDBMSSchema>() {
                         @Override
-                        public void translateParameter(RDBMSSchema parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(RDBMSSchema parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters.getId());
+                            preparedStatement.setLong(parameterOffset + 1, parameters.getLongId());
                         }
                     },
-                    "Schemaa");
+                    "Schemaa")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
     private static final PreparedStatementBatchWriter.Factory<RDBMSSchema> DELETE_SCHEMA_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -147,7 +169,7 @@ public class SQLiteSchemaHandler {
                         @Override
                         public void translateParameter(RDBMSSchema parameter, PreparedStatement preparedStatement)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameter.getId());
+                            preparedStatement.setLong(1, parameter.getLongId());
                         }
                     },
                     "Schemaa");
@@ -155,15 +177,17 @@ public class SQLiteSchemaHandler {
     private static final PreparedStatementBatchWriter.Factory<RDBMSTable> INSERT_TABLE_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Tablee (id, schemaId) VALUES (?, ?);",
-                    new PreparedStatementAdapter<RDBMSTable>() {
+                    new OffsetPreparedStatementAdapter<RDBMSTable>() {
                         @Override
-                        public void translateParameter(RDBMSTable parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(RDBMSTable parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters.getId());
-                            preparedStatement.setInt(2, parameters.getSchema().getId());
+                            preparedStatement.setLong(parameterOffset + 1, parameters.getLongId());
+                            preparedStatement.setLong(parameterOffset + 2, parameters.getSchema().getLongId());
                         }
                     },
-                    "Tablee");
+                    "Tablee")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
     private static final PreparedStatementBatchWriter.Factory<RDBMSTable> DELETE_TABLE_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -172,7 +196,7 @@ public class SQLiteSchemaHandler {
                         @Override
                         public void translateParameter(RDBMSTable parameter, PreparedStatement preparedStatement)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameter.getId());
+                            preparedStatement.setLong(1, parameter.getLongId());
                         }
                     },
                     "Tablee");
@@ -180,15 +204,17 @@ public class SQLiteSchemaHandler {
     private static final PreparedStatementBatchWriter.Factory<RDBMSColumn> INSERT_COLUMN_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
                     "INSERT INTO Columnn (id, tableId) VALUES (?, ?);",
-                    new PreparedStatementAdapter<RDBMSColumn>() {
+                    new OffsetPreparedStatementAdapter<RDBMSColumn>() {
                         @Override
-                        public void translateParameter(RDBMSColumn parameters, PreparedStatement preparedStatement)
+                        public void translateParameter(RDBMSColumn parameters, PreparedStatement preparedStatement,
+                                int parameterOffset)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters.getId());
-                            preparedStatement.setInt(2, parameters.getTable().getId());
+                            preparedStatement.setLong(parameterOffset + 1, parameters.getLongId());
+                            preparedStatement.setLong(parameterOffset + 2, parameters.getTable().getLongId());
                         }
                     },
-                    "Columnn");
+                    "Columnn")
+                    .setRowsPerStatement(PreparedStatementBatchWriter.DEFAULT_ROWS_PER_STATEMENT);
 
     private static final PreparedStatementBatchWriter.Factory<RDBMSColumn> DELETE_COLUMN_WRITER_FACTORY =
             new PreparedStatementBatchWriter.Factory<>(
@@ -197,17 +223,17 @@ public class SQLiteSchemaHandler {
                         @Override
                         public void translateParameter(RDBMSColumn parameters, PreparedStatement preparedStatement)
                                 throws SQLException {
-                            preparedStatement.setInt(1, parameters.getId());
+                            preparedStatement.setLong(1, parameters.getLongId());
                         }
                     },
                     "Columnn");
 
-    private static final StrategyBasedPreparedQuery.Factory<Integer> LOCATION_QUERY_FACTORY =
+    private static final StrategyBasedPreparedQuery.Factory<Long> LOCATION_QUERY_FACTORY =
             new StrategyBasedPreparedQuery.Factory<>(
                     "SELECT Location.id as id, Location.typee as typee "
                             + "from Location, Target "
                             + "where Location.id = Target.locationId and Target.id = ?;",
-                    PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
                     "Location", "Target");
 
     private static final StrategyBasedPreparedQuery.Factory<Integer> LOCATION_PROPERTIES_QUERY_FACTORY =
@@ -218,55 +244,62 @@ public class SQLiteSchemaHandler {
                     PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                     "Location", "LocationProperty");
 
-    private static final StrategyBasedPreparedQuery.Factory<Integer> COLUMN_QUERY_FACTORY =
+    private static final StrategyBasedPreparedQuery.Factory<Long> COLUMN_QUERY_FACTORY =
             new StrategyBasedPreparedQuery.Factory<>(
                     "SELECT target.id as id, target.name as name, target.description as description,"
                             + " columnn.tableId as tableId"
                             + " from target, columnn"
                             + " where target.id = columnn.id and columnn.id=?",
-                    PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
                     "Target", "Columnn");
 
-    private static final StrategyBasedPreparedQuery.Factory<Integer> TABLE_QUERY_FACTORY =
+    private static final StrategyBasedPreparedQuery.Factory<Long> TABLE_QUERY_FACTORY =
             new StrategyBasedPreparedQuery.Factory<>(
                     "SELECT target.id as id, target.name as name, target.description as description, tablee.schemaId as schemaId"
                             + " from target, tablee"
                             + " where target.id = tablee.id and tablee.id=?",
-                    PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
                     "Target", "Tablee");
 
-    private static final StrategyBasedPreparedQuery.Factory<Integer> TABLE_COLUMNS_QUERY_FACTORY =
+    private static final StrategyBasedPreparedQuery.Factory<Long> TABLE_COLUMNS_QUERY_FACTORY =
             new StrategyBasedPreparedQuery.Factory<>(
                     "SELECT columnn.id as id "
                             + "from columnn, target "
                             + "where target.id = columnn.id and columnn.tableId=?;",
-                    PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
                     "Target", "Tablee");
 
-    private static final StrategyBasedPreparedQuery.Factory<Integer> SCHEMA_QUERY_FACTORY =
+    private static final StrategyBasedPreparedQuery.Factory<Long> SCHEMA_QUERY_FACTORY =
             new StrategyBasedPreparedQuery.Factory<>(
                     "SELECT target.id as id, target.name as name, target.description as description"
                             + " from target, schemaa"
                             + " where target.id = schemaa.id and schemaa.id=?",
-                    PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                    PreparedStatementAdapter.SINGLE_LONG_ADAPTER,
                     "Target", "Schemaa");
 
-    private final static int CACHE_SIZE = 1000;
+    /**
+     * The default maximum number of entries in each of the caches.
+     */
+    public final static int DEFAULT_CACHE_CAPACITY = 100000;
 
     // TODO: Check whether we need these caches? The RDBMSTargets have caches themselves...
-    LRUCache<Integer, RDBMSColumn> columnCache = new LRUCache<>(CACHE_SIZE);
+    // The caches are thread-safe, because targets may be added from several threads.
+    final LongCache<RDBMSColumn> columnCache;
 
-    LRUCache<Integer, RDBMSTable> tableCache = new LRUCache<>(CACHE_SIZE);
+    final LongCache<RDBMSTable> tableCache;
 
-    LRUCache<Integer, RDBMSSchema> schemaCache = new LRUCache<>(CACHE_SIZE);
+    final LongCache<RDBMSSchema> schemaCache;
 
-    LRUCache<Integer, Location> locationCache = new LRUCache<>(CACHE_SIZE);
+    final LongCache<Location> locationCache;
 
-    LRUCache<Table, Collection<Column>> allColumnsForTableCache = new LRUCache<>(CACHE_SIZE);
+    /**
+     * Caches the columns of tables by the table IDs.
+     */
+    final LongCache<Collection<Column>> allColumnsForTableCache;
 
-    Collection<Target> allTargets = null;
+    volatile Collection<Target> allTargets = null;
 
-    Collection<Schema> allSchemas = null;
+    volatile Collection<Schema> allSchemas = null;
 
     /**
      * Encapsulates the access to the database {@link java.sql.Connection}.
@@ -283,27 +316,27 @@ public class SQLiteSchemaHandler {
      */
     private int currentLocationIdMax = -1;
 
-    private DatabaseQuery<Integer> locationQuery;
+    private DatabaseQuery<Long> locationQuery;
 
     // TODO remove???
     private DatabaseWriter<Target> updateTargetNameWriter;
 
     private DatabaseWriter<int[]> updateTargetLocationWriter;
 
-    private DatabaseQuery<Integer> tableColumnsQuery;
+    private DatabaseQuery<Long> tableColumnsQuery;
 
-    private DatabaseQuery<Integer> columnQuery;
+    private DatabaseQuery<Long> columnQuery;
 
-    private DatabaseQuery<Integer> tableQuery;
+    private DatabaseQuery<Long> tableQuery;
 
-    private DatabaseQuery<Integer> schemaQuery;
+    private DatabaseQuery<Long> schemaQuery;
 
     // TODO change generic type to domain types?!
-    private DatabaseWriter<Object[]> insertTargetWriter;
+    private PreparedStatementBatchWriter<Object[]> insertTargetWriter;
 
-    private DatabaseWriter<Integer> deleteTargetWriter;
+    private PreparedStatementBatchWriter<Long> deleteTargetWriter;
 
-    private DatabaseWriter<Integer[]> insertLocationWriter;
+    private PreparedStatementBatchWriter<Integer[]> insertLocationWriter;
 
     private DatabaseWriter<Integer> deleteLocationWriter;
 
@@ -343,8 +376,24 @@ public class SQLiteSchemaHandler {
      * @param databaseAccess is the access to the SQLite DB in which the schema elements shall be managed.
      */
     public SQLiteSchemaHandler(RDBMSMetadataStore metadataStore, DatabaseAccess databaseAccess) {
+        this(metadataStore, databaseAccess, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance that is immediately associated with a metadata store.
+     *
+     * @param metadataStore  is the metadata store to that this instance should be associated
+     * @param databaseAccess is the access to the SQLite DB in which the schema elements shall be managed.
+     * @param cacheCapacity  is the maximum number of entries in each of the schema element caches
+     */
+    public SQLiteSchemaHandler(RDBMSMetadataStore metadataStore, DatabaseAccess databaseAccess, int cacheCapacity) {
         this.metadataStore = metadataStore;
         this.databaseAccess = databaseAccess;
+        this.columnCache = new LongCache<>(cacheCapacity);
+        this.tableCache = new LongCache<>(cacheCapacity);
+        this.schemaCache = new LongCache<>(cacheCapacity);
+        this.locationCache = new LongCache<>(cacheCapacity);
+        this.allColumnsForTableCache = new LongCache<>(cacheCapacity);
 
         // Initialize writers and queries.
         try {
@@ -394,10 +443,11 @@ public class SQLiteSchemaHandler {
             insertSchemaWriter.write(schema);
 
             // Update schemas.
-            if (this.allSchemas != null) {
-                this.allSchemas.add(schema);
+            Collection<Schema> allSchemas = this.allSchemas;
+            if (allSchemas != null) {
+                allSchemas.add(schema);
             }
-            this.schemaCache.put(schema.getId(), schema);
+            this.schemaCache.put(schema.getLongId(), schema);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -427,7 +477,7 @@ public class SQLiteSchemaHandler {
      */
     public void addColumnToTable(RDBMSColumn newColumn, Table table) {
         // update cache
-        Collection<Column> allColumnsForTable = allColumnsForTableCache.get(table);
+        Collection<Column> allColumnsForTable = allColumnsForTableCache.get(table.getLongId());
         if (allColumnsForTable != null) {
             allColumnsForTable.add(newColumn);
         }
@@ -453,15 +503,16 @@ public class SQLiteSchemaHandler {
         this.insertTargetWriter.write(new Object[]{target, locationId});
 
         // update caches
+        Collection<Target> allTargets = this.allTargets;
         if (allTargets != null) {
-            this.allTargets.add(target);
+            allTargets.add(target);
         }
         if (target instanceof RDBMSSchema) {
 
         } else if (target instanceof RDBMSTable) {
-            this.tableCache.put(target.getId(), (RDBMSTable) target);
+            this.tableCache.put(target.getLongId(), (RDBMSTable) target);
         } else if (target instanceof RDBMSColumn) {
-            this.columnCache.put(target.getId(), (RDBMSColumn) target);
+            this.columnCache.put(target.getLongId(), (RDBMSColumn) target);
         }
     }
 
@@ -495,10 +546,12 @@ public class SQLiteSchemaHandler {
             return;
         }
         try {
-            this.currentLocationIdMax = 0;
-            try (ResultSet res = this.databaseAccess.query("SELECT MAX(id) from Location;", "Location")) {
+            // Merge the pending locations with the persisted ones instead of flushing them.
+            this.currentLocationIdMax = (int) Math.max(0, this.insertLocationWriter.getMaxPendingKey());
+            try (ResultSet res = this.databaseAccess.queryWithOverlay("SELECT MAX(id) from Location;",
+                    Collections.singleton(this.insertLocationWriter), "Location")) {
                 while (res.next()) {
-                    this.currentLocationIdMax = res.getInt("max(id)");
+                    this.currentLocationIdMax = Math.max(this.currentLocationIdMax, res.getInt("max(id)"));
                 }
             }
         } catch (SQLException e) {
@@ -506,6 +559,19 @@ public class SQLiteSchemaHandler {
         }
     }
 
+    /**
+     * Copies one of the synchronized collections that are cached by this instance. The copy is created while holding
+     * the collection's monitor, so that callers can iterate it while other threads add elements to the original.
+     *
+     * @param synchronizedCollection is the collection to copy
+     * @return the copy
+     */
+    private static <T> Collection<T> copyOf(Collection<T> synchronizedCollection) {
+        synchronized (synchronizedCollection) {
+            return new HashSet<>(synchronizedCollection);
+        }
+    }
+
     /**
      * Returns all {@link de.hpi.isg.mdms.model.targets.Target}s from the underlying database.
      *
@@ -513,23 +579,25 @@ public class SQLiteSchemaHandler {
      */
     public Collection<Target> getAllTargets() {
         // If we cached the targets, we can return them directly.
-        if (allTargets != null) {
-            return allTargets;
+        Collection<Target> cachedTargets = this.allTargets;
+        if (cachedTargets != null) {
+            return copyOf(cachedTargets);
         }
 
         // Otherwise, load all the targets.
         try {
-            Int2ObjectMap<RDBMSSchema> schemas = loadAllSchemas();
-            Int2ObjectMap<RDBMSTable> tables = loadAllTables(schemas, true);
-            Int2ObjectMap<RDBMSColumn> columns = loadAllColumns(tables, null);
+            Long2ObjectMap<RDBMSSchema> schemas = loadAllSchemas();
+            Long2ObjectMap<RDBMSTable> tables = loadAllTables(schemas, true);
+            Long2ObjectMap<RDBMSColumn> columns = loadAllColumns(tables, null);
 
-            Collection<Target> allTargets = new HashSet<>();
+            Collection<Target> allTargets = Collections.synchronizedSet(new HashSet<Target>());
             allTargets.addAll(schemas.values());
             allTargets.addAll(tables.values());
             allTargets.addAll(columns.values());
 
             // Cache all these targets.
-            return this.allTargets = allTargets;
+            this.allTargets = allTargets;
+            return copyOf(allTargets);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -543,10 +611,10 @@ public class SQLiteSchemaHandler {
      * @throws SQLException
      */
     public void storeLocationType(Class<? extends Location> locationType) throws SQLException {
-        String sql = String.format("INSERT INTO LocationType (id, className) VALUES (%d, '%s');",
-                LocationCache.computeId(locationType),
-                locationType.getCanonicalName());
-        this.databaseAccess.executeSQL(sql, "LocationType");
+        this.databaseAccess.executePreparedSQL("INSERT INTO LocationType (id, className) VALUES (?, ?);",
+                // Local and anonymous classes have no canonical name, which used to be stored as "null".
+                new Object[]{LocationCache.computeId(locationType), String.valueOf(locationType.getCanonicalName())},
+                "LocationType");
     }
 
     /**
@@ -555,7 +623,7 @@ public class SQLiteSchemaHandler {
      * @return the loaded schemas.
      * @throws SQLException
      */
-    private Int2ObjectMap<RDBMSSchema> loadAllSchemas() throws SQLException {
+    private Long2ObjectMap<RDBMSSchema> loadAllSchemas() throws SQLException {
         String sql = "SELECT target.id AS targetId, target.name AS name, target.description as description, location.typee AS locationType, "
                 + "locationproperty.keyy AS locationPropKey, locationproperty.value AS locationPropVal "
                 + "FROM schemaa "
@@ -564,15 +632,15 @@ public class SQLiteSchemaHandler {
                 + "LEFT OUTER JOIN locationproperty ON location.id = locationproperty.locationId "
                 + "ORDER BY target.id;";
 
-        Int2ObjectMap<RDBMSSchema> schemas = new Int2ObjectOpenHashMap<>();
+        Long2ObjectMap<RDBMSSchema> schemas = new Long2ObjectOpenHashMap<>();
         RDBMSSchema lastSchema = null;
         // Query schemas together with all important related tables.
         try (ResultSet rs = this.databaseAccess.query(sql, "Schemaa", "Target", "Location", "LocationProperty")) {
             while (rs.next()) {
                 // See if we are dealing with the same target as before.
-                int targetId = rs.getInt("targetId");
+                long targetId = rs.getLong("targetId");
                 RDBMSSchema schema = lastSchema;
-                if (schema == null || schema.getId() != targetId) {
+                if (schema == null || schema.getLongId() != targetId) {
                     // For a new target, create a new object, potentially with location.
                     String name = rs.getString("name");
                     String description = rs.getString("description");
@@ -608,7 +676,7 @@ public class SQLiteSchemaHandler {
      * @return the loaded tables
      * @throws java.sql.SQLException
      */
-    private Int2ObjectMap<RDBMSTable> loadAllTables(Int2ObjectMap<RDBMSSchema> schemas, boolean areAllSchemasGiven)
+    private Long2ObjectMap<RDBMSTable> loadAllTables(Long2ObjectMap<RDBMSSchema> schemas, boolean areAllSchemasGiven)
             throws SQLException {
 
         LOG.trace("Loading all tables for {} schemas.", schemas.size());
@@ -632,19 +700,19 @@ public class SQLiteSchemaHandler {
                     + "ORDER BY target.id;";
         }
 
-        Int2ObjectMap<RDBMSTable> tables = new Int2ObjectOpenHashMap<>();
+        Long2ObjectMap<RDBMSTable> tables = new Long2ObjectOpenHashMap<>();
         IdUtils idUtils = this.metadataStore.getIdUtils();
 
         RDBMSTable lastTable = null;
-        Int2ObjectOpenHashMap<Collection<Table>> tablesBySchema = new Int2ObjectOpenHashMap<>();
+        Long2ObjectOpenHashMap<Collection<Table>> tablesBySchema = new Long2ObjectOpenHashMap<>();
 
         // Query tables together with all important related tables.
         try (ResultSet rs = this.databaseAccess.query(sql, "Tablee", "Target", "Location", "LocationProperty")) {
             while (rs.next()) {
                 // See if we are dealing with the same target as before.
-                int targetId = rs.getInt("targetId");
+                long targetId = rs.getLong("targetId");
                 RDBMSTable table = lastTable;
-                if (table == null || table.getId() != targetId) {
+                if (table == null || table.getLongId() != targetId) {
                     // For a new target, create a new object, potentially with location.
                     String name = rs.getString("name");
                     String description = rs.getString("description");
@@ -656,7 +724,7 @@ public class SQLiteSchemaHandler {
                                 Collections.<String, String>emptyMap());
                     }
 
-                    int schemaId = idUtils.createGlobalId(idUtils.getLocalSchemaId(targetId));
+                    long schemaId = idUtils.createGlobalLongId(idUtils.getLocalSchemaId(targetId));
                     RDBMSSchema schema = schemas.get(schemaId);
                     if (schema == null) {
                         throw new IllegalStateException(String.format("No schema found for table with id %08x.",
@@ -683,8 +751,8 @@ public class SQLiteSchemaHandler {
                 }
             }
 
-            for (Int2ObjectMap.Entry<Collection<Table>> entry : tablesBySchema.int2ObjectEntrySet()) {
-                int schemaId = entry.getIntKey();
+            for (Long2ObjectMap.Entry<Collection<Table>> entry : tablesBySchema.long2ObjectEntrySet()) {
+                long schemaId = entry.getLongKey();
                 Collection<Table> tablesForSchema = entry.getValue();
                 RDBMSSchema rdbmsSchema = schemas.get(schemaId);
                 rdbmsSchema.cacheChildTables(tablesForSchema);
@@ -704,7 +772,7 @@ public class SQLiteSchemaHandler {
      * @return the loaded columns indexed by their ID
      * @throws java.sql.SQLException
      */
-    private Int2ObjectMap<RDBMSColumn> loadAllColumns(Int2ObjectMap<RDBMSTable> tables, RDBMSSchema schema)
+    private Long2ObjectMap<RDBMSColumn> loadAllColumns(Long2ObjectMap<RDBMSTable> tables, RDBMSSchema schema)
             throws SQLException {
 
         LOG.trace("Loading all columns for {} tables.", tables.size());
@@ -726,22 +794,22 @@ public class SQLiteSchemaHandler {
                     + "JOIN target ON columnn.id = target.id "
                     + "LEFT OUTER JOIN location ON target.locationId = location.id "
                     + "LEFT OUTER JOIN locationproperty ON location.id = locationproperty.locationId "
-                    + "WHERE tablee.schemaId = " + schema.getId() + " " // and check that they belong to the schema
+                    + "WHERE tablee.schemaId = " + schema.getLongId() + " " // and check that they belong to the schema
                     + "ORDER BY target.id;";
         }
 
-        Int2ObjectMap<RDBMSColumn> columns = new Int2ObjectOpenHashMap<>();
+        Long2ObjectMap<RDBMSColumn> columns = new Long2ObjectOpenHashMap<>();
         IdUtils idUtils = this.metadataStore.getIdUtils();
-        Int2ObjectOpenHashMap<Collection<Column>> columnsByTable = new Int2ObjectOpenHashMap<>();
+        Long2ObjectOpenHashMap<Collection<Column>> columnsByTable = new Long2ObjectOpenHashMap<>();
 
         RDBMSColumn lastColumn = null;
         // Query columns together with all important related columns.
         try (ResultSet rs = this.databaseAccess.query(sql, "Columnn", "Target", "Location", "LocationProperty")) {
             while (rs.next()) {
                 // See if we are dealing with the same target as before.
-                int targetId = rs.getInt("targetId");
+                long targetId = rs.getLong("targetId");
                 RDBMSColumn column = lastColumn;
-                if (column == null || column.getId() != targetId) {
+                if (column == null || column.getLongId() != targetId) {
                     // For a new target, create a new object, potentially with location.
                     String name = rs.getString("name");
                     String description = rs.getString("description");
@@ -752,7 +820,7 @@ public class SQLiteSchemaHandler {
                                 Collections.<String, String>emptyMap());
                     }
 
-                    int tableId = idUtils.createGlobalId(idUtils.getLocalSchemaId(targetId),
+                    long tableId = idUtils.createGlobalLongId(idUtils.getLocalSchemaId(targetId),
                             idUtils.getLocalTableId(targetId));
                     Table table = tables.get(tableId);
                     if (table == null) {
@@ -779,8 +847,8 @@ public class SQLiteSchemaHandler {
                 }
             }
 
-            for (Int2ObjectMap.Entry<Collection<Column>> entry : columnsByTable.int2ObjectEntrySet()) {
-                int tableId = entry.getIntKey();
+            for (Long2ObjectMap.Entry<Collection<Column>> entry : columnsByTable.long2ObjectEntrySet()) {
+                long tableId = entry.getLongKey();
                 Collection<Column> columnsForTable = entry.getValue();
                 RDBMSTable rdbmsTable = tables.get(tableId);
                 rdbmsTable.cacheChildColumns(columnsForTable);
@@ -798,7 +866,7 @@ public class SQLiteSchemaHandler {
      * @param id is the ID of the target
      * @return the loaded target
      */
-    Target loadTarget(int id) {
+    Target loadTarget(long id) {
         IdUtils idUtils = this.metadataStore.getIdUtils();
         switch (idUtils.getIdType(id)) {
             case SCHEMA_ID:
@@ -821,7 +889,8 @@ public class SQLiteSchemaHandler {
      */
     public Collection<String> getLocationClassNames() throws SQLException {
         Collection<String> classNames = new LinkedList<>();
-        try (ResultSet resultSet = this.databaseAccess.query("SELECT id, className FROM LocationType;", "LocationType")) {
+        try (ResultSet resultSet = this.databaseAccess.queryCached("SELECT id, className FROM LocationType;",
+                "LocationType")) {
             while (resultSet.next()) {
                 int id = resultSet.getInt("id");
                 String className = resultSet.getString("className");
@@ -836,6 +905,22 @@ public class SQLiteSchemaHandler {
         return classNames;
     }
 
+    /**
+     * Loads the IDs of all schemas, tables, and columns with a single scan over the target table.
+     *
+     * @return the target IDs
+     * @throws SQLException
+     */
+    public LongCollection getAllTargetIds() throws SQLException {
+        LongList ids = new LongArrayList();
+        try (ResultSet resultSet = this.databaseAccess.query("SELECT id FROM Target;", "Target")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong("id"));
+            }
+        }
+        return ids;
+    }
+
     /**
      * Checks whether there exists a schema element with the given ID.
      *
@@ -843,24 +928,23 @@ public class SQLiteSchemaHandler {
      * @return whether the schema element exists
      * @throws SQLException
      */
-    public boolean isTargetIdInUse(int id) throws SQLException {
+    public boolean isTargetIdInUse(long id) throws SQLException {
         // Check if the ID is in any of the caches or any of the child caches.
         IdUtils idUtils = this.metadataStore.getIdUtils();
-        Integer wrappedId = id;
         switch (idUtils.getIdType(id)) {
             case SCHEMA_ID:
-                if (this.schemaCache.containsKey(wrappedId)) {
+                if (this.schemaCache.containsKey(id)) {
                     return true;
                 }
                 break;
             case TABLE_ID:
-                if (this.tableCache.containsKey(wrappedId)) {
+                if (this.tableCache.containsKey(id)) {
                     return true;
                 } else {
-                    int schemaId = idUtils.createGlobalId(idUtils.getLocalSchemaId(id));
+                    long schemaId = idUtils.createGlobalLongId(idUtils.getLocalSchemaId(id));
                     RDBMSSchema parentSchema = this.schemaCache.get(schemaId);
                     if (parentSchema != null) {
-                        IntCollection childIdCache = parentSchema.getChildIdCache();
+                        LongCollection childIdCache = parentSchema.getChildIdCache();
                         if (childIdCache != null) {
                             return childIdCache.contains(id);
                         }
@@ -868,13 +952,13 @@ public class SQLiteSchemaHandler {
                 }
                 break;
             case COLUMN_ID:
-                if (this.columnCache.containsKey(wrappedId)) {
+                if (this.columnCache.containsKey(id)) {
                     return true;
                 } else {
-                    int tableId = idUtils.createGlobalId(idUtils.getLocalSchemaId(id), idUtils.getLocalTableId(id));
+                    long tableId = idUtils.createGlobalLongId(idUtils.getLocalSchemaId(id), idUtils.getLocalTableId(id));
                     RDBMSTable parentTable = this.tableCache.get(tableId);
                     if (parentTable != null) {
-                        IntCollection childIdCache = parentTable.getChildIdCache();
+                        LongCollection childIdCache = parentTable.getChildIdCache();
                         if (childIdCache != null) {
                             return childIdCache.contains(id);
                         }
@@ -884,9 +968,28 @@ public class SQLiteSchemaHandler {
 
         // Issue a query, to find out if the ID is in use.
         boolean isIdInUse = false;
-        String sql = String.format("SELECT id FROM Target WHERE id=%d LIMIT 1", id);
-        try (ResultSet resultSet = this.databaseAccess.query(sql, "Target")) {
-            isIdInUse = resultSet.next();
+        String sql = "SELECT id FROM Target WHERE id=? LIMIT 1";
+        Object[] parameters = new Object[]{id};
+        // Other threads must not change the pending targets between the checks and the query.
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            if (this.deleteTargetWriter.isKeyPending(id)) {
+                // The pending insertions and deletions of the ID need to be resolved in the DB.
+                try (ResultSet resultSet = this.databaseAccess.queryPrepared(sql, parameters, "Target")) {
+                    isIdInUse = resultSet.next();
+                }
+            } else if (this.insertTargetWriter.isKeyPending(id)) {
+                isIdInUse = true;
+            } else {
+                // Pending target insertions cannot contain the ID, so we do not need to flush them.
+                try (ResultSet resultSet = this.databaseAccess.queryPreparedWithOverlay(sql, parameters,
+                        Collections.singleton(this.insertTargetWriter), "Target")) {
+                    isIdInUse = resultSet.next();
+                }
+            }
+        } finally {
+            lock.unlock();
         }
         return isIdInUse;
     }
@@ -898,18 +1001,19 @@ public class SQLiteSchemaHandler {
      */
     public Collection<Schema> getAllSchemas() {
         // Try to return the schemas through caches.
-        if (allSchemas != null) {
-            return allSchemas;
+        Collection<Schema> cachedSchemas = this.allSchemas;
+        if (cachedSchemas != null) {
+            return copyOf(cachedSchemas);
         }
 
         // Otherwise load the schemas.
         try {
-            Collection<Schema> schemas = new HashSet<>();
-            Int2ObjectMap<RDBMSSchema> loadedSchemas = loadAllSchemas();
+            Collection<Schema> schemas = Collections.synchronizedSet(new HashSet<Schema>());
+            Long2ObjectMap<RDBMSSchema> loadedSchemas = loadAllSchemas();
             schemas.addAll(loadedSchemas.values());
             // Cache the schemas.
             allSchemas = schemas;
-            return allSchemas;
+            return copyOf(schemas);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -924,8 +1028,8 @@ public class SQLiteSchemaHandler {
     @SuppressWarnings("unchecked")
     public Collection<Table> getAllTablesForSchema(RDBMSSchema rdbmsSchema) {
         try {
-            Int2ObjectMap<RDBMSSchema> parentSchemas = Int2ObjectMaps.singleton(rdbmsSchema.getId(), rdbmsSchema);
-            Int2ObjectMap<RDBMSTable> tables = loadAllTables(parentSchemas, false);
+            Long2ObjectMap<RDBMSSchema> parentSchemas = Long2ObjectMaps.singleton(rdbmsSchema.getLongId(), rdbmsSchema);
+            Long2ObjectMap<RDBMSTable> tables = loadAllTables(parentSchemas, false);
             loadAllColumns(tables, rdbmsSchema);
             return (Collection<Table>) (Collection<?>) tables.values();
         } catch (SQLException e) {
@@ -940,24 +1044,24 @@ public class SQLiteSchemaHandler {
      * @return the loaded columns
      */
     public Collection<Column> getAllColumnsForTable(RDBMSTable rdbmsTable) {
-        Collection<Column> allColumnsForTable = allColumnsForTableCache.get(rdbmsTable);
+        Collection<Column> allColumnsForTable = allColumnsForTableCache.get(rdbmsTable.getLongId());
         if (allColumnsForTable != null) {
-            return allColumnsForTable;
+            return copyOf(allColumnsForTable);
         }
         try {
-            Collection<Column> columns = new HashSet<>();
+            Collection<Column> columns = Collections.synchronizedSet(new HashSet<Column>());
 
             String sqlTablesForSchema = String
                     .format("SELECT columnn.id as id from columnn, target where target.id = columnn.id and columnn.tableId=%d;",
-                            rdbmsTable.getId());
+                            rdbmsTable.getLongId());
 
             ResultSet rs = databaseAccess.query(sqlTablesForSchema, "columnn", "target");
             while (rs.next()) {
-                columns.add(getColumnById(rs.getInt("id")));
+                columns.add(getColumnById(rs.getLong("id")));
             }
             rs.close();
-            allColumnsForTableCache.put(rdbmsTable, columns);
-            return allColumnsForTableCache.get(rdbmsTable);
+            allColumnsForTableCache.put(rdbmsTable.getLongId(), columns);
+            return copyOf(columns);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -969,7 +1073,7 @@ public class SQLiteSchemaHandler {
      * @param columnId is the ID of the column to load
      * @return the loaded column
      */
-    public Column getColumnById(int columnId) {
+    public Column getColumnById(long columnId) {
         // Try to find a cached column.
         Column cached = columnCache.get(columnId);
         if (cached != null) {
@@ -980,14 +1084,14 @@ public class SQLiteSchemaHandler {
         try (ResultSet rs = this.columnQuery.execute(columnId)) {
 
             while (rs.next()) {
-                columnCache.put(columnId,
-                        RDBMSColumn.restore(this.metadataStore,
-                                this.getTableById(rs.getInt("tableId")),
-                                rs.getInt("id"),
-                                rs.getString("name"),
-                                rs.getString("description"),
-                                getLocationFor(rs.getInt("id"))));
-                return columnCache.get(columnId);
+                RDBMSColumn column = RDBMSColumn.restore(this.metadataStore,
+                        this.getTableById(rs.getLong("tableId")),
+                        rs.getLong("id"),
+                        rs.getString("name"),
+                        rs.getString("description"),
+                        getLocationFor(rs.getLong("id")));
+                columnCache.put(columnId, column);
+                return column;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1003,7 +1107,7 @@ public class SQLiteSchemaHandler {
      * @param tableId is the ID of the table to load
      * @return the loaded table
      */
-    public Table getTableById(int tableId) {
+    public Table getTableById(long tableId) {
         Table cached = tableCache.get(tableId);
         if (cached != null) {
             return cached;
@@ -1011,14 +1115,14 @@ public class SQLiteSchemaHandler {
 
         try (ResultSet rs = this.tableQuery.execute(tableId)) {
             while (rs.next()) {
-                tableCache.put(tableId, RDBMSTable
-                        .restore(this.metadataStore,
-                                this.getSchemaById(rs.getInt("schemaId")),
-                                rs.getInt("id"),
-                                rs.getString("name"),
-                                rs.getString("description"),
-                                getLocationFor(rs.getInt("id"))));
-                return tableCache.get(tableId);
+                RDBMSTable table = RDBMSTable.restore(this.metadataStore,
+                        this.getSchemaById(rs.getLong("schemaId")),
+                        rs.getLong("id"),
+                        rs.getString("name"),
+                        rs.getString("description"),
+                        getLocationFor(rs.getLong("id")));
+                tableCache.put(tableId, table);
+                return table;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1033,7 +1137,7 @@ public class SQLiteSchemaHandler {
      * @param id is the ID of the schema element for that the location should be loaded
      * @return the loaded location
      */
-    public Location getLocationFor(int id) {
+    public Location getLocationFor(long id) {
         Location cached = locationCache.get(id);
         if (cached != null) {
             return cached;
@@ -1062,7 +1166,7 @@ public class SQLiteSchemaHandler {
             rs.close();
 
             locationCache.put(id, location);
-            return locationCache.get(id);
+            return location;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1074,7 +1178,7 @@ public class SQLiteSchemaHandler {
      * @param schemaId is the ID of the schema to load
      * @return the loaded schema
      */
-    public Schema getSchemaById(int schemaId) {
+    public Schema getSchemaById(long schemaId) {
         Schema cached = schemaCache.get(schemaId);
         if (cached != null) {
             return cached;
@@ -1082,13 +1186,13 @@ public class SQLiteSchemaHandler {
 
         try (ResultSet rs = this.schemaQuery.execute(schemaId)) {
             while (rs.next()) {
-                schemaCache.put(schemaId,
-                        RDBMSSchema.restore(this.metadataStore,
-                                rs.getInt("id"),
-                                rs.getString("name"),
-                                rs.getString("description"),
-                                getLocationFor(rs.getInt("id"))));
-                return schemaCache.get(schemaId);
+                RDBMSSchema schema = RDBMSSchema.restore(this.metadataStore,
+                        rs.getLong("id"),
+                        rs.getString("name"),
+                        rs.getString("description"),
+                        getLocationFor(rs.getLong("id")));
+                schemaCache.put(schemaId, schema);
+                return schema;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1106,31 +1210,29 @@ public class SQLiteSchemaHandler {
      */
     public Schema getSchemaByName(String schemaName) throws NameAmbigousException {
         try {
-            String sqlSchemaeById = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description"
-                                    + " from target, schemaa where target.id = schemaa.id and target.name='%s'",
-                            schemaName);
-            ResultSet rs = databaseAccess.query(sqlSchemaeById, "schemaa", "target");
-            RDBMSSchema found = null;
-            while (rs.next()) {
-                // second loop
+            String sqlSchemaeById = "SELECT target.id as id, target.name as name, target.description as description"
+                    + " from target, schemaa where target.id = schemaa.id and target.name=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlSchemaeById, new Object[]{schemaName}, "schemaa", "target")) {
+                RDBMSSchema found = null;
+                while (rs.next()) {
+                    // second loop
+                    if (found != null) {
+                        throw new NameAmbigousException(schemaName);
+                    }
+                    found = RDBMSSchema.restore(this.metadataStore,
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+
+                }
                 if (found != null) {
-                    throw new NameAmbigousException(schemaName);
+                    schemaCache.put(found.getLongId(), found);
                 }
-                found = RDBMSSchema.restore(this.metadataStore,
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
 
-            }
-            if (found != null) {
-                schemaCache.put(found.getId(), found);
+                return found;
             }
 
-            rs.close();
-            return found;
-
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1146,23 +1248,21 @@ public class SQLiteSchemaHandler {
         Collection<Schema> schemas = new HashSet<>();
         try {
 
-            String sqlSchemaeById = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description"
-                                    + " from target, schemaa where target.id = schemaa.id and target.name='%s'",
-                            schemaName);
-            ResultSet rs = databaseAccess.query(sqlSchemaeById, "schemaa", "target");
-            while (rs.next()) {
-                // second loop
-                RDBMSSchema schema = RDBMSSchema.restore(this.metadataStore,
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
-                schemaCache.put(schema.getId(), schema);
-                schemas.add(schema);
+            String sqlSchemaeById = "SELECT target.id as id, target.name as name, target.description as description"
+                    + " from target, schemaa where target.id = schemaa.id and target.name=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlSchemaeById, new Object[]{schemaName}, "schemaa", "target")) {
+                while (rs.next()) {
+                    // second loop
+                    RDBMSSchema schema = RDBMSSchema.restore(this.metadataStore,
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+                    schemaCache.put(schema.getLongId(), schema);
+                    schemas.add(schema);
+                }
+                return schemas;
             }
-            rs.close();
-            return schemas;
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1179,24 +1279,22 @@ public class SQLiteSchemaHandler {
         Collection<Column> columns = new HashSet<>();
         try {
 
-            String sqlColumnsByName = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description, columnn.tableId as tableId"
-                                    + " from target, columnn where target.id = columnn.id and target.name='%s'",
-                            columnName);
-            ResultSet rs = databaseAccess.query(sqlColumnsByName, "columnn", "target");
-            while (rs.next()) {
-                // second loop
-                RDBMSColumn column = RDBMSColumn.restore(this.metadataStore,
-                        this.getTableById(rs.getInt("tableId")),
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
-                columnCache.put(column.getId(), column);
-                columns.add(column);
+            String sqlColumnsByName = "SELECT target.id as id, target.name as name, target.description as description, columnn.tableId as tableId"
+                    + " from target, columnn where target.id = columnn.id and target.name=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlColumnsByName, new Object[]{columnName}, "columnn", "target")) {
+                while (rs.next()) {
+                    // second loop
+                    RDBMSColumn column = RDBMSColumn.restore(this.metadataStore,
+                            this.getTableById(rs.getLong("tableId")),
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+                    columnCache.put(column.getLongId(), column);
+                    columns.add(column);
+                }
+                return columns;
             }
-            rs.close();
-            return columns;
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1213,33 +1311,32 @@ public class SQLiteSchemaHandler {
      */
     public Column getColumnByName(String columnName, Table table) throws NameAmbigousException {
         try {
-            String sqlColumnByName = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description, columnn.tableId as tableId"
-                                    + " from target, columnn where target.id = columnn.id and target.name='%s'"
-                                    + " and columnn.tableId=%d", columnName, table.getId()
-                    );
-            ResultSet rs = databaseAccess.query(sqlColumnByName, "columnn", "target");
-            RDBMSColumn found = null;
-            while (rs.next()) {
-                // second loop
+            String sqlColumnByName = "SELECT target.id as id, target.name as name, target.description as description, columnn.tableId as tableId"
+                    + " from target, columnn where target.id = columnn.id and target.name=?"
+                    + " and columnn.tableId=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlColumnByName, new Object[]{columnName, table.getLongId()},
+                    "columnn", "target")) {
+                RDBMSColumn found = null;
+                while (rs.next()) {
+                    // second loop
+                    if (found != null) {
+                        throw new NameAmbigousException(columnName);
+                    }
+                    found = RDBMSColumn.restore(this.metadataStore,
+                            table,
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+
+                }
                 if (found != null) {
-                    throw new NameAmbigousException(columnName);
+                    columnCache.put(found.getLongId(), found);
                 }
-                found = RDBMSColumn.restore(this.metadataStore,
-                        table,
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
 
-            }
-            if (found != null) {
-                columnCache.put(found.getId(), found);
+                return found;
             }
 
-            rs.close();
-            return found;
-
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1254,32 +1351,30 @@ public class SQLiteSchemaHandler {
      */
     public Table getTableByName(String tableName) throws NameAmbigousException {
         try {
-            String sqlTableByname = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description, tablee.schemaId as schemaId"
-                                    + " from target, tablee where target.id = tablee.id and target.name='%s'",
-                            tableName);
-            ResultSet rs = databaseAccess.query(sqlTableByname, "tablee", "target");
-            RDBMSTable found = null;
-            while (rs.next()) {
-                // second loop
+            String sqlTableByname = "SELECT target.id as id, target.name as name, target.description as description, tablee.schemaId as schemaId"
+                    + " from target, tablee where target.id = tablee.id and target.name=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlTableByname, new Object[]{tableName}, "tablee", "target")) {
+                RDBMSTable found = null;
+                while (rs.next()) {
+                    // second loop
+                    if (found != null) {
+                        throw new NameAmbigousException(tableName);
+                    }
+                    found = RDBMSTable.restore(this.metadataStore,
+                            this.getSchemaById(rs.getLong("schemaId")),
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+
+                }
                 if (found != null) {
-                    throw new NameAmbigousException(tableName);
+                    tableCache.put(found.getLongId(), found);
                 }
-                found = RDBMSTable.restore(this.metadataStore,
-                        this.getSchemaById(rs.getInt("schemaId")),
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
 
-            }
-            if (found != null) {
-                tableCache.put(found.getId(), found);
+                return found;
             }
 
-            rs.close();
-            return found;
-
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1295,24 +1390,22 @@ public class SQLiteSchemaHandler {
         Collection<Table> tables = new HashSet<>();
         try {
 
-            String sqlSchemaeById = String
-                    .format("SELECT target.id as id, target.name as name, target.description as description, tablee.schemaId as schemaId"
-                                    + " from target, tablee where target.id = tablee.id and target.name='%s'",
-                            tableName);
-            ResultSet rs = databaseAccess.query(sqlSchemaeById, "tablee", "target");
-            while (rs.next()) {
-                // second loop
-                RDBMSTable schema = RDBMSTable.restore(this.metadataStore,
-                        this.getSchemaById(rs.getInt("schemaId")),
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        getLocationFor(rs.getInt("id")));
-                tableCache.put(schema.getId(), schema);
-                tables.add(schema);
+            String sqlSchemaeById = "SELECT target.id as id, target.name as name, target.description as description, tablee.schemaId as schemaId"
+                    + " from target, tablee where target.id = tablee.id and target.name=?";
+            try (ResultSet rs = databaseAccess.queryPrepared(sqlSchemaeById, new Object[]{tableName}, "tablee", "target")) {
+                while (rs.next()) {
+                    // second loop
+                    RDBMSTable schema = RDBMSTable.restore(this.metadataStore,
+                            this.getSchemaById(rs.getLong("schemaId")),
+                            rs.getLong("id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            getLocationFor(rs.getLong("id")));
+                    tableCache.put(schema.getLongId(), schema);
+                    tables.add(schema);
+                }
+                return tables;
             }
-            rs.close();
-            return tables;
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -1331,7 +1424,7 @@ public class SQLiteSchemaHandler {
             throw new RuntimeException(e);
         }
         this.allSchemas.remove(schema);
-        this.schemaCache.remove(schema.getId());
+        this.schemaCache.remove(schema.getLongId());
         removeTargetWithLocation(schema);
     }
 
@@ -1346,9 +1439,10 @@ public class SQLiteSchemaHandler {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        if (this.allColumnsForTableCache.get(column.getTable()) != null)
-            this.allColumnsForTableCache.get(column.getTable()).remove(column);
-        this.columnCache.remove(column.getId());
+        Collection<Column> allColumnsForTable = this.allColumnsForTableCache.get(column.getTable().getLongId());
+        if (allColumnsForTable != null)
+            allColumnsForTable.remove(column);
+        this.columnCache.remove(column.getLongId());
         removeTargetWithLocation(column);
     }
 
@@ -1363,8 +1457,8 @@ public class SQLiteSchemaHandler {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        this.tableCache.remove(table);
-        this.allColumnsForTableCache.remove(table);
+        this.tableCache.remove(table.getLongId());
+        this.allColumnsForTableCache.remove(table.getLongId());
         removeTargetWithLocation(table);
     }
 
@@ -1376,7 +1470,7 @@ public class SQLiteSchemaHandler {
     private void removeTargetWithLocation(Target target) {
         // first delete location and location properties
         try {
-            ResultSet rs = this.locationQuery.execute(target.getId());
+            ResultSet rs = this.locationQuery.execute(target.getLongId());
             while (rs.next()) {
                 Integer locationId = rs.getInt("id");
                 removeLocation(target, locationId);
@@ -1388,7 +1482,7 @@ public class SQLiteSchemaHandler {
 
         // then remove target
         try {
-            this.deleteTargetWriter.write(target.getId());
+            this.deleteTargetWriter.write(target.getLongId());
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -1412,7 +1506,7 @@ public class SQLiteSchemaHandler {
             throw new RuntimeException(e);
         }
 
-        this.locationCache.remove(target.getLocation());
+        this.locationCache.remove(target.getLongId());
     }
 
     public void setMetadataStore(RDBMSMetadataStore metadataStore) {
@@ -1,7 +1,19 @@
 package de.hpi.isg.mdms.rdbms;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.KeyExtractor;
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.metrics.DatabaseMetrics;
+import de.hpi.isg.mdms.db.metrics.QueryMetrics;
+import de.hpi.isg.mdms.db.metrics.SlowQueryLog;
+import de.hpi.isg.mdms.db.metrics.WriterMetrics;
+import de.hpi.isg.mdms.db.query.Cursor;
+import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
+import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
+import de.hpi.isg.mdms.db.write.AsyncBatchExecutor;
+import de.hpi.isg.mdms.db.write.BatchWriter;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
 import de.hpi.isg.mdms.model.targets.Target;
@@ -9,14 +21,31 @@ import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.sqlite.Function;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 public class DatabaseAccessTest {
@@ -39,6 +68,20 @@ public class DatabaseAccessTest {
                     },
                     "Target");
 
+    private static final PreparedStatementBatchWriter.Factory<Integer> INSERT_TARGET_ID_WRITER_FACTORY =
+            new PreparedStatementBatchWriter.Factory<>(
+                    "INSERT INTO Target (ID, name, locationId) VALUES (?, ?, ?);",
+                    new PreparedStatementAdapter<Integer>() {
+                        @Override
+                        public void translateParameter(Integer id, PreparedStatement preparedStatement)
+                                throws SQLException {
+                            preparedStatement.setInt(1, id);
+                            preparedStatement.setString(2, "target-" + id);
+                            preparedStatement.setNull(3, Types.INTEGER);
+                        }
+                    },
+                    "Target");
+
     @Before
     public void setUp() throws SQLException, ClassNotFoundException {
         try {
@@ -83,4 +126,444 @@ public class DatabaseAccessTest {
             e.printStackTrace();
         }
     }
+
+    @Test
+    public void testAsyncFlushingRetainsReadYourWrites() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.enableAsyncFlushing(100);
+
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        int numTargets = 2 * BatchWriter.DEFAULT_BATCH_SIZE + 42;
+        for (int id = 0; id < numTargets; id++) {
+            insertTargetWriter.write(id);
+        }
+        assertTrue(dbAccess.getAsyncBatchExecutor().getNumStagedWrites() <= 100);
+
+        // The query must see the full batches that were executed in the background as well as the partial batch.
+        try (ResultSet resultSet = dbAccess.query("SELECT COUNT(*) FROM Target;", "Target")) {
+            assertTrue(resultSet.next());
+            assertEquals(numTargets, resultSet.getInt(1));
+        }
+        assertEquals(0, dbAccess.getAsyncBatchExecutor().getNumStagedWrites());
+
+        dbAccess.close();
+    }
+
+    @Test
+    public void testAsyncFlushingDoesNotBlockWritesDuringBatchExecution() throws Exception {
+        // Lets the execution of the first batch hang until it is released.
+        final CountDownLatch batchExecuting = new CountDownLatch(1);
+        final CountDownLatch batchReleased = new CountDownLatch(1);
+        Function.create(connection, "awaitRelease", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                batchExecuting.countDown();
+                try {
+                    batchReleased.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                result(value_text(0));
+            }
+        });
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.enableAsyncFlushing(AsyncBatchExecutor.DEFAULT_MAX_STAGED_WRITES);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(
+                new PreparedStatementBatchWriter.Factory<>(
+                        "INSERT INTO Target (ID, name, locationId) VALUES (?, awaitRelease(?), ?);",
+                        new PreparedStatementAdapter<Integer>() {
+                            @Override
+                            public void translateParameter(Integer id, PreparedStatement preparedStatement)
+                                    throws SQLException {
+                                preparedStatement.setInt(1, id);
+                                preparedStatement.setString(2, "target-" + id);
+                                preparedStatement.setNull(3, Types.INTEGER);
+                            }
+                        },
+                        "Target"));
+
+        for (int id = 0; id < BatchWriter.DEFAULT_BATCH_SIZE; id++) {
+            insertTargetWriter.write(id);
+        }
+        assertTrue(batchExecuting.await(10, TimeUnit.SECONDS));
+
+        // The batch is executed under the lock of the database access, but further writes do not need it.
+        assertFalse(dbAccess.getLock().tryLock());
+        for (int id = BatchWriter.DEFAULT_BATCH_SIZE; id < 2 * BatchWriter.DEFAULT_BATCH_SIZE; id++) {
+            insertTargetWriter.write(id);
+        }
+        assertEquals(BatchWriter.DEFAULT_BATCH_SIZE, dbAccess.getAsyncBatchExecutor().getNumStagedWrites());
+
+        batchReleased.countDown();
+        assertEquals(2 * BatchWriter.DEFAULT_BATCH_SIZE, countTargets(dbAccess));
+        dbAccess.close();
+    }
+
+    @Test
+    public void testGroupCommitDefersCommitsUntilFlush() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.enableGroupCommit(Integer.MAX_VALUE, Long.MAX_VALUE / 1000000L);
+
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        int numTargets = 2 * BatchWriter.DEFAULT_BATCH_SIZE + 42;
+        for (int id = 0; id < numTargets; id++) {
+            insertTargetWriter.write(id);
+        }
+        // Executed batches are visible within the transaction...
+        assertEquals(numTargets, countTargets(dbAccess));
+        // ...but have not been committed.
+        connection.rollback();
+        assertEquals(0, countTargets(dbAccess));
+
+        for (int id = 0; id < numTargets; id++) {
+            insertTargetWriter.write(id);
+        }
+        dbAccess.flush();
+        connection.rollback();
+        assertEquals(numTargets, countTargets(dbAccess));
+
+        dbAccess.close();
+    }
+
+    @Test
+    public void testAdaptiveBatchSizingAppliesToExistingWriters() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        BatchWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        assertFalse(insertTargetWriter.getBatchSizeController().isAdaptive());
+
+        dbAccess.enableAdaptiveBatchSizing(100, DatabaseAccess.DEFAULT_MAX_BATCH_MEMORY_BYTES);
+        assertTrue(insertTargetWriter.getBatchSizeController().isAdaptive());
+
+        dbAccess.disableAdaptiveBatchSizing();
+        assertFalse(insertTargetWriter.getBatchSizeController().isAdaptive());
+
+        dbAccess.close();
+    }
+
+    @Test
+    public void testQueryWithOverlayDoesNotFlushOverlayWriters() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        PreparedStatementBatchWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(
+                new PreparedStatementBatchWriter.Factory<>(
+                        "INSERT INTO Target (ID, name, locationId) VALUES (?, ?, ?);",
+                        new PreparedStatementAdapter<Integer>() {
+                            @Override
+                            public void translateParameter(Integer id, PreparedStatement preparedStatement)
+                                    throws SQLException {
+                                preparedStatement.setInt(1, id);
+                                preparedStatement.setString(2, "target-" + id);
+                                preparedStatement.setNull(3, Types.INTEGER);
+                            }
+                        },
+                        "Target").setKeyExtractor(KeyExtractor.SINGLE_INT_EXTRACTOR));
+        for (int id = 1; id <= 3; id++) {
+            insertTargetWriter.write(id);
+        }
+        assertTrue(insertTargetWriter.isKeyPending(2));
+        assertFalse(insertTargetWriter.isKeyPending(4));
+        assertEquals(3, insertTargetWriter.getMaxPendingKey());
+
+        try (ResultSet resultSet = dbAccess.queryWithOverlay("SELECT COUNT(*) FROM Target;",
+                Collections.singleton(insertTargetWriter), "Target")) {
+            assertTrue(resultSet.next());
+            assertEquals(0, resultSet.getInt(1));
+        }
+        assertTrue(insertTargetWriter.isKeyPending(2));
+
+        // A regular query flushes the writer and thereby clears its pending keys.
+        assertEquals(3, countTargets(dbAccess));
+        assertFalse(insertTargetWriter.isKeyPending(2));
+
+        dbAccess.close();
+    }
+
+    @Test
+    public void testMultiRowInsertsWriteAllRows() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.enableAsyncFlushing(2);
+        PreparedStatementBatchWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(
+                new PreparedStatementBatchWriter.Factory<>(
+                        "INSERT INTO Target (ID, name, locationId) VALUES (?, ?, ?);",
+                        new OffsetPreparedStatementAdapter<Integer>() {
+                            @Override
+                            public void translateParameter(Integer id, PreparedStatement preparedStatement,
+                                int parameterOffset)
+                                    throws SQLException {
+                                preparedStatement.setInt(parameterOffset + 1, id);
+                                preparedStatement.setString(parameterOffset + 2, "target-" + id);
+                                preparedStatement.setNull(parameterOffset + 3, Types.INTEGER);
+                            }
+                        },
+                        "Target")
+                        .setRowsPerStatement(1000)
+                        .setKeyExtractor(KeyExtractor.SINGLE_INT_EXTRACTOR));
+        // 999 host parameters allow for 333 rows with 3 parameters each.
+        assertEquals(333, insertTargetWriter.getRowsPerStatement());
+
+        // Full batches as well as the final flush end with a partially filled multi-row statement.
+        int numTargets = 2 * BatchWriter.DEFAULT_BATCH_SIZE + 42;
+        for (int id = 0; id < numTargets; id++) {
+            insertTargetWriter.write(id);
+        }
+        assertTrue(insertTargetWriter.isKeyPending(numTargets - 1));
+        assertEquals(numTargets, countTargets(dbAccess));
+        try (ResultSet resultSet = dbAccess.query("SELECT name FROM Target WHERE id = 4711;", "Target")) {
+            assertTrue(resultSet.next());
+            assertEquals("target-4711", resultSet.getString(1));
+        }
+
+        dbAccess.close();
+    }
+
+    @Test
+    public void testNestedPreparedQueriesOfTheSameTemplate() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.getMetrics().setEnabled(true);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        for (int id = 0; id < 3; id++) {
+            insertTargetWriter.write(id);
+        }
+
+        String sql = "SELECT id FROM Target WHERE id >= ? ORDER BY id;";
+        List<Integer> pairs = new ArrayList<>();
+        try (ResultSet outer = dbAccess.queryPrepared(sql, new Object[] { 0 }, "Target")) {
+            while (outer.next()) {
+                int outerId = outer.getInt(1);
+                try (ResultSet inner = dbAccess.queryPrepared(sql, new Object[] { outerId }, "Target")) {
+                    while (inner.next()) {
+                        pairs.add(outerId * 10 + inner.getInt(1));
+                    }
+                }
+            }
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 11, 12, 22), pairs);
+
+        // Once all result sets are closed, the cached statement is usable again.
+        try (ResultSet resultSet = dbAccess.queryPrepared(sql, new Object[] { 2 }, "Target")) {
+            assertTrue(resultSet.next());
+            assertEquals(2, resultSet.getInt(1));
+            assertFalse(resultSet.next());
+        }
+        // The inner loop required a second statement, which has been reused for its further executions.
+        assertEquals(1, dbAccess.getMetrics().getTotalAdditionalQueryStatements());
+
+        // A result set that is never closed occupies its statement, but the other statements are still reused.
+        ResultSet unclosedResultSet = dbAccess.queryPrepared(sql, new Object[] { 0 }, "Target");
+        for (int i = 0; i < 3; i++) {
+            try (ResultSet resultSet = dbAccess.queryPrepared(sql, new Object[] { 1 }, "Target")) {
+                assertTrue(resultSet.next());
+                assertEquals(1, resultSet.getInt(1));
+            }
+        }
+        assertTrue(unclosedResultSet.next());
+        assertEquals(0, unclosedResultSet.getInt(1));
+        assertEquals(1, dbAccess.getMetrics().getTotalAdditionalQueryStatements());
+
+        dbAccess.close();
+    }
+
+    private static int countTargets(DatabaseAccess dbAccess) throws SQLException {
+        try (ResultSet resultSet = dbAccess.query("SELECT COUNT(*) FROM Target;", "Target")) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+
+    @Test
+    public void testMetricsOfWritersAndQueries() throws Exception {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        // Metrics are opt-in, as tracking rows wraps every result set.
+        assertFalse(dbAccess.getMetrics().isEnabled());
+        dbAccess.getMetrics().setEnabled(true);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        int numTargets = BatchWriter.DEFAULT_BATCH_SIZE + 10;
+        for (int id = 0; id < numTargets; id++) {
+            insertTargetWriter.write(id);
+        }
+        for (int i = 0; i < 2; i++) {
+            try (ResultSet resultSet = dbAccess.query("SELECT id FROM Target WHERE id < " + (5 + i) + ";", "Target")) {
+                while (resultSet.next()) {
+                    // Consume rows.
+                }
+            }
+        }
+
+        DatabaseMetrics.Snapshot snapshot = dbAccess.getMetrics().snapshot();
+        WriterMetrics.Snapshot writerMetrics = snapshot.getWriterMetrics(
+                "INSERT INTO Target (ID, name, locationId) VALUES (?, ?, ?);");
+        assertEquals(2, writerMetrics.getFlushCount());
+        assertEquals(numTargets, writerMetrics.getStatementCount());
+        assertEquals(1, writerMetrics.getQueryForcedFlushCount());
+        assertEquals(2, writerMetrics.getFlushLatencies().getCount());
+
+        // Both queries only differ in a literal and should therefore share their metrics.
+        assertEquals(1, snapshot.getQueryMetrics().size());
+        QueryMetrics.Snapshot queryMetrics = snapshot.getQueryMetrics().iterator().next();
+        assertEquals("SELECT id FROM Target WHERE id < ?;", queryMetrics.getSql());
+        assertEquals(2, queryMetrics.getExecutionCount());
+        assertEquals(11, queryMetrics.getRowCount());
+
+        ObjectName objectName = dbAccess.getMetrics().registerMBean("test");
+        assertEquals(11L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "TotalRowsReturned"));
+        dbAccess.close();
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+
+    @Test
+    public void testSlowQueryLogCapturesQueriesAndPlans() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        for (int id = 0; id < 10; id++) {
+            insertTargetWriter.write(id);
+        }
+        SlowQueryLog slowQueryLog = dbAccess.getSlowQueryLog();
+        assertFalse(slowQueryLog.isEnabled());
+        assertEquals(10, countTargets(dbAccess));
+        assertTrue(slowQueryLog.getSlowQueries().isEmpty());
+
+        // With a threshold of 0, every query is slow.
+        slowQueryLog.setThresholdMillis(0);
+        for (int i = 0; i < 2; i++) {
+            try (ResultSet resultSet = dbAccess.queryPrepared("SELECT id FROM Target WHERE name = ?;",
+                    new Object[] { "target-" + i }, "Target")) {
+                assertTrue(resultSet.next());
+                assertFalse(resultSet.next());
+            }
+        }
+        List<SlowQueryLog.SlowQuery> slowQueries = slowQueryLog.getSlowQueries();
+        assertEquals(2, slowQueries.size());
+        SlowQueryLog.SlowQuery slowQuery = slowQueries.get(1);
+        assertEquals("SELECT id FROM Target WHERE name = ?;", slowQuery.getSql());
+        assertEquals("[target-1]", slowQuery.getParameters());
+        assertEquals(1, slowQuery.getRowCount());
+        assertTrue(slowQuery.getElapsedNanos() >= 0);
+
+        // The plan is captured once per statement and mentions the queried table.
+        String queryPlan = slowQueryLog.getQueryPlan("SELECT id FROM Target WHERE name = ?;");
+        assertNotNull(queryPlan);
+        assertTrue(queryPlan, queryPlan.contains("Target"));
+        assertEquals(queryPlan, slowQueries.get(0).getQueryPlan());
+        assertEquals(queryPlan, slowQuery.getQueryPlan());
+
+        // Ad-hoc queries are recorded when their result set is closed.
+        dbAccess.query("SELECT name FROM Target WHERE id = 4;", "Target").close();
+        slowQuery = slowQueryLog.getSlowQueries().get(2);
+        assertNull(slowQuery.getParameters());
+        assertEquals(0, slowQuery.getRowCount());
+        assertNotNull(slowQueryLog.getQueryPlan("SELECT name FROM Target WHERE id = 5;"));
+
+        slowQueryLog.setThresholdMillis(-1);
+        assertEquals(10, countTargets(dbAccess));
+        assertEquals(3, slowQueryLog.getSlowQueries().size());
+        dbAccess.close();
+    }
+
+    @Test
+    public void testCursorsMapRowsLazilyAndCloseTheirResultSets() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        for (int id = 0; id < 100; id++) {
+            insertTargetWriter.write(id);
+        }
+        DatabaseQuery<Integer> query = dbAccess.createQuery(new StrategyBasedPreparedQuery.Factory<>(
+                "SELECT id, name FROM Target WHERE id < ? ORDER BY id;",
+                PreparedStatementAdapter.SINGLE_INT_ADAPTER,
+                "Target").setFetchSize(16));
+        assertEquals(16, query.getFetchSize());
+
+        final int[] numResolutions = new int[1];
+        RowMapper<String> nameMapper = new RowMapper<String>() {
+
+            private int nameColumn;
+
+            @Override
+            public void resolveColumns(ResultSet resultSet) throws SQLException {
+                numResolutions[0]++;
+                this.nameColumn = resultSet.findColumn("name");
+            }
+
+            @Override
+            public String map(ResultSet resultSet) throws SQLException {
+                return resultSet.getString(this.nameColumn);
+            }
+        };
+
+        // The cursor resolves the columns once and closes the result set when it is exhausted.
+        List<String> names = query.execute(50, nameMapper).drainTo(new ArrayList<String>());
+        assertEquals(50, names.size());
+        assertEquals("target-49", names.get(49));
+        assertEquals(1, numResolutions[0]);
+
+        // A cursor can be abandoned early.
+        try (Cursor<String> cursor = query.execute(50, nameMapper)) {
+            assertTrue(cursor.hasNext());
+            assertTrue(cursor.hasNext());
+            assertEquals("target-0", cursor.next());
+        }
+        assertEquals(2, numResolutions[0]);
+
+        // Empty results do not require any columns.
+        try (Cursor<String> cursor = query.execute(0, nameMapper)) {
+            assertFalse(cursor.hasNext());
+        }
+        assertEquals(2, numResolutions[0]);
+        dbAccess.close();
+    }
+
+    @Test
+    public void testQueryResultCacheIsInvalidatedByWritesOnQueriedTables() throws SQLException {
+        DatabaseAccess dbAccess = new DatabaseAccess(connection);
+        dbAccess.getMetrics().setEnabled(true);
+        DatabaseWriter<Integer> insertTargetWriter = dbAccess.createBatchWriter(INSERT_TARGET_ID_WRITER_FACTORY);
+        for (int id = 0; id < 10; id++) {
+            insertTargetWriter.write(id);
+        }
+        String sql = "SELECT id, name FROM Target WHERE id < ? ORDER BY id;";
+        assertFalse(dbAccess.isQueryResultCacheEnabled());
+        assertEquals(5, countCachedTargets(dbAccess, sql, 5));
+        dbAccess.enableQueryResultCache(DatabaseAccess.DEFAULT_QUERY_RESULT_CACHE_SIZE);
+
+        // Only the first execution hits the database; the parameters are part of the key.
+        for (int i = 0; i < 3; i++) {
+            assertEquals(5, countCachedTargets(dbAccess, sql, 5));
+        }
+        assertEquals(3, countCachedTargets(dbAccess, sql, 3));
+        try (ResultSet resultSet = dbAccess.queryPreparedCached(sql, new Object[] { 5 }, "Target")) {
+            assertTrue(resultSet.next());
+            assertEquals(0, resultSet.getInt(1));
+            assertEquals("0", resultSet.getString("ID"));
+            assertEquals("target-0", resultSet.getString("name"));
+            assertEquals(2, resultSet.getMetaData().getColumnCount());
+        }
+        QueryMetrics.Snapshot queryMetrics = dbAccess.getMetrics().getQueryMetrics(sql).snapshot();
+        assertEquals(3, queryMetrics.getExecutionCount());
+        assertEquals(3, queryMetrics.getCacheHitCount());
+        assertEquals(2, queryMetrics.getCacheMissCount());
+
+        // Pending writes on the queried table invalidate the cached results...
+        insertTargetWriter.write(-1);
+        assertEquals(6, countCachedTargets(dbAccess, sql, 5));
+        assertEquals(4, dbAccess.getMetrics().getQueryMetrics(sql).snapshot().getExecutionCount());
+
+        // ...whereas writes on other tables do not.
+        dbAccess.executeSQL("INSERT INTO Config (keyy, value) VALUES ('key', 'value');", "Config");
+        assertEquals(6, countCachedTargets(dbAccess, sql, 5));
+        assertEquals(4, dbAccess.getMetrics().getQueryMetrics(sql).snapshot().getExecutionCount());
+        assertEquals(4L / 7d, dbAccess.getMetrics().getQueryCacheHitRates().get(sql), 0.001);
+
+        dbAccess.clearQueryResultCache();
+        assertEquals(6, countCachedTargets(dbAccess, sql, 5));
+        assertEquals(5, dbAccess.getMetrics().getQueryMetrics(sql).snapshot().getExecutionCount());
+        dbAccess.close();
+    }
+
+    private static int countCachedTargets(DatabaseAccess dbAccess, String sql, int maxId) throws SQLException {
+        int count = 0;
+        try (ResultSet resultSet = dbAccess.queryPreparedCached(sql, new Object[] { maxId }, "Target")) {
+            while (resultSet.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
@@ -13,7 +13,9 @@
 package de.hpi.isg.mdms.rdbms;
 
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
+import de.hpi.isg.mdms.db.query.Cursor;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
+import de.hpi.isg.mdms.db.query.RowMapper;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
@@ -21,12 +23,13 @@ import de.hpi.isg.mdms.domain.constraints.RDBMSConstraint;
 import de.hpi.isg.mdms.model.common.AbstractHashCodeAndEquals;
 import de.hpi.isg.mdms.model.constraints.Constraint;
 import de.hpi.isg.mdms.model.constraints.ConstraintCollection;
+import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Target;
 import de.hpi.isg.mdms.model.targets.TargetReference;
 import de.hpi.isg.mdms.model.constraints.AbstractConstraint;
 import de.hpi.isg.mdms.domain.constraints.RDBMSConstraintCollection;
-import it.unimi.dsi.fastutil.ints.IntCollection;
-import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongLists;
 import org.apache.commons.lang3.Validate;
 
 import java.sql.PreparedStatement;
@@ -56,6 +59,8 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
 
         DatabaseQuery<Integer> queryConstraintsForConstraintCollection;
 
+        DatabaseQuery<Object[]> queryConstraintsReferencing;
+
         DatabaseWriter<Integer> removeWriter;
 
         private static final PreparedStatementBatchWriter.Factory<int[]> INSERT_DUMMY_WRITER_FACTORY =
@@ -103,6 +108,16 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
                         PreparedStatementAdapter.SINGLE_INT_ADAPTER,
                         tableName);
 
+        private static final StrategyBasedPreparedQuery.Factory<Object[]> DUMMY_REFERENCING_QUERY_FACTORY =
+                new StrategyBasedPreparedQuery.Factory<>(
+                        "SELECT constraintt.id as id, dummy.columnId as columnId, dummy.dummy as dummy,"
+                                + " constraintt.constraintCollectionId as constraintCollectionId"
+                                + " from dummy, constraintt where dummy.constraintId = constraintt.id"
+                                + " and dummy.columnId = ?1"
+                                + " and (?2 is null or constraintt.constraintCollectionId = ?2);",
+                        PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER,
+                        tableName, "Constraintt");
+
         public DummySQLiteSerializer(SQLInterface sqlInterface) {
             this.sqlInterface = sqlInterface;
 
@@ -116,6 +131,9 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
                 this.queryConstraintsForConstraintCollection = sqlInterface.getDatabaseAccess().createQuery(
                         DUMMY_FOR_CONSTRAINTCOLLECTION_QUERY_FACTORY);
 
+                this.queryConstraintsReferencing = sqlInterface.getDatabaseAccess().createQuery(
+                        DUMMY_REFERENCING_QUERY_FACTORY);
+
                 this.removeWriter = sqlInterface.getDatabaseAccess().createBatchWriter(REMOVE_DUMMY_WRITER_FACTORY);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -127,10 +145,10 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
             Validate.isTrue(dummy instanceof NumberedDummyConstraint);
             try {
                 insertDummyWriter.write(new int[]{
-                        constraintId, ((NumberedDummyConstraint) dummy).getValue(), dummy
+                        constraintId, ((NumberedDummyConstraint) dummy).getValue(), (int) dummy
                         .getTargetReference()
                         .getAllTargetIds().iterator()
-                        .nextInt()
+                        .nextLong()
                 });
 
             } catch (SQLException e) {
@@ -142,29 +160,59 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
         @Override
         public Collection<NumberedDummyConstraint> deserializeConstraintsOfConstraintCollection(
                 ConstraintCollection constraintCollection) {
-            boolean retrieveConstraintCollection = constraintCollection == null;
+            return streamConstraintsOfConstraintCollection(constraintCollection)
+                    .drainTo(new HashSet<NumberedDummyConstraint>());
+        }
 
-            Collection<NumberedDummyConstraint> dummys = new HashSet<>();
+        @Override
+        public Cursor<NumberedDummyConstraint> streamConstraintsOfConstraintCollection(
+                final ConstraintCollection constraintCollection) {
+            RowMapper<NumberedDummyConstraint> rowMapper = createRowMapper(constraintCollection);
 
             try {
-                ResultSet rsdummys = retrieveConstraintCollection ?
-                        queryConstraints.execute(null) : queryConstraintsForConstraintCollection
-                                .execute(constraintCollection.getId());
-                while (rsdummys.next()) {
-                    if (retrieveConstraintCollection) {
-                        constraintCollection = (RDBMSConstraintCollection) this.sqlInterface
-                                .getConstraintCollectionById(rsdummys
-                                        .getInt("constraintCollectionId"));
+                if (constraintCollection == null) {
+                    return queryConstraints.execute(null, rowMapper);
+                }
+                return queryConstraintsForConstraintCollection.execute(constraintCollection.getId(), rowMapper);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private RowMapper<NumberedDummyConstraint> createRowMapper(final ConstraintCollection constraintCollection) {
+            return new RowMapper<NumberedDummyConstraint>() {
+
+                private int constraintCollectionIdColumn, columnIdColumn, dummyColumn;
+
+                @Override
+                public void resolveColumns(ResultSet resultSet) throws SQLException {
+                    this.constraintCollectionIdColumn = resultSet.findColumn("constraintCollectionId");
+                    this.columnIdColumn = resultSet.findColumn("columnId");
+                    this.dummyColumn = resultSet.findColumn("dummy");
+                }
+
+                @Override
+                public NumberedDummyConstraint map(ResultSet resultSet) throws SQLException {
+                    ConstraintCollection rowConstraintCollection = constraintCollection;
+                    if (rowConstraintCollection == null) {
+                        int constraintCollectionId = resultSet.getInt(this.constraintCollectionIdColumn);
+                        rowConstraintCollection = sqlInterface.getConstraintCollectionById(constraintCollectionId);
                     }
-                    dummys
-                            .add(NumberedDummyConstraint.build(
-                                    new NumberedDummyConstraint.Reference(this.sqlInterface.getColumnById(rsdummys
-                                            .getInt("columnId"))), constraintCollection,
-                                    rsdummys.getInt("dummy")));
+                    Column column = sqlInterface.getColumnById(resultSet.getInt(this.columnIdColumn));
+                    return NumberedDummyConstraint.build(new NumberedDummyConstraint.Reference(column),
+                            rowConstraintCollection, resultSet.getInt(this.dummyColumn));
                 }
-                rsdummys.close();
+            };
+        }
 
-                return dummys;
+        @Override
+        public Collection<NumberedDummyConstraint> deserializeConstraintsReferencing(long targetId,
+                ConstraintCollection constraintCollection) {
+            try {
+                return queryConstraintsReferencing.execute(new Object[] { targetId,
+                        constraintCollection == null ? null : constraintCollection.getId() },
+                        createRowMapper(constraintCollection))
+                        .drainTo(new HashSet<NumberedDummyConstraint>());
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -190,6 +238,9 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
                         ");";
                 this.sqlInterface.executeCreateTableStatement(createTable);
             }
+            // Index the column IDs to find the dummies of a column quickly.
+            this.sqlInterface.executeCreateTableStatement("CREATE INDEX IF NOT EXISTS [" + tableName
+                    + "_columnId] ON [" + tableName + "] ([columnId]);");
             if (!sqlInterface.tableExists(tableName)) {
                 throw new IllegalStateException("Not all tables necessary for serializer were created.");
             }
@@ -217,8 +268,8 @@ public class NumberedDummyConstraint extends AbstractConstraint implements RDBMS
         }
 
         @Override
-        public IntCollection getAllTargetIds() {
-            return IntLists.singleton(this.target.getId());
+        public LongCollection getAllTargetIds() {
+            return LongLists.singleton(this.target.getLongId());
         }
 
         @Override
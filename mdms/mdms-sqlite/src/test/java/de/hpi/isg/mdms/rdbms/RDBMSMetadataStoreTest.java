@@ -8,6 +8,7 @@ import de.hpi.isg.mdms.domain.RDBMSMetadataStore;
 import de.hpi.isg.mdms.model.location.DefaultLocation;
 import de.hpi.isg.mdms.model.targets.Column;
 import de.hpi.isg.mdms.model.targets.Schema;
+import de.hpi.isg.mdms.model.targets.SchemaSpec;
 import de.hpi.isg.mdms.model.targets.Table;
 import de.hpi.isg.mdms.exceptions.NameAmbigousException;
 import org.junit.After;
@@ -19,8 +20,14 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -118,6 +125,117 @@ public class RDBMSMetadataStoreTest {
         assertEquals(store1, store2);
     }
 
+    @Test
+    public void testLongIds() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewLongIdInstance(new SQLiteInterface(connection));
+        store1.addSchema("foo", null, new DefaultLocation());
+        final Schema schema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table table = schema.addTable(store1, "dummyTable", null, new DefaultLocation());
+        final Column column = table.addColumn(store1, "dummyColumn", null, 0);
+        assertTrue(column.getLongId() > Integer.MAX_VALUE);
+        store1.flush();
+
+        RDBMSMetadataStore store2 = RDBMSMetadataStore.load(new SQLiteInterface(connection));
+        assertTrue(store2.getIdUtils().isLongIds());
+        assertEquals(column.getLongId(), store2.getSchemaByName("PDB").getTableByName("dummyTable")
+                .getColumnByName("dummyColumn").getLongId());
+        assertEquals("dummyColumn", store2.getSQLInterface().getColumnById(column.getLongId()).getName());
+        assertTrue(store2.hasTargetWithId(table.getLongId()));
+        assertEquals(store1, store2);
+    }
+
+    @Test
+    public void testLoadingOfStoreWithoutIdModeConfiguration() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        final Schema schema = store1.addSchema("PDB", null, new DefaultLocation());
+        store1.flush();
+        // Stores from before the long-ID mode lack the configuration entry.
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM Config WHERE keyy='isLongIds';");
+        }
+
+        RDBMSMetadataStore store2 = RDBMSMetadataStore.load(new SQLiteInterface(connection));
+        assertTrue(!store2.getIdUtils().isLongIds());
+        assertEquals(schema.getId(), store2.getSchemaByName("PDB").getId());
+    }
+
+    @Test
+    public void testQueryResultCacheIsOptIn() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        assertFalse(store1.getSQLInterface().getDatabaseAccess().isQueryResultCacheEnabled());
+
+        Map<String, String> configuration = store1.getConfiguration();
+        configuration.put(RDBMSMetadataStore.QUERY_RESULT_CACHE_SIZE_KEY, "100");
+        final RDBMSMetadataStore store2 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection),
+                configuration);
+        assertTrue(store2.getSQLInterface().getDatabaseAccess().isQueryResultCacheEnabled());
+        store2.flush();
+
+        // The setting is persisted with the configuration.
+        RDBMSMetadataStore store3 = RDBMSMetadataStore.load(new SQLiteInterface(connection));
+        assertTrue(store3.getSQLInterface().getDatabaseAccess().isQueryResultCacheEnabled());
+    }
+
+    @Test
+    public void testIdAllocationAfterLoadingAndRemoval() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        final Schema schema1 = store1.addSchema("foo", null, new DefaultLocation());
+        final Table table1 = schema1.addTable(store1, "table1", null, new DefaultLocation());
+        final Column column1 = table1.addColumn(store1, "column1", null, 0);
+        final Table table2 = schema1.addTable(store1, "table2", null, new DefaultLocation());
+        assertTrue(table1.getLongId() != table2.getLongId());
+        store1.flush();
+
+        // The used IDs must be recovered when loading the store.
+        RDBMSMetadataStore store2 = RDBMSMetadataStore.load(new SQLiteInterface(connection));
+        assertTrue(store2.hasTargetWithId(schema1.getLongId()));
+        assertTrue(store2.hasTargetWithId(table2.getLongId()));
+        assertTrue(store2.hasTargetWithId(column1.getLongId()));
+        final Schema schema2 = store2.addSchema("bar", null, new DefaultLocation());
+        assertTrue(schema1.getLongId() != schema2.getLongId());
+        final Table table3 = store2.getSchemaByName("foo").addTable(store2, "table3", null, new DefaultLocation());
+        assertTrue(table1.getLongId() != table3.getLongId());
+        assertTrue(table2.getLongId() != table3.getLongId());
+
+        // Removed IDs are released.
+        store2.removeSchema(store2.getSchemaByName("foo"));
+        assertTrue(!store2.hasTargetWithId(schema1.getLongId()));
+        assertTrue(!store2.hasTargetWithId(table1.getLongId()));
+        assertTrue(!store2.hasTargetWithId(column1.getLongId()));
+        assertTrue(store2.hasTargetWithId(schema2.getLongId()));
+        assertEquals(schema1.getLongId(), store2.getUnusedSchemaId());
+    }
+
+    @Test
+    public void testImportOfSchema() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        store1.addSchema("foo", null, new DefaultLocation());
+        final SchemaSpec schemaSpec = new SchemaSpec("PDB", null, new DefaultLocation());
+        for (int tableNumber = 0; tableNumber < 10; tableNumber++) {
+            final SchemaSpec.TableSpec tableSpec = schemaSpec.addTable("table" + tableNumber, null,
+                    new DefaultLocation());
+            for (int columnNumber = 0; columnNumber < 5; columnNumber++) {
+                tableSpec.addColumn("column" + columnNumber, null);
+            }
+        }
+        final Schema schema = store1.importSchema(schemaSpec);
+        assertEquals(10, schema.getTables().size());
+        final Table table = schema.addTable(store1, "table10", null, new DefaultLocation());
+        assertTrue(store1.getIdUtils().isTableId(table.getLongId()));
+        assertTrue(table.getLongId() != schema.getTableByName("table9").getLongId());
+        store1.flush();
+
+        RDBMSMetadataStore store2 = RDBMSMetadataStore.load(new SQLiteInterface(connection));
+        final Schema loadedSchema = store2.getSchemaByName("PDB");
+        assertEquals(11, loadedSchema.getTables().size());
+        final Table loadedTable = loadedSchema.getTableByName("table3");
+        assertEquals(5, loadedTable.getColumns().size());
+        final Column loadedColumn = loadedTable.getColumnByName("column4");
+        assertEquals("4", loadedColumn.getLocation().getProperties().get(Location.INDEX));
+        assertEquals(loadedTable.getLongId(), store2.getIdUtils().getTableId(loadedColumn.getLongId()));
+        assertEquals(store1, store2);
+    }
+
     @Test
     public void testCreationOfEmptyRDBMSMetadataStore() throws Exception {
         MetadataStore store2 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
@@ -164,6 +282,124 @@ public class RDBMSMetadataStoreTest {
         assertTrue(constraintCollection.getConstraints().contains(dummyTypeConstraint2));
     }
 
+    @Test
+    public void testGetConstraintsReferencing() throws Exception {
+        final MetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        final Schema dummySchema1 = store1.addSchema("PDB", null, new DefaultLocation());
+        final Table table1 = dummySchema1.addTable(store1, "table1", null, new DefaultLocation());
+        final Column col1 = table1.addColumn(store1, "foo", null, 1);
+        final Column col2 = table1.addColumn(store1, "bar", null, 2);
+
+        final ConstraintCollection constraintCollection1 = store1.createConstraintCollection(null, dummySchema1);
+        final Constraint dummyConstraint1 = NumberedDummyConstraint.buildAndAddToCollection(col1,
+                constraintCollection1, 100);
+        NumberedDummyConstraint.buildAndAddToCollection(col2, constraintCollection1, 200);
+        final ConstraintCollection constraintCollection2 = store1.createConstraintCollection(null, dummySchema1);
+        final Constraint dummyConstraint2 = NumberedDummyConstraint.buildAndAddToCollection(col1,
+                constraintCollection2, 300);
+
+        assertEquals(new HashSet<>(Arrays.asList(dummyConstraint1, dummyConstraint2)),
+                new HashSet<>(store1.getConstraintsReferencing(col1.getId(), NumberedDummyConstraint.class)));
+        assertEquals(Collections.singleton(dummyConstraint1), new HashSet<>(
+                constraintCollection1.getConstraintsReferencing(col1.getId(), NumberedDummyConstraint.class)));
+        assertTrue(store1.getConstraintsReferencing(table1.getId(), Constraint.class).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAddingOfSchemasAndTables() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        final Schema sharedSchema = store1.addSchema("shared", null, new DefaultLocation());
+
+        // Let the threads add schemas as well as tables to the same schema at the same time.
+        final int numThreads = 8, numTablesPerThread = 50;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < numThreads; thread++) {
+            final int threadNumber = thread;
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    store1.addSchema("schema" + threadNumber, null, new DefaultLocation());
+                    for (int i = 0; i < numTablesPerThread; i++) {
+                        sharedSchema.addTable(store1, "table" + threadNumber + "_" + i, null, new DefaultLocation());
+                    }
+                    return null;
+                }
+            }));
+        }
+        startSignal.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        store1.flush();
+
+        // Each target must have been written exactly once with an ID of its own.
+        int numTargets = 1 + numThreads + numThreads * numTablesPerThread;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), COUNT(DISTINCT id) FROM Target;")) {
+                assertTrue(resultSet.next());
+                assertEquals(numTargets, resultSet.getInt(1));
+                assertEquals(numTargets, resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentConstraintWrites() throws Exception {
+        final RDBMSMetadataStore store1 = RDBMSMetadataStore.createNewInstance(new SQLiteInterface(connection));
+        final Schema dummySchema = store1.addSchema("PDB", null, new DefaultLocation());
+        final Column dummyColumn = dummySchema.addTable(store1, "dummyTable", null, new DefaultLocation())
+                .addColumn(store1, "dummyColumn", null, 0);
+        final ConstraintCollection constraintCollection = store1.createConstraintCollection(null, dummySchema);
+
+        // Let 16 threads add constraints at the same time, so that they also contend on the batch flushes.
+        final int numThreads = 16, numConstraintsPerThread = 2000;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < numThreads; thread++) {
+            final int firstValue = thread * numConstraintsPerThread;
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startSignal.await();
+                    for (int i = 0; i < numConstraintsPerThread; i++) {
+                        NumberedDummyConstraint.buildAndAddToCollection(dummyColumn, constraintCollection,
+                                firstValue + i);
+                    }
+                    return null;
+                }
+            }));
+        }
+        startSignal.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        store1.flush();
+
+        // Each constraint must have been written exactly once with an ID of its own.
+        int numConstraints = numThreads * numConstraintsPerThread;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT COUNT(*), COUNT(DISTINCT id), MAX(id) FROM Constraintt;")) {
+                assertTrue(resultSet.next());
+                assertEquals(numConstraints, resultSet.getInt(1));
+                assertEquals(numConstraints, resultSet.getInt(2));
+                assertEquals(numConstraints, resultSet.getInt(3));
+            }
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT COUNT(DISTINCT constraintId), COUNT(DISTINCT dummy) FROM dummy;")) {
+                assertTrue(resultSet.next());
+                assertEquals(numConstraints, resultSet.getInt(1));
+                assertEquals(numConstraints, resultSet.getInt(2));
+            }
+        }
+    }
+
     @Test
     public void testUnregisteredLocationTypeIsDeserializedAsdefaultLocation() {
         // setup metadataStore
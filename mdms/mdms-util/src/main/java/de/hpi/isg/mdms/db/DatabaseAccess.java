@@ -1,34 +1,59 @@
 package de.hpi.isg.mdms.db;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.hpi.isg.mdms.db.metrics.DatabaseMetrics;
+import de.hpi.isg.mdms.db.metrics.QueryMetrics;
+import de.hpi.isg.mdms.db.metrics.SlowQueryLog;
+import de.hpi.isg.mdms.db.metrics.WriterMetrics;
 import de.hpi.isg.mdms.db.query.DatabaseQuery;
 import de.hpi.isg.mdms.db.query.SQLQuery;
 import de.hpi.isg.mdms.db.query.StrategyBasedPreparedQuery.Factory;
+import de.hpi.isg.mdms.db.write.AsyncBatchExecutor;
+import de.hpi.isg.mdms.db.write.BatchSizeController;
 import de.hpi.isg.mdms.db.write.BatchWriter;
 import de.hpi.isg.mdms.db.write.DatabaseWriter;
 import de.hpi.isg.mdms.db.write.DependentWriter;
+import de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter;
 import de.hpi.isg.mdms.db.write.SQLExecutor;
 
 /**
  * Manages the access to a database by maintaining batch writers and ensuring all data is written before performing a
  * read.
+ * <p>
+ * Several threads may share an instance: writes, flushes, and the flushes before queries are serialized via the
+ * {@link #getLock() lock} of this object, which also guards the managed writers. Result sets of prepared queries are
+ * not shared among threads. As the background thread of {@link #enableAsyncFlushing(int) asynchronous flushing} uses
+ * the connection under the lock as well, result sets should be read under the lock while other threads write.
+ * However, writes of {@link BatchWriter}s with asynchronous flushing do not need the lock.
+ * </p>
  * 
  * @author Sebastian Kruse
  * 
@@ -36,6 +61,14 @@ import de.hpi.isg.mdms.db.write.SQLExecutor;
 public class DatabaseAccess implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseAccess.class);
+
+	public static final long DEFAULT_MAX_BATCH_MEMORY_BYTES = 16 * 1024 * 1024;
+
+	public static final int DEFAULT_GROUP_COMMIT_MAX_STATEMENTS = 100000;
+
+	public static final long DEFAULT_GROUP_COMMIT_MAX_DELAY_MILLIS = 1000;
+
+	public static final int DEFAULT_QUERY_RESULT_CACHE_SIZE = 256;
     
 	/**
 	 * The connection to the database.
@@ -43,19 +76,29 @@ public class DatabaseAccess implements AutoCloseable {
 	private Connection connection;
 
 	/**
-	 * A set of writers that operate on specific tables, usually {@link BatchWriter}s.
+	 * Assigns handles to the tables of the database.
+	 */
+	private final TableRegistry tableRegistry = new TableRegistry();
+
+	/**
+	 * Sets of writers that manipulate specific tables (indexed by table handle), usually {@link BatchWriter}s.
 	 */
-	private Map<String, Set<DependentWriter<?>>> manipulatingWriters = new HashMap<>();
+	private List<Set<DependentWriter<?>>> manipulatingWriters = new ArrayList<>();
 
 	/**
-	 * A set of writers that operate on specific tables, usually {@link BatchWriter}s.
+	 * The handles of all tables that are currently manipulated by any writer.
 	 */
-	private Map<String, Set<DependentWriter<?>>> accessingWriters = new HashMap<>();
+	private BitSet manipulatedTables = new BitSet();
 
 	/**
-	 * Captures for each writer, which writer have to flushed before flushing this writer.
+	 * Sets of writers that access specific tables (indexed by table handle), usually {@link BatchWriter}s.
 	 */
-	private Map<DependentWriter<?>, Set<DependentWriter<?>>> preceedingWriters = new HashMap<>();
+	private List<Set<DependentWriter<?>>> accessingWriters = new ArrayList<>();
+
+	/**
+	 * Captures for each writer, which writers have to be flushed before flushing this writer.
+	 */
+	private FlushOrderGraph<DependentWriter<?>> flushOrderGraph = new FlushOrderGraph<>();
 
 	/**
 	 * Executes plain SQL INSERT/UPDATE statements.
@@ -67,15 +110,110 @@ public class DatabaseAccess implements AutoCloseable {
 	 */
 	private Collection<DatabaseQuery<?>> queries = new LinkedList<>();
 
+	/**
+	 * Maximum number of statements that are kept per SQL template and thread while none of their result sets is open.
+	 */
+	private static final int MAX_IDLE_STATEMENTS_PER_QUERY = 4;
+
+	/**
+	 * Prepared statements for parameterized queries, keyed by their SQL templates. Each thread has its own statements,
+	 * because executing a statement closes its previous result set.
+	 */
+	private final ThreadLocal<Map<String, PreparedQuery>> preparedQueryCache =
+			new ThreadLocal<Map<String, PreparedQuery>>() {
+				@Override
+				protected Map<String, PreparedQuery> initialValue() {
+					return new HashMap<>();
+				}
+			};
+
+	/**
+	 * All statements of the {@link #preparedQueryCache} of any thread, including those whose result sets are still
+	 * open, so that they can be closed.
+	 */
+	private final Collection<PreparedStatement> allPreparedQueries = Collections
+			.synchronizedList(new ArrayList<PreparedStatement>());
+
+	/**
+	 * Guards the managed writers and the bookkeeping of their dependencies.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Writers for parameterized SQL statements, keyed by their SQL templates.
+	 */
+	private final Map<String, PreparedStatementBatchWriter<Object[]>> preparedWriterCache = new HashMap<>();
+
+	/**
+	 * The batch writers created by this object along with their factories, so that their batch sizing can be
+	 * reconfigured.
+	 */
+	private final Map<BatchWriter<?>, DatabaseWriter.Factory<?>> batchWriterFactories = new HashMap<>();
+
 	/**
 	 * Executes plain SQL SELECT statements.
 	 */
 	private SQLQuery sqlQuery;
 
 	/**
-	 * A mapping from tables to referenced tables (via foreign keys).
+	 * A mapping from tables to referenced tables (via foreign keys), both represented by their handles. Tables whose
+	 * foreign keys have not been loaded yet are mapped to {@code null}.
+	 */
+	private List<BitSet> foreignKeyDependencies = new ArrayList<>();
+
+	/**
+	 * Executes the batches of the managed writers in the background if asynchronous flushing is enabled; otherwise
+	 * {@code null}. Is only assigned while holding the {@link #lock}.
+	 */
+	private volatile AsyncBatchExecutor asyncBatchExecutor;
+
+	/**
+	 * The desired execution time of a single batch in ms or {@code 0} if batch writers use fixed batch sizes.
+	 */
+	private long targetFlushLatencyMillis = 0;
+
+	/**
+	 * The maximum memory that a single pending batch of an adaptive writer may occupy.
+	 */
+	private long maxBatchMemoryBytes = DEFAULT_MAX_BATCH_MEMORY_BYTES;
+
+	/**
+	 * The number of executed but uncommitted statements after which a commit is issued, or {@code 0} if each batch is
+	 * committed on its own.
+	 */
+	private int groupCommitMaxStatements = 0;
+
+	/**
+	 * The age of the oldest uncommitted batch after which a commit is issued.
+	 */
+	private long groupCommitMaxDelayMillis;
+
+	/**
+	 * The number of statements that have been executed since the last commit.
+	 */
+	private int numUncommittedStatements = 0;
+
+	/**
+	 * The {@link System#nanoTime()} of the first batch that has been executed after the last commit.
+	 */
+	private long firstUncommittedBatchNanos;
+
+	/**
+	 * Caches the results of queries that are issued via {@link #queryCached(String, String...)} and
+	 * {@link #queryPreparedCached(String, Object[], String...)} if enabled; otherwise {@code null}. Guarded by
+	 * {@link #lock}.
 	 */
-	private Map<String, Set<String>> foreignKeyDependencies = new HashMap<>();
+	private QueryResultCache queryResultCache;
+
+	/**
+	 * Collects statistics on the writers and queries of this object.
+	 */
+	private final DatabaseMetrics metrics = new DatabaseMetrics();
+
+	/**
+	 * Records queries that exceed a threshold; disabled by default.
+	 */
+	private final SlowQueryLog slowQueryLog;
 
 	public DatabaseAccess(Connection connection) {
 		super();
@@ -86,6 +224,7 @@ public class DatabaseAccess implements AutoCloseable {
 			throw new RuntimeException(e);
 		}
 		this.connection = connection;
+		this.slowQueryLog = new SlowQueryLog(connection, SlowQueryLog.DEFAULT_CAPACITY);
 		try {
 			this.sqlExecutor = new SQLExecutor(this, BatchWriter.DEFAULT_BATCH_SIZE);
 			this.sqlQuery = new SQLQuery(this);
@@ -98,35 +237,68 @@ public class DatabaseAccess implements AutoCloseable {
 	 * Loads the foreign keys from the RDBMS.
 	 */
 	public Set<String> getReferencedTables(String table) {
-		table = canonicalizeTableName(table);
-		Set<String> referencedTables = this.foreignKeyDependencies.get(table);
-		if (referencedTables != null) {
-			return referencedTables;
-		}
+		return this.tableRegistry.getTableNames(getReferencedTables(this.tableRegistry.getHandle(table)));
+	}
+
+	/**
+	 * Loads the foreign keys from the RDBMS.
+	 *
+	 * @param tableHandle
+	 *            is the handle of the referencing table
+	 * @return the handles of the referenced tables; must not be modified
+	 */
+	public BitSet getReferencedTables(int tableHandle) {
+		this.lock.lock();
 		try {
-			referencedTables = new HashSet<String>();
-			DatabaseMetaData metaData = this.connection.getMetaData();
-			ResultSet resultSet = metaData.getImportedKeys(null, null, table);
-			while (resultSet.next()) {
-				String referencedTable = canonicalizeTableName(resultSet.getString("PKTABLE_NAME"));
-				referencedTables.add(referencedTable);
+			BitSet referencedTables = getOrNull(this.foreignKeyDependencies, tableHandle);
+			if (referencedTables != null) {
+				return referencedTables;
 			}
-			resultSet.close();
-			this.foreignKeyDependencies.put(table, referencedTables);
-			return referencedTables;
-		} catch (SQLException e) {
-			throw new RuntimeException(e);
+			try {
+				referencedTables = new BitSet();
+				DatabaseMetaData metaData = this.connection.getMetaData();
+				ResultSet resultSet = metaData.getImportedKeys(null, null, this.tableRegistry.getTableName(tableHandle));
+				while (resultSet.next()) {
+					referencedTables.set(this.tableRegistry.getHandle(resultSet.getString("PKTABLE_NAME")));
+				}
+				resultSet.close();
+				set(this.foreignKeyDependencies, tableHandle, referencedTables);
+				return referencedTables;
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		} finally {
+			this.lock.unlock();
 		}
 	}
 
+	/**
+	 * @return the {@link TableRegistry} that assigns the table handles used by this object
+	 */
+	public TableRegistry getTableRegistry() {
+		return this.tableRegistry;
+	}
+
+	/**
+	 * Shortcut for {@link TableRegistry#getHandle(String)}.
+	 */
+	public int getTableHandle(String table) {
+		return this.tableRegistry.getHandle(table);
+	}
+
 	public <TWriter extends BatchWriter<?>> TWriter createBatchWriter(DatabaseWriter.Factory<TWriter> factory)
 			throws SQLException {
+		this.lock.lock();
+		try {
+			TWriter writer = factory.createWriter(this);
+			this.batchWriterFactories.put(writer, factory);
+			notifyAccess(writer, writer.getAccessedTableHandles());
+			notifyManipulation(writer, writer.getManipulatedTableHandles());
 
-		TWriter writer = factory.createWriter(this);
-		notifyAccess(writer, writer.getAccessedTables());
-		notifyManipulation(writer, writer.getManipulatedTables());
-
-		return writer;
+			return writer;
+		} finally {
+			this.lock.unlock();
+		}
 	}
 
 	/**
@@ -143,34 +315,72 @@ public class DatabaseAccess implements AutoCloseable {
 	 */
 	public void executeSQL(String sqlStmt, String manipulatedTable, String... queriedTables)
 			throws SQLException {
-
-		manipulatedTable = canonicalizeTableName(manipulatedTable);
-		queriedTables = canonicalizeTableNames(queriedTables);
-		
-		List<String> accessedTables = new ArrayList<>();
-		for (String queriedTable : queriedTables) {
-			accessedTables.add(queriedTable);
+		this.lock.lock();
+		try {
+			int manipulatedTableHandle = this.tableRegistry.getHandle(manipulatedTable);
+			BitSet accessedTables = new BitSet();
+			for (String queriedTable : queriedTables) {
+				accessedTables.set(this.tableRegistry.getHandle(queriedTable));
+			}
+			accessedTables.or(getReferencedTables(manipulatedTableHandle));
+			this.sqlExecutor.write(sqlStmt, manipulatedTableHandle, accessedTables);
+		} finally {
+			this.lock.unlock();
 		}
-		Set<String> referencedTables = getReferencedTables(manipulatedTable);
-		accessedTables.addAll(referencedTables);
-		this.sqlExecutor.write(sqlStmt, new String[] { manipulatedTable },
-				accessedTables.toArray(new String[accessedTables.size()]));
 	}
 
-	private String canonicalizeTableName(String tableName) {
-		if (tableName == null) {
-			return null;
+	/**
+	 * Executes a parameterized SQL statement on the managed database. The statements of each SQL template are batched
+	 * in a prepared statement of their own. Thereby, dependencies to other query batches are respected.
+	 * 
+	 * @param sqlTemplate
+	 *            is the SQL statement with {@code ?} placeholders; it must not contain varying literals
+	 * @param parameters
+	 *            are the values for the placeholders
+	 * @param manipulatedTable
+	 *            is the table that is manipulated by this statement
+	 * @param queriedTables
+	 *            are the affecting/affected referenced tables of this statement. The referenced tables from the
+	 *            foreign key relationships of the database are added automatically.
+	 * @throws java.sql.SQLException
+	 */
+	public void executePreparedSQL(String sqlTemplate, Object[] parameters, String manipulatedTable,
+			String... queriedTables) throws SQLException {
+		this.lock.lock();
+		try {
+			PreparedStatementBatchWriter<Object[]> writer = this.preparedWriterCache.get(sqlTemplate);
+			if (writer == null) {
+				// Statements of different templates on the same table must keep their order (e.g., DELETE and
+				// INSERT), so each writer also accesses its manipulated table.
+				String[] accessedTables = Arrays.copyOf(queriedTables, queriedTables.length + 1);
+				accessedTables[queriedTables.length] = manipulatedTable;
+				writer = createBatchWriter(new PreparedStatementBatchWriter.Factory<>(sqlTemplate,
+						PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER, manipulatedTable, accessedTables));
+				this.preparedWriterCache.put(sqlTemplate, writer);
+			}
+			writer.write(parameters);
+		} finally {
+			this.lock.unlock();
 		}
-		return tableName.toLowerCase();
 	}
-	
-	private String[] canonicalizeTableNames(String[] tableNames) {
-		for (int i = 0; i < tableNames.length; i++) {
-			tableNames[i] = canonicalizeTableName(tableNames[i]);
+
+	/**
+	 * @return the element of the given list at the given index or {@code null} if the list is too short
+	 */
+	private static <T> T getOrNull(List<T> list, int index) {
+		return index < list.size() ? list.get(index) : null;
+	}
+
+	/**
+	 * Sets the element of the given list at the given index and pads the list with {@code null}s if necessary.
+	 */
+	private static <T> void set(List<T> list, int index, T element) {
+		while (list.size() <= index) {
+			list.add(null);
 		}
-		return tableNames;
+		list.set(index, element);
 	}
-	
+
 	// /**
 	// * Executes a SQL statement on the managed database. Thereby, dependencies to other query batches are respected.
 	// *
@@ -203,29 +413,485 @@ public class DatabaseAccess implements AutoCloseable {
 //		return referencedTables;
 //	}
 
+	/**
+	 * Lets the managed {@link BatchWriter}s execute their batches on a background thread instead of blocking the
+	 * writing thread. Writes are then only staged without taking the {@link #getLock() lock}, so they do not wait for
+	 * the batches that are currently executed. The background thread replays the staged writes in order under the
+	 * lock, and any flush of this object or query replays the remaining staged writes first, so that it sees all
+	 * writes.
+	 * 
+	 * @param maxStagedWrites
+	 *            is the maximum number of writes that may be staged before writers are blocked
+	 * @see AsyncBatchExecutor#DEFAULT_MAX_STAGED_WRITES
+	 */
+	public void enableAsyncFlushing(int maxStagedWrites) throws SQLException {
+		this.lock.lock();
+		try {
+			disableAsyncFlushing();
+			this.asyncBatchExecutor = new AsyncBatchExecutor(maxStagedWrites, this.lock);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Replays all staged writes and lets the managed {@link BatchWriter}s execute their batches synchronously again.
+	 */
+	public void disableAsyncFlushing() throws SQLException {
+		this.lock.lock();
+		try {
+			if (this.asyncBatchExecutor != null) {
+				try {
+					this.asyncBatchExecutor.close();
+				} finally {
+					this.asyncBatchExecutor = null;
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the executor for asynchronous flushes or {@code null} if asynchronous flushing is disabled
+	 */
+	public AsyncBatchExecutor getAsyncBatchExecutor() {
+		return this.asyncBatchExecutor;
+	}
+
+	/**
+	 * Hands all writes that are staged for the {@link #asyncBatchExecutor} to their writers, so that the pending
+	 * batches of the writers reflect all writes.
+	 * 
+	 * @throws SQLException
+	 *             if any staged write fails
+	 */
+	public void drainStagedWrites() throws SQLException {
+		this.lock.lock();
+		try {
+			if (this.asyncBatchExecutor != null) {
+				this.asyncBatchExecutor.drain();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Lets this object own the transaction boundaries: instead of committing each batch, the batches of all writers
+	 * are executed within a single transaction that is committed on {@link #flush()} or when one of the given
+	 * thresholds is exceeded. The thresholds are checked whenever a batch has been executed. Hence, executed batches
+	 * are not durable before the next group commit; {@link #close()} commits them.
+	 * 
+	 * @param maxUncommittedStatements
+	 *            is the number of executed statements after which a commit is issued
+	 * @param maxUncommittedMillis
+	 *            is the time after the first uncommitted batch after which a commit is issued
+	 */
+	public void enableGroupCommit(int maxUncommittedStatements, long maxUncommittedMillis) {
+		Validate.isTrue(maxUncommittedStatements > 0 && maxUncommittedMillis > 0);
+		this.lock.lock();
+		try {
+			this.groupCommitMaxStatements = maxUncommittedStatements;
+			this.groupCommitMaxDelayMillis = maxUncommittedMillis;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Commits any executed batches and lets each batch be committed on its own again.
+	 */
+	public void disableGroupCommit() throws SQLException {
+		this.lock.lock();
+		try {
+			commit();
+			this.groupCommitMaxStatements = 0;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return whether batches are committed in groups
+	 * @see #enableGroupCommit(int, long)
+	 */
+	public boolean isGroupCommitEnabled() {
+		this.lock.lock();
+		try {
+			return this.groupCommitMaxStatements > 0;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Commits a batch that has just been executed by a {@link BatchWriter}. In group-commit mode, the commit is
+	 * deferred until a group-commit threshold is exceeded.
+	 * 
+	 * @param batchSize
+	 *            is the number of statements in the executed batch
+	 * @throws SQLException
+	 *             if the commit fails
+	 */
+	public void commitBatch(int batchSize) throws SQLException {
+		this.lock.lock();
+		try {
+			if (this.groupCommitMaxStatements <= 0) {
+				commit();
+				return;
+			}
+			if (this.numUncommittedStatements == 0) {
+				this.firstUncommittedBatchNanos = System.nanoTime();
+			}
+			this.numUncommittedStatements += batchSize;
+			if (this.numUncommittedStatements >= this.groupCommitMaxStatements
+					|| System.nanoTime() - this.firstUncommittedBatchNanos >= this.groupCommitMaxDelayMillis * 1000000L) {
+				LOGGER.debug("Group commit of {} statements.", this.numUncommittedStatements);
+				commit();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Commits the current transaction unless the connection is in auto-commit mode. Callers must hold the
+	 * {@link #lock}.
+	 */
+	private void commit() throws SQLException {
+		if (!this.connection.getAutoCommit()) {
+			this.connection.commit();
+		}
+		this.numUncommittedStatements = 0;
+	}
+
+	/**
+	 * Lets the batch writers of this object tune their batch sizes according to the observed flush times. This applies
+	 * to both existing writers and writers that are created from now on.
+	 * 
+	 * @param targetFlushLatencyMillis
+	 *            is the desired execution time of a single batch
+	 * @param maxBatchMemoryBytes
+	 *            is the maximum memory that a single pending batch may occupy
+	 */
+	public void enableAdaptiveBatchSizing(long targetFlushLatencyMillis, long maxBatchMemoryBytes) {
+		Validate.isTrue(targetFlushLatencyMillis > 0 && maxBatchMemoryBytes > 0);
+		this.lock.lock();
+		try {
+			this.targetFlushLatencyMillis = targetFlushLatencyMillis;
+			this.maxBatchMemoryBytes = maxBatchMemoryBytes;
+			updateBatchSizeControllers();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Lets the batch writers of this object use fixed batch sizes again.
+	 */
+	public void disableAdaptiveBatchSizing() {
+		this.lock.lock();
+		try {
+			this.targetFlushLatencyMillis = 0;
+			updateBatchSizeControllers();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Provides all batch writers of this object with a new {@link BatchSizeController} according to the current
+	 * settings. Callers must hold the {@link #lock}.
+	 */
+	private void updateBatchSizeControllers() {
+		for (Map.Entry<BatchWriter<?>, DatabaseWriter.Factory<?>> entry : this.batchWriterFactories.entrySet()) {
+			entry.getKey().setBatchSizeController(entry.getValue().createBatchSizeController(this));
+		}
+	}
+
+	/**
+	 * Creates a {@link BatchSizeController} for a new batch writer according to the settings of this object.
+	 * 
+	 * @param minBatchSize
+	 *            is the minimum batch size of the writer
+	 * @param maxBatchSize
+	 *            is the maximum batch size of the writer
+	 * @param estimatedBytesPerStatement
+	 *            is the approximate memory footprint of a single statement of the writer
+	 * @return the {@link BatchSizeController}
+	 */
+	public BatchSizeController createBatchSizeController(int minBatchSize, int maxBatchSize,
+			int estimatedBytesPerStatement) {
+		if (this.targetFlushLatencyMillis <= 0) {
+			int batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, BatchWriter.DEFAULT_BATCH_SIZE));
+			return BatchSizeController.createFixed(batchSize);
+		}
+		return BatchSizeController.createAdaptive(minBatchSize, maxBatchSize, this.targetFlushLatencyMillis,
+				this.maxBatchMemoryBytes, estimatedBytesPerStatement);
+	}
+
 	public ResultSet query(String sql, String... queriedTables) throws SQLException {
-		queriedTables = canonicalizeTableNames(queriedTables);
-		flush(Arrays.asList(queriedTables));
 		return this.sqlQuery.execute(sql, queriedTables);
 	}
 
 	/**
-	 * Flushes all writers.
+	 * Executes a parameterized query on the managed database. The query is prepared only once per SQL template.
+	 * Thereby, dependencies to other query batches are respected.
 	 * 
+	 * @param sqlTemplate
+	 *            is the SQL of the query with {@code ?} placeholders; it must not contain varying literals
+	 * @param parameters
+	 *            are the values for the placeholders
+	 * @param queriedTables
+	 *            are the tables that are read by the query
+	 * @return the query result; it may stay open while the same template is executed again, e.g., in a nested loop
+	 */
+	public ResultSet queryPrepared(String sqlTemplate, Object[] parameters, String... queriedTables)
+			throws SQLException {
+		this.lock.lock();
+		try {
+			flush(this.tableRegistry.getHandles(Arrays.asList(queriedTables)));
+			return executePreparedQuery(sqlTemplate, parameters);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Parameterized variant of {@link #queryWithOverlay(String, Collection, String...)}.
+	 * 
+	 * @see #queryPrepared(String, Object[], String...)
+	 */
+	public ResultSet queryPreparedWithOverlay(String sqlTemplate, Object[] parameters,
+			Collection<? extends DependentWriter<?>> overlayWriters, String... queriedTables) throws SQLException {
+		this.lock.lock();
+		try {
+			flush(this.tableRegistry.getHandles(Arrays.asList(queriedTables)), overlayWriters);
+			return executePreparedQuery(sqlTemplate, parameters);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Lets {@link #queryCached(String, String...)} and {@link #queryPreparedCached(String, Object[], String...)} serve
+	 * repeated queries from memory as long as the queried tables have not been modified. Modifications are detected
+	 * via the {@link TableRegistry#getVersion(BitSet) versions} of the tables, which are incremented whenever a writer
+	 * on them is flushed. Modifications that bypass the writers of this object require a call to
+	 * {@link #clearQueryResultCache()}. The cache is disabled by default.
+	 * 
+	 * @param maxEntries
+	 *            is the maximum number of query results to retain
+	 */
+	public void enableQueryResultCache(int maxEntries) {
+		this.lock.lock();
+		try {
+			this.queryResultCache = new QueryResultCache(maxEntries);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Discards all cached query results and lets all queries be executed on the database again.
+	 */
+	public void disableQueryResultCache() {
+		this.lock.lock();
+		try {
+			this.queryResultCache = null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return whether query results are cached
+	 * @see #enableQueryResultCache(int)
+	 */
+	public boolean isQueryResultCacheEnabled() {
+		this.lock.lock();
+		try {
+			return this.queryResultCache != null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Discards all cached query results, e.g., after the database has been modified without the writers of this
+	 * object.
+	 */
+	public void clearQueryResultCache() {
+		this.lock.lock();
+		try {
+			if (this.queryResultCache != null) {
+				this.queryResultCache.clear();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Variant of {@link #query(String, String...)} that serves the result from the query result cache if possible.
+	 * The queried tables must be complete, as only modifications on them invalidate the cached result. Lookups are
+	 * accounted to the {@link #getMetrics() metrics} of the query.
+	 * 
+	 * @see #enableQueryResultCache(int)
+	 */
+	public ResultSet queryCached(String sql, String... queriedTables) throws SQLException {
+		return queryCached(sql, null, queriedTables);
+	}
+
+	/**
+	 * Variant of {@link #queryPrepared(String, Object[], String...)} that serves the result from the query result
+	 * cache if possible. The queried tables must be complete, as only modifications on them invalidate the cached
+	 * result. Lookups are accounted to the {@link #getMetrics() metrics} of the query.
+	 * 
+	 * @see #enableQueryResultCache(int)
+	 */
+	public ResultSet queryPreparedCached(String sqlTemplate, Object[] parameters, String... queriedTables)
+			throws SQLException {
+		Validate.notNull(parameters);
+		return queryCached(sqlTemplate, parameters, queriedTables);
+	}
+
+	private ResultSet queryCached(String sql, Object[] parameters, String... queriedTables) throws SQLException {
+		this.lock.lock();
+		try {
+			if (this.queryResultCache == null) {
+				return parameters == null ? query(sql, queriedTables) : queryPrepared(sql, parameters, queriedTables);
+			}
+			// Flush first, so that pending modifications are reflected in the table versions.
+			BitSet tableHandles = this.tableRegistry.getHandles(Arrays.asList(queriedTables));
+			flush(tableHandles);
+			long version = this.tableRegistry.getVersion(tableHandles);
+			QueryMetrics queryMetrics = this.metrics.getQueryMetrics(sql);
+			ResultSet cachedResultSet = this.queryResultCache.get(sql, parameters, version);
+			if (cachedResultSet != null) {
+				if (queryMetrics != null) {
+					queryMetrics.recordCacheHit();
+				}
+				return cachedResultSet;
+			}
+			if (queryMetrics != null) {
+				queryMetrics.recordCacheMiss();
+			}
+			ResultSet resultSet = parameters == null ?
+					this.sqlQuery.execute(sql) : executePreparedQuery(sql, parameters);
+			return this.queryResultCache.put(sql, parameters, version, resultSet);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Executes a parameterized query with a cached prepared statement without flushing any writers.
+	 */
+	private ResultSet executePreparedQuery(String sqlTemplate, Object[] parameters) throws SQLException {
+		Map<String, PreparedQuery> preparedQueryCache = this.preparedQueryCache.get();
+		PreparedQuery preparedQuery = preparedQueryCache.get(sqlTemplate);
+		if (preparedQuery == null) {
+			preparedQuery = new PreparedQuery();
+			preparedQueryCache.put(sqlTemplate, preparedQuery);
+		}
+		PreparedStatement statement = preparedQuery.pollIdleStatement();
+		if (statement == null) {
+			// Executing a statement would close its result set that is still in use, e.g., in a nested loop or because
+			// it has not been closed, so prepare another one.
+			if (preparedQuery.getNumStatements() > 0) {
+				LOGGER.debug("All {} statements for \"{}\" are in use; preparing another one.",
+						preparedQuery.getNumStatements(), sqlTemplate);
+				QueryMetrics queryMetrics = this.metrics.getQueryMetrics(sqlTemplate);
+				if (queryMetrics != null) {
+					queryMetrics.recordAdditionalStatement();
+				}
+			}
+			statement = this.connection.prepareStatement(sqlTemplate);
+			preparedQuery.addStatement(statement);
+		}
+		PreparedStatementAdapter.OBJECT_ARRAY_ADAPTER.translateParameter(parameters, statement);
+		long startTime = System.nanoTime();
+		ResultSet resultSet = preparedQuery.execute(statement);
+		long elapsedNanos = System.nanoTime() - startTime;
+		return trackQuery(sqlTemplate, parameters, elapsedNanos, resultSet);
+	}
+
+	/**
+	 * Accounts a query execution to the {@link #getMetrics() metrics} and the {@link #getSlowQueryLog() slow-query
+	 * log}.
+	 * 
+	 * @param sql
+	 *            is the SQL of the executed query
+	 * @param parameters
+	 *            are the parameters of the query or {@code null} if there are none
+	 * @param elapsedNanos
+	 *            is the time until the result set was available
+	 * @param resultSet
+	 *            is the result set of the query
+	 * @return the result set that should be handed out instead of the given one
+	 */
+	public ResultSet trackQuery(String sql, Object parameters, long elapsedNanos, ResultSet resultSet) {
+		QueryMetrics queryMetrics = this.metrics.getQueryMetrics(sql);
+		if (queryMetrics != null) {
+			queryMetrics.recordExecution(elapsedNanos);
+			resultSet = queryMetrics.trackRows(resultSet);
+		}
+		return this.slowQueryLog.track(sql, parameters, elapsedNanos, resultSet);
+	}
+
+	/**
+	 * Issues a query without flushing the given overlay writers, which must index their pending rows (e.g., via
+	 * {@link de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter#isKeyPending(long)}). The caller is responsible for
+	 * merging the result with these pending rows. All other writers on the queried tables are flushed as usual.
+	 * 
+	 * @param sql
+	 *            is the query to execute
+	 * @param overlayWriters
+	 *            are the writers whose pending rows are not flushed unless other flushes require so
+	 * @param queriedTables
+	 *            are the tables that are read by the query
+	 * @return the query result, which might not reflect the pending rows of the overlay writers
+	 */
+	public ResultSet queryWithOverlay(String sql, Collection<? extends DependentWriter<?>> overlayWriters,
+			String... queriedTables) throws SQLException {
+		this.lock.lock();
+		try {
+			flush(this.tableRegistry.getHandles(Arrays.asList(queriedTables)), overlayWriters);
+			return this.sqlQuery.execute(sql);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Flushes all writers.
+	 *
 	 * @throws java.sql.SQLException
 	 *             if the flushing fails for any writer.
 	 */
 	public void flush() throws SQLException {
-		while (!this.manipulatingWriters.isEmpty()) {
-			DependentWriter<?> anyActiveWriter = this.manipulatingWriters.values().iterator().next().iterator().next();
-			anyActiveWriter.flush();
+		this.lock.lock();
+		try {
+			drainStagedWrites();
+			int manipulatedTable;
+			while ((manipulatedTable = this.manipulatedTables.nextSetBit(0)) != -1) {
+				DependentWriter<?> anyActiveWriter = this.manipulatingWriters.get(manipulatedTable).iterator().next();
+				anyActiveWriter.flush();
+			}
+			if (isGroupCommitEnabled()) {
+				commit();
+			}
+			// this.sqlExecutor.flush();
+			// for (Collection<DependentWriter<?>> writers : this.accessingWriters.values()) {
+			// for (DatabaseWriter<?> writer : writers) {
+			// writer.flush();
+			// }
+			// }
+		} finally {
+			this.lock.unlock();
 		}
-		// this.sqlExecutor.flush();
-		// for (Collection<DependentWriter<?>> writers : this.accessingWriters.values()) {
-		// for (DatabaseWriter<?> writer : writers) {
-		// writer.flush();
-		// }
-		// }
 	}
 
 	/**
@@ -236,55 +902,102 @@ public class DatabaseAccess implements AutoCloseable {
      * @throws java.sql.SQLException
      */
 	public void prepareFlush(DependentWriter<?> writerToFlush) throws SQLException {
-	    
-		Set<DependentWriter<?>> preceedingWriters = this.preceedingWriters.get(writerToFlush);
-		if (preceedingWriters != null) {
-			for (DependentWriter<?> preceedingWriter : preceedingWriters) {
-			    preceedingWriter.flush();
+		this.lock.lock();
+		try {
+			for (DependentWriter<?> preceedingWriter : this.flushOrderGraph.getPredecessors(writerToFlush)) {
+				WriterMetrics writerMetrics = this.metrics.getWriterMetrics(preceedingWriter.getMetricsName());
+				if (writerMetrics != null) {
+					writerMetrics.recordDependencyForcedFlush();
+				}
+				preceedingWriter.flush();
+				// Empty writers do not actually flush, but they do not need to preceed anything either.
+				this.flushOrderGraph.remove(preceedingWriter);
 			}
-			this.preceedingWriters.remove(writerToFlush);
-		}
-		
-		for (String accessedTable : writerToFlush.getAccessedTables()) {
-			accessedTable = canonicalizeTableName(accessedTable);
-			Set<DependentWriter<?>> accessingWriters = this.accessingWriters.get(accessedTable);
-			if (accessingWriters.size() > 1) {
-				accessingWriters.remove(writerToFlush);
-			} else {
-				this.accessingWriters.remove(accessedTable);
+			this.flushOrderGraph.remove(writerToFlush);
+
+			BitSet accessedTables = writerToFlush.getAccessedTableHandles();
+			for (int table = accessedTables.nextSetBit(0); table != -1; table = accessedTables.nextSetBit(table + 1)) {
+				Set<DependentWriter<?>> accessingWriters = getOrNull(this.accessingWriters, table);
+				if (accessingWriters != null) {
+					accessingWriters.remove(writerToFlush);
+				}
 			}
-		}
-		for (String manipulatedTable : writerToFlush.getManipulatedTables()) {
-			manipulatedTable = canonicalizeTableName(manipulatedTable);
-			Set<DependentWriter<?>> manipulatingWriters = this.manipulatingWriters.get(manipulatedTable);
-			if (manipulatingWriters.size() > 1) {
-				manipulatingWriters.remove(writerToFlush);
-			} else {
-				this.manipulatingWriters.remove(manipulatedTable);
+			BitSet manipulatedTables = writerToFlush.getManipulatedTableHandles();
+			for (int table = manipulatedTables.nextSetBit(0); table != -1; table = manipulatedTables.nextSetBit(table + 1)) {
+				Set<DependentWriter<?>> manipulatingWriters = getOrNull(this.manipulatingWriters, table);
+				if (manipulatingWriters != null && manipulatingWriters.remove(writerToFlush)
+						&& manipulatingWriters.isEmpty()) {
+					this.manipulatedTables.clear(table);
+				}
 			}
+		} finally {
+			this.lock.unlock();
 		}
 	}
 
 	/**
 	 * Flushes (at least) all writers that operate on the given tables.
-	 * 
-	 * @param accessedTables
+	 *
+	 * @param tables
 	 *            are the tables for which writers shall be flushed.
 	 * @throws java.sql.SQLException
 	 *             if the flushing fails for any of the writers.
 	 */
 	public void flush(Collection<String> tables) throws SQLException {
+		BitSet tableHandles = new BitSet();
 		for (String table : tables) {
-			table = canonicalizeTableName(table);
-			Collection<DependentWriter<?>> writers = this.manipulatingWriters.get(table);
-			if (writers == null) {
+			tableHandles.set(this.tableRegistry.getHandle(table));
+		}
+		flush(tableHandles);
+	}
+
+	/**
+	 * Flushes (at least) all writers that operate on the given tables.
+	 *
+	 * @param tables
+	 *            are the handles of the tables for which writers shall be flushed.
+	 * @throws java.sql.SQLException
+	 *             if the flushing fails for any of the writers.
+	 */
+	public void flush(BitSet tables) throws SQLException {
+		this.lock.lock();
+		try {
+			flush(tables, Collections.<DependentWriter<?>> emptySet());
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Flushes (at least) all writers that operate on the given tables except for the excluded writers. However, these
+	 * might be flushed nevertheless if other writers depend on them.
+	 * 
+	 * @param tables
+	 *            are the handles of the tables for which writers shall be flushed.
+	 * @param excludedWriters
+	 *            are the writers that need not be flushed.
+	 * @throws java.sql.SQLException
+	 *             if the flushing fails for any of the writers.
+	 */
+	private void flush(BitSet tables, Collection<? extends DependentWriter<?>> excludedWriters) throws SQLException {
+		drainStagedWrites();
+		for (int table = tables.nextSetBit(0); table != -1; table = tables.nextSetBit(table + 1)) {
+			if (!this.manipulatedTables.get(table)) {
 				continue;
 			}
-			LOGGER.debug("Flushing modifications on {}...", table);
+			Collection<DependentWriter<?>> writers = this.manipulatingWriters.get(table);
+			LOGGER.debug("Flushing modifications on {}...", this.tableRegistry.getTableName(table));
 			for (DependentWriter<?> writer : new ArrayList<>(writers)) {
+				if (excludedWriters.contains(writer)) {
+					continue;
+				}
+				WriterMetrics writerMetrics = this.metrics.getWriterMetrics(writer.getMetricsName());
+				if (writerMetrics != null) {
+					writerMetrics.recordQueryForcedFlush();
+				}
 			    writer.flush();
 			}
-			LOGGER.debug("...done flushing! (on {})", table);
+			LOGGER.debug("...done flushing! (on {})", this.tableRegistry.getTableName(table));
 		}
 	}
 
@@ -295,22 +1008,45 @@ public class DatabaseAccess implements AutoCloseable {
 	 *             if the flushing or closing fails
 	 */
 	public void close() throws SQLException {
+		this.lock.lock();
 		try {
-			flush();
-		} finally {
-			tryToClose(this.sqlExecutor);
-			tryToClose(this.sqlQuery);
-			for (Set<DependentWriter<?>> writers : this.accessingWriters.values()) {
-				for (DependentWriter<?> writer : writers) {
+			try {
+				flush();
+			} finally {
+				tryToClose(this.asyncBatchExecutor);
+				this.asyncBatchExecutor = null;
+				tryToClose(this.sqlExecutor);
+				tryToClose(this.sqlQuery);
+				for (Set<DependentWriter<?>> writers : this.accessingWriters) {
+					if (writers != null) {
+						for (DependentWriter<?> writer : writers) {
+							tryToClose(writer);
+						}
+					}
+				}
+				accessingWriters.clear();
+				this.batchWriterFactories.clear();
+				for (DatabaseQuery<?> query : this.queries) {
+					tryToClose(query);
+				}
+				this.queries.clear();
+				for (PreparedStatementBatchWriter<Object[]> writer : this.preparedWriterCache.values()) {
 					tryToClose(writer);
 				}
+				this.preparedWriterCache.clear();
+				synchronized (this.allPreparedQueries) {
+					for (PreparedStatement preparedStatement : this.allPreparedQueries) {
+						tryToClose(preparedStatement);
+					}
+					this.allPreparedQueries.clear();
+				}
+				this.preparedQueryCache.remove();
+				this.queryResultCache = null;
+				this.metrics.unregisterMBean();
+				this.connection.close();
 			}
-			accessingWriters.clear();
-			for (DatabaseQuery<?> query : this.queries) {
-				tryToClose(query);
-			}
-			this.queries.clear();
-			this.connection.close();
+		} finally {
+			this.lock.unlock();
 		}
 	}
 
@@ -333,65 +1069,120 @@ public class DatabaseAccess implements AutoCloseable {
 		return this.connection;
 	}
 
+	/**
+	 * @return the lock that serializes writes, flushes, and queries of several threads on this object; it is
+	 *         reentrant, so that it can be held across several operations
+	 */
+	public Lock getLock() {
+		return this.lock;
+	}
+
+	/**
+	 * @return the statistics on the writers and queries of this object
+	 */
+	public DatabaseMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * @return the log of slow queries, which can be enabled via {@link SlowQueryLog#setThresholdMillis(long)}
+	 */
+	public SlowQueryLog getSlowQueryLog() {
+		return this.slowQueryLog;
+	}
+
 	public <TElement> DatabaseQuery<TElement> createQuery(Factory<TElement> locationQueryFactory) {
 		return locationQueryFactory.createQuery(this);
 	}
 
+	/**
+	 * Compatibility variant of {@link #notifyWriterAction(DependentWriter, BitSet, BitSet)} that takes table names.
+	 */
 	public void notifyWriterAction(DependentWriter<?> writer, Collection<String> manipulatedTables,
 			Collection<String> accessedTables) {
 
 		if (accessedTables.isEmpty() && manipulatedTables.isEmpty()) {
 			return;
 		}
+		notifyWriterAction(writer, this.tableRegistry.getHandles(manipulatedTables),
+				this.tableRegistry.getHandles(accessedTables));
+	}
 
-		// Step 1: Find which old operations must be done before this access.
-		Set<DependentWriter<?>> newPreceedingWriters = new HashSet<>();
-		Set<DependentWriter<?>> knownPreceedingWriters = this.preceedingWriters.get(writer);
-		for (String accessedTable : accessedTables) {
-			// Find out if this is a new access.
-			accessedTable = canonicalizeTableName(accessedTable);
-			Set<DependentWriter<?>> accessingWriters = this.accessingWriters.get(accessedTable);
-			if (accessingWriters == null || accessingWriters.contains(writer)) {
-				continue;
+	/**
+	 * Tell that a writer received a request that manipulates and accesses the given tables.
+	 * 
+	 * @param writer
+	 *            is the writer that received the request
+	 * @param manipulatedTables
+	 *            are the handles of the manipulated tables
+	 * @param accessedTables
+	 *            are the handles of the accessed tables
+	 */
+	public void notifyWriterAction(DependentWriter<?> writer, BitSet manipulatedTables, BitSet accessedTables) {
+		this.lock.lock();
+		try {
+			if (accessedTables.isEmpty() && manipulatedTables.isEmpty()) {
+				return;
 			}
 
-			// Find out if any writer manipulates that field.
-			Set<DependentWriter<?>> manipulatingWriters = this.manipulatingWriters.get(accessedTable);
-			if (manipulatingWriters == null) {
+			// Any writer that manipulates an accessed table must be flushed before this writer.
+			// Register these precedences before the accesses, because breaking cycles might flush this writer.
+			while (!registerPreceedingWriters(writer, accessedTables)) {
+				LOGGER.trace("Restarting precedence registration for {}.", writer);
+			}
+
+			notifyManipulation(writer, manipulatedTables);
+			notifyAccess(writer, accessedTables);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the precedences of all writers that manipulate the given tables over the given writer to the
+	 * {@link #flushOrderGraph}. If any precedence would close a cycle, the cycle is broken up by flushing.
+	 * 
+	 * @return whether all precedences have been registered; otherwise, the registration needs to be restarted, because
+	 *         flushes have changed the registered writers
+	 */
+	private boolean registerPreceedingWriters(DependentWriter<?> writer, BitSet accessedTables) {
+		for (int accessedTable = accessedTables.nextSetBit(0); accessedTable != -1;
+				accessedTable = accessedTables.nextSetBit(accessedTable + 1)) {
+			if (!this.manipulatedTables.get(accessedTable)) {
 				continue;
 			}
-			for (DependentWriter<?> manipulatingWriter : manipulatingWriters) {
-				if (knownPreceedingWriters == null || !knownPreceedingWriters.contains(manipulatingWriter)) {
-					newPreceedingWriters.add(manipulatingWriter);
+			for (DependentWriter<?> manipulatingWriter : this.manipulatingWriters.get(accessedTable)) {
+				// Reflexive manipulation relationships are allowed, since batches maintain the order of their
+				// queries.
+				// Hence, we do not add them in the first place to the flush-order graph.
+				if (manipulatingWriter == writer) {
+					continue;
+				}
+				List<DependentWriter<?>> cyclePath = this.flushOrderGraph.addPrecedence(manipulatingWriter, writer);
+				if (cyclePath == null) {
+					LOGGER.trace("Preceed: {} must preceed {}.", manipulatingWriter, writer);
+					continue;
 				}
-			}
-		}
 
-		// Step 2: See if new preceeding writers were already preceeded by this writer.
-		for (DependentWriter<?> newPreceedingWriter : newPreceedingWriters) {
-			// Reformulation: We have a new edge stating "manipulatingWriter preceeds writer".
-			// As the graph was acyclic, new cycles must involve the new edge.
-			// Thus, we want to find any path stating "writer preceeds manipulatingWriter".
-			Collection<List<DependentWriter<?>>> predecessorPaths = searchIsPreceededPaths(newPreceedingWriter, writer);
-
-			// If there are cycles, we need to break those up. The lowest-impact solution would be
-			// to flush the writer that preceeds the other writers anyway, i.e., is preceeded by this writer
-			// i.e., the second-to-last writer in any circle.
-			if (!predecessorPaths.isEmpty()) {
-				for (List<DependentWriter<?>> predecessorPath : predecessorPaths) {
-					LOGGER.debug("Cycle detected: {}.", predecessorPath);
-					DependentWriter<?> writerToFlush = predecessorPath.get(predecessorPath.size() - 2);
-					try {
-						writerToFlush.flush();;
-					} catch (SQLException e) {
-						throw new RuntimeException(e);
-					}
+				// The writer already (transitively) preceeds the manipulating writer. The lowest-impact solution
+				// is to flush the writer that directly follows this writer on the cycle, which also flushes this
+				// writer as its predecessor.
+				LOGGER.debug("Cycle detected: {}.", cyclePath);
+				DependentWriter<?> writerToFlush = cyclePath.get(1);
+				WriterMetrics writerMetrics = this.metrics.getWriterMetrics(writerToFlush.getMetricsName());
+				if (writerMetrics != null) {
+					writerMetrics.recordCycleForcedFlush();
+				}
+				try {
+					writerToFlush.flush();
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
 				}
+				this.flushOrderGraph.remove(writerToFlush);
+				return false;
 			}
 		}
-		
-		notifyManipulation(writer, manipulatedTables);
-		notifyAccess(writer, accessedTables);
+		return true;
 	}
 
 	/**
@@ -400,30 +1191,25 @@ public class DatabaseAccess implements AutoCloseable {
 	 * @param writer
 	 *            is the writer that manipulates the table
 	 * @param manipulatedTables
-	 *            are the tables to manipulate
+	 *            are the handles of the tables to manipulate
 	 */
-	private void notifyManipulation(DependentWriter<?> writer, Collection<String> manipulatedTables) {
-		if (manipulatedTables.isEmpty()) {
-			return;
-		}
-
-		for (String manipulatedTable : manipulatedTables) {
-			manipulatedTable = canonicalizeTableName(manipulatedTable);
+	private void notifyManipulation(DependentWriter<?> writer, BitSet manipulatedTables) {
+		for (int manipulatedTable = manipulatedTables.nextSetBit(0); manipulatedTable != -1;
+				manipulatedTable = manipulatedTables.nextSetBit(manipulatedTable + 1)) {
 			// In general, we assume that a manipulation does not effect accesses, which is of course not always true.
 			// Therefore, we still need to consider SQL interdependencies in the code.
 
 			// Thus, it suffices to mark the manipulation of this writer.
-			Set<DependentWriter<?>> adjacenceSet = this.manipulatingWriters.get(manipulatedTable);
+			Set<DependentWriter<?>> adjacenceSet = getOrNull(this.manipulatingWriters, manipulatedTable);
 			if (adjacenceSet == null) {
 				adjacenceSet = new HashSet<>();
-				this.manipulatingWriters.put(manipulatedTable, adjacenceSet);
+				set(this.manipulatingWriters, manipulatedTable, adjacenceSet);
 			}
 			// Verify that we actually add this writer, i.e., that we have a new manipulated table.
 			if (adjacenceSet.add(writer)) {
-				LOGGER.trace("Manipulation: {} by {}", manipulatedTable, writer);
+				this.manipulatedTables.set(manipulatedTable);
+				LOGGER.trace("Manipulation: {} by {}", this.tableRegistry.getTableName(manipulatedTable), writer);
 			}
-			// In this case, we have new "edges" in the data-dependency graph and need to check for cycles.
-			// Check for cycles starting with these edges.
 		}
 	}
 
@@ -433,101 +1219,113 @@ public class DatabaseAccess implements AutoCloseable {
 	 * @param writer
 	 *            is the writer that wants to perform the access
 	 * @param accessedTables
-	 *            are the tables to be accessed
+	 *            are the handles of the tables to be accessed
 	 */
-	// TODO
-	private void notifyAccess(DependentWriter<?> writer, Collection<String> accessedTables) {
-		if (accessedTables.isEmpty()) {
-			return;
-		}
-
-		Set<DependentWriter<?>> preceedingWriters = null;
-		for (String accessedTable : accessedTables) {
-			accessedTable = canonicalizeTableName(accessedTable);
+	private void notifyAccess(DependentWriter<?> writer, BitSet accessedTables) {
+		for (int accessedTable = accessedTables.nextSetBit(0); accessedTable != -1;
+				accessedTable = accessedTables.nextSetBit(accessedTable + 1)) {
 			// Find out if this is a new access.
-			Set<DependentWriter<?>> adjacenceSet = this.accessingWriters.get(accessedTable);
+			Set<DependentWriter<?>> adjacenceSet = getOrNull(this.accessingWriters, accessedTable);
 			if (adjacenceSet == null) {
 				adjacenceSet = new HashSet<>();
-				this.accessingWriters.put(accessedTable, adjacenceSet);
+				set(this.accessingWriters, accessedTable, adjacenceSet);
 			}
 			if (adjacenceSet.add(writer)) {
-				LOGGER.trace("Access: {} by {}", accessedTables, writer);
-			}
-			
-			// In this case, we have new "edges" in the data-dependency graph.
-			Set<DependentWriter<?>> manipulatingWriters = this.manipulatingWriters.get(accessedTable);
-			if (manipulatingWriters != null) {
-				for (DependentWriter<?> manipulatingWriter : manipulatingWriters) {
-					// Reflexive manipulation relationships are allowed, since batches maintain the order of their
-					// queries.
-					// Hence, we do not add them in the first place to the flush-order graph.
-					if (manipulatingWriter == writer) {
-						continue;
-					}
-					// Lazy-initialize preceeding writers.
-					if (preceedingWriters == null) {
-						preceedingWriters = this.preceedingWriters.get(writer);
-						if (preceedingWriters == null) {
-							preceedingWriters = new HashSet<>();
-							this.preceedingWriters.put(writer, preceedingWriters);
-						}
-					}
-					if (preceedingWriters.add(manipulatingWriter)) {
-						LOGGER.trace("Preceed: {} must preceed {}.", manipulatingWriter, writer);
-					}
-				}
+				LOGGER.trace("Access: {} by {}", this.tableRegistry.getTableName(accessedTable), writer);
 			}
 		}
 	}
 
 	/**
-	 * Searches any path between the given writers, following the relationship "a is predecessor of b".
-	 * 
-	 * @param startWriter
-	 *            is the start point of the search
-	 * @param targetWriter
-	 *            is the end point of the search
-	 * @return all shortest paths
+	 * The {@link PreparedStatement}s of a thread for a {@link DatabaseAccess#queryPrepared(String, Object[], String...)
+	 * SQL template}. A statement is only executed again once its result set has been closed, so that further
+	 * executions do not close result sets that are still in use.
 	 */
-	private Collection<List<DependentWriter<?>>> searchIsPreceededPaths(DependentWriter<?> startWriter, DependentWriter<?> targetWriter) {
-		Collection<List<DependentWriter<?>>> paths = new LinkedList<>();
-		LinkedList<DependentWriter<?>> visitedNodes = new LinkedList<>();
-		searchPaths(startWriter, targetWriter, visitedNodes, paths);
-		return paths;
-	}
+	private class PreparedQuery {
 
-	/**
-	 * Recursively executed auxillary method to search paths between two nodes.
-	 * 
-	 * @param startWriter
-	 *            is the currently investigated node to expand
-	 * @param targetWriter
-	 *            is the target node of the search
-	 * @param visitedNodes
-	 *            is the path that has been taken until the currently explored node
-	 * @param paths
-	 *            collects newly found paths to the target node
-	 */
-	private void searchPaths(DependentWriter<?> startWriter, DependentWriter<?> targetWriter,
-			LinkedList<DependentWriter<?>> visitedNodes,
-			Collection<List<DependentWriter<?>>> paths) {
-
-		Set<DependentWriter<?>> preceedingWriters = this.preceedingWriters.get(startWriter);
-		if (preceedingWriters != null) {
-			visitedNodes.add(startWriter);
-			for (DependentWriter<?> preceedingWriter : preceedingWriters) {
-				if (preceedingWriter == targetWriter) {
-					visitedNodes.add(preceedingWriter);
-					paths.add(new ArrayList<>(visitedNodes));
-					visitedNodes.removeLast();
-				} else if (!visitedNodes.contains(preceedingWriter)) {
-					searchPaths(preceedingWriter, targetWriter, visitedNodes, paths);
-				}
+		/**
+		 * The statements whose result sets have been closed.
+		 */
+		private final Deque<PreparedStatement> idleStatements = new ArrayDeque<>();
+
+		/**
+		 * The number of statements of this object that are open, i.e., that are idle or in use.
+		 */
+		private int numStatements = 0;
+
+		synchronized int getNumStatements() {
+			return this.numStatements;
+		}
+
+		/**
+		 * @return a statement that can be executed or {@code null} if all statements are in use
+		 */
+		synchronized PreparedStatement pollIdleStatement() {
+			return this.idleStatements.pollFirst();
+		}
+
+		/**
+		 * Registers a newly prepared statement, which is in use until its result set is closed.
+		 */
+		synchronized void addStatement(PreparedStatement statement) {
+			this.numStatements++;
+			DatabaseAccess.this.allPreparedQueries.add(statement);
+		}
+
+		/**
+		 * Executes the given statement of this object with the parameters that have been set on it.
+		 * 
+		 * @return the result set, which returns the statement to this object when it is closed
+		 */
+		ResultSet execute(final PreparedStatement statement) throws SQLException {
+			final ResultSet resultSet = statement.executeQuery();
+			return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+					new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+
+						private boolean isClosed = false;
+
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if ("isClosed".equals(method.getName())) {
+								return this.isClosed;
+							}
+							if ("close".equals(method.getName())) {
+								if (this.isClosed) {
+									return null;
+								}
+								this.isClosed = true;
+								try {
+									resultSet.close();
+								} finally {
+									release(statement);
+								}
+								return null;
+							}
+							try {
+								return method.invoke(resultSet, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					});
+		}
+
+		/**
+		 * Makes a statement whose result set has been closed available again or closes it if there are enough idle
+		 * statements already.
+		 */
+		private synchronized void release(PreparedStatement statement) throws SQLException {
+			if (this.idleStatements.size() < MAX_IDLE_STATEMENTS_PER_QUERY) {
+				this.idleStatements.addFirst(statement);
+			} else {
+				this.numStatements--;
+				DatabaseAccess.this.allPreparedQueries.remove(statement);
+				statement.close();
 			}
-			visitedNodes.removeLast();
 		}
 
 	}
+
 //  TODO Delete code snippet.
 //	public void notifyTablesClear(DependentWriter<?> writer) {
 //		LOGGER.trace("Clear manipuations and accesses {}.", writer);
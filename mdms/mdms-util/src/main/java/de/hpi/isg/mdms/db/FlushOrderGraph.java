@@ -0,0 +1,222 @@
+package de.hpi.isg.mdms.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the order in which writers have to be flushed. The graph maintains a topological order of its nodes
+ * incrementally (Pearce-Kelly algorithm): adding a precedence that agrees with the current order is a constant-time
+ * operation, otherwise only the nodes between the two affected nodes in the order are visited and reordered. As a
+ * by-product, precedences that would close a cycle are detected without enumerating paths.
+ *
+ * @author Sebastian Kruse
+ *
+ * @param <T>
+ *        is the type of nodes, usually writers
+ */
+public class FlushOrderGraph<T> {
+
+    private static final Comparator<Node<?>> ORDER_COMPARATOR = new Comparator<Node<?>>() {
+        @Override
+        public int compare(Node<?> node1, Node<?> node2) {
+            return Integer.compare(node1.order, node2.order);
+        }
+    };
+
+    private final Map<T, Node<T>> nodes = new HashMap<>();
+
+    /**
+     * The position that will be assigned to the next new node. New nodes do not have any precedences and can
+     * therefore be appended to the order.
+     */
+    private int nextOrder = 0;
+
+    /**
+     * Adds the precedence "{@code predecessor} must be flushed before {@code successor}" unless it would close a
+     * cycle.
+     *
+     * @return {@code null} if the precedence has been added or the path from {@code successor} to
+     *         {@code predecessor} that would form a cycle together with the new precedence
+     */
+    public List<T> addPrecedence(T predecessor, T successor) {
+        Node<T> predecessorNode = getOrCreateNode(predecessor);
+        Node<T> successorNode = getOrCreateNode(successor);
+        if (predecessorNode.successors.contains(successorNode)) {
+            return null;
+        }
+        if (predecessorNode == successorNode) {
+            return Collections.singletonList(successor);
+        }
+
+        if (predecessorNode.order > successorNode.order) {
+            // The new precedence contradicts the current order. Find the affected nodes...
+            Map<Node<T>, Node<T>> forwardParents = new HashMap<>();
+            List<Node<T>> forwardNodes = new ArrayList<>();
+            if (searchForward(successorNode, predecessorNode, forwardParents, forwardNodes)) {
+                return reconstructPath(successorNode, predecessorNode, forwardParents);
+            }
+            List<Node<T>> backwardNodes = searchBackward(predecessorNode, successorNode.order);
+
+            // ...and reorder them, so that the predecessor and its predecessors come first.
+            Collections.sort(forwardNodes, ORDER_COMPARATOR);
+            Collections.sort(backwardNodes, ORDER_COMPARATOR);
+            List<Node<T>> reorderedNodes = new ArrayList<>(backwardNodes.size() + forwardNodes.size());
+            reorderedNodes.addAll(backwardNodes);
+            reorderedNodes.addAll(forwardNodes);
+            int[] orders = new int[reorderedNodes.size()];
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = reorderedNodes.get(i).order;
+            }
+            Arrays.sort(orders);
+            for (int i = 0; i < orders.length; i++) {
+                reorderedNodes.get(i).order = orders[i];
+            }
+        }
+
+        predecessorNode.successors.add(successorNode);
+        successorNode.predecessors.add(predecessorNode);
+        return null;
+    }
+
+    /**
+     * Visits all successors of the start node that are placed before the upper bound in the order.
+     *
+     * @return whether the upper bound node has been reached
+     */
+    private boolean searchForward(Node<T> startNode, Node<T> upperBoundNode, Map<Node<T>, Node<T>> parents,
+            List<Node<T>> visitedNodes) {
+
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        Set<Node<T>> visited = new HashSet<>();
+        stack.push(startNode);
+        visited.add(startNode);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            visitedNodes.add(node);
+            for (Node<T> successor : node.successors) {
+                if (successor == upperBoundNode) {
+                    parents.put(successor, node);
+                    return true;
+                }
+                if (successor.order < upperBoundNode.order && visited.add(successor)) {
+                    parents.put(successor, node);
+                    stack.push(successor);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits all predecessors of the start node that are placed after the lower bound in the order.
+     */
+    private List<Node<T>> searchBackward(Node<T> startNode, int lowerBound) {
+        List<Node<T>> visitedNodes = new ArrayList<>();
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        Set<Node<T>> visited = new HashSet<>();
+        stack.push(startNode);
+        visited.add(startNode);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            visitedNodes.add(node);
+            for (Node<T> predecessor : node.predecessors) {
+                if (predecessor.order > lowerBound && visited.add(predecessor)) {
+                    stack.push(predecessor);
+                }
+            }
+        }
+        return visitedNodes;
+    }
+
+    private List<T> reconstructPath(Node<T> startNode, Node<T> endNode, Map<Node<T>, Node<T>> parents) {
+        LinkedList<T> path = new LinkedList<>();
+        for (Node<T> node = endNode; node != startNode; node = parents.get(node)) {
+            path.addFirst(node.value);
+        }
+        path.addFirst(startNode.value);
+        return path;
+    }
+
+    private Node<T> getOrCreateNode(T value) {
+        Node<T> node = this.nodes.get(value);
+        if (node == null) {
+            node = new Node<>(value, this.nextOrder++);
+            this.nodes.put(value, node);
+        }
+        return node;
+    }
+
+    /**
+     * @return the nodes that must be flushed before the given node
+     */
+    public Collection<T> getPredecessors(T value) {
+        Node<T> node = this.nodes.get(value);
+        if (node == null || node.predecessors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> predecessors = new ArrayList<>(node.predecessors.size());
+        for (Node<T> predecessor : node.predecessors) {
+            predecessors.add(predecessor.value);
+        }
+        return predecessors;
+    }
+
+    /**
+     * Removes the given node and all its precedences, e.g., because it has been flushed.
+     */
+    public void remove(T value) {
+        Node<T> node = this.nodes.remove(value);
+        if (node == null) {
+            return;
+        }
+        for (Node<T> predecessor : node.predecessors) {
+            predecessor.successors.remove(node);
+        }
+        for (Node<T> successor : node.successors) {
+            successor.predecessors.remove(node);
+        }
+    }
+
+    /**
+     * @return whether the graph contains the given node
+     */
+    public boolean contains(T value) {
+        return this.nodes.containsKey(value);
+    }
+
+    public void clear() {
+        this.nodes.clear();
+    }
+
+    /**
+     * A node in the graph together with its position in the topological order.
+     */
+    private static class Node<T> {
+
+        private final T value;
+
+        private int order;
+
+        private final Set<Node<T>> predecessors = new HashSet<>();
+
+        private final Set<Node<T>> successors = new HashSet<>();
+
+        private Node(T value, int order) {
+            this.value = value;
+            this.order = order;
+        }
+
+    }
+
+}
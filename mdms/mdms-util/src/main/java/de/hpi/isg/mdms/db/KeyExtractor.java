@@ -0,0 +1,36 @@
+package de.hpi.isg.mdms.db;
+
+/**
+ * Extracts the (integer or long) primary key from the elements of a writer, so that the writer can index its pending rows.
+ *
+ * @author Sebastian Kruse
+ */
+public interface KeyExtractor<T> {
+
+    long getKey(T element);
+
+    /**
+     * {@link de.hpi.isg.mdms.db.KeyExtractor} for elements that are the key themselves.
+     */
+    static final KeyExtractor<Integer> SINGLE_INT_EXTRACTOR =
+            new KeyExtractor<Integer>() {
+
+                @Override
+                public long getKey(Integer element) {
+                    return element;
+                }
+            };
+
+    /**
+     * {@link de.hpi.isg.mdms.db.KeyExtractor} for elements that are the key themselves.
+     */
+    static final KeyExtractor<Long> SINGLE_LONG_EXTRACTOR =
+            new KeyExtractor<Long>() {
+
+                @Override
+                public long getKey(Long element) {
+                    return element;
+                }
+            };
+
+}
@@ -0,0 +1,30 @@
+package de.hpi.isg.mdms.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * {@link PreparedStatementAdapter} that can bind its parameters behind a given offset. This allows to bind several
+ * elements to a single multi-row statement (see
+ * {@link de.hpi.isg.mdms.db.write.PreparedStatementBatchWriter.Factory#setRowsPerStatement(int)}).
+ *
+ * @author Sebastian Kruse
+ */
+public abstract class OffsetPreparedStatementAdapter<T> implements PreparedStatementAdapter<T> {
+
+    @Override
+    public void translateParameter(T object, PreparedStatement preparedStatement) throws SQLException {
+        translateParameter(object, preparedStatement, 0);
+    }
+
+    /**
+     * Binds the given object to the parameters {@code parameterOffset + 1}, {@code parameterOffset + 2}, ... of the
+     * given statement.
+     *
+     * @param parameterOffset
+     *        is the number of parameters in the statement before the ones of the given object
+     */
+    public abstract void translateParameter(T object, PreparedStatement preparedStatement, int parameterOffset)
+            throws SQLException;
+
+}
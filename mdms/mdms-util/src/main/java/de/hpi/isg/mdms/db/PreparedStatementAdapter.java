@@ -19,6 +19,34 @@ public interface PreparedStatementAdapter<T> {
                 }
             };
 
+    /**
+     * {@link de.hpi.isg.mdms.db.PreparedStatementAdapter} for queries that have a single long parameter.
+     */
+    static final PreparedStatementAdapter<Long> SINGLE_LONG_ADAPTER =
+            new PreparedStatementAdapter<Long>() {
+
+                public void translateParameter(Long value, PreparedStatement preparedStatement)
+                        throws SQLException {
+                    preparedStatement.setLong(1, value);
+                }
+            };
+
+    /**
+     * {@link de.hpi.isg.mdms.db.PreparedStatementAdapter} that sets the given values in order to the parameters of a
+     * statement.
+     */
+    static final PreparedStatementAdapter<Object[]> OBJECT_ARRAY_ADAPTER =
+            new PreparedStatementAdapter<Object[]>() {
+
+                @Override
+                public void translateParameter(Object[] parameters, PreparedStatement preparedStatement)
+                        throws SQLException {
+                    for (int i = 0; i < parameters.length; i++) {
+                        preparedStatement.setObject(i + 1, parameters[i]);
+                    }
+                }
+            };
+
     static final PreparedStatementAdapter<Void> VOID_ADAPTER =
             new PreparedStatementAdapter<Void>() {
 
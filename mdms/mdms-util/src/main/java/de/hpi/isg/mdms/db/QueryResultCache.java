@@ -0,0 +1,393 @@
+package de.hpi.isg.mdms.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import de.hpi.isg.mdms.util.LRUCache;
+
+/**
+ * Caches the materialized results of queries, keyed by their SQL and parameters. Each result is tagged with the
+ * combined {@link TableRegistry#getVersion(java.util.BitSet) version} of the queried tables at the time of its
+ * execution and is discarded as soon as this version changes. Cached results are handed out as read-only, forward-only
+ * {@link ResultSet}s that support the column accessors for the types that SQLite provides. Instances are not
+ * thread-safe.
+ *
+ * @author Sebastian Kruse
+ */
+public class QueryResultCache {
+
+    /**
+     * Results with more rows are not cached.
+     */
+    public static final int MAX_CACHED_ROWS = 10000;
+
+    private final Map<Key, Result> results;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxEntries
+     *        is the maximum number of query results to retain
+     */
+    public QueryResultCache(int maxEntries) {
+        Validate.isTrue(maxEntries > 0);
+        this.results = new LRUCache<>(maxEntries);
+    }
+
+    /**
+     * Looks up the result of a query.
+     *
+     * @param sql
+     *        is the SQL of the query
+     * @param parameters
+     *        are the parameters of the query or {@code null} if there are none
+     * @param version
+     *        is the current combined version of the queried tables
+     * @return a {@link ResultSet} over the cached result or {@code null} if there is no up-to-date result
+     */
+    public ResultSet get(String sql, Object[] parameters, long version) {
+        Key key = new Key(sql, parameters);
+        Result result = this.results.get(key);
+        if (result == null) {
+            return null;
+        }
+        if (result.version != version) {
+            this.results.remove(key);
+            return null;
+        }
+        return result.createResultSet();
+    }
+
+    /**
+     * Materializes and closes the given result set and caches its rows unless there are too many of them.
+     *
+     * @param sql
+     *        is the SQL of the query
+     * @param parameters
+     *        are the parameters of the query or {@code null} if there are none
+     * @param version
+     *        is the combined version of the queried tables before the query has been executed
+     * @param resultSet
+     *        is the result of the query
+     * @return a {@link ResultSet} over the materialized result that replaces the given one
+     * @throws SQLException
+     *         if the given result set cannot be read
+     */
+    public ResultSet put(String sql, Object[] parameters, long version, ResultSet resultSet) throws SQLException {
+        Result result;
+        try {
+            result = new Result(resultSet, version);
+        } finally {
+            resultSet.close();
+        }
+        if (result.rows.size() <= MAX_CACHED_ROWS) {
+            this.results.put(new Key(sql, parameters == null ? null : parameters.clone()), result);
+        }
+        return result.createResultSet();
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void clear() {
+        this.results.clear();
+    }
+
+    public int size() {
+        return this.results.size();
+    }
+
+    /**
+     * Identifies a query by its SQL and parameters.
+     */
+    private static class Key {
+
+        private final String sql;
+
+        private final Object[] parameters;
+
+        private final int hashCode;
+
+        private Key(String sql, Object[] parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.hashCode = 31 * sql.hashCode() + Arrays.deepHashCode(parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.sql.equals(other.sql)
+                    && Arrays.deepEquals(this.parameters, other.parameters);
+        }
+    }
+
+    /**
+     * The materialized rows of a query result.
+     */
+    private static class Result {
+
+        private final long version;
+
+        private final String[] columnLabels;
+
+        /**
+         * Lower-case column labels to their 1-based index.
+         */
+        private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private Result(ResultSet resultSet, long version) throws SQLException {
+            this.version = version;
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            this.columnLabels = new String[metaData.getColumnCount()];
+            for (int column = 1; column <= this.columnLabels.length; column++) {
+                this.columnLabels[column - 1] = metaData.getColumnLabel(column);
+                String key = this.columnLabels[column - 1].toLowerCase();
+                if (!this.columnIndexes.containsKey(key)) {
+                    this.columnIndexes.put(key, column);
+                }
+            }
+            while (resultSet.next()) {
+                Object[] row = new Object[this.columnLabels.length];
+                for (int column = 1; column <= row.length; column++) {
+                    row[column - 1] = resultSet.getObject(column);
+                }
+                this.rows.add(row);
+            }
+        }
+
+        private ResultSet createResultSet() {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, new ReplayHandler(this));
+        }
+
+        private ResultSetMetaData createMetaData() {
+            return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                    new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                            case "getColumnCount":
+                                return Result.this.columnLabels.length;
+                            case "getColumnLabel":
+                            case "getColumnName":
+                                return Result.this.columnLabels[(Integer) args[0] - 1];
+                            case "toString":
+                                return "ResultSetMetaData" + Arrays.toString(Result.this.columnLabels);
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new SQLFeatureNotSupportedException(method.getName()
+                                        + " is not supported by cached results.");
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Replays a {@link Result}.
+     */
+    private static class ReplayHandler implements InvocationHandler {
+
+        private final Result result;
+
+        /**
+         * The 0-based index of the current row.
+         */
+        private int rowIndex = -1;
+
+        private boolean isClosed = false;
+
+        private boolean wasNull = false;
+
+        private ReplayHandler(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            switch (methodName) {
+            case "next":
+                ensureOpen();
+                if (this.rowIndex < this.result.rows.size()) {
+                    this.rowIndex++;
+                }
+                return this.rowIndex < this.result.rows.size();
+            case "close":
+                this.isClosed = true;
+                return null;
+            case "isClosed":
+                return this.isClosed;
+            case "wasNull":
+                return this.wasNull;
+            case "findColumn":
+                return findColumn((String) args[0]);
+            case "getMetaData":
+                return this.result.createMetaData();
+            case "getRow":
+                return this.rowIndex < this.result.rows.size() ? this.rowIndex + 1 : 0;
+            case "isBeforeFirst":
+                return this.rowIndex == -1 && !this.result.rows.isEmpty();
+            case "isAfterLast":
+                return this.rowIndex == this.result.rows.size() && !this.result.rows.isEmpty();
+            case "getType":
+                return ResultSet.TYPE_FORWARD_ONLY;
+            case "getConcurrency":
+                return ResultSet.CONCUR_READ_ONLY;
+            case "getStatement":
+            case "getWarnings":
+                return null;
+            case "clearWarnings":
+            case "setFetchSize":
+                return null;
+            case "getFetchSize":
+                return 0;
+            case "toString":
+                return "CachedResultSet[" + this.result.rows.size() + " rows]";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                if (methodName.startsWith("get") && args != null && args.length == 1) {
+                    Object value = getValue(args[0]);
+                    return convert(value, method.getReturnType(), methodName);
+                }
+                throw new SQLFeatureNotSupportedException(methodName + " is not supported by cached results.");
+            }
+        }
+
+        private void ensureOpen() throws SQLException {
+            if (this.isClosed) {
+                throw new SQLException("ResultSet closed");
+            }
+        }
+
+        private int findColumn(String columnLabel) throws SQLException {
+            ensureOpen();
+            Integer column = this.result.columnIndexes.get(columnLabel.toLowerCase());
+            if (column == null) {
+                throw new SQLException("no such column: '" + columnLabel + "'");
+            }
+            return column;
+        }
+
+        private Object getValue(Object column) throws SQLException {
+            ensureOpen();
+            if (this.rowIndex < 0 || this.rowIndex >= this.result.rows.size()) {
+                throw new SQLException("ResultSet is not positioned on a row");
+            }
+            int columnIndex = column instanceof String ? findColumn((String) column) : (Integer) column;
+            Object[] row = this.result.rows.get(this.rowIndex);
+            if (columnIndex < 1 || columnIndex > row.length) {
+                throw new SQLException("column " + columnIndex + " out of bounds [1," + row.length + "]");
+            }
+            Object value = row[columnIndex - 1];
+            this.wasNull = value == null;
+            return value;
+        }
+
+        /**
+         * Converts a cached value to the requested type similar to the SQLite driver.
+         */
+        private static Object convert(Object value, Class<?> type, String methodName) throws SQLException {
+            if (type == Object.class) {
+                return value instanceof byte[] ? ((byte[]) value).clone() : value;
+            }
+            if (type == String.class) {
+                if (value == null) {
+                    return null;
+                }
+                return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+            }
+            if (type == byte[].class) {
+                if (value == null) {
+                    return null;
+                }
+                return value instanceof byte[] ? ((byte[]) value).clone()
+                        : value.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            if (type == boolean.class) {
+                return toLong(value) != 0;
+            }
+            if (type == int.class) {
+                return (int) toLong(value);
+            }
+            if (type == long.class) {
+                return toLong(value);
+            }
+            if (type == short.class) {
+                return (short) toLong(value);
+            }
+            if (type == byte.class) {
+                return (byte) toLong(value);
+            }
+            if (type == double.class) {
+                return toDouble(value);
+            }
+            if (type == float.class) {
+                return (float) toDouble(value);
+            }
+            throw new SQLFeatureNotSupportedException(methodName + " is not supported by cached results.");
+        }
+
+        private static long toLong(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof String) {
+                try {
+                    return Long.parseLong(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    return (long) toDouble(value);
+                }
+            }
+            return 0;
+        }
+
+        private static double toDouble(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            if (value instanceof String) {
+                try {
+                    return Double.parseDouble(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package de.hpi.isg.mdms.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns dense int handles to database tables, so that sets of tables can be represented as {@link BitSet}s. Table
+ * names are case-insensitive, i.e., all spellings of a table name are mapped to the same handle. Each spelling is
+ * canonicalized only once. Instances are thread-safe.
+ *
+ * @author Sebastian Kruse
+ *
+ */
+public class TableRegistry {
+
+	/**
+	 * Maps any encountered spelling of a table name to the handle of the table.
+	 */
+	private final Map<String, Integer> handles = new HashMap<>();
+
+	/**
+	 * The canonical table names indexed by their handles.
+	 */
+	private final List<String> tableNames = new ArrayList<>();
+
+	/**
+	 * Version counters of the tables indexed by their handles. A version is incremented whenever the table might have
+	 * been modified.
+	 */
+	private long[] versions = new long[16];
+
+	/**
+	 * Returns the handle for the given table and registers the table if necessary.
+	 *
+	 * @param tableName
+	 *            is the name of the table in any spelling
+	 * @return the handle of the table
+	 */
+	public synchronized int getHandle(String tableName) {
+		Integer handle = this.handles.get(tableName);
+		if (handle != null) {
+			return handle;
+		}
+		String canonicalTableName = canonicalize(tableName);
+		handle = this.handles.get(canonicalTableName);
+		if (handle == null) {
+			handle = this.tableNames.size();
+			this.tableNames.add(canonicalTableName);
+			this.handles.put(canonicalTableName, handle);
+		}
+		this.handles.put(tableName, handle);
+		return handle;
+	}
+
+	/**
+	 * Resolves the handles of all given tables.
+	 *
+	 * @param tableNames
+	 *            are the names of the tables in any spelling
+	 * @return a {@link BitSet} that contains the handles of the tables
+	 */
+	public synchronized BitSet getHandles(Collection<String> tableNames) {
+		BitSet handles = new BitSet();
+		for (String tableName : tableNames) {
+			handles.set(getHandle(tableName));
+		}
+		return handles;
+	}
+
+	/**
+	 * @param handle
+	 *            is the handle of a registered table
+	 * @return the canonical name of the table
+	 */
+	public synchronized String getTableName(int handle) {
+		return this.tableNames.get(handle);
+	}
+
+	/**
+	 * @param handles
+	 *            are handles of registered tables
+	 * @return the canonical names of the tables
+	 */
+	public synchronized Set<String> getTableNames(BitSet handles) {
+		Set<String> tableNames = new LinkedHashSet<>();
+		for (int handle = handles.nextSetBit(0); handle != -1; handle = handles.nextSetBit(handle + 1)) {
+			tableNames.add(this.tableNames.get(handle));
+		}
+		return tableNames;
+	}
+
+	/**
+	 * @return the number of registered tables, which is also the upper bound (exclusive) of all handles
+	 */
+	public synchronized int size() {
+		return this.tableNames.size();
+	}
+
+	/**
+	 * Increments the versions of the given tables, thereby invalidating anything that has been derived from their
+	 * previous contents.
+	 *
+	 * @param handles
+	 *            are handles of registered tables
+	 */
+	public synchronized void incrementVersions(BitSet handles) {
+		if (handles.length() > this.versions.length) {
+			this.versions = Arrays.copyOf(this.versions, Math.max(handles.length(), 2 * this.versions.length));
+		}
+		for (int handle = handles.nextSetBit(0); handle != -1; handle = handles.nextSetBit(handle + 1)) {
+			this.versions[handle]++;
+		}
+	}
+
+	/**
+	 * Combines the versions of the given tables. As versions only grow, the combined version changes whenever any of
+	 * the tables has been modified.
+	 *
+	 * @param handles
+	 *            are handles of registered tables
+	 * @return the combined version of the tables
+	 */
+	public synchronized long getVersion(BitSet handles) {
+		long version = 0;
+		for (int handle = handles.nextSetBit(0); handle != -1 && handle < this.versions.length;
+				handle = handles.nextSetBit(handle + 1)) {
+			version += this.versions[handle];
+		}
+		return version;
+	}
+
+	/**
+	 * @return the canonical name of the given table
+	 */
+	public static String canonicalize(String tableName) {
+		if (tableName == null) {
+			return null;
+		}
+		return tableName.toLowerCase();
+	}
+
+}
@@ -0,0 +1,397 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry for the writer and query metrics of a {@link de.hpi.isg.mdms.db.DatabaseAccess}. The metrics can be
+ * inspected in-process via {@link #snapshot()} or via JMX after {@link #registerMBean(String)}.
+ * <p>
+ * The registry is disabled by default and has to be {@link #setEnabled(boolean) enabled} explicitly, because tracking
+ * queries normalizes their SQL and wraps each result set to count its rows.
+ * </p>
+ *
+ * @author Sebastian Kruse
+ */
+public class DatabaseMetrics implements DatabaseMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseMetrics.class);
+
+    /**
+     * Upper bound for the number of distinct query SQLs to keep track of. Any further SQL is accounted to
+     * {@link #OTHER_QUERIES}.
+     */
+    private static final int MAX_QUERY_KEYS = 1000;
+
+    public static final String OTHER_QUERIES = "<other queries>";
+
+    /**
+     * Matches string and numeric literals in SQL statements.
+     */
+    private static final Pattern LITERAL_PATTERN = Pattern.compile("'(?:[^']|'')*'|\\b-?\\d+(?:\\.\\d+)?\\b");
+
+    private final ConcurrentMap<String, WriterMetrics> writerMetrics = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, QueryMetrics> queryMetrics = new ConcurrentHashMap<>();
+
+    private volatile boolean isEnabled = false;
+
+    private ObjectName registeredName;
+
+    @Override
+    public boolean isEnabled() {
+        return this.isEnabled;
+    }
+
+    @Override
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * Provides the metrics for the given writer.
+     * 
+     * @param writerName
+     *        identifies the writer, e.g., by its SQL
+     * @return the {@link WriterMetrics} or {@code null} if this registry is disabled
+     */
+    public WriterMetrics getWriterMetrics(String writerName) {
+        if (!this.isEnabled) {
+            return null;
+        }
+        WriterMetrics metrics = this.writerMetrics.get(writerName);
+        if (metrics == null) {
+            metrics = new WriterMetrics(writerName);
+            WriterMetrics existingMetrics = this.writerMetrics.putIfAbsent(writerName, metrics);
+            if (existingMetrics != null) {
+                metrics = existingMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Provides the metrics for the given query. Literals in the SQL are normalized, so that ad-hoc queries that only
+     * differ in their parameters share their metrics.
+     * 
+     * @param sql
+     *        is the SQL of the query
+     * @return the {@link QueryMetrics} or {@code null} if this registry is disabled
+     */
+    public QueryMetrics getQueryMetrics(String sql) {
+        if (!this.isEnabled) {
+            return null;
+        }
+        String key = normalizeSql(sql);
+        QueryMetrics metrics = this.queryMetrics.get(key);
+        if (metrics == null) {
+            if (this.queryMetrics.size() >= MAX_QUERY_KEYS) {
+                key = OTHER_QUERIES;
+            }
+            metrics = new QueryMetrics(key);
+            QueryMetrics existingMetrics = this.queryMetrics.putIfAbsent(key, metrics);
+            if (existingMetrics != null) {
+                metrics = existingMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Replaces all literals in the given SQL with {@code ?}.
+     */
+    static String normalizeSql(String sql) {
+        return LITERAL_PATTERN.matcher(sql).replaceAll("?");
+    }
+
+    /**
+     * @return an immutable view of all collected metrics
+     */
+    public Snapshot snapshot() {
+        List<WriterMetrics.Snapshot> writerSnapshots = new ArrayList<>();
+        for (WriterMetrics metrics : this.writerMetrics.values()) {
+            writerSnapshots.add(metrics.snapshot());
+        }
+        List<QueryMetrics.Snapshot> querySnapshots = new ArrayList<>();
+        for (QueryMetrics metrics : this.queryMetrics.values()) {
+            querySnapshots.add(metrics.snapshot());
+        }
+        return new Snapshot(writerSnapshots, querySnapshots);
+    }
+
+    @Override
+    public void reset() {
+        for (WriterMetrics metrics : this.writerMetrics.values()) {
+            metrics.reset();
+        }
+        for (QueryMetrics metrics : this.queryMetrics.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers this object with the platform MBean server.
+     * 
+     * @param name
+     *        distinguishes this registry from those of other database accesses
+     * @return the {@link ObjectName} under which this object is registered
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        unregisterMBean();
+        try {
+            ObjectName objectName = new ObjectName("de.hpi.isg.mdms:type=DatabaseMetrics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.registeredName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register database metrics.", e);
+        }
+    }
+
+    /**
+     * Removes this object from the platform MBean server if it is registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (this.registeredName == null) {
+            return;
+        }
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(this.registeredName)) {
+                mBeanServer.unregisterMBean(this.registeredName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Could not unregister {}.", this.registeredName, e);
+        }
+        this.registeredName = null;
+    }
+
+    @Override
+    public long getTotalFlushCount() {
+        long sum = 0;
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            sum += snapshot.getFlushCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalFlushedStatements() {
+        long sum = 0;
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            sum += snapshot.getStatementCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalForcedFlushCount() {
+        long sum = 0;
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            sum += snapshot.getForcedFlushCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalQueryCount() {
+        long sum = 0;
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            sum += snapshot.getExecutionCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalRowsReturned() {
+        long sum = 0;
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            sum += snapshot.getRowCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalQueryCacheHits() {
+        long sum = 0;
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            sum += snapshot.getCacheHitCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalQueryCacheMisses() {
+        long sum = 0;
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            sum += snapshot.getCacheMissCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getTotalAdditionalQueryStatements() {
+        long sum = 0;
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            sum += snapshot.getAdditionalStatementCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public Map<String, Long> getFlushCounts() {
+        Map<String, Long> result = new HashMap<>();
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            result.put(snapshot.getName(), snapshot.getFlushCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getMeanStatementsPerFlush() {
+        Map<String, Double> result = new HashMap<>();
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            result.put(snapshot.getName(), snapshot.getMeanStatementsPerFlush());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getForcedFlushCounts() {
+        Map<String, Long> result = new HashMap<>();
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            result.put(snapshot.getName(), snapshot.getForcedFlushCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getP50FlushLatenciesMillis() {
+        return getFlushLatencyPercentiles(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getP99FlushLatenciesMillis() {
+        return getFlushLatencyPercentiles(0.99);
+    }
+
+    private Map<String, Double> getFlushLatencyPercentiles(double percentile) {
+        Map<String, Double> result = new HashMap<>();
+        for (WriterMetrics.Snapshot snapshot : snapshot().getWriterMetrics()) {
+            result.put(snapshot.getName(), snapshot.getFlushLatencies().getPercentileMillis(percentile));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getQueryCounts() {
+        Map<String, Long> result = new HashMap<>();
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            result.put(snapshot.getSql(), snapshot.getExecutionCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getRowsReturned() {
+        Map<String, Long> result = new HashMap<>();
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            result.put(snapshot.getSql(), snapshot.getRowCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getP50QueryLatenciesMillis() {
+        return getQueryLatencyPercentiles(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getP99QueryLatenciesMillis() {
+        return getQueryLatencyPercentiles(0.99);
+    }
+
+    private Map<String, Double> getQueryLatencyPercentiles(double percentile) {
+        Map<String, Double> result = new HashMap<>();
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            result.put(snapshot.getSql(), snapshot.getExecutionLatencies().getPercentileMillis(percentile));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getQueryCacheHitRates() {
+        Map<String, Double> result = new HashMap<>();
+        for (QueryMetrics.Snapshot snapshot : snapshot().getQueryMetrics()) {
+            if (snapshot.getCacheHitCount() + snapshot.getCacheMissCount() > 0) {
+                result.put(snapshot.getSql(), snapshot.getCacheHitRate());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An immutable view of {@link DatabaseMetrics}.
+     */
+    public static class Snapshot {
+
+        private final Collection<WriterMetrics.Snapshot> writerMetrics;
+
+        private final Collection<QueryMetrics.Snapshot> queryMetrics;
+
+        private Snapshot(Collection<WriterMetrics.Snapshot> writerMetrics,
+                Collection<QueryMetrics.Snapshot> queryMetrics) {
+            this.writerMetrics = Collections.unmodifiableCollection(writerMetrics);
+            this.queryMetrics = Collections.unmodifiableCollection(queryMetrics);
+        }
+
+        public Collection<WriterMetrics.Snapshot> getWriterMetrics() {
+            return this.writerMetrics;
+        }
+
+        public Collection<QueryMetrics.Snapshot> getQueryMetrics() {
+            return this.queryMetrics;
+        }
+
+        /**
+         * @return the metrics of the given writer or {@code null} if there are none
+         */
+        public WriterMetrics.Snapshot getWriterMetrics(String writerName) {
+            for (WriterMetrics.Snapshot snapshot : this.writerMetrics) {
+                if (snapshot.getName().equals(writerName)) {
+                    return snapshot;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("DatabaseMetrics [\n");
+            for (WriterMetrics.Snapshot snapshot : this.writerMetrics) {
+                sb.append("  ").append(snapshot).append('\n');
+            }
+            for (QueryMetrics.Snapshot snapshot : this.queryMetrics) {
+                sb.append("  ").append(snapshot).append('\n');
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view on the {@link DatabaseMetrics} of a {@link de.hpi.isg.mdms.db.DatabaseAccess}. Writers are identified by
+ * their SQL (template), queries by their SQL with literals replaced by {@code ?}.
+ *
+ * @author Sebastian Kruse
+ */
+public interface DatabaseMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean isEnabled);
+
+    long getTotalFlushCount();
+
+    long getTotalFlushedStatements();
+
+    long getTotalForcedFlushCount();
+
+    long getTotalQueryCount();
+
+    long getTotalRowsReturned();
+
+    long getTotalQueryCacheHits();
+
+    long getTotalQueryCacheMisses();
+
+    /**
+     * @return the number of statements that have been prepared for parameterized queries in addition to their first
+     *         one, because result sets of the previous ones had not been closed yet
+     */
+    long getTotalAdditionalQueryStatements();
+
+    Map<String, Long> getFlushCounts();
+
+    Map<String, Double> getMeanStatementsPerFlush();
+
+    Map<String, Long> getForcedFlushCounts();
+
+    Map<String, Double> getP50FlushLatenciesMillis();
+
+    Map<String, Double> getP99FlushLatenciesMillis();
+
+    Map<String, Long> getQueryCounts();
+
+    Map<String, Long> getRowsReturned();
+
+    Map<String, Double> getP50QueryLatenciesMillis();
+
+    Map<String, Double> getP99QueryLatenciesMillis();
+
+    /**
+     * @return the hit rates of the query result cache for all queries that have been looked up in it
+     */
+    Map<String, Double> getQueryCacheHitRates();
+
+    /**
+     * Discards all collected measurements.
+     */
+    void reset();
+
+}
@@ -0,0 +1,128 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies with exponentially growing buckets: bucket {@code i} counts latencies of less
+ * than {@code 2^i} microseconds (and at least {@code 2^(i-1)} microseconds). Percentiles are therefore reported
+ * with a relative error of at most factor 2, which suffices to spot where time goes.
+ *
+ * @author Sebastian Kruse
+ */
+public class LatencyHistogram {
+
+    private static final int NUM_BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a single latency.
+     * 
+     * @param nanos
+     *        is the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = nanos / 1000;
+        int bucket = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.sumNanos.addAndGet(nanos);
+        long curMax;
+        while ((curMax = this.maxNanos.get()) < nanos) {
+            if (this.maxNanos.compareAndSet(curMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sumNanos.set(0);
+        this.maxNanos.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            bucketCounts[i] = this.buckets.get(i);
+        }
+        return new Snapshot(bucketCounts, this.count.get(), this.sumNanos.get(), this.maxNanos.get());
+    }
+
+    /**
+     * An immutable view of a {@link LatencyHistogram}.
+     */
+    public static class Snapshot {
+
+        private final long[] bucketCounts;
+
+        private final long count;
+
+        private final long sumNanos;
+
+        private final long maxNanos;
+
+        private Snapshot(long[] bucketCounts, long count, long sumNanos, long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMeanMillis() {
+            return this.count == 0 ? 0d : this.sumNanos / (1000000d * this.count);
+        }
+
+        public double getMaxMillis() {
+            return this.maxNanos / 1000000d;
+        }
+
+        /**
+         * Estimates a percentile of the recorded latencies by means of the upper bound of the according bucket.
+         * 
+         * @param percentile
+         *        is the requested percentile, e.g., {@code 0.99}
+         * @return the estimated latency in milliseconds
+         */
+        public double getPercentileMillis(double percentile) {
+            long totalCount = 0;
+            for (long bucketCount : this.bucketCounts) {
+                totalCount += bucketCount;
+            }
+            if (totalCount == 0) {
+                return 0d;
+            }
+            long threshold = (long) Math.ceil(percentile * totalCount);
+            long cumulativeCount = 0;
+            for (int i = 0; i < this.bucketCounts.length; i++) {
+                cumulativeCount += this.bucketCounts[i];
+                if (cumulativeCount >= threshold) {
+                    return Math.min((1L << i) / 1000d, getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[n=%d, mean=%.3f ms, p50=%.3f ms, p99=%.3f ms, max=%.3f ms]", this.count,
+                    getMeanMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the execution statistics of a single SQL query (template).
+ *
+ * @author Sebastian Kruse
+ */
+public class QueryMetrics {
+
+    private final String sql;
+
+    private final AtomicLong executionCount = new AtomicLong();
+
+    private final AtomicLong rowCount = new AtomicLong();
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    private final AtomicLong cacheMissCount = new AtomicLong();
+
+    private final AtomicLong additionalStatementCount = new AtomicLong();
+
+    private final LatencyHistogram executionLatencies = new LatencyHistogram();
+
+    QueryMetrics(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Records an execution of the query.
+     * 
+     * @param elapsedNanos
+     *        is the time until the result set was available
+     */
+    public void recordExecution(long elapsedNanos) {
+        this.executionCount.incrementAndGet();
+        this.executionLatencies.record(elapsedNanos);
+    }
+
+    /**
+     * Records that the result of the query has been served from the query result cache.
+     */
+    public void recordCacheHit() {
+        this.cacheHitCount.incrementAndGet();
+    }
+
+    /**
+     * Records that the result of the query has been looked up in the query result cache in vain.
+     */
+    public void recordCacheMiss() {
+        this.cacheMissCount.incrementAndGet();
+    }
+
+    /**
+     * Records that an additional statement had to be prepared for the query, because all of its statements were still
+     * in use by open result sets.
+     */
+    public void recordAdditionalStatement() {
+        this.additionalStatementCount.incrementAndGet();
+    }
+
+    /**
+     * Wraps the given result set, so that the rows that are read from it are counted.
+     * 
+     * @param resultSet
+     *        is a result set of this query
+     * @return the wrapped result set
+     */
+    public ResultSet trackRows(final ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result;
+                        try {
+                            result = method.invoke(resultSet, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                            QueryMetrics.this.rowCount.incrementAndGet();
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    void reset() {
+        this.executionCount.set(0);
+        this.rowCount.set(0);
+        this.cacheHitCount.set(0);
+        this.cacheMissCount.set(0);
+        this.additionalStatementCount.set(0);
+        this.executionLatencies.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this.sql, this.executionCount.get(), this.rowCount.get(), this.cacheHitCount.get(),
+                this.cacheMissCount.get(), this.additionalStatementCount.get(), this.executionLatencies.snapshot());
+    }
+
+    /**
+     * An immutable view of {@link QueryMetrics}.
+     */
+    public static class Snapshot {
+
+        private final String sql;
+
+        private final long executionCount, rowCount, cacheHitCount, cacheMissCount, additionalStatementCount;
+
+        private final LatencyHistogram.Snapshot executionLatencies;
+
+        private Snapshot(String sql, long executionCount, long rowCount, long cacheHitCount, long cacheMissCount,
+                long additionalStatementCount, LatencyHistogram.Snapshot executionLatencies) {
+            this.sql = sql;
+            this.executionCount = executionCount;
+            this.rowCount = rowCount;
+            this.cacheHitCount = cacheHitCount;
+            this.cacheMissCount = cacheMissCount;
+            this.additionalStatementCount = additionalStatementCount;
+            this.executionLatencies = executionLatencies;
+        }
+
+        public String getSql() {
+            return this.sql;
+        }
+
+        public long getExecutionCount() {
+            return this.executionCount;
+        }
+
+        /**
+         * @return the number of rows that have been read from the result sets of the query
+         */
+        public long getRowCount() {
+            return this.rowCount;
+        }
+
+        /**
+         * @return the number of executions that have been served from the query result cache and are therefore not
+         *         included in the {@link #getExecutionCount() execution count}
+         */
+        public long getCacheHitCount() {
+            return this.cacheHitCount;
+        }
+
+        public long getCacheMissCount() {
+            return this.cacheMissCount;
+        }
+
+        /**
+         * @return the fraction of query result cache lookups that were hits or {@code NaN} if there were none
+         */
+        public double getCacheHitRate() {
+            long lookups = this.cacheHitCount + this.cacheMissCount;
+            return lookups == 0 ? Double.NaN : this.cacheHitCount / (double) lookups;
+        }
+
+        /**
+         * @return the number of statements that have been prepared for the query in addition to its first one, because
+         *         the previous ones were still in use by open result sets
+         */
+        public long getAdditionalStatementCount() {
+            return this.additionalStatementCount;
+        }
+
+        public LatencyHistogram.Snapshot getExecutionLatencies() {
+            return this.executionLatencies;
+        }
+
+        @Override
+        public String toString() {
+            String cacheStatistics = "";
+            if (this.cacheHitCount + this.cacheMissCount > 0) {
+                cacheStatistics = String.format(", %d cache hits, %d cache misses", this.cacheHitCount,
+                        this.cacheMissCount);
+            }
+            if (this.additionalStatementCount > 0) {
+                cacheStatistics += String.format(", %d additional statements", this.additionalStatementCount);
+            }
+            return String.format("%s: %d executions, %d rows%s, latency %s", this.sql, this.executionCount,
+                    this.rowCount, cacheStatistics, this.executionLatencies);
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records queries whose execution exceeds a configurable threshold together with their parameters, elapsed time, and
+ * number of returned rows. The elapsed time comprises the execution of the query and the reading of its result set,
+ * because SQLite computes the result rows only on demand. A query is therefore recorded as soon as its result set is
+ * exhausted or closed. On SQLite, the {@code EXPLAIN QUERY PLAN} of each distinct slow query is captured once, so
+ * that full table scans due to missing indexes become visible.
+ *
+ * @author Sebastian Kruse
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /**
+     * Upper bound for the number of distinct queries whose plan is captured.
+     */
+    private static final int MAX_QUERY_PLANS = 1000;
+
+    private static final String PENDING_QUERY_PLAN = "<pending>";
+
+    private final Connection connection;
+
+    private final int capacity;
+
+    /**
+     * The most recent slow queries; guarded by itself.
+     */
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Normalized SQL to the captured query plan.
+     */
+    private final ConcurrentMap<String, String> queryPlans = new ConcurrentHashMap<>();
+
+    /**
+     * Slow queries are recorded only if this value is not negative.
+     */
+    private volatile long thresholdNanos = -1;
+
+    private volatile Boolean isExplainingQueryPlans;
+
+    /**
+     * Creates a new, disabled instance.
+     *
+     * @param connection
+     *        is the connection on which the queries are executed and that is used to explain their query plans
+     * @param capacity
+     *        is the number of most recent slow queries to retain
+     */
+    public SlowQueryLog(Connection connection, int capacity) {
+        Validate.isTrue(capacity > 0);
+        this.connection = connection;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the threshold above which queries are recorded.
+     *
+     * @param thresholdMillis
+     *        is the threshold in milliseconds or a negative value to disable this log
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : thresholdMillis * 1000000L;
+    }
+
+    /**
+     * @return the threshold in milliseconds above which queries are recorded or {@code -1} if this log is disabled
+     */
+    public long getThresholdMillis() {
+        return this.thresholdNanos < 0 ? -1 : this.thresholdNanos / 1000000L;
+    }
+
+    public boolean isEnabled() {
+        return this.thresholdNanos >= 0;
+    }
+
+    /**
+     * Wraps the result set of a query, so that the query is recorded if it turns out to be slow.
+     *
+     * @param sql
+     *        is the SQL of the query
+     * @param parameters
+     *        are the parameters of the query or {@code null} if there are none
+     * @param elapsedNanos
+     *        is the time until the result set was available
+     * @param resultSet
+     *        is the result set of the query
+     * @return the wrapped result set or the given one if this log is disabled
+     */
+    public ResultSet track(final String sql, final Object parameters, final long elapsedNanos,
+            final ResultSet resultSet) {
+        if (!isEnabled()) {
+            return resultSet;
+        }
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                new InvocationHandler() {
+
+                    private long totalNanos = elapsedNanos;
+
+                    private long rowCount = 0;
+
+                    private boolean isRecorded = false;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        boolean isNext = "next".equals(method.getName());
+                        boolean isClose = "close".equals(method.getName());
+                        long startTime = isNext ? System.nanoTime() : 0;
+                        Object result;
+                        try {
+                            result = method.invoke(resultSet, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (isNext) {
+                            this.totalNanos += System.nanoTime() - startTime;
+                            if (Boolean.TRUE.equals(result)) {
+                                this.rowCount++;
+                            }
+                        }
+                        if (!this.isRecorded && (isClose || (isNext && Boolean.FALSE.equals(result)))) {
+                            this.isRecorded = true;
+                            recordIfSlow(sql, parameters, this.totalNanos, this.rowCount);
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private void recordIfSlow(String sql, Object parameters, long elapsedNanos, long rowCount) {
+        long thresholdNanos = this.thresholdNanos;
+        if (thresholdNanos < 0 || elapsedNanos < thresholdNanos) {
+            return;
+        }
+        String queryPlan = explainOnce(sql);
+        SlowQuery slowQuery = new SlowQuery(sql, formatParameters(parameters), elapsedNanos, rowCount,
+                queryPlan == null ? getQueryPlan(sql) : queryPlan);
+        synchronized (this.slowQueries) {
+            if (this.slowQueries.size() >= this.capacity) {
+                this.slowQueries.removeFirst();
+            }
+            this.slowQueries.addLast(slowQuery);
+        }
+        if (queryPlan != null) {
+            LOGGER.warn("{}\nQuery plan:\n{}", slowQuery, queryPlan);
+        } else {
+            LOGGER.warn("{}", slowQuery);
+        }
+    }
+
+    /**
+     * Captures the query plan of the given query unless this has been done for an equivalent query before.
+     *
+     * @return the newly captured query plan or {@code null} if none was captured
+     */
+    private String explainOnce(String sql) {
+        if (!isExplainingQueryPlans() || this.queryPlans.size() >= MAX_QUERY_PLANS) {
+            return null;
+        }
+        String key = DatabaseMetrics.normalizeSql(sql);
+        if (this.queryPlans.putIfAbsent(key, PENDING_QUERY_PLAN) != null) {
+            return null;
+        }
+        String queryPlan;
+        try (PreparedStatement explainStatement = this.connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            try (ResultSet resultSet = explainStatement.executeQuery()) {
+                // The detail is the last column in all SQLite versions.
+                int detailColumn = resultSet.getMetaData().getColumnCount();
+                StringBuilder sb = new StringBuilder();
+                while (resultSet.next()) {
+                    if (sb.length() > 0) {
+                        sb.append('\n');
+                    }
+                    sb.append(resultSet.getString(detailColumn));
+                }
+                queryPlan = sb.toString();
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Could not explain {}.", sql, e);
+            queryPlan = "<unavailable: " + e.getMessage() + ">";
+        }
+        this.queryPlans.put(key, queryPlan);
+        return queryPlan;
+    }
+
+    private boolean isExplainingQueryPlans() {
+        if (this.isExplainingQueryPlans == null) {
+            boolean isSQLite;
+            try {
+                isSQLite = "SQLite".equalsIgnoreCase(this.connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                isSQLite = false;
+            }
+            this.isExplainingQueryPlans = isSQLite;
+        }
+        return this.isExplainingQueryPlans;
+    }
+
+    private static String formatParameters(Object parameters) {
+        if (parameters == null) {
+            return null;
+        }
+        if (parameters instanceof Object[]) {
+            return Arrays.deepToString((Object[]) parameters);
+        }
+        if (parameters.getClass().isArray()) {
+            String wrappedParameters = Arrays.deepToString(new Object[] { parameters });
+            return wrappedParameters.substring(1, wrappedParameters.length() - 1);
+        }
+        return String.valueOf(parameters);
+    }
+
+    /**
+     * @return the query plan that has been captured for the given query (or an equivalent one that only differs in
+     *         literals) or {@code null} if there is none
+     */
+    public String getQueryPlan(String sql) {
+        String queryPlan = this.queryPlans.get(DatabaseMetrics.normalizeSql(sql));
+        return PENDING_QUERY_PLAN.equals(queryPlan) ? null : queryPlan;
+    }
+
+    /**
+     * @return the most recent slow queries, oldest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (this.slowQueries) {
+            return new ArrayList<>(this.slowQueries);
+        }
+    }
+
+    /**
+     * Forgets all recorded slow queries and captured query plans.
+     */
+    public void clear() {
+        synchronized (this.slowQueries) {
+            this.slowQueries.clear();
+        }
+        this.queryPlans.clear();
+    }
+
+    /**
+     * A single slow query execution.
+     */
+    public static class SlowQuery {
+
+        private final String sql, parameters, queryPlan;
+
+        private final long elapsedNanos, rowCount;
+
+        private SlowQuery(String sql, String parameters, long elapsedNanos, long rowCount, String queryPlan) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+            this.rowCount = rowCount;
+            this.queryPlan = queryPlan;
+        }
+
+        public String getSql() {
+            return this.sql;
+        }
+
+        /**
+         * @return a textual representation of the query parameters or {@code null} if there are none
+         */
+        public String getParameters() {
+            return this.parameters;
+        }
+
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        public long getRowCount() {
+            return this.rowCount;
+        }
+
+        /**
+         * @return the query plan of the query or {@code null} if it has not been captured
+         */
+        public String getQueryPlan() {
+            return this.queryPlan;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Slow query (%.3f ms, %d rows): %s%s", this.elapsedNanos / 1e6, this.rowCount,
+                    this.sql, this.parameters == null ? "" : " with " + this.parameters);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package de.hpi.isg.mdms.db.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the flush statistics of a single batch writer.
+ *
+ * @author Sebastian Kruse
+ */
+public class WriterMetrics {
+
+    private final String name;
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong statementCount = new AtomicLong();
+
+    private final AtomicLong dependencyForcedFlushCount = new AtomicLong();
+
+    private final AtomicLong cycleForcedFlushCount = new AtomicLong();
+
+    private final AtomicLong queryForcedFlushCount = new AtomicLong();
+
+    private final LatencyHistogram flushLatencies = new LatencyHistogram();
+
+    WriterMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records an executed batch.
+     * 
+     * @param numStatements
+     *        is the number of statements in the batch
+     * @param elapsedNanos
+     *        is the time needed to execute and commit the batch
+     */
+    public void recordFlush(int numStatements, long elapsedNanos) {
+        this.flushCount.incrementAndGet();
+        this.statementCount.addAndGet(numStatements);
+        this.flushLatencies.record(elapsedNanos);
+    }
+
+    /**
+     * Records that the writer had to be flushed, because another writer depends on its data.
+     */
+    public void recordDependencyForcedFlush() {
+        this.dependencyForcedFlushCount.incrementAndGet();
+    }
+
+    /**
+     * Records that the writer had to be flushed to break a cycle in the flush order.
+     */
+    public void recordCycleForcedFlush() {
+        this.cycleForcedFlushCount.incrementAndGet();
+    }
+
+    /**
+     * Records that the writer had to be flushed, because a query reads its data.
+     */
+    public void recordQueryForcedFlush() {
+        this.queryForcedFlushCount.incrementAndGet();
+    }
+
+    void reset() {
+        this.flushCount.set(0);
+        this.statementCount.set(0);
+        this.dependencyForcedFlushCount.set(0);
+        this.cycleForcedFlushCount.set(0);
+        this.queryForcedFlushCount.set(0);
+        this.flushLatencies.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this.name, this.flushCount.get(), this.statementCount.get(),
+                this.dependencyForcedFlushCount.get(), this.cycleForcedFlushCount.get(),
+                this.queryForcedFlushCount.get(), this.flushLatencies.snapshot());
+    }
+
+    /**
+     * An immutable view of {@link WriterMetrics}.
+     */
+    public static class Snapshot {
+
+        private final String name;
+
+        private final long flushCount, statementCount;
+
+        private final long dependencyForcedFlushCount, cycleForcedFlushCount, queryForcedFlushCount;
+
+        private final LatencyHistogram.Snapshot flushLatencies;
+
+        private Snapshot(String name, long flushCount, long statementCount, long dependencyForcedFlushCount,
+                long cycleForcedFlushCount, long queryForcedFlushCount, LatencyHistogram.Snapshot flushLatencies) {
+            this.name = name;
+            this.flushCount = flushCount;
+            this.statementCount = statementCount;
+            this.dependencyForcedFlushCount = dependencyForcedFlushCount;
+            this.cycleForcedFlushCount = cycleForcedFlushCount;
+            this.queryForcedFlushCount = queryForcedFlushCount;
+            this.flushLatencies = flushLatencies;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getFlushCount() {
+            return this.flushCount;
+        }
+
+        public long getStatementCount() {
+            return this.statementCount;
+        }
+
+        public double getMeanStatementsPerFlush() {
+            return this.flushCount == 0 ? 0d : this.statementCount / (double) this.flushCount;
+        }
+
+        public long getDependencyForcedFlushCount() {
+            return this.dependencyForcedFlushCount;
+        }
+
+        public long getCycleForcedFlushCount() {
+            return this.cycleForcedFlushCount;
+        }
+
+        public long getQueryForcedFlushCount() {
+            return this.queryForcedFlushCount;
+        }
+
+        public long getForcedFlushCount() {
+            return this.dependencyForcedFlushCount + this.cycleForcedFlushCount + this.queryForcedFlushCount;
+        }
+
+        public LatencyHistogram.Snapshot getFlushLatencies() {
+            return this.flushLatencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d flushes, %.1f statements/flush, forced %d/%d/%d (dependency/cycle/query), "
+                    + "latency %s", this.name, this.flushCount, getMeanStatementsPerFlush(),
+                    this.dependencyForcedFlushCount, this.cycleForcedFlushCount, this.queryForcedFlushCount,
+                    this.flushLatencies);
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package de.hpi.isg.mdms.db.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates lazily over the results of a query, so that callers need not materialize all of them. Cursors over a
+ * {@link ResultSet} hold it open until they are exhausted or closed, and should therefore be used in
+ * try-with-resources blocks. Note that re-executing the {@link DatabaseQuery} that produced a cursor in the same thread
+ * may invalidate the cursor.
+ * 
+ * @author Sebastian Kruse
+ * 
+ * @param <R>
+ *            is the type of the iterated elements
+ */
+abstract public class Cursor<R> implements Iterator<R>, AutoCloseable {
+
+	/**
+	 * Creates a cursor over the rows of a result set.
+	 * 
+	 * @param resultSet
+	 *            is the result set to iterate; it is closed by the cursor
+	 * @param rowMapper
+	 *            converts the rows
+	 * @return the cursor
+	 */
+	public static <R> Cursor<R> over(ResultSet resultSet, RowMapper<R> rowMapper) {
+		return new ResultSetCursor<>(resultSet, rowMapper);
+	}
+
+	/**
+	 * Creates a cursor over already materialized elements.
+	 */
+	public static <R> Cursor<R> over(final Iterable<R> elements) {
+		final Iterator<R> iterator = elements.iterator();
+		return new Cursor<R>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public R next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Adds all remaining elements to the given collection and closes this cursor.
+	 * 
+	 * @param collection
+	 *            is the collection to which the elements shall be added
+	 * @return the given collection
+	 */
+	public <C extends Collection<? super R>> C drainTo(C collection) {
+		try {
+			while (hasNext()) {
+				collection.add(next());
+			}
+		} finally {
+			close();
+		}
+		return collection;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the resources of this cursor. Closing a cursor more than once has no effect.
+	 */
+	@Override
+	abstract public void close();
+
+	/**
+	 * Cursor over the rows of a {@link ResultSet}, which is closed as soon as it is exhausted.
+	 */
+	private static class ResultSetCursor<R> extends Cursor<R> {
+
+		private final ResultSet resultSet;
+
+		private final RowMapper<R> rowMapper;
+
+		/**
+		 * Tells whether {@link #resultSet} has been advanced to a row that has not been returned by {@link #next()}.
+		 */
+		private boolean isRowPending = false;
+
+		private boolean isClosed = false;
+
+		private boolean areColumnsResolved = false;
+
+		private ResultSetCursor(ResultSet resultSet, RowMapper<R> rowMapper) {
+			this.resultSet = resultSet;
+			this.rowMapper = rowMapper;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.isRowPending) {
+				return true;
+			}
+			if (this.isClosed) {
+				return false;
+			}
+			try {
+				this.isRowPending = this.resultSet.next();
+				// Some drivers close empty result sets right away, so only resolve the columns if there is a row.
+				if (this.isRowPending && !this.areColumnsResolved) {
+					this.rowMapper.resolveColumns(this.resultSet);
+					this.areColumnsResolved = true;
+				}
+			} catch (SQLException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+			if (!this.isRowPending) {
+				close();
+			}
+			return this.isRowPending;
+		}
+
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.isRowPending = false;
+			try {
+				return this.rowMapper.map(this.resultSet);
+			} catch (SQLException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (this.isClosed) {
+				return;
+			}
+			this.isClosed = true;
+			this.isRowPending = false;
+			try {
+				this.resultSet.close();
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+}
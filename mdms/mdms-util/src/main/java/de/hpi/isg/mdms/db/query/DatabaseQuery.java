@@ -2,6 +2,9 @@ package de.hpi.isg.mdms.db.query;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.lang3.Validate;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
 
@@ -21,11 +24,43 @@ abstract public class DatabaseQuery<T> implements AutoCloseable {
 
 	protected final DatabaseAccess databaseAccess;
 
+	/**
+	 * The number of rows that the driver should fetch at once or {@code 0} to leave this decision to the driver.
+	 */
+	private volatile int fetchSize = 0;
+
 	public DatabaseQuery(DatabaseAccess databaseAccess) {
 		super();
 		this.databaseAccess = databaseAccess;
 	}
 
+	/**
+	 * Hints the JDBC driver how many rows it should fetch at once when reading the results of this query.
+	 * 
+	 * @param fetchSize
+	 *            is the number of rows or {@code 0} to use the driver's default
+	 * @return this instance
+	 */
+	public DatabaseQuery<T> setFetchSize(int fetchSize) {
+		Validate.isTrue(fetchSize >= 0);
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	public int getFetchSize() {
+		return this.fetchSize;
+	}
+
+	/**
+	 * Applies the {@link #getFetchSize() fetch size} to a statement before it is executed.
+	 */
+	protected void applyFetchSize(Statement statement) throws SQLException {
+		int fetchSize = this.fetchSize;
+		if (fetchSize > 0) {
+			statement.setFetchSize(fetchSize);
+		}
+	}
+
 	/**
 	 * Executes this query and returns the appropriate result set.
 	 * 
@@ -36,6 +71,22 @@ abstract public class DatabaseQuery<T> implements AutoCloseable {
 	 *             if the query could not be executed properly
 	 */
 	abstract public ResultSet execute(T queryParameter) throws SQLException;
+
+	/**
+	 * Executes this query and provides its results as a cursor, which converts the rows with the given mapper only
+	 * when they are requested. The cursor must be closed unless it is iterated to its end.
+	 * 
+	 * @param queryParameter
+	 *            is an object that defines the parameters of the query
+	 * @param rowMapper
+	 *            converts the result rows
+	 * @return the cursor over the converted result rows
+	 * @throws java.sql.SQLException
+	 *             if the query could not be executed properly
+	 */
+	public <R> Cursor<R> execute(T queryParameter, RowMapper<R> rowMapper) throws SQLException {
+		return Cursor.over(execute(queryParameter), rowMapper);
+	}
 	
 	/**
 	 * Closes the database resources held by this query.
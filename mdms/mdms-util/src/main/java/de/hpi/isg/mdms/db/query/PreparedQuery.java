@@ -3,8 +3,11 @@ package de.hpi.isg.mdms.db.query;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,42 +21,65 @@ abstract public class PreparedQuery<T> extends DatabaseQuery<T> {
 
 	private final String sql;
 	
-	protected PreparedStatement preparedStatement;
+	/**
+	 * The statement of the current thread. Each thread has its own statement, because executing a statement closes its
+	 * previous result set and the parameters must not be overwritten concurrently.
+	 */
+	private final ThreadLocal<PreparedStatement> preparedStatement = new ThreadLocal<>();
 
-	private List<String> queriedTables;
+	/**
+	 * All statements that have been prepared by any thread, so that they can be closed.
+	 */
+	private final Collection<PreparedStatement> allPreparedStatements = Collections
+			.synchronizedList(new ArrayList<PreparedStatement>());
+
+	/**
+	 * The handles of the tables that are read by this query.
+	 */
+	private final BitSet queriedTables;
 	
 	public PreparedQuery(DatabaseAccess databaseAccess, String sql, String... queriedTables) {
 		super(databaseAccess);
 		this.sql = sql;
-		this.queriedTables = Arrays.asList(queriedTables);
+		this.queriedTables = databaseAccess.getTableRegistry().getHandles(Arrays.asList(queriedTables));
 	}
 	
-	private void ensureStatementPrepared() throws SQLException {
-		if (this.preparedStatement == null) {
-			this.preparedStatement = this.databaseAccess.getConnection().prepareStatement(this.sql);
+	private PreparedStatement ensureStatementPrepared() throws SQLException {
+		PreparedStatement preparedStatement = this.preparedStatement.get();
+		if (preparedStatement == null) {
+			preparedStatement = this.databaseAccess.getConnection().prepareStatement(this.sql);
+			this.preparedStatement.set(preparedStatement);
+			this.allPreparedStatements.add(preparedStatement);
 		}
+		return preparedStatement;
 	}
 	
 	@Override
 	public ResultSet execute(T element) throws SQLException {
 	    LOGGER.trace("Query issued: {} with {}", this.sql, element);
 		this.databaseAccess.flush(this.queriedTables);
-		ensureStatementPrepared();
-		setStatementParameters(element);
-		long startTime = System.currentTimeMillis();
-		ResultSet resultSet = this.preparedStatement.executeQuery();
-		long endTime = System.currentTimeMillis();
-		LOGGER.trace("ResultSet available after {} ms", (endTime - startTime));
-        return resultSet;
+		PreparedStatement preparedStatement = ensureStatementPrepared();
+		setStatementParameters(element, preparedStatement);
+		applyFetchSize(preparedStatement);
+		long startTime = System.nanoTime();
+		ResultSet resultSet = preparedStatement.executeQuery();
+		long elapsedNanos = System.nanoTime() - startTime;
+		LOGGER.trace("ResultSet available after {} ms", elapsedNanos / 1000000);
+		return this.databaseAccess.trackQuery(this.sql, element, elapsedNanos, resultSet);
 	}
 
-	abstract protected void setStatementParameters(T element) throws SQLException;
+	abstract protected void setStatementParameters(T element, PreparedStatement preparedStatement)
+			throws SQLException;
 
 	@Override
 	public void close() throws SQLException {
-		if (this.preparedStatement != null) {
-			this.preparedStatement.close();
+		synchronized (this.allPreparedStatements) {
+			for (PreparedStatement preparedStatement : this.allPreparedStatements) {
+				preparedStatement.close();
+			}
+			this.allPreparedStatements.clear();
 		}
+		this.preparedStatement.remove();
 	}
 	
 }
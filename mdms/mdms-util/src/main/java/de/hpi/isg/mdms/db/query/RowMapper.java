@@ -0,0 +1,45 @@
+package de.hpi.isg.mdms.db.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts the rows of a {@link ResultSet} into objects. Before the first row is mapped, the mapper is given the
+ * opportunity to resolve the columns it needs once (e.g., via {@link ResultSet#findColumn(String)}), so that it can
+ * access them by index for each row rather than by name.
+ * <p>
+ * Row mappers may hold the resolved column indexes, so an instance must not be used for several result sets at the
+ * same time.
+ * </p>
+ * 
+ * @author Sebastian Kruse
+ * 
+ * @param <R>
+ *            is the type of objects that are created from the rows
+ */
+abstract public class RowMapper<R> {
+
+	/**
+	 * Resolves the columns that are required by this mapper. This method is called once per result set before the
+	 * first call to {@link #map(ResultSet)}; it is not called for empty result sets. Does nothing by default.
+	 * 
+	 * @param resultSet
+	 *            is the result set whose rows will be mapped
+	 * @throws SQLException
+	 *             if a required column does not exist
+	 */
+	public void resolveColumns(ResultSet resultSet) throws SQLException {
+	}
+
+	/**
+	 * Converts the current row of the given result set.
+	 * 
+	 * @param resultSet
+	 *            is positioned at the row to convert
+	 * @return the object that corresponds to the row
+	 * @throws SQLException
+	 *             if the row cannot be read
+	 */
+	abstract public R map(ResultSet resultSet) throws SQLException;
+
+}
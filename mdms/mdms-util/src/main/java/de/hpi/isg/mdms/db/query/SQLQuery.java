@@ -4,8 +4,10 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,9 +19,15 @@ public class SQLQuery extends DatabaseQuery<SQLQuery.Parameters> {
     private static final Logger LOGGER =  LoggerFactory.getLogger(SQLQuery.class);
     
 	/**
-	 * Statement over which queries can be posed. This is to be lazy-initialized.
+	 * Statement over which queries can be posed. This is to be lazy-initialized. Each thread has its own statement,
+	 * because executing a statement closes its previous result set.
 	 */
-	private Statement statement;
+	private final ThreadLocal<Statement> statement = new ThreadLocal<>();
+
+	/**
+	 * All statements that have been created by any thread, so that they can be closed.
+	 */
+	private final Collection<Statement> allStatements = Collections.synchronizedList(new ArrayList<Statement>());
 
 	public SQLQuery(DatabaseAccess databaseAccess) {
 		super(databaseAccess);
@@ -39,25 +47,35 @@ public class SQLQuery extends DatabaseQuery<SQLQuery.Parameters> {
 	public ResultSet execute(Parameters queryParameter) throws SQLException {
 	    LOGGER.trace("Query issued: {}", queryParameter.sql);
 		this.databaseAccess.flush(queryParameter.queriedTables);
-		ensureStatementCreated();
-        long startTime = System.currentTimeMillis();
-        ResultSet resultSet = this.statement.executeQuery(queryParameter.sql);
-        long endTime = System.currentTimeMillis();
-        LOGGER.trace("ResultSet available after {} ms", (endTime - startTime));
-        return resultSet;	}
-
-	private void ensureStatementCreated() throws SQLException {
-		if (this.statement == null) {
+		Statement statement = ensureStatementCreated();
+		applyFetchSize(statement);
+        long startTime = System.nanoTime();
+        ResultSet resultSet = statement.executeQuery(queryParameter.sql);
+        long elapsedNanos = System.nanoTime() - startTime;
+        LOGGER.trace("ResultSet available after {} ms", elapsedNanos / 1000000);
+        return this.databaseAccess.trackQuery(queryParameter.sql, null, elapsedNanos, resultSet);
+	}
+
+	private Statement ensureStatementCreated() throws SQLException {
+		Statement statement = this.statement.get();
+		if (statement == null) {
 			Connection connection = this.databaseAccess.getConnection();
-			this.statement = connection.createStatement();
+			statement = connection.createStatement();
+			this.statement.set(statement);
+			this.allStatements.add(statement);
 		}
+		return statement;
 	}
 
 	@Override
 	public void close() throws SQLException {
-		if (this.statement != null) {
-			this.statement.close();
+		synchronized (this.allStatements) {
+			for (Statement statement : this.allStatements) {
+				statement.close();
+			}
+			this.allStatements.clear();
 		}
+		this.statement.remove();
 	}
 	
 	/**
@@ -1,5 +1,6 @@
 package de.hpi.isg.mdms.db.query;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
@@ -17,8 +18,8 @@ public class StrategyBasedPreparedQuery<T> extends PreparedQuery<T> {
 	}
 
 	@Override
-	protected void setStatementParameters(T element) throws SQLException {
-		this.preparedStatementAdapter.translateParameter(element, this.preparedStatement);
+	protected void setStatementParameters(T element, PreparedStatement preparedStatement) throws SQLException {
+		this.preparedStatementAdapter.translateParameter(element, preparedStatement);
 	}
 
 	public static class Factory<TElement> implements DatabaseQuery.Factory<StrategyBasedPreparedQuery<TElement>> {
@@ -29,16 +30,31 @@ public class StrategyBasedPreparedQuery<T> extends PreparedQuery<T> {
 
 		private String[] queriedTables;
 
+		private int fetchSize = 0;
+
 		public Factory(String sqlStatement, PreparedStatementAdapter<TElement> adapter, String... queriedTables) {
 			this.sqlStatement = sqlStatement;
 			this.adapter = adapter;
 			this.queriedTables = queriedTables;
 		}
 
+		/**
+		 * Lets the created queries hint the JDBC driver to fetch the given number of rows at once.
+		 * 
+		 * @see DatabaseQuery#setFetchSize(int)
+		 * @return this instance
+		 */
+		public Factory<TElement> setFetchSize(int fetchSize) {
+			this.fetchSize = fetchSize;
+			return this;
+		}
+
 		@Override
 		public StrategyBasedPreparedQuery<TElement> createQuery(DatabaseAccess databaseAccess) {
-			return new StrategyBasedPreparedQuery<TElement>(databaseAccess,
+			StrategyBasedPreparedQuery<TElement> query = new StrategyBasedPreparedQuery<TElement>(databaseAccess,
 					this.sqlStatement, this.adapter, this.queriedTables);
+			query.setFetchSize(this.fetchSize);
+			return query;
 		}
 
 	}
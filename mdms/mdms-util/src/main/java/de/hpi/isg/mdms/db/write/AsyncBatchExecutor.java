@@ -0,0 +1,368 @@
+package de.hpi.isg.mdms.db.write;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets a dedicated thread do the work of {@link BatchWriter}s, so that the writing threads do not have to wait for
+ * {@code executeBatch()} and {@code commit()}. Writing threads only stage their elements in a bounded queue, which
+ * is guarded by a lock of its own. The executor thread replays the staged writes in the order in which they were
+ * staged on the regular, synchronous write path of their writers. Hence, batching, the flush order that is
+ * determined by the {@link de.hpi.isg.mdms.db.DatabaseAccess}, and the transaction handling are the same as without
+ * this executor.
+ * <p>
+ * Replaying uses the connection and the bookkeeping of the {@link de.hpi.isg.mdms.db.DatabaseAccess}, so it is done
+ * under the given connection lock. Threads that hold this lock, e.g., to flush before a query, replay all staged
+ * writes themselves (see {@link #drain()}) rather than waiting for the executor thread. If the staging queue is full,
+ * writing threads are blocked until the executor thread catches up.
+ * </p>
+ *
+ * @author Sebastian Kruse
+ */
+public class AsyncBatchExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncBatchExecutor.class);
+
+    /**
+     * The default maximum number of writes that may be staged.
+     */
+    public static final int DEFAULT_MAX_STAGED_WRITES = 4 * BatchWriter.DEFAULT_BATCH_SIZE;
+
+    /**
+     * The maximum number of staged writes that are taken from the {@link #stagedWrites} at once.
+     */
+    private static final int MAX_WRITES_PER_POLL = 1024;
+
+    /**
+     * Serializes all use of the connection and guards {@link #isDraining} and {@link #failure}.
+     */
+    private final ReentrantLock connectionLock;
+
+    /**
+     * Guards the {@link #stagedWrites} and {@link #isClosed}. It is never held while waiting for the
+     * {@link #connectionLock}.
+     */
+    private final ReentrantLock stagingLock = new ReentrantLock();
+
+    /**
+     * Signalled when a write has been staged into an empty queue or this executor has been closed.
+     */
+    private final Condition writesStaged = this.stagingLock.newCondition();
+
+    /**
+     * Signalled when staged writes have been taken from the queue or this executor has failed or been closed.
+     */
+    private final Condition stagedWritesTaken = this.stagingLock.newCondition();
+
+    private final Queue<StagedWrite<?>> stagedWrites = new ArrayDeque<>();
+
+    private final int maxStagedWrites;
+
+    private final Thread executorThread;
+
+    /**
+     * Tells whether staged writes are currently replayed, so that flushes on the write path do not replay any
+     * further staged writes in between.
+     */
+    private boolean isDraining = false;
+
+    /**
+     * The first exception that occurred when replaying a staged write. Once set, all further operations fail.
+     */
+    private volatile SQLException failure;
+
+    private boolean isClosed = false;
+
+    /**
+     * Creates a new executor and starts its thread.
+     *
+     * @param maxStagedWrites
+     *        is the maximum number of writes that may wait for their replay
+     * @param connectionLock
+     *        is held by all threads that use the connection of the writers
+     */
+    public AsyncBatchExecutor(int maxStagedWrites, ReentrantLock connectionLock) {
+        Validate.isTrue(maxStagedWrites > 0, "Maximum number of staged writes must be positive.");
+        this.maxStagedWrites = maxStagedWrites;
+        this.connectionLock = connectionLock;
+        this.executorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replayInBackground();
+            }
+        }, "mdms-async-batch-executor");
+        this.executorThread.setDaemon(true);
+        this.executorThread.start();
+    }
+
+    /**
+     * Stages a write, so that it is replayed later on. Blocks if the staging queue is full.
+     * <p>
+     * A thread that holds the connection lock cannot wait for the executor thread. Hence, the write is not staged in
+     * that case; instead, all staged writes are replayed, so that the caller can perform the write synchronously.
+     * </p>
+     *
+     * @param writer
+     *        is the writer that shall write the element
+     * @param element
+     *        is the element to be written
+     * @return whether the write has been staged; otherwise, the caller needs to perform the write synchronously
+     * @throws SQLException
+     *         if a previously staged write failed or the staging thread is interrupted
+     */
+    public <T> boolean stage(BatchWriter<T> writer, T element) throws SQLException {
+        if (this.connectionLock.isHeldByCurrentThread()) {
+            drain();
+            return false;
+        }
+        this.stagingLock.lock();
+        try {
+            if (this.isClosed) {
+                return false;
+            }
+            checkForFailure();
+            while (this.stagedWrites.size() >= this.maxStagedWrites) {
+                try {
+                    this.stagedWritesTaken.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting to stage a write of " + writer + ".", e);
+                }
+                if (this.isClosed) {
+                    return false;
+                }
+                checkForFailure();
+            }
+            this.stagedWrites.add(new StagedWrite<T>(writer, element));
+            if (this.stagedWrites.size() == 1) {
+                this.writesStaged.signal();
+            }
+            return true;
+        } finally {
+            this.stagingLock.unlock();
+        }
+    }
+
+    /**
+     * Replays all staged writes in the calling thread, which must hold the connection lock. Afterwards, the pending
+     * batches of the writers reflect all writes that have been staged so far. Calls while staged writes are replayed
+     * have no effect.
+     *
+     * @throws SQLException
+     *         if any staged write could not be replayed
+     */
+    public void drain() throws SQLException {
+        Validate.validState(this.connectionLock.isHeldByCurrentThread(), "Draining requires the connection lock.");
+        if (this.isDraining) {
+            return;
+        }
+        checkForFailure();
+        this.isDraining = true;
+        try {
+            replayStagedWrites(Integer.MAX_VALUE);
+        } finally {
+            this.isDraining = false;
+        }
+    }
+
+    /**
+     * Replays staged writes in the order in which they have been staged. Callers must hold the connection lock.
+     *
+     * @param maxWrites
+     *        is the maximum number of writes to replay
+     * @throws SQLException
+     *         if any staged write could not be replayed
+     */
+    private void replayStagedWrites(int maxWrites) throws SQLException {
+        int numReplayedWrites = 0;
+        while (numReplayedWrites < maxWrites) {
+            List<StagedWrite<?>> writes = pollStagedWrites(Math.min(maxWrites - numReplayedWrites,
+                    MAX_WRITES_PER_POLL));
+            if (writes.isEmpty()) {
+                return;
+            }
+            for (StagedWrite<?> write : writes) {
+                try {
+                    write.replay();
+                } catch (SQLException e) {
+                    fail(e);
+                    throw e;
+                } catch (RuntimeException e) {
+                    fail(new SQLException("Could not replay write of " + write.writer + ".", e));
+                    throw e;
+                }
+            }
+            numReplayedWrites += writes.size();
+        }
+    }
+
+    /**
+     * Takes staged writes from the queue and wakes up blocked writing threads.
+     *
+     * @param maxWrites
+     *        is the maximum number of writes to take
+     * @return the taken writes in the order in which they have been staged
+     */
+    private List<StagedWrite<?>> pollStagedWrites(int maxWrites) {
+        this.stagingLock.lock();
+        try {
+            int numWrites = Math.min(maxWrites, this.stagedWrites.size());
+            List<StagedWrite<?>> writes = new ArrayList<>(numWrites);
+            for (int i = 0; i < numWrites; i++) {
+                writes.add(this.stagedWrites.poll());
+            }
+            if (numWrites > 0) {
+                this.stagedWritesTaken.signalAll();
+            }
+            return writes;
+        } finally {
+            this.stagingLock.unlock();
+        }
+    }
+
+    /**
+     * Records the first failure, discards all staged writes, and wakes up blocked writing threads, so that they can
+     * observe the failure.
+     */
+    private void fail(SQLException e) {
+        if (this.failure == null) {
+            this.failure = e;
+        }
+        this.stagingLock.lock();
+        try {
+            if (!this.stagedWrites.isEmpty()) {
+                LOGGER.error("Discarding {} staged writes after a failed write.", this.stagedWrites.size());
+                this.stagedWrites.clear();
+            }
+            this.stagedWritesTaken.signalAll();
+        } finally {
+            this.stagingLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of writes that have been staged but not yet replayed
+     */
+    public int getNumStagedWrites() {
+        this.stagingLock.lock();
+        try {
+            return this.stagedWrites.size();
+        } finally {
+            this.stagingLock.unlock();
+        }
+    }
+
+    private void checkForFailure() throws SQLException {
+        if (this.failure != null) {
+            throw new SQLException("Asynchronous batch execution failed.", this.failure);
+        }
+    }
+
+    /**
+     * Main loop of the executor thread.
+     */
+    private void replayInBackground() {
+        while (true) {
+            int numStagedWrites;
+            this.stagingLock.lock();
+            try {
+                while (this.stagedWrites.isEmpty() && !this.isClosed) {
+                    try {
+                        this.writesStaged.await();
+                    } catch (InterruptedException e) {
+                        LOGGER.warn("Async batch executor was interrupted with {} staged writes.",
+                                this.stagedWrites.size());
+                        return;
+                    }
+                }
+                if (this.isClosed) {
+                    return;
+                }
+                numStagedWrites = this.stagedWrites.size();
+            } finally {
+                this.stagingLock.unlock();
+            }
+
+            // Replay only the writes that are staged already, so that threads that wait for the connection lock get
+            // their turn even if new writes keep coming in.
+            this.connectionLock.lock();
+            try {
+                if (this.failure == null) {
+                    this.isDraining = true;
+                    try {
+                        replayStagedWrites(numStagedWrites);
+                    } finally {
+                        this.isDraining = false;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.error("Asynchronous batch execution failed.", e);
+            } finally {
+                this.connectionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays all staged writes and stops the executor thread. Writes that are staged afterwards are rejected, so that
+     * the writers perform them synchronously.
+     */
+    @Override
+    public void close() throws SQLException {
+        this.connectionLock.lock();
+        try {
+            this.stagingLock.lock();
+            try {
+                if (this.isClosed) {
+                    return;
+                }
+                this.isClosed = true;
+                this.writesStaged.signal();
+                this.stagedWritesTaken.signalAll();
+            } finally {
+                this.stagingLock.unlock();
+            }
+            drain();
+        } finally {
+            this.connectionLock.unlock();
+        }
+        // The executor thread might wait for the connection lock, so it cannot be joined while the lock is held.
+        if (!this.connectionLock.isHeldByCurrentThread()) {
+            try {
+                this.executorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A write that waits for its replay.
+     */
+    private static class StagedWrite<T> {
+
+        private final BatchWriter<T> writer;
+
+        private final T element;
+
+        private StagedWrite(BatchWriter<T> writer, T element) {
+            this.writer = writer;
+            this.element = element;
+        }
+
+        private void replay() throws SQLException {
+            this.writer.writeSynchronously(this.element);
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+package de.hpi.isg.mdms.db.write;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Determines the batch size of a {@link BatchWriter}. An adaptive controller observes how long the batches of its
+ * writer take to execute and tunes the batch size, such that a single flush takes roughly a given target latency. The
+ * batch size is always kept within the given limits and within a memory budget for the pending batch.
+ *
+ * @author Sebastian Kruse
+ */
+public class BatchSizeController {
+
+    public static final int DEFAULT_MIN_BATCH_SIZE = 100;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100000;
+
+    /**
+     * A rough guess of the memory that a single statement in a batch occupies, e.g., a few numeric parameters.
+     */
+    public static final int DEFAULT_BYTES_PER_STATEMENT = 64;
+
+    /**
+     * Weight of a new observation in the moving average of the execution time per statement.
+     */
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    /**
+     * The batch size changes at most by this factor per flush to avoid oscillation.
+     */
+    private static final double MAX_ADJUSTMENT_FACTOR = 2d;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    /**
+     * The desired execution time of a batch in nanoseconds or {@code 0} if the batch size is fixed.
+     */
+    private final long targetFlushNanos;
+
+    /**
+     * The current batch size. It is read by the writing thread but might be updated from an
+     * {@link AsyncBatchExecutor}.
+     */
+    private volatile int batchSize;
+
+    /**
+     * Moving average of the execution time per statement in nanoseconds or {@code -1} if there are no observations.
+     */
+    private double avgNanosPerStatement = -1;
+
+    private BatchSizeController(int minBatchSize, int maxBatchSize, int initialBatchSize, long targetFlushNanos) {
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetFlushNanos = targetFlushNanos;
+        this.batchSize = clamp(initialBatchSize);
+    }
+
+    /**
+     * Creates a controller that does not change the batch size.
+     */
+    public static BatchSizeController createFixed(int batchSize) {
+        Validate.isTrue(batchSize > 0, "Batch size must be positive.");
+        return new BatchSizeController(batchSize, batchSize, batchSize, 0);
+    }
+
+    /**
+     * Creates a controller that adapts the batch size to the observed flush latency.
+     * 
+     * @param minBatchSize
+     *        is the minimum batch size; also, smaller batches are not considered for the latency observations
+     * @param maxBatchSize
+     *        is the maximum batch size
+     * @param targetFlushMillis
+     *        is the desired execution time of a single batch
+     * @param maxBatchBytes
+     *        is the maximum memory that a pending batch may occupy
+     * @param estimatedBytesPerStatement
+     *        is the estimated memory footprint of a single statement in the batch
+     */
+    public static BatchSizeController createAdaptive(int minBatchSize, int maxBatchSize, long targetFlushMillis,
+            long maxBatchBytes, int estimatedBytesPerStatement) {
+
+        Validate.isTrue(minBatchSize > 0 && minBatchSize <= maxBatchSize, "Illegal batch size limits [%d, %d].",
+                minBatchSize, maxBatchSize);
+        Validate.isTrue(targetFlushMillis > 0, "Target flush latency must be positive.");
+        Validate.isTrue(estimatedBytesPerStatement > 0, "Statement size must be positive.");
+
+        long memoryBoundBatchSize = maxBatchBytes / estimatedBytesPerStatement;
+        int effectiveMaxBatchSize = (int) Math.max(minBatchSize, Math.min(maxBatchSize, memoryBoundBatchSize));
+        return new BatchSizeController(minBatchSize, effectiveMaxBatchSize, BatchWriter.DEFAULT_BATCH_SIZE,
+                targetFlushMillis * 1000000L);
+    }
+
+    private int clamp(long batchSize) {
+        return (int) Math.max(this.minBatchSize, Math.min(this.maxBatchSize, batchSize));
+    }
+
+    /**
+     * @return the number of statements that the writer should collect before flushing
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * @return whether this controller adapts the batch size
+     */
+    public boolean isAdaptive() {
+        return this.targetFlushNanos > 0;
+    }
+
+    /**
+     * Notifies this controller of an executed batch, so that it can adapt the batch size.
+     * 
+     * @param numStatements
+     *        is the number of statements in the batch
+     * @param elapsedNanos
+     *        is the time it took to execute (and commit) the batch
+     */
+    public synchronized void recordFlush(int numStatements, long elapsedNanos) {
+        // Small batches, e.g., forced by queries, are dominated by the fixed costs of a flush.
+        if (!isAdaptive() || numStatements < this.minBatchSize) {
+            return;
+        }
+        double nanosPerStatement = Math.max(1d, elapsedNanos / (double) numStatements);
+        if (this.avgNanosPerStatement < 0) {
+            this.avgNanosPerStatement = nanosPerStatement;
+        } else {
+            this.avgNanosPerStatement = SMOOTHING_FACTOR * nanosPerStatement
+                    + (1 - SMOOTHING_FACTOR) * this.avgNanosPerStatement;
+        }
+
+        double desiredBatchSize = this.targetFlushNanos / this.avgNanosPerStatement;
+        double currentBatchSize = this.batchSize;
+        desiredBatchSize = Math.min(desiredBatchSize, currentBatchSize * MAX_ADJUSTMENT_FACTOR);
+        desiredBatchSize = Math.max(desiredBatchSize, currentBatchSize / MAX_ADJUSTMENT_FACTOR);
+        this.batchSize = clamp(Math.round(desiredBatchSize));
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSizeController [batchSize=" + this.batchSize + ", limits=[" + this.minBatchSize + ", "
+                + this.maxBatchSize + "], targetFlushNanos=" + this.targetFlushNanos + "]";
+    }
+
+}
@@ -2,14 +2,15 @@ package de.hpi.isg.mdms.db.write;
 
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.metrics.WriterMetrics;
 
 /**
  * This class allows to bundle writes of a {@link DatabaseWriter} in batches of a certain size.
@@ -25,9 +26,10 @@ public abstract class BatchWriter<T> extends DependentWriter<T> {
 	public static final int DEFAULT_BATCH_SIZE = 10000;
 	
 	/**
-	 * The maximum number of SQL statements to include in a batch.
+	 * Determines the maximum number of SQL statements to include in a batch. It can be replaced by the
+	 * {@link DatabaseAccess} when its batch sizing settings change.
 	 */
-	private int maxBatchSize;
+	private volatile BatchSizeController batchSizeController;
 	
 	/**
 	 * The number of SQL statements in the current batch.
@@ -45,16 +47,51 @@ public abstract class BatchWriter<T> extends DependentWriter<T> {
 	        Collection<String> accessedTables,
 			Collection<String> manipulatedTables, int batchSize) {
 		
-		super(databaseAccess, accessedTables, manipulatedTables);
-		this.maxBatchSize = batchSize;
-		this.curBatchSize = 0;
+		this(databaseAccess, accessedTables, manipulatedTables, BatchSizeController.createFixed(batchSize));
+	}
+
+	/**
+	 * Creates a new {@link de.hpi.isg.mdms.db.write.BatchWriter} whose batch size is determined at runtime.
+	 * @param databaseAccess see {@link DependentWriter#DependentWriter(java.sql.Statement, DatabaseAccess, java.util.Collection, java.util.Collection)}
+	 * @param accessedTables see {@link DependentWriter#DependentWriter(java.sql.Statement, DatabaseAccess, java.util.Collection, java.util.Collection)}
+	 * @param manipulatedTables see {@link DependentWriter#DependentWriter(java.sql.Statement, DatabaseAccess, java.util.Collection, java.util.Collection)}
+	 * @param batchSizeController determines the maximum number of statements to execute in a single batch
+	 */
+	public BatchWriter(DatabaseAccess databaseAccess,
+	        Collection<String> accessedTables,
+	        Collection<String> manipulatedTables, BatchSizeController batchSizeController) {
+
+	    super(databaseAccess, accessedTables, manipulatedTables);
+	    this.batchSizeController = batchSizeController;
+	    this.curBatchSize = 0;
 	}
 	
+	/**
+	 * Writes the given element or, if asynchronous flushing is enabled, stages it for the
+	 * {@link AsyncBatchExecutor}. Staging does not need the {@link DatabaseAccess#getLock() lock} of the
+	 * {@link DatabaseAccess}, so it does not wait for batches that are currently executed.
+	 */
+	@Override
+	public void write(T element) throws SQLException {
+	    AsyncBatchExecutor asyncBatchExecutor = this.databaseAccess.getAsyncBatchExecutor();
+	    if (asyncBatchExecutor == null || !asyncBatchExecutor.stage(this, element)) {
+	        writeSynchronously(element);
+	    }
+	}
+
+	/**
+	 * Writes the given element under the {@link DatabaseAccess#getLock() lock} of the {@link DatabaseAccess}. This
+	 * is also how the {@link AsyncBatchExecutor} replays staged writes.
+	 */
+	void writeSynchronously(T element) throws SQLException {
+	    super.write(element);
+	}
+
 	@Override
 	public void doWrite(T element) throws SQLException {
 		fireAboutToAddBatchElement();
 		addBatch(element);
-		if (++this.curBatchSize >= this.maxBatchSize) {
+		if (++this.curBatchSize >= this.batchSizeController.getBatchSize()) {
 		    flush();
 		}
 	}
@@ -63,37 +100,82 @@ public abstract class BatchWriter<T> extends DependentWriter<T> {
 	
 	@Override
 	public void flush() throws SQLException {
-	    if (this.curBatchSize > 0) {
-	        super.flush();
-	    } else {
-	        LOGGER.debug("Attempted to flush empty batch writer {}.", this);
+	    Lock lock = this.databaseAccess.getLock();
+	    lock.lock();
+	    try {
+	        // Staged writes of this writer must be part of the flushed batch.
+	        this.databaseAccess.drainStagedWrites();
+	        if (this.curBatchSize > 0) {
+	            super.flush();
+	        } else {
+	            LOGGER.debug("Attempted to flush empty batch writer {}.", this);
+	        }
+	    } finally {
+	        lock.unlock();
 	    }
 	}
 	
 	@Override
 	protected void doFlush() throws SQLException {
 		if (this.curBatchSize > 0) {
-		    int batchSize = this.curBatchSize;
-		    long startTime = System.currentTimeMillis();
-		    try {
-    			int[] batchResults = this.statement.executeBatch();
-    			if (!this.statement.getConnection().getAutoCommit()) {
-    			    this.statement.getConnection().commit();
-    			}
-    			for (int result : batchResults) {
-    			    if (result == Statement.EXECUTE_FAILED) {
-    			        throw new SQLException("Batch execution returned error on one or more SQL statements.");
-    			    }
-    			}
-		    } catch (SQLException e) {
-		        LOGGER.error("Exception in {}.", this);
-		        throw e;
-		    }
-			long endTime = System.currentTimeMillis();
-			LOGGER.debug("Flushed {} statements from {} in {} ms ", batchSize, this, endTime - startTime);
+		    executeCurrentBatch(this.curBatchSize);
 		}
 		this.curBatchSize = 0;
 	}
+
+	/**
+	 * Executes the batch of the current {@link #statement}.
+	 * 
+	 * @param batchSize is the number of SQL statements in the batch
+	 * @throws SQLException if the execution fails
+	 */
+	protected void executeCurrentBatch(int batchSize) throws SQLException {
+	    executeBatch(this.statement, batchSize);
+	}
+
+	/**
+	 * Executes the batch of the given statement and lets the {@link DatabaseAccess} commit it.
+	 * 
+	 * @param batchStatement is the statement that contains the batch
+	 * @param batchSize is the number of SQL statements in the batch
+	 * @throws SQLException if the execution fails
+	 */
+	void executeBatch(Statement batchStatement, int batchSize) throws SQLException {
+	    long startTime = System.nanoTime();
+	    try {
+	        int[] batchResults = batchStatement.executeBatch();
+	        for (int result : batchResults) {
+	            if (result == Statement.EXECUTE_FAILED) {
+	                throw new SQLException("Batch execution returned error on one or more SQL statements.");
+	            }
+	        }
+	        this.databaseAccess.commitBatch(batchSize);
+	    } catch (SQLException e) {
+	        LOGGER.error("Exception in {}.", this);
+	        throw e;
+	    }
+	    long elapsedNanos = System.nanoTime() - startTime;
+	    this.batchSizeController.recordFlush(batchSize, elapsedNanos);
+	    WriterMetrics writerMetrics = this.databaseAccess.getMetrics().getWriterMetrics(getMetricsName());
+	    if (writerMetrics != null) {
+	        writerMetrics.recordFlush(batchSize, elapsedNanos);
+	    }
+	    LOGGER.debug("Flushed {} statements from {} in {} ms ", batchSize, this, elapsedNanos / 1000000);
+	}
+
+	/**
+	 * @return the controller that determines the batch size of this writer
+	 */
+	public BatchSizeController getBatchSizeController() {
+	    return this.batchSizeController;
+	}
+
+	/**
+	 * Replaces the controller that determines the batch size of this writer. The current batch is kept.
+	 */
+	public void setBatchSizeController(BatchSizeController batchSizeController) {
+	    this.batchSizeController = batchSizeController;
+	}
 	
 	/** Called when the batch was empty but is not anymore. */
 	protected void fireAboutToAddBatchElement() {
@@ -114,19 +196,19 @@ public abstract class BatchWriter<T> extends DependentWriter<T> {
 //	}
 	
 	@Override
-	public Set<String> getManipulatedTables() {
+	public BitSet getManipulatedTableHandles() {
 	    if (this.curBatchSize == 0) {
-	        return Collections.emptySet();
+	        return new BitSet();
 	    }
-	    return super.getManipulatedTables();
+	    return super.getManipulatedTableHandles();
 	}
 	
 	@Override
-	public Set<String> getAccessedTables() {
+	public BitSet getAccessedTableHandles() {
 	    if (this.curBatchSize == 0) {
-	        return Collections.emptySet();
+	        return new BitSet();
 	    }
-	    return super.getAccessedTables();
+	    return super.getAccessedTableHandles();
 	}
 	
 
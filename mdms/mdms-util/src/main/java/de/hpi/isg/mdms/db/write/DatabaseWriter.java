@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.apache.commons.lang3.Validate;
+
 import de.hpi.isg.mdms.db.DatabaseAccess;
 
 /**
@@ -55,13 +57,20 @@ abstract public class DatabaseWriter<T> implements AutoCloseable {
 
     /**
      * A {@link de.hpi.isg.mdms.db.write.DatabaseWriter.Factory} should be used to create {@link de.hpi.isg.mdms.db.write.DatabaseWriter} objects.
+     * Besides, it describes the batch sizes that suit the created writers.
      * 
      * @author Sebastian Kruse
      *
      * @param <TWriter>
      *        is the type of writer created by this factory
      */
-    public static interface Factory<TWriter extends DatabaseWriter<?>> {
+    public static abstract class Factory<TWriter extends DatabaseWriter<?>> {
+
+        private int minBatchSize = BatchSizeController.DEFAULT_MIN_BATCH_SIZE;
+
+        private int maxBatchSize = BatchSizeController.DEFAULT_MAX_BATCH_SIZE;
+
+        private int estimatedBytesPerStatement = BatchSizeController.DEFAULT_BYTES_PER_STATEMENT;
 
         /**
          * Creates a new writer on the given connection.
@@ -71,7 +80,52 @@ abstract public class DatabaseWriter<T> implements AutoCloseable {
          * @return
          * @throws java.sql.SQLException
          */
-        TWriter createWriter(DatabaseAccess databaseAccess) throws SQLException;
+        public abstract TWriter createWriter(DatabaseAccess databaseAccess) throws SQLException;
+
+        /**
+         * Creates a {@link BatchSizeController} for a writer of this factory according to the batch size limits of this
+         * factory and the settings of the given {@link DatabaseAccess}.
+         */
+        public BatchSizeController createBatchSizeController(DatabaseAccess databaseAccess) {
+            return databaseAccess.createBatchSizeController(this.minBatchSize, this.maxBatchSize,
+                    this.estimatedBytesPerStatement);
+        }
+
+        /**
+         * Restricts the batch sizes of the writers created by this factory.
+         * 
+         * @return this instance
+         */
+        public Factory<TWriter> setBatchSizeLimits(int minBatchSize, int maxBatchSize) {
+            Validate.isTrue(minBatchSize > 0 && minBatchSize <= maxBatchSize);
+            this.minBatchSize = minBatchSize;
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Declares how much memory a single statement of the created writers occupies approximately. This value is
+         * used to keep the batches within the memory budget of the {@link DatabaseAccess}.
+         * 
+         * @return this instance
+         */
+        public Factory<TWriter> setEstimatedBytesPerStatement(int estimatedBytesPerStatement) {
+            Validate.isTrue(estimatedBytesPerStatement > 0);
+            this.estimatedBytesPerStatement = estimatedBytesPerStatement;
+            return this;
+        }
+
+        public int getMinBatchSize() {
+            return this.minBatchSize;
+        }
+
+        public int getMaxBatchSize() {
+            return this.maxBatchSize;
+        }
+
+        public int getEstimatedBytesPerStatement() {
+            return this.estimatedBytesPerStatement;
+        }
 
     }
 }
@@ -1,11 +1,12 @@
 package de.hpi.isg.mdms.db.write;
 
 import java.sql.SQLException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,10 @@ import de.hpi.isg.mdms.db.DatabaseAccess;
  * A {@link de.hpi.isg.mdms.db.write.DependentWriter} inserts/updates tuples that reference tuples of other tables. A {@link DatabaseAccess}
  * object can manage these dependencies. The {@link de.hpi.isg.mdms.db.write.DependentWriter} offers utility methods to manage its own
  * dependencies and let the {@link DatabaseAccess} take care of enforcing referential integrity.
+ * <p>
+ * Writes and flushes are performed under the {@link DatabaseAccess#getLock() lock} of the {@link DatabaseAccess}, so
+ * that several threads can share a writer.
+ * </p>
  * 
  * @author Sebastian Kruse
  * 
@@ -30,9 +35,9 @@ abstract public class DependentWriter<T> extends DatabaseWriter<T> {
 	protected final DatabaseAccess databaseAccess;
 
 	/**
-	 * The names of the tables that are referenced by the manipulated tables.
+	 * The handles of the tables that are referenced by the manipulated tables.
 	 */
-	protected Set<String> accessedTables;
+	protected final BitSet accessedTables;
 	
 	/**
 	 * Tells if the referenced tables of the manipulated tables have already been determined
@@ -41,9 +46,9 @@ abstract public class DependentWriter<T> extends DatabaseWriter<T> {
 	private boolean isReferencedTablesDetermined;
 
 	/**
-	 * The names of the tables that are manipulated by this writer or current batch.
+	 * The handles of the tables that are manipulated by this writer or current batch.
 	 */
-	protected Set<String> manipulatedTables;
+	protected final BitSet manipulatedTables;
 	
 	public static Collection<String> findAllReferencedTables(Collection<String> manipulatedTables, DatabaseAccess databaseAccess) {
 	    Collection<String> allReferencedTables = new LinkedList<>();
@@ -64,14 +69,17 @@ abstract public class DependentWriter<T> extends DatabaseWriter<T> {
 		super(databaseAccess.getConnection());
 
 		this.databaseAccess = databaseAccess;
-		this.accessedTables = new HashSet<>(accessedTables);
+		this.accessedTables = databaseAccess.getTableRegistry().getHandles(accessedTables);
 		this.isReferencedTablesDetermined = false;
-		this.manipulatedTables = new HashSet<>(manipulatedTables);
+		this.manipulatedTables = databaseAccess.getTableRegistry().getHandles(manipulatedTables);
 	}
 	
 	protected void ensureReferencedTablesDetermined() {
 		if (!this.isReferencedTablesDetermined) {
-			this.accessedTables.addAll(findAllReferencedTables(manipulatedTables, databaseAccess));
+			for (int manipulatedTable = this.manipulatedTables.nextSetBit(0); manipulatedTable != -1;
+					manipulatedTable = this.manipulatedTables.nextSetBit(manipulatedTable + 1)) {
+				this.accessedTables.or(this.databaseAccess.getReferencedTables(manipulatedTable));
+			}
 			this.isReferencedTablesDetermined = true;
 		}
 	}
@@ -82,29 +90,88 @@ abstract public class DependentWriter<T> extends DatabaseWriter<T> {
 //		}
 //	}
 
+	/**
+	 * @return a name that identifies this writer in the {@link de.hpi.isg.mdms.db.metrics.DatabaseMetrics}
+	 */
+	public String getMetricsName() {
+	    return getClass().getSimpleName();
+	}
+
+	/**
+	 * @return the names of the manipulated tables
+	 * @see #getManipulatedTableHandles()
+	 */
 	public Set<String> getManipulatedTables() {
-		return manipulatedTables;
+		return this.databaseAccess.getTableRegistry().getTableNames(getManipulatedTableHandles());
 	}
 	
+	/**
+	 * @return the names of the accessed tables
+	 * @see #getAccessedTableHandles()
+	 */
 	public Set<String> getAccessedTables() {
-		return accessedTables;
+		return this.databaseAccess.getTableRegistry().getTableNames(getAccessedTableHandles());
+	}
+
+	/**
+	 * @return the handles of the manipulated tables; must not be modified
+	 */
+	public BitSet getManipulatedTableHandles() {
+		return this.manipulatedTables;
 	}
 
+	/**
+	 * @return the handles of the accessed tables; must not be modified
+	 */
+	public BitSet getAccessedTableHandles() {
+		return this.accessedTables;
+	}
+
+
+	@Override
+	public void write(T element) throws SQLException {
+	    Lock lock = this.databaseAccess.getLock();
+	    lock.lock();
+	    try {
+	        super.write(element);
+	    } finally {
+	        lock.unlock();
+	    }
+	}
 
 	@Override
     public void flush() throws SQLException {
-        if (this.statement != null) {
-            // Logger.getGlobal().log(Level.INFO, String.format("Flushing %s.", this));
-            this.databaseAccess.prepareFlush(this);
-            try {
-                doFlush();
-            } catch (SQLException e) {
-                LOGGER.error("{} when flushing {}.", e.getClass().getSimpleName(), this);
-                throw e;
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            if (this.statement != null) {
+                // Logger.getGlobal().log(Level.INFO, String.format("Flushing %s.", this));
+                this.databaseAccess.prepareFlush(this);
+                // Invalidate cached query results on the manipulated tables.
+                this.databaseAccess.getTableRegistry().incrementVersions(getManipulatedTableHandles());
+                try {
+                    doFlush();
+                } catch (SQLException e) {
+                    LOGGER.error("{} when flushing {}.", e.getClass().getSimpleName(), this);
+                    throw e;
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
+	@Override
+	public void close() throws SQLException {
+	    Lock lock = this.databaseAccess.getLock();
+	    lock.lock();
+	    try {
+	        super.close();
+	    } finally {
+	        lock.unlock();
+	    }
+	}
+
 
     protected abstract void doFlush() throws SQLException;
 }
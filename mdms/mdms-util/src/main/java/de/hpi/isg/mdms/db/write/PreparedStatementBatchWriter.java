@@ -2,15 +2,50 @@ package de.hpi.isg.mdms.db.write;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import org.apache.commons.lang3.Validate;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
+import de.hpi.isg.mdms.db.KeyExtractor;
+import de.hpi.isg.mdms.db.OffsetPreparedStatementAdapter;
 import de.hpi.isg.mdms.db.PreparedStatementAdapter;
 
+/**
+ * Writes elements as batches of a {@link PreparedStatement}. In the multi-row mode (see
+ * {@link Factory#setRowsPerStatement(int)}), several elements are inserted by a single statement of the form
+ * {@code INSERT INTO t (a, b) SELECT ?, ? UNION ALL SELECT ?, ? ...}, which saves the per-statement overhead of
+ * the JDBC driver. The multi-row statement is derived from the single-row {@code INSERT ... VALUES (...)} statement and
+ * the elements are bound to it via an {@link OffsetPreparedStatementAdapter}.
+ *
+ * @author Sebastian Kruse
+ */
 public class PreparedStatementBatchWriter<T> extends BatchWriter<T> {
 
+    /**
+     * The maximum number of host parameters in a single statement (SQLite's {@code SQLITE_MAX_VARIABLE_NUMBER}).
+     */
+    public static final int MAX_HOST_PARAMETERS = 999;
+
+    /**
+     * The maximum number of terms in a compound {@code SELECT} (SQLite's {@code SQLITE_MAX_COMPOUND_SELECT}).
+     */
+    public static final int MAX_COMPOUND_SELECT_TERMS = 500;
+
+    /**
+     * The number of elements per statement that factories should request when they opt into the multi-row mode.
+     */
+    public static final int DEFAULT_ROWS_PER_STATEMENT = 100;
+
     /**
      * Stores elements as batches to the prepared statement.
      */
@@ -21,30 +56,241 @@ public class PreparedStatementBatchWriter<T> extends BatchWriter<T> {
      */
     private final String preparedSql;
 
+    /**
+     * Extracts the keys of the pending elements or {@code null} if the pending elements shall not be indexed.
+     */
+    private final KeyExtractor<T> keyExtractor;
+
+    /**
+     * The keys of the elements in the current batch (only if there is a {@link #keyExtractor}).
+     */
+    private final LongSet pendingKeys;
+
+    /**
+     * The greatest key in {@link #pendingKeys} or {@link Long#MIN_VALUE} if there is none.
+     */
+    private long maxPendingKey = Long.MIN_VALUE;
+
+    /**
+     * The number of elements that are inserted by a single statement; {@code 1} disables the multi-row mode.
+     */
+    private final int rowsPerStatement;
+
+    /**
+     * Describes how to construct multi-row statements from {@link #preparedSql} (only in multi-row mode).
+     */
+    private final MultiRowInsert multiRowInsert;
+
+    /**
+     * The elements that have not yet been bound to the {@link #statement} because they do not fill up a multi-row
+     * statement (only in multi-row mode).
+     */
+    private final List<T> pendingRows;
+
+    /**
+     * The {@link #adapter} as {@link OffsetPreparedStatementAdapter} to bind the rows of multi-row statements (only in
+     * multi-row mode).
+     */
+    private final OffsetPreparedStatementAdapter<T> offsetAdapter;
+
     public PreparedStatementBatchWriter(DatabaseAccess databaseAccess, String preparedSql,
             Collection<String> accessedTables, Collection<String> manipulatedTables, 
             int batchSize, PreparedStatementAdapter<T> adapter) {
 
-        super(databaseAccess, accessedTables, manipulatedTables, batchSize);
+        this(databaseAccess, preparedSql, accessedTables, manipulatedTables,
+                BatchSizeController.createFixed(batchSize), adapter);
+    }
+
+    public PreparedStatementBatchWriter(DatabaseAccess databaseAccess, String preparedSql,
+            Collection<String> accessedTables, Collection<String> manipulatedTables,
+            BatchSizeController batchSizeController, PreparedStatementAdapter<T> adapter) {
+
+        this(databaseAccess, preparedSql, accessedTables, manipulatedTables, batchSizeController, adapter, null);
+    }
+
+    /**
+     * Creates a new writer that indexes the keys of its pending elements, so that point lookups can be answered
+     * without flushing it.
+     * 
+     * @param keyExtractor extracts the keys of the written elements or {@code null} if they shall not be indexed
+     * @see DatabaseAccess#queryWithOverlay(String, Collection, String...)
+     */
+    public PreparedStatementBatchWriter(DatabaseAccess databaseAccess, String preparedSql,
+            Collection<String> accessedTables, Collection<String> manipulatedTables,
+            BatchSizeController batchSizeController, PreparedStatementAdapter<T> adapter,
+            KeyExtractor<T> keyExtractor) {
+
+        this(databaseAccess, preparedSql, accessedTables, manipulatedTables, batchSizeController, adapter,
+                keyExtractor, 1);
+    }
+
+    /**
+     * Creates a new writer that inserts up to {@code rowsPerStatement} elements with a single statement.
+     * 
+     * @param preparedSql must be a single-row {@code INSERT ... VALUES (...)} statement if
+     *        {@code rowsPerStatement > 1}
+     * @param adapter must be an {@link OffsetPreparedStatementAdapter} if {@code rowsPerStatement > 1}
+     * @param rowsPerStatement is the requested number of elements per statement; it is reduced to respect
+     *        {@link #MAX_HOST_PARAMETERS} and {@link #MAX_COMPOUND_SELECT_TERMS}
+     */
+    public PreparedStatementBatchWriter(DatabaseAccess databaseAccess, String preparedSql,
+            Collection<String> accessedTables, Collection<String> manipulatedTables,
+            BatchSizeController batchSizeController, PreparedStatementAdapter<T> adapter,
+            KeyExtractor<T> keyExtractor, int rowsPerStatement) {
+
+        super(databaseAccess, accessedTables, manipulatedTables, batchSizeController);
+        Validate.isTrue(rowsPerStatement > 0, "Rows per statement must be positive.");
         this.preparedSql = preparedSql;
         this.adapter = adapter;
+        this.keyExtractor = keyExtractor;
+        this.pendingKeys = keyExtractor == null ? null : new LongOpenHashSet();
+        if (rowsPerStatement > 1) {
+            this.multiRowInsert = MultiRowInsert.parse(preparedSql);
+            this.rowsPerStatement = Math.min(rowsPerStatement, this.multiRowInsert.getMaxRows());
+        } else {
+            this.multiRowInsert = null;
+            this.rowsPerStatement = 1;
+        }
+        if (this.rowsPerStatement > 1) {
+            Validate.isTrue(adapter instanceof OffsetPreparedStatementAdapter,
+                    "Multi-row mode requires an OffsetPreparedStatementAdapter: %s", preparedSql);
+            this.pendingRows = new ArrayList<>(this.rowsPerStatement);
+            this.offsetAdapter = (OffsetPreparedStatementAdapter<T>) adapter;
+        } else {
+            this.pendingRows = null;
+            this.offsetAdapter = null;
+        }
     }
     
     @Override
     protected void ensureStatementInitialized() throws SQLException {
     	if (this.statement == null) {
-    		this.statement = this.connection.prepareStatement(this.preparedSql);
+    		this.statement = this.connection.prepareStatement(this.rowsPerStatement > 1 ?
+    		        this.multiRowInsert.toSql(this.rowsPerStatement) : this.preparedSql);
     	}
     }
 
     @Override
     protected void addBatch(T element) throws SQLException {
-        this.adapter.translateParameter(element, (PreparedStatement) this.statement);
-        ((PreparedStatement) this.statement).addBatch();
+        if (this.pendingRows == null) {
+            this.adapter.translateParameter(element, (PreparedStatement) this.statement);
+            ((PreparedStatement) this.statement).addBatch();
+        } else {
+            this.pendingRows.add(element);
+            if (this.pendingRows.size() == this.rowsPerStatement) {
+                bindPendingRows((PreparedStatement) this.statement);
+            }
+        }
+        if (this.keyExtractor != null) {
+            long key = this.keyExtractor.getKey(element);
+            this.pendingKeys.add(key);
+            this.maxPendingKey = Math.max(this.maxPendingKey, key);
+        }
+    }
+
+    /**
+     * Binds the {@link #pendingRows} to the given multi-row statement, adds it to its batch, and clears them.
+     */
+    private void bindPendingRows(PreparedStatement multiRowStatement) throws SQLException {
+        for (int row = 0; row < this.pendingRows.size(); row++) {
+            this.offsetAdapter.translateParameter(this.pendingRows.get(row), multiRowStatement,
+                    row * this.multiRowInsert.getParametersPerRow());
+        }
+        multiRowStatement.addBatch();
+        this.pendingRows.clear();
+    }
+
+    @Override
+    protected void executeCurrentBatch(int batchSize) throws SQLException {
+        if (this.pendingRows == null || this.pendingRows.isEmpty()) {
+            super.executeCurrentBatch(batchSize);
+            return;
+        }
+
+        // Execute the full multi-row statements first and then the remaining rows with a statement of fitting size.
+        int numRemainingRows = this.pendingRows.size();
+        if (batchSize > numRemainingRows) {
+            super.executeCurrentBatch(batchSize - numRemainingRows);
+        }
+        PreparedStatement remainderStatement = this.connection.prepareStatement(
+                this.multiRowInsert.toSql(numRemainingRows));
+        try {
+            bindPendingRows(remainderStatement);
+            executeBatch(remainderStatement, numRemainingRows);
+        } finally {
+            this.pendingRows.clear();
+            remainderStatement.close();
+        }
+    }
+
+    @Override
+    protected void doFlush() throws SQLException {
+        super.doFlush();
+        if (this.pendingKeys != null) {
+            this.pendingKeys.clear();
+            this.maxPendingKey = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * @return the number of elements that are inserted by a single statement
+     */
+    public int getRowsPerStatement() {
+        return this.rowsPerStatement;
+    }
+
+    /**
+     * Writes that are staged for asynchronous flushing are considered as well. Callers that act on the result should hold the {@link DatabaseAccess#getLock() lock} of the
+     * {@link DatabaseAccess}, so that the batch cannot change in the meantime.
+     * 
+     * @return whether the current batch contains an element with the given key
+     * @throws IllegalStateException if this writer has no {@link KeyExtractor}
+     */
+    public boolean isKeyPending(long key) {
+        Validate.validState(this.keyExtractor != null, "%s does not index its pending keys.", this);
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            drainStagedWrites();
+            return this.pendingKeys.contains(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the greatest key in the current batch or {@link Long#MIN_VALUE} if there is none
+     * @throws IllegalStateException if this writer has no {@link KeyExtractor}
+     * @see #isKeyPending(long)
+     */
+    public long getMaxPendingKey() {
+        Validate.validState(this.keyExtractor != null, "%s does not index its pending keys.", this);
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            drainStagedWrites();
+            return this.maxPendingKey;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the {@link DatabaseAccess} hand over all staged writes, so that the {@link #pendingKeys} are complete.
+     */
+    private void drainStagedWrites() {
+        try {
+            this.databaseAccess.drainStagedWrites();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return this.preparedSql;
     }
 
-    
-    
     @Override
     public String toString() {
         return "PreparedStatementBatchWriter [" + preparedSql + "]";
@@ -52,7 +298,7 @@ public class PreparedStatementBatchWriter<T> extends BatchWriter<T> {
 
 
 
-    public static class Factory<TElement> implements DatabaseWriter.Factory<PreparedStatementBatchWriter<TElement>> {
+    public static class Factory<TElement> extends DatabaseWriter.Factory<PreparedStatementBatchWriter<TElement>> {
 
         private final String sqlStatement;
 
@@ -62,6 +308,10 @@ public class PreparedStatementBatchWriter<T> extends BatchWriter<T> {
 
         private Collection<String> accessedTables;
 
+        private KeyExtractor<TElement> keyExtractor;
+
+        private int rowsPerStatement = 1;
+
         public Factory(String sqlStatement, PreparedStatementAdapter<TElement> adapter, String manipulatedTable, String... accessedTables) {
             this.sqlStatement = sqlStatement;
             this.adapter = adapter;
@@ -75,8 +325,148 @@ public class PreparedStatementBatchWriter<T> extends BatchWriter<T> {
 
             return new PreparedStatementBatchWriter<TElement>(databaseAccess,
                     this.sqlStatement, this.accessedTables, this.manipulatedTables,
-                    DEFAULT_BATCH_SIZE, this.adapter);
+                    createBatchSizeController(databaseAccess), this.adapter, this.keyExtractor,
+                    this.rowsPerStatement);
+        }
+
+        @Override
+        public Factory<TElement> setBatchSizeLimits(int minBatchSize, int maxBatchSize) {
+            super.setBatchSizeLimits(minBatchSize, maxBatchSize);
+            return this;
+        }
+
+        @Override
+        public Factory<TElement> setEstimatedBytesPerStatement(int estimatedBytesPerStatement) {
+            super.setEstimatedBytesPerStatement(estimatedBytesPerStatement);
+            return this;
+        }
+
+        /**
+         * Lets the created writers index the keys of their pending elements.
+         * 
+         * @return this instance
+         * @see PreparedStatementBatchWriter#isKeyPending(long)
+         */
+        public Factory<TElement> setKeyExtractor(KeyExtractor<TElement> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+            return this;
+        }
+
+        /**
+         * Lets the created writers insert several elements with a single statement. This requires the SQL statement
+         * of this factory to be a single-row {@code INSERT ... VALUES (...)} statement and the adapter to be an
+         * {@link OffsetPreparedStatementAdapter}.
+         * 
+         * @param rowsPerStatement is the number of elements per statement; it is reduced if the statement would
+         *        exceed {@link PreparedStatementBatchWriter#MAX_HOST_PARAMETERS} or
+         *        {@link PreparedStatementBatchWriter#MAX_COMPOUND_SELECT_TERMS}
+         * @return this instance
+         */
+        public Factory<TElement> setRowsPerStatement(int rowsPerStatement) {
+            Validate.isTrue(rowsPerStatement > 0);
+            this.rowsPerStatement = rowsPerStatement;
+            return this;
         }
 
     }
+
+    /**
+     * Decomposes a single-row {@code INSERT ... VALUES (...)} statement, so that it can be rewritten to insert several
+     * rows at once. The rows are combined via {@code UNION ALL} rather than as a multi-row {@code VALUES} clause,
+     * because the latter is only supported by SQLite 3.7.11 and later.
+     */
+    static class MultiRowInsert {
+
+        /**
+         * The SQL up to the {@code VALUES} keyword, e.g., {@code INSERT INTO t (a, b) }.
+         */
+        private final String head;
+
+        /**
+         * The expressions of the value tuple, e.g., {@code ?, ?}.
+         */
+        private final String rowExpressions;
+
+        /**
+         * The SQL after the value tuple, e.g., {@code ;}.
+         */
+        private final String tail;
+
+        private final int parametersPerRow;
+
+        private MultiRowInsert(String head, String rowExpressions, String tail, int parametersPerRow) {
+            this.head = head;
+            this.rowExpressions = rowExpressions;
+            this.tail = tail;
+            this.parametersPerRow = parametersPerRow;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the given SQL is not a single-row {@code INSERT ... VALUES (...)}
+         *         statement
+         */
+        static MultiRowInsert parse(String sql) {
+            String upperCaseSql = sql.toUpperCase(Locale.ENGLISH);
+            int valuesPos = upperCaseSql.lastIndexOf("VALUES");
+            Validate.isTrue(upperCaseSql.trim().startsWith("INSERT") && valuesPos != -1,
+                    "Multi-row mode requires an INSERT ... VALUES statement: %s", sql);
+            int tupleStartPos = sql.indexOf('(', valuesPos);
+            Validate.isTrue(tupleStartPos != -1 && sql.substring(valuesPos + 6, tupleStartPos).trim().isEmpty(),
+                    "Could not find the value tuple in %s", sql);
+
+            // Find the matching closing parenthesis and count the parameters on the way.
+            int depth = 0, parametersPerRow = 0, tupleEndPos = -1;
+            boolean isInLiteral = false;
+            for (int pos = tupleStartPos; pos < sql.length() && tupleEndPos == -1; pos++) {
+                char c = sql.charAt(pos);
+                if (c == '\'') {
+                    isInLiteral = !isInLiteral;
+                } else if (isInLiteral) {
+                    continue;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    tupleEndPos = pos;
+                } else if (c == '?') {
+                    parametersPerRow++;
+                }
+            }
+            Validate.isTrue(tupleEndPos != -1, "Unbalanced value tuple in %s", sql);
+            Validate.isTrue(parametersPerRow > 0, "Multi-row mode requires parameters in %s", sql);
+            Validate.isTrue(!sql.substring(tupleEndPos + 1).trim().startsWith(","),
+                    "%s inserts several rows already.", sql);
+
+            return new MultiRowInsert(sql.substring(0, valuesPos),
+                    sql.substring(tupleStartPos + 1, tupleEndPos).trim(),
+                    sql.substring(tupleEndPos + 1),
+                    parametersPerRow);
+        }
+
+        /**
+         * @return the SQL statement that inserts the given number of rows
+         */
+        String toSql(int numRows) {
+            StringBuilder sb = new StringBuilder(this.head.length() + this.tail.length()
+                    + numRows * (this.rowExpressions.length() + 18));
+            sb.append(this.head);
+            for (int row = 0; row < numRows; row++) {
+                sb.append(row == 0 ? "SELECT " : " UNION ALL SELECT ").append(this.rowExpressions);
+            }
+            sb.append(this.tail);
+            return sb.toString();
+        }
+
+        int getParametersPerRow() {
+            return this.parametersPerRow;
+        }
+
+        /**
+         * @return the maximum number of rows per statement that SQLite can handle
+         */
+        int getMaxRows() {
+            return Math.max(1, Math.min(MAX_HOST_PARAMETERS / this.parametersPerRow, MAX_COMPOUND_SELECT_TERMS));
+        }
+
+    }
+
 }
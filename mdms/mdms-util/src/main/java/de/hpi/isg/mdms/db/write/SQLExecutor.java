@@ -1,9 +1,9 @@
 package de.hpi.isg.mdms.db.write;
 
 import java.sql.SQLException;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import de.hpi.isg.mdms.db.DatabaseAccess;
 
@@ -15,11 +15,11 @@ import de.hpi.isg.mdms.db.DatabaseAccess;
  */
 public class SQLExecutor extends BatchWriter<String> {
 
-    /** Helper set to keep track of incoming manipulated tables. */
-    private final Set<String> newManipulatedTables = new HashSet<>();
+    /** Helper set to keep track of the handles of incoming manipulated tables. */
+    private final BitSet newManipulatedTables = new BitSet();
 
-    /** Helper set to keep track of incoming acessed tables. */
-    private final Set<String> newAccessedTables = new HashSet<>();
+    /** Helper set to keep track of the handles of incoming acessed tables. */
+    private final BitSet newAccessedTables = new BitSet();
 
     public SQLExecutor(DatabaseAccess databaseAccess,
             int batchSize) throws SQLException {
@@ -31,20 +31,50 @@ public class SQLExecutor extends BatchWriter<String> {
     }
 
     public void write(String element, String[] manipulatedTables, String... referencedTables) throws SQLException {
-        // Keep track of manipulated tables.
-        for (String manipulatedTable : manipulatedTables) {
-            this.manipulatedTables.add(manipulatedTable);
-            this.newManipulatedTables.add(manipulatedTable);
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            // Keep track of manipulated tables.
+            for (String manipulatedTable : manipulatedTables) {
+                int manipulatedTableHandle = this.databaseAccess.getTableHandle(manipulatedTable);
+                this.manipulatedTables.set(manipulatedTableHandle);
+                this.newManipulatedTables.set(manipulatedTableHandle);
+            }
+
+            // Keep track of accessed tables.
+            for (String referencedTable : referencedTables) {
+                int referencedTableHandle = this.databaseAccess.getTableHandle(referencedTable);
+                this.accessedTables.set(referencedTableHandle);
+                this.newAccessedTables.set(referencedTableHandle);
+            }
+
+            // Do the write.
+            super.write(element);
+        } finally {
+            lock.unlock();
         }
-        
-        // Keep track of accessed tables.
-        for (String referencedTable : referencedTables) {
-            this.accessedTables.add(referencedTable);
-            this.newAccessedTables.add(referencedTable);
+    }
+
+    /**
+     * Variant of {@link #write(String, String[], String...)} that takes table handles.
+     * 
+     * @param element is the SQL statement to execute
+     * @param manipulatedTable is the handle of the manipulated table
+     * @param referencedTables are the handles of the referenced tables
+     */
+    public void write(String element, int manipulatedTable, BitSet referencedTables) throws SQLException {
+        Lock lock = this.databaseAccess.getLock();
+        lock.lock();
+        try {
+            this.manipulatedTables.set(manipulatedTable);
+            this.newManipulatedTables.set(manipulatedTable);
+            this.accessedTables.or(referencedTables);
+            this.newAccessedTables.or(referencedTables);
+
+            super.write(element);
+        } finally {
+            lock.unlock();
         }
-        
-        // Do the write.
-        super.write(element);
     }
 
     @Override
@@ -1,69 +1,102 @@
 package de.hpi.isg.mdms.model.common;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class is an abstract convenience class caring for hashCode() and equals(). Extending classes can exclude member
  * variables explicitly be using the {@link ExcludeHashCodeEquals} annotation.
+ * <p>
+ * Just as Apache's {@code EqualsBuilder.reflectionEquals(...)} and {@code HashCodeBuilder.reflectionHashCode(...)},
+ * all non-static, non-transient fields of the class hierarchy are taken into account. However, the relevant fields are
+ * determined only once per class rather than on every call.
+ * </p>
  *
  */
 public abstract class AbstractHashCodeAndEquals {
 
-    private static Map<Class<?>, Set<String>> excludedFields = new HashMap<>();
+    /**
+     * Caches the fields that are relevant for hashCode() and equals() per class.
+     */
+    private static final ConcurrentMap<Class<?>, Field[]> relevantFields = new ConcurrentHashMap<>();
 
     /**
-     * Uses Apache's {@link EqualsBuilder} to compute if the provided object is equal to this object. Fields can be
-     * excluded from equality check with the help of {@link ExcludeHashCodeEquals} annotation.
+     * Compares all relevant fields of the provided object and this object. Fields can be excluded from equality check
+     * with the help of {@link ExcludeHashCodeEquals} annotation.
      */
     @Override
     public boolean equals(final Object obj) {
-        return EqualsBuilder.reflectionEquals(this, obj, this.getExlcudedFields());
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+        try {
+            for (final Field field : this.getRelevantFields()) {
+                if (!Objects.deepEquals(field.get(this), field.get(obj))) {
+                    return false;
+                }
+            }
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
     }
 
     /**
-     * Uses Apache's {@link HashCodeBuilder} to compute the hash code of this object. Fields can be excluded from hash
-     * code generation with the help of {@link ExcludeHashCodeEquals} annotation.
+     * Computes the hash code of this object from all relevant fields. Fields can be excluded from hash code generation
+     * with the help of {@link ExcludeHashCodeEquals} annotation.
      */
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this, this.getExlcudedFields());
+        int hashCode = 17;
+        try {
+            for (final Field field : this.getRelevantFields()) {
+                final Object value = field.get(this);
+                hashCode = hashCode * 37 + (value == null ? 0 : value.getClass().isArray() ?
+                        Arrays.deepHashCode(new Object[] { value }) : value.hashCode());
+            }
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return hashCode;
     }
 
     /**
-     * Traverses the object's class and it's superclass to get the {@link java.util.Collection} of field to be excluded from
-     * hashCode() and equals(). The annotation {@link ExcludeHashCodeEquals} can be used to do so.
-     * 
-     * @return
+     * Traverses the object's class and it's superclasses to get the fields to be included in hashCode() and equals().
+     * The annotation {@link ExcludeHashCodeEquals} can be used to exclude fields.
+     *
+     * @return the accessible relevant fields
      */
-    private Collection<String> getExlcudedFields() {
-        Set<String> excludes = excludedFields.get(getClass());
-        if (excludes == null) {
-            excludes = new HashSet<>();
-
+    private Field[] getRelevantFields() {
+        Field[] fields = relevantFields.get(this.getClass());
+        if (fields == null) {
+            final List<Field> fieldList = new ArrayList<>();
             Class<?> clazz = this.getClass();
             while (clazz != null) {
                 for (final Field field : clazz.getDeclaredFields()) {
-                    final String name = field.getName();
-                    for (final Annotation a : field.getDeclaredAnnotations()) {
-                        if (a instanceof ExcludeHashCodeEquals) {
-                            excludes.add(name);
-                        }
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                            || field.getName().indexOf('$') != -1
+                            || field.isAnnotationPresent(ExcludeHashCodeEquals.class)) {
+                        continue;
                     }
+                    field.setAccessible(true);
+                    fieldList.add(field);
                 }
                 clazz = clazz.getSuperclass();
             }
 
-            excludedFields.put(getClass(), excludes);
+            fields = fieldList.toArray(new Field[fieldList.size()]);
+            relevantFields.putIfAbsent(this.getClass(), fields);
         }
-        return excludes;
+        return fields;
     }
 }
@@ -10,26 +10,73 @@ import java.io.Serializable;
 public abstract class AbstractIdentifiable extends AbstractHashCodeAndEquals implements Identifiable, Serializable {
 
     private static final long serialVersionUID = -2489903063142674900L;
+
+    /**
+     * The low 32 bit of the ID as signed int.
+     */
     private int id;
 
-    public AbstractIdentifiable(final Observer observer, int id) {
+    /**
+     * The remainder of the ID, so that {@code id + (idHighBits << 32)} yields the (long) ID. Zero for all int IDs, so
+     * that objects serialized before the introduction of this field remain readable.
+     */
+    private int idHighBits;
+
+    public AbstractIdentifiable(final Observer observer, long id) {
         if (id == -1) {
             id = observer.generateRandomId();
         }
-        this.id = id;
+        setId(id);
     }
 
-    public AbstractIdentifiable(int id) {
-        this.id = id;
+    public AbstractIdentifiable(long id) {
+        setId(id);
     }
 
+    /**
+     * @throws IllegalStateException
+     *         if the ID exceeds the int range; use {@link #getLongId()} instead
+     */
     @Override
     public int getId() {
+        if (this.idHighBits != 0) {
+            throw new IllegalStateException(String.format("The ID %d of %s exceeds the int range.", getLongId(),
+                    getClass().getSimpleName()));
+        }
         return this.id;
     }
 
-    public void setId(final int id) {
-        this.id = id;
+    @Override
+    public long getLongId() {
+        return this.id + ((long) this.idHighBits << 32);
+    }
+
+    public void setId(final long id) {
+        this.id = (int) id;
+        this.idHighBits = (int) ((id - this.id) >> 32);
+    }
+
+    /**
+     * Hashes only the ID, which is consistent with {@link #equals(Object)} because equal objects have equal IDs.
+     */
+    @Override
+    public int hashCode() {
+        return this.id ^ this.idHighBits;
+    }
+
+    /**
+     * Rejects objects with a different ID right away and compares the remaining fields only for equal IDs.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AbstractIdentifiable)) {
+            return false;
+        }
+        final AbstractIdentifiable other = (AbstractIdentifiable) obj;
+        return this.id == other.id && this.idHighBits == other.idHighBits && super.equals(obj);
     }
 
 }
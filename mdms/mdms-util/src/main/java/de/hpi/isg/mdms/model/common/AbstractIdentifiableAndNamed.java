@@ -12,32 +12,79 @@ public abstract class AbstractIdentifiableAndNamed extends AbstractHashCodeAndEq
 
     private static final long serialVersionUID = -2489903063142674900L;
 
+    /**
+     * The low 32 bit of the ID as signed int.
+     */
     @Printable
     private int id;
+
+    /**
+     * The remainder of the ID, so that {@code id + (idHighBits << 32)} yields the (long) ID. Zero for all int IDs, so
+     * that objects serialized before the introduction of this field remain readable.
+     */
+    private int idHighBits;
+
     @Printable
     private String name;
 
-    public AbstractIdentifiableAndNamed(final Observer observer, int id, final String name) {
+    public AbstractIdentifiableAndNamed(final Observer observer, long id, final String name) {
         if (id == -1) {
             id = observer.generateRandomId();
         }
 
-        this.id = id;
+        setId(id);
         this.name = name;
     }
 
+    /**
+     * @throws IllegalStateException
+     *         if the ID exceeds the int range; use {@link #getLongId()} instead
+     */
     @Override
     public int getId() {
+        if (this.idHighBits != 0) {
+            throw new IllegalStateException(String.format("The ID %d of %s exceeds the int range.", getLongId(),
+                    this.name));
+        }
         return this.id;
     }
 
+    @Override
+    public long getLongId() {
+        return this.id + ((long) this.idHighBits << 32);
+    }
+
     @Override
     public String getName() {
         return this.name;
     }
 
-    public void setId(final int id) {
-        this.id = id;
+    public void setId(final long id) {
+        this.id = (int) id;
+        this.idHighBits = (int) ((id - this.id) >> 32);
+    }
+
+    /**
+     * Hashes only the ID, which is consistent with {@link #equals(Object)} because equal objects have equal IDs.
+     */
+    @Override
+    public int hashCode() {
+        return this.id ^ this.idHighBits;
+    }
+
+    /**
+     * Rejects objects with a different ID right away and compares the remaining fields only for equal IDs.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof AbstractIdentifiableAndNamed)) {
+            return false;
+        }
+        final AbstractIdentifiableAndNamed other = (AbstractIdentifiableAndNamed) obj;
+        return this.id == other.id && this.idHighBits == other.idHighBits && super.equals(obj);
     }
 
     public void setName(final String name) {
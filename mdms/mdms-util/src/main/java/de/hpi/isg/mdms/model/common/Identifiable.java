@@ -12,4 +12,12 @@ public interface Identifiable {
      * @return the id
      */
     public int getId();
+
+    /**
+     * Returns the id of an {@link Identifiable} object, which might exceed the range of {@link #getId()} if the
+     * scope uses long IDs.
+     * 
+     * @return the id
+     */
+    public long getLongId();
 }
@@ -0,0 +1,418 @@
+package de.hpi.isg.mdms.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.AbstractInt2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectIterator;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A thread-safe map with {@code int} keys whose reads do not take any locks. The entries are spread over
+ * independently locked segments, so that writers only contend with writers of the same segment. A key is assigned to
+ * its segment either by its hash or, if a segment shift is given, by its high bits, e.g., the schema number of a
+ * target ID, so that writers that work on different schemas do not contend at all.
+ * <p>
+ * Each segment is an open-addressing hash table whose slots hold immutable entries. Writers replace slots with
+ * volatile writes and publish grown tables as a whole, so that readers always see a consistent table. Removed entries
+ * leave a tombstone until the table is rehashed. Iterators are weakly consistent, i.e., they reflect some but not
+ * necessarily all modifications after their creation and never throw a
+ * {@link java.util.ConcurrentModificationException}.
+ * </p>
+ * <p>
+ * {@code null} values are not supported.
+ * </p>
+ *
+ * @author Sebastian Kruse
+ */
+public class ConcurrentInt2ObjectMap<V> extends AbstractInt2ObjectMap<V> {
+
+    private static final long serialVersionUID = -5009627264373916416L;
+
+    private static final int DEFAULT_NUM_SEGMENTS = 16;
+
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * Occupies the slots of removed entries, so that the probing sequences of other entries are not interrupted.
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    private final int numSegmentBits;
+
+    /**
+     * If non-negative, keys are assigned to segments by {@code key >>> segmentShift}, otherwise by their hash.
+     */
+    private final int segmentShift;
+
+    private transient Segment[] segments;
+
+    /**
+     * Immutable key-value pair as stored in the segment tables.
+     */
+    private static final class Entry<V> implements Int2ObjectMap.Entry<V> {
+
+        private final int key;
+
+        private final V value;
+
+        private Entry(final int key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int getIntKey() {
+            return this.key;
+        }
+
+        @Override
+        public Integer getKey() {
+            return this.key;
+        }
+
+        @Override
+        public V getValue() {
+            return this.value;
+        }
+
+        @Override
+        public V setValue(final V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return Integer.valueOf(this.key).equals(other.getKey()) && this.value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key ^ this.value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "->" + this.value;
+        }
+
+    }
+
+    /**
+     * Open-addressing hash table that is modified only under its own lock.
+     */
+    private static final class Segment {
+
+        private volatile AtomicReferenceArray<Object> table = new AtomicReferenceArray<>(INITIAL_TABLE_SIZE);
+
+        private volatile int size = 0;
+
+        /**
+         * Number of slots that hold an entry or a tombstone. Guarded by the segment.
+         */
+        private int numOccupiedSlots = 0;
+
+        private void rehash() {
+            int tableSize = INITIAL_TABLE_SIZE;
+            while (tableSize < 4 * (this.size + 1)) {
+                tableSize <<= 1;
+            }
+            final AtomicReferenceArray<Object> oldTable = this.table;
+            final AtomicReferenceArray<Object> newTable = new AtomicReferenceArray<>(tableSize);
+            final int mask = tableSize - 1;
+            for (int i = 0; i < oldTable.length(); i++) {
+                final Object slot = oldTable.get(i);
+                if (slot != null && slot != TOMBSTONE) {
+                    int pos = HashCommon.murmurHash3(((Entry<?>) slot).key) & mask;
+                    while (newTable.get(pos) != null) {
+                        pos = (pos + 1) & mask;
+                    }
+                    newTable.set(pos, slot);
+                }
+            }
+            this.numOccupiedSlots = this.size;
+            this.table = newTable;
+        }
+
+    }
+
+    public ConcurrentInt2ObjectMap() {
+        this(DEFAULT_NUM_SEGMENTS, -1);
+    }
+
+    /**
+     * @param numSegments
+     *        is the number of independently locked segments; it is rounded up to a power of two
+     * @param segmentShift
+     *        if non-negative, the key {@code k} is assigned to the segment {@code (k >>> segmentShift) % numSegments};
+     *        otherwise, keys are assigned to segments by their hash
+     */
+    public ConcurrentInt2ObjectMap(final int numSegments, final int segmentShift) {
+        Validate.isTrue(numSegments > 0 && numSegments <= 1 << 16);
+        Validate.isTrue(segmentShift < 32);
+        this.numSegmentBits = Integer.numberOfTrailingZeros(HashCommon.nextPowerOfTwo(numSegments));
+        this.segmentShift = segmentShift;
+        initSegments();
+    }
+
+    private void initSegments() {
+        this.segments = new Segment[1 << this.numSegmentBits];
+        for (int i = 0; i < this.segments.length; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    private Segment segmentFor(final int key) {
+        if (this.segmentShift >= 0) {
+            return this.segments[(key >>> this.segmentShift) & (this.segments.length - 1)];
+        }
+        // Use the high bits of the hash for the segment, as the slots are determined by the low bits.
+        return this.numSegmentBits == 0 ? this.segments[0]
+                : this.segments[HashCommon.murmurHash3(key) >>> (32 - this.numSegmentBits)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<V> find(final int key) {
+        final AtomicReferenceArray<Object> table = segmentFor(key).table;
+        final int mask = table.length() - 1;
+        // The tables are at most half full, so that there is always a free slot that ends the probing.
+        for (int pos = HashCommon.murmurHash3(key) & mask;; pos = (pos + 1) & mask) {
+            final Object slot = table.get(pos);
+            if (slot == null) {
+                return null;
+            }
+            if (slot != TOMBSTONE && ((Entry<V>) slot).key == key) {
+                return (Entry<V>) slot;
+            }
+        }
+    }
+
+    @Override
+    public V get(final int key) {
+        final Entry<V> entry = find(key);
+        return entry == null ? this.defRetValue : entry.value;
+    }
+
+    @Override
+    public boolean containsKey(final int key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public V put(final int key, final V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * Associates the value with the key unless the key is already associated with some value.
+     *
+     * @return the value that is associated with the key or the {@link #defaultReturnValue()} if there was none
+     */
+    public V putIfAbsent(final int key, final V value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(final int key, final V value, final boolean isOnlyIfAbsent) {
+        Validate.notNull(value);
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (2 * (segment.numOccupiedSlots + 1) > segment.table.length()) {
+                segment.rehash();
+            }
+            final AtomicReferenceArray<Object> table = segment.table;
+            final int mask = table.length() - 1;
+            int freePos = -1;
+            for (int pos = HashCommon.murmurHash3(key) & mask;; pos = (pos + 1) & mask) {
+                final Object slot = table.get(pos);
+                if (slot == null) {
+                    if (freePos == -1) {
+                        freePos = pos;
+                        segment.numOccupiedSlots++;
+                    }
+                    break;
+                } else if (slot == TOMBSTONE) {
+                    if (freePos == -1) {
+                        freePos = pos;
+                    }
+                } else if (((Entry<V>) slot).key == key) {
+                    if (!isOnlyIfAbsent) {
+                        table.set(pos, new Entry<>(key, value));
+                    }
+                    return ((Entry<V>) slot).value;
+                }
+            }
+            table.set(freePos, new Entry<>(key, value));
+            segment.size++;
+            return this.defRetValue;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(final int key) {
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            final AtomicReferenceArray<Object> table = segment.table;
+            final int mask = table.length() - 1;
+            for (int pos = HashCommon.murmurHash3(key) & mask;; pos = (pos + 1) & mask) {
+                final Object slot = table.get(pos);
+                if (slot == null) {
+                    return this.defRetValue;
+                }
+                if (slot != TOMBSTONE && ((Entry<V>) slot).key == key) {
+                    table.set(pos, TOMBSTONE);
+                    segment.size--;
+                    return ((Entry<V>) slot).value;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (final Segment segment : this.segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.table = new AtomicReferenceArray<>(INITIAL_TABLE_SIZE);
+                segment.size = 0;
+                segment.numOccupiedSlots = 0;
+            }
+        }
+    }
+
+    @Override
+    public ObjectSet<Int2ObjectMap.Entry<V>> int2ObjectEntrySet() {
+        return new AbstractObjectSet<Int2ObjectMap.Entry<V>>() {
+
+            @Override
+            public ObjectIterator<Int2ObjectMap.Entry<V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentInt2ObjectMap.this.size();
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                if (!(o instanceof Map.Entry) || !(((Map.Entry<?, ?>) o).getKey() instanceof Integer)) {
+                    return false;
+                }
+                final Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+                final Entry<V> entry = find((Integer) other.getKey());
+                return entry != null && entry.value.equals(other.getValue());
+            }
+
+        };
+    }
+
+    /**
+     * Iterates the segment tables as they are when the iterator reaches them.
+     */
+    private final class EntryIterator extends AbstractObjectIterator<Int2ObjectMap.Entry<V>> {
+
+        private int segmentIndex = -1;
+
+        private AtomicReferenceArray<Object> table = null;
+
+        private int pos = 0;
+
+        private Entry<V> next = null, last = null;
+
+        private EntryIterator() {
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            this.next = null;
+            while (true) {
+                if (this.table == null || this.pos >= this.table.length()) {
+                    if (++this.segmentIndex >= ConcurrentInt2ObjectMap.this.segments.length) {
+                        return;
+                    }
+                    this.table = ConcurrentInt2ObjectMap.this.segments[this.segmentIndex].table;
+                    this.pos = 0;
+                }
+                final Object slot = this.table.get(this.pos++);
+                if (slot != null && slot != TOMBSTONE) {
+                    this.next = (Entry<V>) slot;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Int2ObjectMap.Entry<V> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            advance();
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            Validate.validState(this.last != null);
+            ConcurrentInt2ObjectMap.this.remove(this.last.key);
+            this.last = null;
+        }
+
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // Take a snapshot first, so that the number of written entries matches the announced number.
+        final List<Entry<V>> entries = new ArrayList<>();
+        for (final Int2ObjectMap.Entry<V> entry : int2ObjectEntrySet()) {
+            entries.add((Entry<V>) entry);
+        }
+        out.writeInt(entries.size());
+        for (final Entry<V> entry : entries) {
+            out.writeInt(entry.key);
+            out.writeObject(entry.value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initSegments();
+        for (int numEntries = in.readInt(); numEntries > 0; numEntries--) {
+            put(in.readInt(), (V) in.readObject());
+        }
+    }
+
+}
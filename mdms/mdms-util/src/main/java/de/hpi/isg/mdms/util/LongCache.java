@@ -0,0 +1,449 @@
+package de.hpi.isg.mdms.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A thread-safe cache with {@code long} keys, e.g., target IDs, that is bounded by a weight budget, e.g., a number of entries or an
+ * estimated number of bytes. In contrast to {@link LRUCache}, reads do not reorder any list and the entries are spread
+ * over independently locked segments, so that concurrent readers rarely contend.
+ * <p>
+ * Eviction is frequency-aware: every entry has a small access counter that is incremented on each hit. When the
+ * budget is exceeded, a clock hand sweeps over the entries, decrements their counters, and picks the first entry whose
+ * counter is zero as victim (GCLOCK). Additionally, each segment estimates the access frequencies of recently requested
+ * keys with a small count-min sketch whose counters are halved periodically. A new entry is only admitted if its key
+ * has been requested at least as often as the key of the victim (TinyLFU); otherwise, the new entry is dropped. Thus,
+ * frequently accessed entries survive a scan over many entries that are accessed only once, which would flush an LRU
+ * cache.
+ * </p>
+ * <p>
+ * {@code null} values are not supported; putting {@code null} removes the key.
+ * </p>
+ *
+ * @author Sebastian Kruse
+ */
+public class LongCache<V> {
+
+    /**
+     * Estimates the weight of cache entries, e.g., their size in bytes.
+     */
+    public interface Weigher<V> {
+
+        /**
+         * @return the weight of the given entry, which must not be negative
+         */
+        int weigh(long key, V value);
+
+    }
+
+    /**
+     * Weighs every entry with {@code 1}, so that the budget is a number of entries.
+     */
+    public static final Weigher<Object> SINGLETON_WEIGHER = new Weigher<Object>() {
+        @Override
+        public int weigh(long key, Object value) {
+            return 1;
+        }
+    };
+
+    /**
+     * Upper bound for the access counters.
+     */
+    private static final byte MAX_FREQUENCY = 3;
+
+    /**
+     * Upper bound for the counters of the frequency sketches.
+     */
+    private static final byte MAX_SKETCH_FREQUENCY = 15;
+
+    /**
+     * Upper bound for the number of counters in each frequency sketch.
+     */
+    private static final int MAX_SKETCH_SIZE = 1 << 14;
+
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Segments are only added as long as each segment can hold at least this weight.
+     */
+    private static final int MIN_SEGMENT_WEIGHT = 64;
+
+    private final Segment<V>[] segments;
+
+    private final int segmentMask;
+
+    private final Weigher<? super V> weigher;
+
+    private final long maxWeight;
+
+    /**
+     * Creates a new cache that holds at most the given number of entries.
+     *
+     * @param maxEntries is the maximum number of entries
+     */
+    public LongCache(int maxEntries) {
+        this(maxEntries, SINGLETON_WEIGHER);
+    }
+
+    /**
+     * Creates a new cache that holds entries up to a total weight.
+     *
+     * @param maxWeight is the maximum total weight of the entries
+     * @param weigher   determines the weight of each entry
+     */
+    @SuppressWarnings("unchecked")
+    public LongCache(long maxWeight, Weigher<? super V> weigher) {
+        Validate.isTrue(maxWeight > 0, "The maximum weight must be positive.");
+        Validate.notNull(weigher);
+        int numSegments = 1;
+        while (numSegments < MAX_SEGMENTS && maxWeight / (2 * numSegments) >= MIN_SEGMENT_WEIGHT) {
+            numSegments *= 2;
+        }
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            // Distribute the remainder of the budget over the first segments.
+            long segmentWeight = maxWeight / numSegments + (i < maxWeight % numSegments ? 1 : 0);
+            this.segments[i] = new Segment<>(segmentWeight);
+        }
+        this.segmentMask = numSegments - 1;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return this.segments[(int) HashCommon.murmurHash3(key) & this.segmentMask];
+    }
+
+    /**
+     * @return the value associated with the given key or {@code null} if there is none
+     */
+    public V get(long key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Tells whether the key is cached. In contrast to {@link #get(long)}, this does not count as an access.
+     */
+    public boolean containsKey(long key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    /**
+     * Associates the given value with the given key and evicts other entries if the weight budget is exceeded. An
+     * entry that alone exceeds the budget of its segment is not cached.
+     *
+     * @param key   is the key
+     * @param value is the value or {@code null} to remove the key
+     */
+    public void put(long key, V value) {
+        Segment<V> segment = segmentFor(key);
+        if (value == null) {
+            segment.remove(key);
+            return;
+        }
+        int weight = this.weigher.weigh(key, value);
+        Validate.isTrue(weight >= 0, "Negative weight for %s.", key);
+        segment.put(key, value, weight);
+    }
+
+    /**
+     * Removes the given key.
+     *
+     * @return the value that has been associated with the key or {@code null} if none
+     */
+    public V remove(long key) {
+        return segmentFor(key).remove(key);
+    }
+
+    /**
+     * Removes all entries. The counters are retained.
+     */
+    public void clear() {
+        for (Segment<V> segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.slots.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the total weight of the cached entries
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    /**
+     * @return the number of {@link #get(long)} calls that found a value
+     */
+    public long getHitCount() {
+        long hitCount = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                hitCount += segment.hitCount;
+            }
+        }
+        return hitCount;
+    }
+
+    /**
+     * @return the number of {@link #get(long)} calls that found no value
+     */
+    public long getMissCount() {
+        long missCount = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                missCount += segment.missCount;
+            }
+        }
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries that have been evicted or not admitted to keep within the weight budget
+     */
+    public long getEvictionCount() {
+        long evictionCount = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                evictionCount += segment.evictionCount;
+            }
+        }
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LongCache[%d entries, weight %d/%d, %d hits, %d misses, %d evictions]", size(),
+                getWeight(), this.maxWeight, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * A part of the cache with its own lock, budget, and clock. The entries are stored in parallel arrays, whose free
+     * slots are recognized by a {@code null} value.
+     */
+    private static final class Segment<V> {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final long maxWeight;
+
+        /**
+         * Maps keys to their slot in the arrays.
+         */
+        private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+
+        private final IntArrayList freeSlots = new IntArrayList();
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        private int[] weights = new int[INITIAL_CAPACITY];
+
+        private byte[] frequencies = new byte[INITIAL_CAPACITY];
+
+        /**
+         * The number of slots that have ever been used.
+         */
+        private int numSlots = 0;
+
+        private int clockHand = 0;
+
+        private long weight = 0;
+
+        private long hitCount = 0, missCount = 0, evictionCount = 0;
+
+        /**
+         * Count-min sketch of the access frequencies of the requested keys.
+         */
+        private final byte[] sketch;
+
+        /**
+         * Number of sketch increments after which all sketch counters are halved.
+         */
+        private final int sketchSampleSize;
+
+        private int numSketchIncrements = 0;
+
+        private Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.slots.defaultReturnValue(-1);
+            // Provide about 16 counters per entry and age after about 10 requests per entry.
+            int sketchSize = HashCommon.nextPowerOfTwo((int) Math.max(64, Math.min(MAX_SKETCH_SIZE, 16 * maxWeight)));
+            this.sketch = new byte[sketchSize];
+            this.sketchSampleSize = sketchSize / 16 * 10;
+        }
+
+        /**
+         * Calculates the {@code i}-th of four sketch positions for the given key via double hashing.
+         */
+        private int sketchIndex(long key, int i) {
+            int hash1 = (int) HashCommon.murmurHash3(key * 0x9E3779B97F4A7C15L);
+            int hash2 = Integer.rotateLeft(hash1, 16) | 1;
+            return (hash1 + i * hash2) & (this.sketch.length - 1);
+        }
+
+        private void recordRequest(long key) {
+            for (int i = 0; i < 4; i++) {
+                int index = sketchIndex(key, i);
+                if (this.sketch[index] < MAX_SKETCH_FREQUENCY) {
+                    this.sketch[index]++;
+                }
+            }
+            if (++this.numSketchIncrements >= this.sketchSampleSize) {
+                // Age the frequencies, so that keys that are not requested anymore can be replaced eventually.
+                for (int i = 0; i < this.sketch.length; i++) {
+                    this.sketch[i] >>>= 1;
+                }
+                this.numSketchIncrements /= 2;
+            }
+        }
+
+        private int estimateFrequency(long key) {
+            int frequency = MAX_SKETCH_FREQUENCY;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, this.sketch[sketchIndex(key, i)]);
+            }
+            return frequency;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V get(long key) {
+            recordRequest(key);
+            int slot = this.slots.get(key);
+            if (slot == -1) {
+                this.missCount++;
+                return null;
+            }
+            this.hitCount++;
+            if (this.frequencies[slot] < MAX_FREQUENCY) {
+                this.frequencies[slot]++;
+            }
+            return (V) this.values[slot];
+        }
+
+        private synchronized boolean containsKey(long key) {
+            return this.slots.containsKey(key);
+        }
+
+        private synchronized void put(long key, V value, int weight) {
+            if (weight > this.maxWeight) {
+                remove(key);
+                return;
+            }
+            int slot = this.slots.get(key);
+            boolean isNewEntry = slot == -1;
+            if (isNewEntry) {
+                slot = allocateSlot();
+                this.slots.put(key, slot);
+                this.keys[slot] = key;
+                this.frequencies[slot] = 0;
+            } else {
+                this.weight -= this.weights[slot];
+            }
+            this.values[slot] = value;
+            this.weights[slot] = weight;
+            this.weight += weight;
+            evict(slot, isNewEntry);
+        }
+
+        private int allocateSlot() {
+            if (!this.freeSlots.isEmpty()) {
+                return this.freeSlots.popInt();
+            }
+            if (this.numSlots == this.keys.length) {
+                int newCapacity = 2 * this.keys.length;
+                this.keys = Arrays.copyOf(this.keys, newCapacity);
+                this.values = Arrays.copyOf(this.values, newCapacity);
+                this.weights = Arrays.copyOf(this.weights, newCapacity);
+                this.frequencies = Arrays.copyOf(this.frequencies, newCapacity);
+            }
+            return this.numSlots++;
+        }
+
+        /**
+         * Evicts entries until the weight budget is met.
+         *
+         * @param filledSlot  is the slot that has just been filled and that is not considered as victim
+         * @param isCandidate tells whether the entry in the filled slot is new and therefore has to compete with the
+         *                    victims for admission
+         */
+        private void evict(int filledSlot, boolean isCandidate) {
+            int candidateFrequency = isCandidate ? estimateFrequency(this.keys[filledSlot]) : 0;
+            while (this.weight > this.maxWeight) {
+                this.clockHand = (this.clockHand + 1) % this.numSlots;
+                if (this.clockHand == filledSlot || this.values[this.clockHand] == null) {
+                    continue;
+                }
+                if (this.frequencies[this.clockHand] > 0) {
+                    this.frequencies[this.clockHand]--;
+                } else if (isCandidate && candidateFrequency < estimateFrequency(this.keys[this.clockHand])) {
+                    // The victim is requested more often than the new entry, so rather drop the new entry.
+                    this.slots.remove(this.keys[filledSlot]);
+                    freeSlot(filledSlot);
+                    this.evictionCount++;
+                    isCandidate = false;
+                } else {
+                    this.slots.remove(this.keys[this.clockHand]);
+                    freeSlot(this.clockHand);
+                    this.evictionCount++;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V remove(long key) {
+            int slot = this.slots.remove(key);
+            if (slot == -1) {
+                return null;
+            }
+            V value = (V) this.values[slot];
+            freeSlot(slot);
+            return value;
+        }
+
+        private void freeSlot(int slot) {
+            this.values[slot] = null;
+            this.weight -= this.weights[slot];
+            this.freeSlots.add(slot);
+        }
+
+        private synchronized void clear() {
+            this.slots.clear();
+            this.freeSlots.clear();
+            Arrays.fill(this.values, 0, this.numSlots, null);
+            this.numSlots = 0;
+            this.clockHand = 0;
+            this.weight = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package de.hpi.isg.mdms.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class FlushOrderGraphTest {
+
+    @Test
+    public void testAddingPrecedencesAgainstTheOrder() {
+        FlushOrderGraph<String> graph = new FlushOrderGraph<>();
+        // Create nodes in an order that contradicts the precedences.
+        assertNull(graph.addPrecedence("d", "e"));
+        assertNull(graph.addPrecedence("c", "d"));
+        assertNull(graph.addPrecedence("b", "c"));
+        assertNull(graph.addPrecedence("a", "b"));
+        assertEquals(Arrays.asList("a"), graph.getPredecessors("b"));
+        assertTrue(graph.getPredecessors("a").isEmpty());
+    }
+
+    @Test
+    public void testDetectingCycles() {
+        FlushOrderGraph<String> graph = new FlushOrderGraph<>();
+        assertNull(graph.addPrecedence("a", "b"));
+        assertNull(graph.addPrecedence("b", "c"));
+        assertNull(graph.addPrecedence("c", "d"));
+
+        // d -> a would close the cycle a -> b -> c -> d -> a.
+        assertEquals(Arrays.asList("a", "b", "c", "d"), graph.addPrecedence("d", "a"));
+        assertEquals(Arrays.asList("a"), graph.addPrecedence("a", "a"));
+        assertTrue(graph.getPredecessors("a").isEmpty());
+
+        // After removing a node of the cycle, the precedence can be added.
+        graph.remove("b");
+        assertFalse(graph.contains("b"));
+        assertTrue(graph.getPredecessors("c").isEmpty());
+        assertNull(graph.addPrecedence("d", "a"));
+        assertEquals(Arrays.asList("c", "d", "a"), graph.addPrecedence("a", "c"));
+    }
+
+    @Test
+    public void testRemovingNodes() {
+        FlushOrderGraph<String> graph = new FlushOrderGraph<>();
+        assertNull(graph.addPrecedence("a", "c"));
+        assertNull(graph.addPrecedence("b", "c"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(graph.getPredecessors("c")));
+        graph.remove("a");
+        assertEquals(Arrays.asList("b"), graph.getPredecessors("c"));
+    }
+
+}
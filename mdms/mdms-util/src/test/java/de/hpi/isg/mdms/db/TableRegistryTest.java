@@ -0,0 +1,32 @@
+package de.hpi.isg.mdms.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class TableRegistryTest {
+
+    @Test
+    public void testSpellingsShareHandles() {
+        TableRegistry registry = new TableRegistry();
+        int handle = registry.getHandle("Target");
+        assertEquals(handle, registry.getHandle("target"));
+        assertEquals(handle, registry.getHandle("TARGET"));
+        assertNotEquals(handle, registry.getHandle("Column"));
+        assertEquals(2, registry.size());
+        assertEquals("target", registry.getTableName(handle));
+    }
+
+    @Test
+    public void testResolvingTableSets() {
+        TableRegistry registry = new TableRegistry();
+        BitSet handles = registry.getHandles(Arrays.asList("A", "b", "a"));
+        assertEquals(2, handles.cardinality());
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(registry.getTableNames(handles).toArray()));
+    }
+
+}
@@ -0,0 +1,59 @@
+package de.hpi.isg.mdms.db.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BatchSizeControllerTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void testFixedControllerIgnoresObservations() {
+        BatchSizeController controller = BatchSizeController.createFixed(500);
+        assertFalse(controller.isAdaptive());
+        controller.recordFlush(500, 10000 * MILLIS);
+        assertEquals(500, controller.getBatchSize());
+    }
+
+    @Test
+    public void testAdaptiveControllerConvergesToTargetLatency() {
+        // Every statement takes 10 us, so 5,000 statements meet the 50 ms target.
+        BatchSizeController controller = BatchSizeController.createAdaptive(100, 100000, 50, Long.MAX_VALUE, 64);
+        assertTrue(controller.isAdaptive());
+        for (int i = 0; i < 20; i++) {
+            int batchSize = controller.getBatchSize();
+            controller.recordFlush(batchSize, batchSize * 10000L);
+        }
+        assertEquals(5000, controller.getBatchSize());
+    }
+
+    @Test
+    public void testAdaptiveControllerAdjustsGradually() {
+        BatchSizeController controller = BatchSizeController.createAdaptive(100, 100000, 1000, Long.MAX_VALUE, 64);
+        int initialBatchSize = controller.getBatchSize();
+        controller.recordFlush(initialBatchSize, initialBatchSize);
+        assertEquals(2 * initialBatchSize, controller.getBatchSize());
+    }
+
+    @Test
+    public void testAdaptiveControllerRespectsMemoryCap() {
+        // 64 KB allow for 1,024 statements of 64 bytes.
+        BatchSizeController controller = BatchSizeController.createAdaptive(100, 100000, 1000, 64 * 1024, 64);
+        for (int i = 0; i < 20; i++) {
+            controller.recordFlush(controller.getBatchSize(), 1);
+        }
+        assertEquals(1024, controller.getBatchSize());
+    }
+
+    @Test
+    public void testAdaptiveControllerIgnoresSmallBatches() {
+        BatchSizeController controller = BatchSizeController.createAdaptive(100, 100000, 50, Long.MAX_VALUE, 64);
+        int initialBatchSize = controller.getBatchSize();
+        controller.recordFlush(10, 10000 * MILLIS);
+        assertEquals(initialBatchSize, controller.getBatchSize());
+    }
+
+}
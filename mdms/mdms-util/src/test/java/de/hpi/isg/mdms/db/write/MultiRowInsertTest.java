@@ -0,0 +1,32 @@
+package de.hpi.isg.mdms.db.write;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MultiRowInsertTest {
+
+    @Test
+    public void testRewritingOfSingleRowInsert() {
+        PreparedStatementBatchWriter.MultiRowInsert multiRowInsert = PreparedStatementBatchWriter.MultiRowInsert
+                .parse("INSERT INTO Target (ID, name) values (?, coalesce(?, '(none)'));");
+        assertEquals(2, multiRowInsert.getParametersPerRow());
+        assertEquals("INSERT INTO Target (ID, name) SELECT ?, coalesce(?, '(none)') "
+                + "UNION ALL SELECT ?, coalesce(?, '(none)');", multiRowInsert.toSql(2));
+    }
+
+    @Test
+    public void testRowsRespectSQLiteLimits() {
+        assertEquals(PreparedStatementBatchWriter.MAX_COMPOUND_SELECT_TERMS,
+                PreparedStatementBatchWriter.MultiRowInsert.parse("INSERT INTO t (a) VALUES (?);").getMaxRows());
+        assertEquals(PreparedStatementBatchWriter.MAX_HOST_PARAMETERS / 4,
+                PreparedStatementBatchWriter.MultiRowInsert.parse("INSERT INTO t (a, b, c, d) VALUES (?, ?, ?, ?);")
+                        .getMaxRows());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectionOfNonInserts() {
+        PreparedStatementBatchWriter.MultiRowInsert.parse("DELETE FROM Target WHERE id=?;");
+    }
+
+}
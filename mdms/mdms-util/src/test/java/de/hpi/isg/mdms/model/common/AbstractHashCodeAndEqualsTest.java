@@ -0,0 +1,78 @@
+package de.hpi.isg.mdms.model.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AbstractHashCodeAndEqualsTest {
+
+    private static class Value extends AbstractHashCodeAndEquals {
+
+        private final String name;
+
+        private final int[] numbers;
+
+        @ExcludeHashCodeEquals
+        private final Object excluded;
+
+        private transient Object cached;
+
+        private Value(String name, int[] numbers, Object excluded) {
+            this.name = name;
+            this.numbers = numbers;
+            this.excluded = excluded;
+        }
+
+    }
+
+    private static class SubValue extends Value {
+
+        private SubValue(String name, int[] numbers, Object excluded) {
+            super(name, numbers, excluded);
+        }
+
+    }
+
+    private static class Identifiable extends AbstractIdentifiableAndNamed {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String payload;
+
+        private Identifiable(long id, String name, String payload) {
+            super(null, id, name);
+            this.payload = payload;
+        }
+
+    }
+
+    @Test
+    public void testEqualsAndHashCodeConsiderRelevantFieldsOnly() {
+        Value value1 = new Value("a", new int[] { 1, 2 }, "foo");
+        Value value2 = new Value("a", new int[] { 1, 2 }, "bar");
+        value2.cached = "baz";
+        assertEquals(value1, value2);
+        assertEquals(value1.hashCode(), value2.hashCode());
+
+        assertFalse(value1.equals(new Value("a", new int[] { 1, 3 }, "foo")));
+        assertFalse(value1.equals(new Value(null, new int[] { 1, 2 }, "foo")));
+        assertFalse(value1.equals(null));
+        assertFalse(value1.equals(new SubValue("a", new int[] { 1, 2 }, "foo")));
+        assertEquals(new SubValue(null, null, null), new SubValue(null, null, "foo"));
+    }
+
+    @Test
+    public void testIdentifiablesAreHashedByTheirIds() {
+        Identifiable identifiable1 = new Identifiable(1L << 40 | 3, "a", "foo");
+        Identifiable identifiable2 = new Identifiable(1L << 40 | 3, "a", "foo");
+        assertEquals(identifiable1, identifiable2);
+        assertEquals(identifiable1.hashCode(), identifiable2.hashCode());
+
+        assertFalse(identifiable1.equals(new Identifiable(3, "a", "foo")));
+        assertFalse(identifiable1.equals(new Identifiable(1L << 40 | 3, "a", "bar")));
+        assertTrue(identifiable1.equals(identifiable1));
+    }
+
+}
@@ -0,0 +1,125 @@
+package de.hpi.isg.mdms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentInt2ObjectMapTest {
+
+    @Test
+    public void testBasicOperations() {
+        ConcurrentInt2ObjectMap<String> map = new ConcurrentInt2ObjectMap<>();
+        assertNull(map.get(1));
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(2, "b"));
+        assertEquals("a", map.put(1, "c"));
+        assertEquals("c", map.putIfAbsent(1, "d"));
+        assertEquals("c", map.get(1));
+        assertEquals(2, map.size());
+        assertEquals("b", map.remove(2));
+        assertFalse(map.containsKey(2));
+        assertNull(map.remove(2));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testAgainstReferenceMap() throws Exception {
+        ConcurrentInt2ObjectMap<Integer> map = new ConcurrentInt2ObjectMap<>(4, 24);
+        Int2ObjectMap<Integer> referenceMap = new Int2ObjectOpenHashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < 100000; n++) {
+            // Keys from few segments and with many removals to exercise growing and tombstones.
+            int key = (random.nextInt(8) << 24) | random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(referenceMap.remove(key), map.remove(key));
+            } else {
+                assertEquals(referenceMap.put(key, Integer.valueOf(n)), map.put(key, Integer.valueOf(n)));
+            }
+        }
+        assertEquals(referenceMap.size(), map.size());
+        assertEquals(referenceMap, map);
+        assertEquals(map, referenceMap);
+        assertEquals(referenceMap.hashCode(), map.hashCode());
+
+        // Removal via iterator.
+        for (ObjectIterator<Int2ObjectMap.Entry<Integer>> iterator = map.int2ObjectEntrySet().iterator(); iterator
+                .hasNext();) {
+            if (iterator.next().getIntKey() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        for (int key : referenceMap.keySet()) {
+            assertEquals(key % 2 != 0, map.containsKey(key));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(map);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(map, in.readObject());
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final ConcurrentInt2ObjectMap<Integer> map = new ConcurrentInt2ObjectMap<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int offset = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < 100000; n++) {
+                            // Each thread writes its own keys, but reads the keys of all threads.
+                            int key = (n % 10000) * 8 + offset;
+                            if (n < 10000) {
+                                map.put(key, Integer.valueOf(key));
+                            } else if (n % 10 == 0) {
+                                map.remove(key);
+                                map.put(key, Integer.valueOf(key));
+                            }
+                            int readKey = (n * 31) % 80000;
+                            Integer value = map.get(readKey);
+                            if (value != null && value != readKey) {
+                                throw new AssertionError("Wrong value for " + readKey + ": " + value);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+        assertEquals(80000, map.size());
+        for (int key = 0; key < 80000; key++) {
+            assertEquals(Integer.valueOf(key), map.get(key));
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package de.hpi.isg.mdms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class LongCacheTest {
+
+    @Test
+    public void testBasicOperations() {
+        LongCache<String> cache = new LongCache<>(10);
+        assertNull(cache.get(1));
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(1, "c");
+        assertEquals("c", cache.get(1));
+        assertEquals(2, cache.size());
+        assertEquals("b", cache.remove(2));
+        assertFalse(cache.containsKey(2));
+        cache.put(1, null);
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testKeysBeyondIntRange() {
+        LongCache<String> cache = new LongCache<>(10);
+        long key = 1L << 40;
+        cache.put(key, "a");
+        cache.put(key + 1, "b");
+        assertNull(cache.get((int) key));
+        assertEquals("a", cache.get(key));
+        assertEquals("b", cache.get(key + 1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesSurviveScans() {
+        int capacity = 1000;
+        LongCache<Integer> cache = new LongCache<>(capacity);
+        // Interleave requests for 100 hot keys with a scan over many keys that are requested only once. Each hot key
+        // is requested only every 2000 scanned keys, so that an LRU cache of the same capacity would always miss.
+        int numHotHits = 0, numHotRequests = 0;
+        for (int n = 0; n < 200000; n++) {
+            int key = n % 20 == 0 ? (n / 20) % 100 : 100 + n;
+            Integer value = cache.get(key);
+            if (value == null) {
+                cache.put(key, key);
+            } else {
+                assertEquals(Integer.valueOf(key), value);
+            }
+            if (key < 100) {
+                numHotRequests++;
+                if (value != null) {
+                    numHotHits++;
+                }
+            }
+        }
+        assertTrue(cache.size() <= capacity);
+        assertEquals(cache.size(), cache.getWeight());
+        assertTrue(cache.getEvictionCount() >= 190000 - capacity);
+        assertTrue(numHotHits + " of " + numHotRequests, numHotHits > 0.9 * numHotRequests);
+    }
+
+    @Test
+    public void testWeightBudget() {
+        LongCache<String> cache = new LongCache<>(100, new LongCache.Weigher<String>() {
+            @Override
+            public int weigh(long key, String value) {
+                return value.length();
+            }
+        });
+        for (int key = 0; key < 50; key++) {
+            cache.put(key, "0123456789");
+        }
+        assertEquals(10, cache.size());
+        assertEquals(100, cache.getWeight());
+        // An entry that exceeds the budget is not cached at all.
+        cache.put(50, new String(new char[101]));
+        assertFalse(cache.containsKey(50));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final LongCache<Integer> cache = new LongCache<>(5000);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int offset = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < 100000; n++) {
+                            int key = (n * 31 + offset) % 20000;
+                            Integer value = cache.get(key);
+                            if (value == null) {
+                                cache.put(key, key);
+                            } else if (value != key) {
+                                throw new AssertionError("Wrong value for " + key + ": " + value);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+        assertTrue(cache.size() <= 5000);
+        assertEquals(8 * 100000, cache.getHitCount() + cache.getMissCount());
+    }
+
+}